@@ -0,0 +1,31 @@
+package fun.mike.frontier.alpha;
+
+import java.io.FilterOutputStream;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream to a file being written on a host. Closing the stream completes the file, so a caller that fails
+ * partway through must call abort instead of close, or the partial file is kept as if it were whole:
+ * <pre>
+ * AbortableOutputStream os = client.openOutputStream(path);
+ * try {
+ *     produce(os);
+ *     os.close();
+ * } catch (IOException | RuntimeException ex) {
+ *     os.abort();
+ *     throw ex;
+ * }
+ * </pre>
+ * A stream whose writes fail is treated as aborted when it is closed.
+ */
+public abstract class AbortableOutputStream extends FilterOutputStream {
+    protected AbortableOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Abandons the transfer: discards the partial file and releases the connection without reusing it. Does nothing
+     * if the stream is already closed.
+     */
+    public abstract void abort();
+}
@@ -0,0 +1,60 @@
+package fun.mike.frontier.alpha;
+
+/**
+ * A range of bytes in a file, for reading several parts of one file at once.
+ */
+public class ByteRange {
+    private final long offset;
+    private final int length;
+
+    public ByteRange(long offset, int length) {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException(String.format("Invalid range of %d bytes at offset %d.",
+                                                             length,
+                                                             offset));
+        }
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public static ByteRange of(long offset, int length) {
+        return new ByteRange(offset, length);
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the offset just past the last byte of the range.
+     */
+    public long getEnd() {
+        return offset + length;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRange{" +
+                "offset=" + offset +
+                ", length=" + length +
+                '}';
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ByteRange byteRange = (ByteRange) o;
+        return offset == byteRange.offset &&
+                length == byteRange.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(offset) * 31 + length;
+    }
+}
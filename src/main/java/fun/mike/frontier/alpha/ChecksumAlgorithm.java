@@ -0,0 +1,50 @@
+package fun.mike.frontier.alpha;
+
+/**
+ * A checksum algorithm that can be computed while a file is transferred.
+ */
+public enum ChecksumAlgorithm {
+    MD5("MD5", 32, "XMD5", "md5sum"),
+    SHA_256("SHA-256", 64, null, "sha256sum"),
+    CRC32("CRC32", 8, "XCRC", null);
+
+    private final String name;
+    private final int hexLength;
+    private final String ftpCommand;
+    private final String shellCommand;
+
+    ChecksumAlgorithm(String name, int hexLength, String ftpCommand, String shellCommand) {
+        this.name = name;
+        this.hexLength = hexLength;
+        this.ftpCommand = ftpCommand;
+        this.shellCommand = shellCommand;
+    }
+
+    /**
+     * @return the standard name of the algorithm, as used by MessageDigest and the FTP HASH command.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of hex characters in a checksum produced by the algorithm.
+     */
+    public int getHexLength() {
+        return hexLength;
+    }
+
+    /**
+     * @return the non-standard FTP command computing the checksum, such as XMD5, or null if there is none.
+     */
+    public String getFtpCommand() {
+        return ftpCommand;
+    }
+
+    /**
+     * @return the shell command computing the checksum on a remote host, or null if there is none.
+     */
+    public String getShellCommand() {
+        return shellCommand;
+    }
+}
@@ -0,0 +1,25 @@
+package fun.mike.frontier.alpha;
+
+/**
+ * Signals that the checksum computed during a transfer does not match the checksum reported by the host.
+ */
+public class ChecksumMismatchException extends FileTransferException {
+    private static final long serialVersionUID = 1L;
+
+    private final String localChecksum;
+    private final String remoteChecksum;
+
+    public ChecksumMismatchException(String msg, String localChecksum, String remoteChecksum) {
+        super(msg);
+        this.localChecksum = localChecksum;
+        this.remoteChecksum = remoteChecksum;
+    }
+
+    public String getLocalChecksum() {
+        return localChecksum;
+    }
+
+    public String getRemoteChecksum() {
+        return remoteChecksum;
+    }
+}
@@ -0,0 +1,425 @@
+package fun.mike.frontier.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import fun.mike.frontier.impl.alpha.FileChannelOutputStream;
+import fun.mike.frontier.impl.alpha.SpillBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A FileTransferClient that coalesces concurrent identical reads into a single request to the wrapped client.
+ * <p>
+ * While a download, slurp, existence check, stat or listing of a path is in flight, callers asking for the same thing
+ * wait for it instead of opening their own connection. Downloaded bytes are held in a shared buffer, which moves to a
+ * temp file past a threshold, and copied to each waiter. Listings and file details are copied for each waiter, so one
+ * waiter changing its result does not change another's. Results are not cached: a request made after the in-flight
+ * one completes goes to the host again. Every other operation is passed straight through.
+ */
+public class CoalescingFileTransferClient implements FileTransferClient {
+    private static final Logger log = LoggerFactory.getLogger(CoalescingFileTransferClient.class);
+    private static final int DEFAULT_SPILL_THRESHOLD = 8 * 1024 * 1024;
+
+    private final FileTransferClient client;
+    private final int spillThreshold;
+    private final ConcurrentMap<String, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps a client, keeping shared downloads of up to 8 MB in memory.
+     *
+     * @param client the client to wrap
+     */
+    public CoalescingFileTransferClient(FileTransferClient client) {
+        this(client, DEFAULT_SPILL_THRESHOLD);
+    }
+
+    /**
+     * Wraps a client.
+     *
+     * @param client         the client to wrap
+     * @param spillThreshold the number of bytes a shared download may hold in memory before moving to a temp file
+     */
+    public CoalescingFileTransferClient(FileTransferClient client, int spillThreshold) {
+        this.client = client;
+        this.spillThreshold = spillThreshold;
+    }
+
+    @Override
+    public <T> T session(Function<FileTransferClient, T> operations) {
+        return client.session(session -> operations.apply(this));
+    }
+
+    @Override
+    public Optional<InputStream> optionalStream(String path) {
+        return client.optionalStream(path);
+    }
+
+    @Override
+    public InputStream stream(String path) {
+        return client.stream(path);
+    }
+
+    @Override
+    public <T> T read(String path, Function<InputStream, T> reader) {
+        return client.read(path, reader);
+    }
+
+    @Override
+    public byte[] read(String path, long offset, int length) {
+        return client.read(path, offset, length);
+    }
+
+    @Override
+    public <T> T read(String path, long offset, long length, Function<InputStream, T> reader) {
+        return client.read(path, offset, length, reader);
+    }
+
+    @Override
+    public List<byte[]> read(String path, List<ByteRange> ranges) {
+        return client.read(path, ranges);
+    }
+
+    @Override
+    public Boolean dirExists(String path) {
+        return coalesce("dirExists", path, () -> client.dirExists(path));
+    }
+
+    @Override
+    public Boolean fileExists(String path) {
+        return coalesce("fileExists", path, () -> client.fileExists(path));
+    }
+
+    @Override
+    public Optional<String> optionalSlurp(String path) {
+        return coalesce("optionalSlurp", path, () -> client.optionalSlurp(path));
+    }
+
+    @Override
+    public String slurp(String path) {
+        return coalesce("slurp", path, () -> client.slurp(path));
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset) {
+        return client.streamLines(path, charset);
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset, String delimiter, boolean skipHeader) {
+        return client.streamLines(path, charset, delimiter, skipHeader);
+    }
+
+    @Override
+    public List<FileInfo> list(String path) {
+        return coalesce("list", path, () -> client.list(path), CoalescingFileTransferClient::copyOf);
+    }
+
+    @Override
+    public List<FileInfo> list(String path, ListQuery query) {
+        return client.list(path, query);
+    }
+
+    @Override
+    public FileListing listCompact(String path) {
+        return coalesce("listCompact", path, () -> client.listCompact(path));
+    }
+
+    @Override
+    public Optional<FileInfo> stat(String path) {
+        return coalesce("stat",
+                        path,
+                        () -> client.stat(path),
+                        file -> file.map(CoalescingFileTransferClient::copyOf));
+    }
+
+    @Override
+    public Boolean optionalDownload(String path, String localPath) {
+        Optional<SpillBuffer> buffer = sharedOptionalDownload(path);
+        buffer.ifPresent(contents -> copyToFile(contents, localPath));
+        return buffer.isPresent();
+    }
+
+    @Override
+    public Optional<OutputStream> optionalDownload(String path, OutputStream stream) {
+        return sharedOptionalDownload(path).map(contents -> copy(contents, stream));
+    }
+
+    @Override
+    public void download(String path, String localPath) {
+        copyToFile(sharedDownload(path), localPath);
+    }
+
+    @Override
+    public OutputStream download(String path, OutputStream stream) {
+        return copy(sharedDownload(path), stream);
+    }
+
+    @Override
+    public long download(String path, long offset, OutputStream stream) {
+        return client.download(path, offset, stream);
+    }
+
+    @Override
+    public String download(String path, String localPath, ChecksumAlgorithm algorithm) {
+        return client.download(path, localPath, algorithm);
+    }
+
+    @Override
+    public String download(String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        return client.download(path, stream, algorithm);
+    }
+
+    @Override
+    public void download(String path, String localPath, ContentCoding coding) {
+        client.download(path, localPath, coding);
+    }
+
+    @Override
+    public OutputStream download(String path, OutputStream stream, ContentCoding coding) {
+        return client.download(path, stream, coding);
+    }
+
+    @Override
+    public void forEachZipEntry(String path, BiConsumer<ZipEntry, InputStream> consumer) {
+        client.forEachZipEntry(path, consumer);
+    }
+
+    @Override
+    public Map<String, Boolean> downloadAll(Map<String, OutputStream> targets) {
+        return client.downloadAll(targets);
+    }
+
+    @Override
+    public String upload(String source, String dest) {
+        return client.upload(source, dest);
+    }
+
+    @Override
+    public String upload(InputStream is, String path) {
+        return client.upload(is, path);
+    }
+    @Override
+    public long upload(String source, String dest, long offset) {
+        return client.upload(source, dest, offset);
+    }
+
+
+    @Override
+    public String upload(String source, String dest, ChecksumAlgorithm algorithm) {
+        return client.upload(source, dest, algorithm);
+    }
+
+    @Override
+    public String upload(InputStream is, String path, ChecksumAlgorithm algorithm) {
+        return client.upload(is, path, algorithm);
+    }
+
+    @Override
+    public String upload(String source, String dest, ContentCoding coding) {
+        return client.upload(source, dest, coding);
+    }
+
+    @Override
+    public String upload(InputStream is, String path, ContentCoding coding) {
+        return client.upload(is, path, coding);
+    }
+
+    @Override
+    public String write(String path, Consumer<OutputStream> writer) {
+        return client.write(path, writer);
+    }
+
+    @Override
+    public AbortableOutputStream openOutputStream(String path) {
+        return client.openOutputStream(path);
+    }
+
+    @Override
+    public Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+        return client.checksum(path, algorithm);
+    }
+
+    @Override
+    public void delete(String path) {
+        client.delete(path);
+    }
+
+    private SpillBuffer sharedDownload(String path) {
+        return coalesce("download", path, () -> {
+                SpillBuffer buffer = new SpillBuffer(spillThreshold);
+                try (SpillBuffer out = buffer) {
+                    client.download(path, out);
+                } catch (IOException ex) {
+                    buffer.release();
+                    throw bufferFailure(path, ex);
+                } catch (RuntimeException ex) {
+                    buffer.release();
+                    throw ex;
+                }
+                return buffer;
+            }, SpillBuffer::share);
+    }
+
+    private Optional<SpillBuffer> sharedOptionalDownload(String path) {
+        return coalesce("optionalDownload", path, () -> {
+                SpillBuffer buffer = new SpillBuffer(spillThreshold);
+                try (SpillBuffer out = buffer) {
+                    if (client.optionalDownload(path, out).isPresent()) {
+                        return Optional.of(buffer);
+                    }
+                } catch (IOException ex) {
+                    buffer.release();
+                    throw bufferFailure(path, ex);
+                } catch (RuntimeException ex) {
+                    buffer.release();
+                    throw ex;
+                }
+                buffer.release();
+                return Optional.empty();
+            }, (buffer, waiters) -> buffer.ifPresent(contents -> contents.share(waiters)));
+    }
+
+    private static FileTransferException bufferFailure(String path, IOException ex) {
+        String message = String.format("Failed to buffer shared download of %s.", path);
+        log.warn(message);
+        return new FileTransferException(message, ex);
+    }
+
+    /**
+     * Copies the contents to a stream and releases this waiter's share of them.
+     */
+    private static OutputStream copy(SpillBuffer contents, OutputStream stream) {
+        try {
+            contents.copyTo(stream);
+        } catch (UncheckedIOException ex) {
+            String message = "Failed to copy shared download to stream.";
+            log.warn(message);
+            throw new FileTransferException(message, ex.getCause());
+        }
+        return stream;
+    }
+
+    /**
+     * Copies the contents to a local file and releases this waiter's share of them, even if the file cannot be
+     * opened.
+     */
+    private static void copyToFile(SpillBuffer contents, String localPath) {
+        boolean released = false;
+        try (OutputStream out = new FileChannelOutputStream(localPath, contents.size())) {
+            released = true;
+            contents.copyTo(out);
+        } catch (IOException | UncheckedIOException ex) {
+            String message = String.format("Failed to write local file %s.", localPath);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        } finally {
+            if (!released) {
+                contents.release();
+            }
+        }
+    }
+
+    private static List<FileInfo> copyOf(List<FileInfo> files) {
+        List<FileInfo> copy = new ArrayList<>(files.size());
+        for (FileInfo file : files) {
+            copy.add(copyOf(file));
+        }
+        return copy;
+    }
+
+    private static FileInfo copyOf(FileInfo file) {
+        Date time = file.getTime() == null ? null : new Date(file.getTime().getTime());
+        return new FileInfo(file.getName(), file.getSize(), time, file.isDirectory());
+    }
+
+    /**
+     * Coalesces an operation whose result is immutable, so every caller can be given the same one.
+     */
+    private <T> T coalesce(String operation, String path, Supplier<T> action) {
+        return coalesce(operation, path, action, UnaryOperator.identity());
+    }
+
+    /**
+     * Coalesces an operation, giving every caller, including the one that ran it, its own copy of the result.
+     */
+    private <T> T coalesce(String operation, String path, Supplier<T> action, UnaryOperator<T> copy) {
+        return copy.apply(coalesce(operation, path, action, (result, waiters) -> {
+            }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String operation, String path, Supplier<T> action, BiConsumer<T, Integer> share) {
+        String key = operation + ":" + path;
+        Flight<T> flight = (Flight<T>) flights.compute(key, (k, existing) -> {
+                Flight<?> joined = existing == null ? new Flight<T>() : existing;
+                joined.waiters++;
+                return joined;
+            });
+
+        if (!flight.lead()) {
+            log.debug("Joining in-flight {} of {}.", operation, path);
+            return flight.await();
+        }
+
+        T result = null;
+        RuntimeException error = null;
+        try {
+            result = action.get();
+        } catch (RuntimeException ex) {
+            error = ex;
+        }
+
+        // No one can join once the flight is removed, so the waiter count is final.
+        flights.remove(key, flight);
+        if (error != null) {
+            flight.future.completeExceptionally(error);
+            throw error;
+        }
+        share.accept(result, flight.waiters);
+        flight.future.complete(result);
+        return result;
+    }
+
+    private static class Flight<T> {
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private volatile int waiters = 0;
+
+        boolean lead() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        T await() {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw ex;
+            }
+        }
+    }
+}
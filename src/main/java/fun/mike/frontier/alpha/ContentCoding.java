@@ -0,0 +1,66 @@
+package fun.mike.frontier.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import fun.mike.frontier.impl.alpha.ParallelGzipOutputStream;
+
+/**
+ * A coding applied to file contents while they are transferred.
+ */
+public enum ContentCoding {
+    IDENTITY,
+    GZIP;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Chooses a coding from the extension of a path.
+     *
+     * @param path a path
+     * @return GZIP if the path ends in .gz; otherwise, IDENTITY.
+     */
+    public static ContentCoding forPath(String path) {
+        return path.endsWith(".gz") ? GZIP : IDENTITY;
+    }
+
+    /**
+     * Wraps an input stream of coded content so that reading it yields the original content.
+     *
+     * @param is an InputStream of coded content
+     * @return an InputStream of decoded content
+     */
+    public InputStream decode(InputStream is) {
+        if (this == IDENTITY) {
+            return is;
+        }
+        try {
+            return new GZIPInputStream(is, BUFFER_SIZE);
+        } catch (IOException ex) {
+            throw new FileTransferException("Failed to read gzip header.", ex);
+        }
+    }
+
+    /**
+     * Wraps an output stream so that content written to it is coded. Large content is compressed in parallel
+     * blocks. Closing the returned stream finishes the coding and closes the given stream.
+     *
+     * @param os an OutputStream to write coded content to
+     * @return an OutputStream accepting the original content
+     */
+    public OutputStream encode(OutputStream os) {
+        if (this == IDENTITY) {
+            return os;
+        }
+        try {
+            return new ParallelGzipOutputStream(os,
+                                                Runtime.getRuntime().availableProcessors(),
+                                                Deflater.DEFAULT_COMPRESSION);
+        } catch (IOException ex) {
+            throw new FileTransferException("Failed to write gzip header.", ex);
+        }
+    }
+}
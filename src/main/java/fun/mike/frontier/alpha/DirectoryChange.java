@@ -0,0 +1,59 @@
+package fun.mike.frontier.alpha;
+
+/**
+ * A change to a file in a directory watched by a DirectoryWatcher.
+ */
+public class DirectoryChange {
+    /**
+     * What happened to the file.
+     */
+    public enum Kind {
+        CREATED,
+        MODIFIED,
+        DELETED
+    }
+
+    private final Kind kind;
+    private final String directory;
+    private final FileInfo file;
+
+    public DirectoryChange(Kind kind, String directory, FileInfo file) {
+        this.kind = kind;
+        this.directory = directory;
+        this.file = file;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the watched directory.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the file as last listed; for a deleted file, as listed before it was deleted.
+     */
+    public FileInfo getFile() {
+        return file;
+    }
+
+    /**
+     * @return the path of the file on the host.
+     */
+    public String getPath() {
+        return directory.endsWith("/") ? directory + file.getName() : directory + "/" + file.getName();
+    }
+
+    @Override
+    public String toString() {
+        return "DirectoryChange{" +
+                "kind=" + kind +
+                ", directory='" + directory + '\'' +
+                ", file=" + file +
+                '}';
+    }
+}
@@ -0,0 +1,328 @@
+package fun.mike.frontier.alpha;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches directories on hosts by polling their listings and reports files created, modified and deleted in them.
+ * <p>
+ * The directories watched through one client are polled on one thread, and those due at the same time are listed in
+ * one session, so each host needs a single connection. Pollers are kept per client instance, so watch every directory
+ * on a host through the same client; each client watched gets its own thread and connection. Give the client an idle
+ * connection to keep so that it is reused between polls rather than opened for each. A client's thread stops once
+ * every directory watched through it is cancelled.
+ * <p>
+ * Each poll lists a directory with listCompact and compares the listing with the one before it. A new or changed
+ * file is reported only once its size and modification time are the same in two listings in a row, so a file still
+ * being written is not reported early. The files present at the first poll are the starting point and are not
+ * reported. A directory is polled at the minimum interval while it changes, and the interval doubles with each poll
+ * that finds nothing new, up to the maximum.
+ */
+public class DirectoryWatcher implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(DirectoryWatcher.class);
+    private static final long DEFAULT_MIN_INTERVAL_MILLIS = 1000;
+    private static final long DEFAULT_MAX_INTERVAL_MILLIS = 60_000;
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    private final Map<FileTransferClient, Poller> pollers = new IdentityHashMap<>();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a watcher that polls each directory between once a second and once a minute.
+     */
+    public DirectoryWatcher() {
+        this(DEFAULT_MIN_INTERVAL_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Creates a watcher.
+     *
+     * @param minIntervalMillis the interval between polls of a directory that is changing
+     * @param maxIntervalMillis the longest interval between polls of a directory that is not
+     */
+    public DirectoryWatcher(long minIntervalMillis, long maxIntervalMillis) {
+        if (minIntervalMillis < 1 || maxIntervalMillis < minIntervalMillis) {
+            throw new IllegalArgumentException("Intervals must satisfy 1 <= minIntervalMillis <= maxIntervalMillis.");
+        }
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+    }
+
+    /**
+     * Starts watching a directory. The listener is called on the watcher's thread for the client, so it should hand
+     * slow work off elsewhere.
+     *
+     * @param client   the client for the host
+     * @param path     a path to a directory on the host
+     * @param listener called with each change
+     * @return a Watch, which stops watching the directory when cancelled
+     */
+    public synchronized Watch watch(FileTransferClient client, String path, Consumer<DirectoryChange> listener) {
+        if (closed) {
+            throw new IllegalStateException("Watcher is closed.");
+        }
+        Poller poller = pollers.computeIfAbsent(client, Poller::new);
+        Watch watch = new Watch(poller, path, listener);
+        poller.add(watch);
+        return watch;
+    }
+
+    /**
+     * Stops watching every directory. The clients are not closed.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Poller poller : pollers.values()) {
+            poller.thread.interrupt();
+        }
+        pollers.clear();
+    }
+
+    /**
+     * A watched directory.
+     */
+    public class Watch {
+        private final Poller poller;
+        private final String path;
+        private final Consumer<DirectoryChange> listener;
+        private volatile boolean cancelled = false;
+        private volatile long intervalMillis = minIntervalMillis;
+        private long nextPollAt = 0;
+        private FileListing reported;
+        private FileListing previous;
+
+        private Watch(Poller poller, String path, Consumer<DirectoryChange> listener) {
+            this.poller = poller;
+            this.path = path;
+            this.listener = listener;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return the current interval between polls of the directory.
+         */
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        /**
+         * Stops watching the directory. Changes found by a poll already under way may still be reported.
+         */
+        public void cancel() {
+            cancelled = true;
+            poller.wake();
+        }
+
+        /**
+         * Lists the directory and compares the listing with the files reported so far and the previous listing.
+         *
+         * @return the changes to report
+         */
+        private List<DirectoryChange> poll(FileTransferClient client) {
+            FileListing current = client.listCompact(path).sortedByName();
+            List<DirectoryChange> changes = new ArrayList<>();
+            if (reported == null) {
+                reported = current;
+                previous = current;
+                return changes;
+            }
+
+            FileListing.Builder next = FileListing.builder();
+            boolean settling = false;
+            int r = 0;
+            int p = 0;
+            for (int c = 0; c < current.size(); c++) {
+                String name = current.getName(c);
+                while (r < reported.size() && reported.getName(r).compareTo(name) < 0) {
+                    changes.add(new DirectoryChange(DirectoryChange.Kind.DELETED, path, reported.get(r++)));
+                }
+                int known = r < reported.size() && reported.getName(r).equals(name) ? r++ : -1;
+                while (p < previous.size() && previous.getName(p).compareTo(name) < 0) {
+                    p++;
+                }
+                boolean stable = p < previous.size()
+                        && previous.getName(p).equals(name)
+                        && same(previous, p, current, c);
+
+                if (known >= 0 && same(reported, known, current, c)) {
+                    add(next, current, c);
+                } else if (stable) {
+                    DirectoryChange.Kind kind = known >= 0
+                            ? DirectoryChange.Kind.MODIFIED
+                            : DirectoryChange.Kind.CREATED;
+                    changes.add(new DirectoryChange(kind, path, current.get(c)));
+                    add(next, current, c);
+                } else {
+                    settling = true;
+                    if (known >= 0) {
+                        add(next, reported, known);
+                    }
+                }
+            }
+            while (r < reported.size()) {
+                changes.add(new DirectoryChange(DirectoryChange.Kind.DELETED, path, reported.get(r++)));
+            }
+
+            reported = next.build();
+            previous = current;
+            intervalMillis = settling || !changes.isEmpty()
+                    ? minIntervalMillis
+                    : Math.min(intervalMillis * 2, maxIntervalMillis);
+            return changes;
+        }
+
+        private void failed(RuntimeException ex) {
+            log.warn(String.format("Failed to list watched directory %s.", path), ex);
+            intervalMillis = Math.min(intervalMillis * 2, maxIntervalMillis);
+        }
+
+        private void report(List<DirectoryChange> changes) {
+            for (DirectoryChange change : changes) {
+                if (cancelled || closed) {
+                    return;
+                }
+                try {
+                    listener.accept(change);
+                } catch (RuntimeException ex) {
+                    log.warn(String.format("Listener failed to handle %s.", change), ex);
+                }
+            }
+        }
+    }
+
+    private static boolean same(FileListing a, int i, FileListing b, int j) {
+        return a.getSize(i) == b.getSize(j)
+                && a.getTime(i) == b.getTime(j)
+                && a.isDirectory(i) == b.isDirectory(j);
+    }
+
+    private static void add(FileListing.Builder builder, FileListing listing, int index) {
+        builder.add(listing.getName(index), listing.getSize(index), listing.getTime(index), listing.isDirectory(index));
+    }
+
+    /**
+     * Polls the directories watched through one client.
+     */
+    private class Poller implements Runnable {
+        private final FileTransferClient client;
+        private final List<Watch> watches = new ArrayList<>();
+        private final Thread thread;
+
+        private Poller(FileTransferClient client) {
+            this.client = client;
+            this.thread = new Thread(this, "frontier-watch-" + instances.incrementAndGet());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private synchronized void add(Watch watch) {
+            watches.add(watch);
+            notifyAll();
+        }
+
+        private synchronized void wake() {
+            notifyAll();
+        }
+
+        /**
+         * Removes this poller from the watcher if it has no directories left to watch.
+         *
+         * @return true if the poller was removed and its thread should stop
+         */
+        private boolean retire() {
+            synchronized (DirectoryWatcher.this) {
+                synchronized (this) {
+                    if (!watches.isEmpty()) {
+                        return false;
+                    }
+                    pollers.remove(client, this);
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                List<Watch> due;
+                try {
+                    due = awaitDue();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                if (due.isEmpty()) {
+                    if (retire()) {
+                        return;
+                    }
+                    continue;
+                }
+
+                Map<Watch, List<DirectoryChange>> changes = new IdentityHashMap<>();
+                try {
+                    client.session(session -> {
+                            for (Watch watch : due) {
+                                try {
+                                    changes.put(watch, watch.poll(session));
+                                } catch (RuntimeException ex) {
+                                    watch.failed(ex);
+                                }
+                            }
+                            return null;
+                        });
+                } catch (RuntimeException ex) {
+                    for (Watch watch : due) {
+                        if (!changes.containsKey(watch)) {
+                            watch.failed(ex);
+                        }
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                for (Watch watch : due) {
+                    watch.nextPollAt = now + watch.intervalMillis;
+                    watch.report(changes.getOrDefault(watch, Collections.emptyList()));
+                }
+            }
+        }
+
+        /**
+         * @return the watches due to be polled, or an empty list if every watch has been cancelled
+         */
+        private synchronized List<Watch> awaitDue() throws InterruptedException {
+            while (true) {
+                watches.removeIf(watch -> watch.cancelled);
+                if (watches.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                long now = System.currentTimeMillis();
+                long wait = maxIntervalMillis;
+                List<Watch> due = new ArrayList<>();
+                for (Watch watch : watches) {
+                    if (watch.nextPollAt <= now) {
+                        due.add(watch);
+                    } else {
+                        wait = Math.min(wait, watch.nextPollAt - now);
+                    }
+                }
+                if (!due.isEmpty()) {
+                    return due;
+                }
+                wait(wait);
+            }
+        }
+    }
+}
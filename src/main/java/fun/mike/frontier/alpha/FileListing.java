@@ -0,0 +1,371 @@
+package fun.mike.frontier.alpha;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+
+/**
+ * A directory listing stored in columns of primitive arrays instead of one FileInfo per entry: sizes and modification
+ * times in long arrays, directory flags in a bit set and names appended end to end in a single character arena. A
+ * listing of millions of entries costs a few dozen bytes per entry plus the characters of its name, rather than
+ * several objects each.
+ * <p>
+ * A listing is an immutable List of FileInfo, so it can be iterated like the result of list, but each FileInfo is
+ * created only when asked for. The column accessors, sorting and filtering work on the arrays directly. Sorted and
+ * filtered listings share their columns with the listing they came from and only hold an array of positions.
+ */
+public class FileListing extends AbstractList<FileInfo> implements RandomAccess {
+    /**
+     * The time of an entry whose modification time is not known.
+     */
+    public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+
+    private final int count;
+    private final long[] sizes;
+    private final long[] times;
+    private final BitSet directories;
+    private final char[] names;
+    private final int[] nameStarts;
+    private final int[] nameLengths;
+    private final int[] order;
+
+    private FileListing(int count,
+            long[] sizes,
+            long[] times,
+            BitSet directories,
+            char[] names,
+            int[] nameStarts,
+            int[] nameLengths,
+            int[] order) {
+        this.count = count;
+        this.sizes = sizes;
+        this.times = times;
+        this.directories = directories;
+        this.names = names;
+        this.nameStarts = nameStarts;
+        this.nameLengths = nameLengths;
+        this.order = order;
+    }
+
+    /**
+     * @return a Builder for a new listing.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int size() {
+        return order == null ? count : order.length;
+    }
+
+    /**
+     * Creates a FileInfo for an entry.
+     *
+     * @param index a position in this listing
+     * @return a new FileInfo
+     */
+    @Override
+    public FileInfo get(int index) {
+        long time = getTime(index);
+        return new FileInfo(getName(index),
+                            getSize(index),
+                            time == UNKNOWN_TIME ? null : new Date(time),
+                            isDirectory(index));
+    }
+
+    /**
+     * @param index a position in this listing
+     * @return the name of the entry
+     */
+    public String getName(int index) {
+        int row = row(index);
+        return new String(names, nameStarts[row], nameLengths[row]);
+    }
+
+    /**
+     * @param index a position in this listing
+     * @return the size of the entry in bytes
+     */
+    public long getSize(int index) {
+        return sizes[row(index)];
+    }
+
+    /**
+     * @param index a position in this listing
+     * @return the modification time of the entry in milliseconds since the epoch, or UNKNOWN_TIME
+     */
+    public long getTime(int index) {
+        return times[row(index)];
+    }
+
+    /**
+     * @param index a position in this listing
+     * @return true if the entry is a directory
+     */
+    public boolean isDirectory(int index) {
+        return directories.get(row(index));
+    }
+
+    /**
+     * Keeps the entries whose positions pass a predicate.
+     *
+     * @param predicate a predicate given positions in this listing
+     * @return a new listing
+     */
+    public FileListing filter(IntPredicate predicate) {
+        int size = size();
+        int[] kept = new int[size];
+        int keptCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (predicate.test(i)) {
+                kept[keptCount++] = row(i);
+            }
+        }
+        return view(Arrays.copyOf(kept, keptCount));
+    }
+
+    /**
+     * Keeps the entries matching a query. If the query keeps only the newest files, the result is sorted newest
+     * first, as it is for list.
+     *
+     * @param query a query
+     * @return a new listing
+     */
+    public FileListing filter(ListQuery query) {
+        NameView name = new NameView();
+        FileListing matches = filter(i -> {
+                int row = row(i);
+                name.row = row;
+                return query.test(name, sizes[row], times[row]);
+            });
+        Integer limit = query.getLimit();
+        if (limit == null) {
+            return matches;
+        }
+        FileListing newest = matches.sortedByTime().reversed();
+        return newest.view(Arrays.copyOf(newest.rows(), Math.min(limit, newest.size())));
+    }
+
+    /**
+     * @return a new listing sorted by name.
+     */
+    public FileListing sortedByName() {
+        return sorted((a, b) -> compareNames(a, b));
+    }
+
+    /**
+     * @return a new listing sorted by size, smallest first.
+     */
+    public FileListing sortedBySize() {
+        return sorted((a, b) -> Long.compare(sizes[a], sizes[b]));
+    }
+
+    /**
+     * @return a new listing sorted by modification time, oldest first, with unknown times first.
+     */
+    public FileListing sortedByTime() {
+        return sorted((a, b) -> Long.compare(times[a], times[b]));
+    }
+
+    /**
+     * @return a new listing in the reverse order.
+     */
+    public FileListing reversed() {
+        int[] rows = rows();
+        int[] reversed = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            reversed[i] = rows[rows.length - 1 - i];
+        }
+        return view(reversed);
+    }
+
+    private FileListing sorted(RowComparator comparator) {
+        int[] rows = rows();
+        mergeSort(rows, new int[rows.length], 0, rows.length, comparator);
+        return view(rows);
+    }
+
+    private static void mergeSort(int[] rows, int[] buffer, int from, int to, RowComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(rows, buffer, from, middle, comparator);
+        mergeSort(rows, buffer, middle, to, comparator);
+        if (comparator.compare(rows[middle - 1], rows[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compareNames(int a, int b) {
+        int aStart = nameStarts[a];
+        int bStart = nameStarts[b];
+        int aLength = nameLengths[a];
+        int bLength = nameLengths[b];
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            char aChar = names[aStart + i];
+            char bChar = names[bStart + i];
+            if (aChar != bChar) {
+                return aChar - bChar;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    private int row(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for listing of %d entries.",
+                                                              index,
+                                                              size()));
+        }
+        return order == null ? index : order[index];
+    }
+
+    private int[] rows() {
+        if (order != null) {
+            return order.clone();
+        }
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private FileListing view(int[] rows) {
+        return new FileListing(count, sizes, times, directories, names, nameStarts, nameLengths, rows);
+    }
+
+    private interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * The name of one row, read straight from the arena so queries can match names without copying them.
+     */
+    private class NameView implements CharSequence {
+        private int row;
+
+        @Override
+        public int length() {
+            return nameLengths[row];
+        }
+
+        @Override
+        public char charAt(int index) {
+            return names[nameStarts[row] + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(names, nameStarts[row] + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(names, nameStarts[row], nameLengths[row]);
+        }
+    }
+
+    /**
+     * Accumulates the entries of a listing as they are read. Arrays grow as needed and are trimmed by build.
+     */
+    public static class Builder {
+        private int count = 0;
+        private long[] sizes = new long[16];
+        private long[] times = new long[16];
+        private final BitSet directories = new BitSet();
+        private char[] names = new char[256];
+        private int namesLength = 0;
+        private int[] nameStarts = new int[16];
+        private int[] nameLengths = new int[16];
+        private boolean built = false;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param name        the name of the entry
+         * @param size        the size of the entry in bytes
+         * @param time        the modification time in milliseconds since the epoch, or UNKNOWN_TIME
+         * @param isDirectory true if the entry is a directory
+         * @return this Builder
+         */
+        public Builder add(String name, long size, long time, boolean isDirectory) {
+            if (built) {
+                throw new IllegalStateException("Listing has already been built.");
+            }
+            if (count == sizes.length) {
+                int capacity = count * 2;
+                sizes = Arrays.copyOf(sizes, capacity);
+                times = Arrays.copyOf(times, capacity);
+                nameStarts = Arrays.copyOf(nameStarts, capacity);
+                nameLengths = Arrays.copyOf(nameLengths, capacity);
+            }
+            sizes[count] = size;
+            times[count] = time;
+            if (isDirectory) {
+                directories.set(count);
+            }
+            nameStarts[count] = append(name);
+            nameLengths[count] = name.length();
+            count++;
+            return this;
+        }
+
+        /**
+         * Adds an entry.
+         *
+         * @param file a listed file
+         * @return this Builder
+         */
+        public Builder add(FileInfo file) {
+            return add(file.getName(),
+                       file.getSize() == null ? -1 : file.getSize(),
+                       file.getTime() == null ? UNKNOWN_TIME : file.getTime().getTime(),
+                       Boolean.TRUE.equals(file.isDirectory()));
+        }
+
+        /**
+         * @return the listing, with its arrays trimmed to the number of entries.
+         */
+        public FileListing build() {
+            built = true;
+            return new FileListing(count,
+                                   Arrays.copyOf(sizes, count),
+                                   Arrays.copyOf(times, count),
+                                   directories,
+                                   Arrays.copyOf(names, namesLength),
+                                   Arrays.copyOf(nameStarts, count),
+                                   Arrays.copyOf(nameLengths, count),
+                                   null);
+        }
+
+        private int append(String name) {
+            int length = name.length();
+            if (namesLength + length > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + length));
+            }
+            name.getChars(0, length, names, namesLength);
+            namesLength += length;
+            return namesLength - length;
+        }
+    }
+}
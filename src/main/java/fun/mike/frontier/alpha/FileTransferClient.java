@@ -1,16 +1,97 @@
 package fun.mike.frontier.alpha;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
 
+import fun.mike.frontier.impl.alpha.BoundedInputStream;
+import fun.mike.frontier.impl.alpha.Digester;
+import fun.mike.frontier.impl.alpha.DigestingInputStream;
+import fun.mike.frontier.impl.alpha.DigestingOutputStream;
+import fun.mike.frontier.impl.alpha.SpillBuffer;
+import fun.mike.frontier.impl.alpha.VectoredRead;
+
+/**
+ * A client for moving files to and from a host. Implementations must provide the basic stream, list, download, upload
+ * and delete operations; everything else has a default built on those, which implementations override with something
+ * cheaper where the protocol allows.
+ */
 public interface FileTransferClient {
+    /**
+     * Runs a group of operations. The default runs them against this client with no shared connection.
+     *
+     * @param operations a function of a client to use for the operations.
+     * @param <T>        the type of the result
+     * @return the result of the operations
+     */
+    default <T> T session(Function<FileTransferClient, T> operations) {
+        return operations.apply(this);
+    }
+
     Optional<InputStream> optionalStream(String path);
 
     InputStream stream(String path);
 
+    default <T> T read(String path, Function<InputStream, T> reader) {
+        try (InputStream is = stream(path)) {
+            return reader.apply(is);
+        } catch (IOException ex) {
+            String message = String.format("I/O error closing stream of %s.", path);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    default byte[] read(String path, long offset, int length) {
+        return read(path, offset, (long) length, is -> IO.read(is, length));
+    }
+
+    /**
+     * Streams part of a file to the given reader. The default streams the whole file and skips to the offset.
+     *
+     * @param path   a path to a file.
+     * @param offset the position of the first byte to read.
+     * @param length the most bytes to read.
+     * @param reader a function of an InputStream to the range, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    default <T> T read(String path, long offset, long length, Function<InputStream, T> reader) {
+        return read(path, is -> {
+                try {
+                    long skipped = 0;
+                    while (skipped < offset) {
+                        long n = is.skip(offset - skipped);
+                        if (n <= 0) {
+                            if (is.read() == -1) {
+                                break;
+                            }
+                            n = 1;
+                        }
+                        skipped += n;
+                    }
+                } catch (IOException ex) {
+                    String message = String.format("I/O error skipping to offset %d of %s.", offset, path);
+                    throw new FileTransferException(message, ex);
+                }
+                return reader.apply(new BoundedInputStream(is, length));
+            });
+    }
+
+    default List<byte[]> read(String path, List<ByteRange> ranges) {
+        return VectoredRead.read(ranges, (offset, length) -> read(path, offset, length));
+    }
+
     Boolean dirExists(String path);
 
     Boolean fileExists(String path);
@@ -19,8 +100,52 @@ public interface FileTransferClient {
 
     String slurp(String path);
 
+    default Stream<String> streamLines(String path, Charset charset) {
+        return streamLines(path, charset, null, false);
+    }
+
+    default Stream<String> streamLines(String path, Charset charset, String delimiter, boolean skipHeader) {
+        Stream<String> lines = IO.streamLines(stream(path), charset, delimiter);
+        return skipHeader ? lines.skip(1) : lines;
+    }
+
     List<FileInfo> list(String path);
 
+    default List<FileInfo> list(String path, ListQuery query) {
+        ListQuery.Selection selection = query.select();
+        for (FileInfo file : list(path)) {
+            selection.offer(file);
+        }
+        return selection.result();
+    }
+
+    default FileListing listCompact(String path) {
+        FileListing.Builder builder = FileListing.builder();
+        for (FileInfo file : list(path)) {
+            builder.add(file);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Retrieves information about a single file. The default lists the parent directory and looks for the name.
+     *
+     * @param path a path to a file.
+     * @return an Optional containing information about the file if it exists; otherwise, an empty Optional.
+     */
+    default Optional<FileInfo> stat(String path) {
+        int slash = path.lastIndexOf('/');
+        String parent = slash < 0 ? "." : slash == 0 ? "/" : path.substring(0, slash);
+        String name = path.substring(slash + 1);
+        try {
+            return list(parent).stream()
+                    .filter(file -> file.getName().equals(name))
+                    .findFirst();
+        } catch (MissingRemoteFileException ex) {
+            return Optional.empty();
+        }
+    }
+
     Boolean optionalDownload(String path, String localPath);
 
     Optional<OutputStream> optionalDownload(String path, OutputStream stream);
@@ -29,11 +154,175 @@ public interface FileTransferClient {
 
     OutputStream download(String path, OutputStream stream);
 
+    default long download(String path, long offset, OutputStream stream) {
+        return read(path, offset, Long.MAX_VALUE, is -> IO.pipe(is, stream));
+    }
+
+    default String download(String path, String localPath, ChecksumAlgorithm algorithm) {
+        try (OutputStream stream = new FileOutputStream(localPath)) {
+            return download(path, stream, algorithm);
+        } catch (IOException ex) {
+            String message = String.format("Failed to write local file %s.", localPath);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Writes the contents of a file to an output stream, computing a checksum as the bytes are written. The default
+     * verifies it against {@link #checksum(String, ChecksumAlgorithm)}.
+     *
+     * @param path      a path to a file.
+     * @param stream    An OutputStream to write to.
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the downloaded content.
+     */
+    default String download(String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        Digester digester = Digester.of(algorithm);
+        download(path, new DigestingOutputStream(stream, digester));
+        return Digester.verify(path, digester.hex(), checksum(path, algorithm));
+    }
+
+    default void download(String path, String localPath, ContentCoding coding) {
+        try (OutputStream stream = new FileOutputStream(localPath)) {
+            download(path, stream, coding);
+        } catch (IOException ex) {
+            String message = String.format("Failed to write local file %s.", localPath);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    default OutputStream download(String path, OutputStream stream, ContentCoding coding) {
+        return read(path, is -> {
+                IO.pipe(coding.decode(is), stream);
+                return stream;
+            });
+    }
+
+    default void forEachZipEntry(String path, BiConsumer<ZipEntry, InputStream> consumer) {
+        read(path, is -> {
+                IO.forEachZipEntry(is, consumer);
+                return null;
+            });
+    }
+
     Map<String, Boolean> downloadAll(Map<String, OutputStream> targets);
 
     String upload(String source, String dest);
 
     String upload(InputStream is, String path);
 
+    /**
+     * Uploads a local file from the given byte offset, resuming an interrupted upload. There is no default, since
+     * resuming needs a way to write into the middle of a file on the host.
+     *
+     * @param source a path of a file
+     * @param dest   a path to write to on the host
+     * @param offset the offset of the first byte to upload.
+     * @return the number of bytes uploaded.
+     * @throws UnsupportedOperationException if the client cannot resume uploads
+     */
+    default long upload(String source, String dest, long offset) {
+        throw new UnsupportedOperationException("Resuming uploads is not supported by " + getClass().getName() + ".");
+    }
+
+    default String upload(String source, String dest, ChecksumAlgorithm algorithm) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+        try (InputStream is = new FileInputStream(source)) {
+            return upload(is, dest, algorithm);
+        } catch (IOException ex) {
+            throw new FileTransferException(ex);
+        }
+    }
+
+    /**
+     * Uploads the contents of an input stream, computing a checksum as the bytes are read. The default verifies it
+     * against {@link #checksum(String, ChecksumAlgorithm)}.
+     *
+     * @param is        an InputStream containing the content to be written.
+     * @param path      a path to write to on the host
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the uploaded content.
+     */
+    default String upload(InputStream is, String path, ChecksumAlgorithm algorithm) {
+        Digester digester = Digester.of(algorithm);
+        upload(new DigestingInputStream(is, digester), path);
+        return Digester.verify(path, digester.hex(), checksum(path, algorithm));
+    }
+
+    default String upload(String source, String dest, ContentCoding coding) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+        try (InputStream is = new FileInputStream(source)) {
+            return upload(is, dest, coding);
+        } catch (IOException ex) {
+            throw new FileTransferException(ex);
+        }
+    }
+
+    default String upload(InputStream is, String path, ContentCoding coding) {
+        return write(path, os -> {
+                try (OutputStream encoded = coding.encode(os)) {
+                    IO.pipe(is, encoded);
+                } catch (IOException ex) {
+                    throw new FileTransferException(ex);
+                }
+            });
+    }
+
+    /**
+     * Writes to a path with the given writer. The default buffers what the writer writes, spilling to a temp file
+     * past a few megabytes, and uploads it once the writer returns.
+     *
+     * @param path   a path to write to on the host
+     * @param writer a consumer of an OutputStream, which is only valid until the consumer returns.
+     * @return the path written to
+     */
+    default String write(String path, Consumer<OutputStream> writer) {
+        SpillBuffer buffer = new SpillBuffer(8 * 1024 * 1024);
+        try {
+            try {
+                writer.accept(buffer);
+            } finally {
+                buffer.close();
+            }
+            try (InputStream is = buffer.open()) {
+                return upload(is, path);
+            }
+        } catch (IOException ex) {
+            String message = String.format("I/O error writing to %s.", path);
+            throw new FileTransferException(message, ex);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Opens a stream to a path. Closing the stream completes the file; a caller that fails partway must abort it
+     * instead. There is no default, since a stream that outlives the call needs a connection of its own.
+     *
+     * @param path a path to write to on the host.
+     * @return a stream to the file, which must be closed or aborted.
+     * @throws UnsupportedOperationException if the client cannot open output streams
+     */
+    default AbortableOutputStream openOutputStream(String path) {
+        throw new UnsupportedOperationException("Output streams are not supported by " + getClass().getName() + ".");
+    }
+
+    /**
+     * Asks the host for the checksum of a file. The default reports that the host cannot compute one.
+     *
+     * @param path      a path to a file.
+     * @param algorithm the checksum algorithm to use.
+     * @return an Optional containing the checksum if the host computed one; otherwise, an empty Optional.
+     */
+    default Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+        return Optional.empty();
+    }
+
     void delete(String path);
-}
\ No newline at end of file
+}
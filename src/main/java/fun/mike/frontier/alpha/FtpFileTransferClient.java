@@ -3,26 +3,46 @@ package fun.mike.frontier.alpha;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
 
+import fun.mike.frontier.impl.alpha.AbortableFtpClient;
 import fun.mike.frontier.impl.alpha.ApacheFtp;
+import fun.mike.frontier.impl.alpha.ConnectorPool;
+import fun.mike.frontier.impl.alpha.Deadline;
+import fun.mike.frontier.impl.alpha.FileChannelOutputStream;
 import fun.mike.frontier.impl.alpha.FtpConnector;
+import fun.mike.frontier.impl.alpha.MappedFileInputStream;
+import fun.mike.frontier.impl.alpha.TransferOutputStream;
+import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPConnectionClosedException;
 import org.apache.commons.net.ftp.FTPReply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class FtpFileTransferClient implements FileTransferClient {
     private static final Logger log = LoggerFactory.getLogger(FtpFileTransferClient.class);
+    private static final int TRANSFER_BUFFER_SIZE = 256 * 1024;
+    private static final long CONTROL_KEEP_ALIVE_SECONDS = 30;
 
     private final String host;
     private final Integer port;
+    private final String hostLabel;
     private final String username;
     private final String password;
+    private final long operationTimeout;
+    private final ConnectorPool<FtpConnector> pool;
+    private final ThreadLocal<FtpConnector> scope = new ThreadLocal<>();
 
     /**
      * Creates a FtpFileTransferClient using port 21.
@@ -49,10 +69,85 @@ public class FtpFileTransferClient implements FileTransferClient {
             Integer port,
             String username,
             String password) {
+        this(host, port, username, password, 0);
+    }
+
+    /**
+     * Creates a FtpFileTransferClient that gives each operation a deadline. Connecting, logging in, waiting for
+     * replies and transferring data all count against it, and a connection still busy when it passes is aborted.
+     *
+     * @param host             a host
+     * @param port             a port
+     * @param username         a username
+     * @param password         a password
+     * @param operationTimeout the milliseconds each operation may take, or 0 for no limit
+     */
+    public FtpFileTransferClient(String host,
+            Integer port,
+            String username,
+            String password,
+            long operationTimeout) {
+        this(host, port, username, password, operationTimeout, 0, 0);
+    }
+
+    /**
+     * Creates a FtpFileTransferClient that keeps connections logged in between operations and reuses them. Each
+     * idle connection is checked with NOOP before it is reused. Pooled connections keep their HostLimiter permits
+     * until closed, which happens in the background once they sit unused for longer than the idle timeout.
+     *
+     * @param host               a host
+     * @param port               a port
+     * @param username           a username
+     * @param password           a password
+     * @param operationTimeout   the milliseconds each operation may take, or 0 for no limit
+     * @param maxIdleConnections the most idle connections to keep, or 0 to close each connection after use
+     * @param idleTimeout        the milliseconds a connection may sit unused before it is closed
+     */
+    public FtpFileTransferClient(String host,
+            Integer port,
+            String username,
+            String password,
+            long operationTimeout,
+            int maxIdleConnections,
+            long idleTimeout) {
         this.host = host;
         this.port = port;
+        this.hostLabel = port == 21 ? host : host + ":" + port;
         this.username = username;
         this.password = password;
+        this.operationTimeout = operationTimeout;
+        this.pool = new ConnectorPool<>(maxIdleConnections, idleTimeout, this::isAlive, this::disconnect);
+    }
+
+    /**
+     * Runs operations over a single connection. Every call made on this client by the current thread while the
+     * operations run, including the steps of composite operations, reuses the connection instead of logging in
+     * again. Nested sessions join the outer one. If the client has an operation timeout, it applies to the session as
+     * a whole. A connection left mid-transfer by a stream still open when the session ends is closed, not reused.
+     *
+     * @param operations a function performing operations with the given client.
+     * @param <T>        the type of the result.
+     * @return the result of the operations.
+     */
+    public <T> T session(Function<FileTransferClient, T> operations) {
+        if (scope.get() != null) {
+            return operations.apply(this);
+        }
+        FtpConnector connector = null;
+        boolean reusable = false;
+        try {
+            connector = connect();
+            scope.set(connector);
+            T result = operations.apply(this);
+            // A stream opened in the session and not yet finished leaves the connection mid-transfer.
+            reusable = !connector.hasOpenTransfers();
+            return result;
+        } catch (RuntimeException ex) {
+            throw deadlineExceeded(connector, ex);
+        } finally {
+            scope.remove();
+            release(connector, reusable);
+        }
     }
 
     /**
@@ -62,7 +157,7 @@ public class FtpFileTransferClient implements FileTransferClient {
      * @return an Optional containing an InputStream to the file at path if it exists; otherwise, an empty Optional.
      */
     public Optional<InputStream> optionalStream(String path) {
-        return withConnector(conn -> ApacheFtp.optionalStream(conn, path));
+        return withConnector(conn -> ApacheFtp.optionalStream(conn, path), false);
     }
 
     /**
@@ -72,7 +167,58 @@ public class FtpFileTransferClient implements FileTransferClient {
      * @return an InputStream to the file at path
      */
     public InputStream stream(String path) {
-        return withConnector(conn -> ApacheFtp.stream(conn, path));
+        return withConnector(conn -> ApacheFtp.stream(conn, path), false);
+    }
+
+    /**
+     * Streams a file over FTP to the given reader, holding the connection open until the reader returns.
+     *
+     * @param path   the path to a file on the host.
+     * @param reader a function of an InputStream to the file, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public <T> T read(String path, Function<InputStream, T> reader) {
+        return withConnector(conn -> ApacheFtp.read(conn, path, reader));
+    }
+
+    /**
+     * Reads a range of a file on the host, transferring only the bytes in the range.
+     *
+     * @param path   the path to a file on the host.
+     * @param offset the offset of the first byte to read.
+     * @param length the number of bytes to read.
+     * @return the bytes in the range, fewer than length only if the file ends first.
+     */
+    public byte[] read(String path, long offset, int length) {
+        return withConnector(conn -> ApacheFtp.read(conn, path, offset, length));
+    }
+
+    /**
+     * Streams a range of a file on the host to the given reader. The transfer starts at the offset and is cut off
+     * once the reader returns.
+     *
+     * @param path   the path to a file on the host.
+     * @param offset the offset of the first byte to read.
+     * @param length the number of bytes to read.
+     * @param reader a function of an InputStream to the range, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public <T> T read(String path, long offset, long length, Function<InputStream, T> reader) {
+        return withConnector(conn -> ApacheFtp.read(conn, path, offset, length, reader));
+    }
+
+    /**
+     * Reads many ranges of a file on the host over one connection. Ranges close together are read in a single
+     * transfer.
+     *
+     * @param path   the path to a file on the host.
+     * @param ranges the ranges to read.
+     * @return the bytes of each range, in the order of ranges.
+     */
+    public List<byte[]> read(String path, List<ByteRange> ranges) {
+        return withConnector(conn -> ApacheFtp.read(conn, path, ranges));
     }
 
     /**
@@ -116,6 +262,57 @@ public class FtpFileTransferClient implements FileTransferClient {
         return withConnector(conn -> ApacheFtp.slurp(conn, path));
     }
 
+    /**
+     * Lazily streams the lines of a file on the host.
+     *
+     * @param path    a path to a file on the host.
+     * @param charset the charset of the file.
+     * @return a Stream of lines, which holds a connection open until it is closed.
+     */
+    public Stream<String> streamLines(String path, Charset charset) {
+        return streamLines(path, charset, null, false);
+    }
+
+    /**
+     * Lazily streams the pieces of a file on the host between delimiters, decoding in large chunks as the file is
+     * transferred.
+     *
+     * @param path       a path to a file on the host.
+     * @param charset    the charset of the file.
+     * @param delimiter  the delimiter between pieces, or null to split on line terminators.
+     * @param skipHeader true to skip the first piece.
+     * @return a Stream of pieces, which holds a connection open until it is closed.
+     */
+    public Stream<String> streamLines(String path, Charset charset, String delimiter, boolean skipHeader) {
+        FtpConnector active = scope.get();
+        FtpConnector conn = active == null ? connect() : active;
+        try {
+            InputStream is = ApacheFtp.stream(conn, path);
+            conn.transferOpened();
+            Stream<String> lines = IO.streamLines(is, charset, delimiter)
+                    .onClose(() -> {
+                        boolean reusable = false;
+                        try {
+                            ApacheFtp.complete(conn, path, is);
+                            conn.transferCompleted();
+                            reusable = true;
+                        } catch (RuntimeException ex) {
+                            throw deadlineExceeded(conn, ex);
+                        } finally {
+                            if (active == null) {
+                                release(conn, reusable);
+                            }
+                        }
+                    });
+            return skipHeader ? lines.skip(1) : lines;
+        } catch (RuntimeException ex) {
+            if (active == null) {
+                release(conn, false);
+            }
+            throw deadlineExceeded(conn, ex);
+        }
+    }
+
     /**
      * Lists the files in a directory on the host.
      *
@@ -126,6 +323,38 @@ public class FtpFileTransferClient implements FileTransferClient {
         return withConnector(conn -> ApacheFtp.list(conn, path));
     }
 
+    /**
+     * Lists the files in a directory on the host that match a query.
+     *
+     * @param path  a path to a directory on the host.
+     * @param query a ListQuery.
+     * @return a list of matching files.
+     */
+    public List<FileInfo> list(String path, ListQuery query) {
+        return withConnector(conn -> ApacheFtp.list(conn, path, query));
+    }
+
+    /**
+     * Lists the files in a directory on the host into a compact, column-oriented listing, for directories too large
+     * to hold as FileInfo objects.
+     *
+     * @param path a path to a directory on the host.
+     * @return a listing of files.
+     */
+    public FileListing listCompact(String path) {
+        return withConnector(conn -> ApacheFtp.listCompact(conn, path));
+    }
+
+    /**
+     * Retrieves information about a single file on the host.
+     *
+     * @param path a path to a file on the host.
+     * @return an Optional containing information about the file if it exists; otherwise, an empty Optional.
+     */
+    public Optional<FileInfo> stat(String path) {
+        return withConnector(conn -> ApacheFtp.stat(conn, path));
+    }
+
     /**
      * Downloads a file from the host to the local machine.
      *
@@ -169,6 +398,92 @@ public class FtpFileTransferClient implements FileTransferClient {
         return withConnector(conn -> ApacheFtp.download(conn, path, stream));
     }
 
+    /**
+     * Writes the contents of a file on the host to an output stream, starting at the given byte offset. The offset is
+     * sent to the host with REST, so only the bytes after it are transferred.
+     *
+     * @param path   a path to a file on the host.
+     * @param offset the offset of the first byte to write.
+     * @param stream An OutputStream to write to.
+     * @return the number of bytes written.
+     */
+    public long download(String path, long offset, OutputStream stream) {
+        return withConnector(conn -> ApacheFtp.download(conn, path, offset, stream));
+    }
+
+    /**
+     * Writes the contents of a file on the host to a local file, computing a checksum as the bytes are written.
+     * If the host advertises XCRC, XMD5 or HASH, the checksum is verified against the one it reports.
+     *
+     * @param path      a path to a file on the host.
+     * @param localPath a local path to a file to be written to.
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the downloaded content.
+     */
+    public String download(String path, String localPath, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> ApacheFtp.download(conn, path, localPath, algorithm));
+    }
+
+    /**
+     * Writes the contents of a file on the host to an output stream, computing a checksum as the bytes are written.
+     * If the host advertises XCRC, XMD5 or HASH, the checksum is verified against the one it reports.
+     *
+     * @param path      a path to a file on the host.
+     * @param stream    An OutputStream to write to.
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the downloaded content.
+     */
+    public String download(String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> ApacheFtp.download(conn, path, stream, algorithm));
+    }
+
+    /**
+     * Writes the decoded contents of a file on the host to a local file, decoding as the bytes arrive.
+     *
+     * @param path      a path to a file on the host.
+     * @param localPath a local path to a file to be written to.
+     * @param coding    the coding of the file on the host.
+     */
+    public void download(String path, String localPath, ContentCoding coding) {
+        try (OutputStream stream = new FileChannelOutputStream(localPath)) {
+            download(path, stream, coding);
+        } catch (IOException ex) {
+            String message = String.format("Failed to stream local file %s when trying to download %s.",
+                                           localPath,
+                                           path);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Writes the decoded contents of a file on the host to an output stream, decoding as the bytes arrive.
+     *
+     * @param path   a path to a file on the host.
+     * @param stream An OutputStream to write to.
+     * @param coding the coding of the file on the host.
+     * @return the OutputStream
+     */
+    public OutputStream download(String path, OutputStream stream, ContentCoding coding) {
+        return read(path, is -> {
+                IO.pipe(coding.decode(is), stream);
+                return stream;
+            });
+    }
+
+    /**
+     * Reads the entries of a zip archive on the host as it is streamed, without a local copy.
+     *
+     * @param path     a path to a zip archive on the host.
+     * @param consumer a consumer of each entry and an InputStream of its contents, valid until the consumer returns.
+     */
+    public void forEachZipEntry(String path, BiConsumer<ZipEntry, InputStream> consumer) {
+        read(path, is -> {
+                IO.forEachZipEntry(is, consumer);
+                return null;
+            });
+    }
+
     /**
      * Writes the contents of a group of files to their respective output streams.
      *
@@ -202,6 +517,160 @@ public class FtpFileTransferClient implements FileTransferClient {
         return withConnector(conn -> ApacheFtp.upload(conn, is, path));
     }
 
+    /**
+     * Uploads the contents of the file at path from the given byte offset, resuming an interrupted upload. The bytes
+     * are appended with APPE to the file on the host, which must already hold exactly the bytes before the offset. An
+     * offset of 0 replaces the file.
+     *
+     * @param source a path of a file
+     * @param dest   a path to write to on the host
+     * @param offset the offset of the first byte to upload.
+     * @return the number of bytes uploaded.
+     */
+    public long upload(String source, String dest, long offset) {
+        return withConnector(conn -> ApacheFtp.upload(conn, source, dest, offset));
+    }
+
+    /**
+     * Uploads the contents of the file at path to the given path on the host, computing a checksum as the bytes are
+     * read. If the host advertises XCRC, XMD5 or HASH, the checksum is verified against the one it reports.
+     *
+     * @param source    a path of a file
+     * @param dest      a path to write to on the host
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the uploaded content.
+     */
+    public String upload(String source, String dest, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> ApacheFtp.upload(conn, source, dest, algorithm));
+    }
+
+    /**
+     * Uploads the contents from an input stream to a path on the host, computing a checksum as the bytes are read.
+     * If the host advertises XCRC, XMD5 or HASH, the checksum is verified against the one it reports.
+     *
+     * @param is        an InputStream containing the content to be written.
+     * @param path      a path to write to on the host
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the uploaded content.
+     */
+    public String upload(InputStream is, String path, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> ApacheFtp.upload(conn, is, path, algorithm));
+    }
+
+    /**
+     * Uploads the contents of the file at path to the given path on the host, coding them on the fly.
+     *
+     * @param source a path of a file
+     * @param dest   a path to write to on the host
+     * @param coding the coding to apply.
+     * @return the path written to
+     */
+    public String upload(String source, String dest, ContentCoding coding) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+        try (InputStream is = new MappedFileInputStream(source)) {
+            return upload(is, dest, coding);
+        } catch (IOException ex) {
+            throw new FileTransferException(ex);
+        }
+    }
+
+    /**
+     * Uploads the contents from an input stream to a path on the host, coding them on the fly.
+     *
+     * @param is     an InputStream containing the content to be written.
+     * @param path   a path to write to on the host
+     * @param coding the coding to apply.
+     * @return the path written to
+     */
+    public String upload(InputStream is, String path, ContentCoding coding) {
+        return write(path, os -> {
+                try (OutputStream encoded = coding.encode(os)) {
+                    IO.pipe(is, encoded);
+                } catch (IOException ex) {
+                    throw new FileTransferException(ex);
+                }
+            });
+    }
+
+    /**
+     * Opens a stream to a path on the host for the given writer, holding the connection open until the writer
+     * returns.
+     *
+     * @param path   a path to write to on the host
+     * @param writer a consumer of an OutputStream to the file, which is only valid until the consumer returns.
+     * @return the path written to
+     */
+    public String write(String path, Consumer<OutputStream> writer) {
+        return withConnector(conn -> ApacheFtp.write(conn, path, writer));
+    }
+
+    /**
+     * Opens a stream to a file on the host, for producers that generate a file incrementally. Bytes go straight to
+     * the data connection, which stays held until the stream is closed; closing the stream completes the transfer.
+     * Aborting the stream, or closing it after a write failed, deletes the partial file and disconnects.
+     *
+     * @param path a path to write to on the host.
+     * @return a stream to the file, which must be closed or aborted.
+     */
+    public AbortableOutputStream openOutputStream(String path) {
+        FtpConnector active = scope.get();
+        FtpConnector connector = active == null ? connect() : active;
+        try {
+            OutputStream os = ApacheFtp.openOutputStream(connector, path);
+            connector.transferOpened();
+            return new TransferOutputStream(os, succeeded -> {
+                    boolean reusable = false;
+                    try {
+                        if (succeeded) {
+                            ApacheFtp.completeWrite(connector, path);
+                            connector.transferCompleted();
+                            reusable = true;
+                        } else {
+                            discard(connector, path);
+                        }
+                    } catch (RuntimeException ex) {
+                        throw deadlineExceeded(connector, ex);
+                    } finally {
+                        if (active == null) {
+                            release(connector, reusable);
+                        }
+                    }
+                });
+        } catch (RuntimeException ex) {
+            if (active == null) {
+                release(connector, false);
+            }
+            throw deadlineExceeded(connector, ex);
+        }
+    }
+
+    /**
+     * Deletes what a failed or aborted stream left of a file, if the connection still allows it. The connection is
+     * not reused afterwards either way.
+     */
+    private void discard(FtpConnector conn, String path) {
+        try {
+            conn.getClient().completePendingCommand();
+            ApacheFtp.delete(conn, path);
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Failed to delete partial file {}:{}.", hostLabel, path);
+        }
+    }
+
+    /**
+     * Asks the host for the checksum of a file.
+     *
+     * @param path      a path to a file on the host.
+     * @param algorithm the checksum algorithm to use.
+     * @return an Optional containing the checksum if the host can compute it; otherwise, an empty Optional.
+     */
+    public Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> ApacheFtp.checksum(conn, path, algorithm));
+    }
+
     /**
      * Deletes the file at path on the host.
      *
@@ -213,19 +682,122 @@ public class FtpFileTransferClient implements FileTransferClient {
     }
 
     /**
-     * Logs out and disconnects the given client from the host.
+     * Transfers a file from this host directly to another FTP host.
      *
-     * @param client An FTPClient instance.
+     * @param path     a path to a file on this host
+     * @param dest     a client for the host to copy to
+     * @param destPath a path to write to on the destination host
+     * @return true if the file was transferred; false if either host refused the server-to-server transfer.
      */
-    private void disconnect(FTPClient client) {
-        if (client == null) {
+    boolean fxp(String path, FtpFileTransferClient dest, String destPath) {
+        return withConnector(conn -> dest.withConnector(destConn -> ApacheFtp.fxp(conn, path, destConn, destPath)));
+    }
+
+    /**
+     * Closes the idle connections kept for reuse.
+     */
+    public void closeIdle() {
+        pool.clear();
+    }
+
+    /**
+     * Returns a connection to the pool if it finished its operation cleanly and the pool has room; otherwise,
+     * disconnects it.
+     */
+    private void release(FtpConnector conn, boolean reusable) {
+        if (conn == null) {
             return;
         }
+        Deadline deadline = conn.getDeadline();
+        if (deadline != null) {
+            deadline.cancel();
+        }
+        boolean aborted = deadline != null && deadline.isAborted();
+        if (reusable && !aborted && conn.getClient().isConnected() && pool.offer(conn)) {
+            log.debug("Keeping connection to {} for reuse.", hostLabel);
+            return;
+        }
+        disconnect(conn);
+    }
+
+    /**
+     * Gives an idle connection a fresh deadline for its next operation.
+     *
+     * @return a connector for the connection, or null if it could not be prepared and was closed.
+     */
+    private FtpConnector resume(FtpConnector idle) {
+        Deadline deadline = Deadline.after(operationTimeout);
+        if (deadline == null) {
+            return idle;
+        }
+        AbortableFtpClient client = (AbortableFtpClient) idle.getClient();
+        try {
+            client.setSoTimeout(deadline.remainingMillis());
+            client.setDataTimeout(deadline.remainingMillis());
+        } catch (SocketException ex) {
+            disconnect(idle);
+            return null;
+        }
+        deadline.watch(client::abortSockets);
+        return new FtpConnector(client, host, port, idle.getPermit(), deadline);
+    }
+
+    private boolean isAlive(FtpConnector conn) {
+        try {
+            return conn.getClient().isConnected() && conn.getClient().sendNoOp();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Logs out and disconnects the given connection from the host, releasing its permit.
+     *
+     * @param conn An FtpConnector instance.
+     */
+    private void disconnect(FtpConnector conn) {
+        if (conn == null) {
+            return;
+        }
+
+        Deadline deadline = conn.getDeadline();
+        try {
+            if (deadline != null) {
+                deadline.cancel();
+            }
+            if (deadline != null && deadline.isAborted()) {
+                abandon(conn.getClient());
+            } else {
+                disconnect(conn.getClient());
+            }
+        } finally {
+            conn.getPermit().release();
+        }
+    }
+
+    private void abandon(FTPClient client) {
+        try {
+            client.disconnect();
+        } catch (IOException ex) {
+            log.debug("Failed to close aborted connection to {}.", hostLabel);
+        }
+    }
 
-        String hostLabel = getHostLabel();
+    private RuntimeException deadlineExceeded(FtpConnector conn, RuntimeException ex) {
+        Deadline deadline = conn == null ? null : conn.getDeadline();
+        if (deadline == null || !deadline.isAborted()) {
+            return ex;
+        }
+        String message = String.format("Operation on %s exceeded its deadline of %d ms.",
+                                       getHostLabel(),
+                                       deadline.getTimeoutMillis());
+        log.warn(message);
+        return new FileTransferException(message, ex);
+    }
+
+    private void disconnect(FTPClient client) {
 
-        log.debug(String.format("Disconnecting from %s.",
-                                hostLabel));
+        log.debug("Disconnecting from {}.", hostLabel);
 
         try {
             client.logout();
@@ -248,25 +820,81 @@ public class FtpFileTransferClient implements FileTransferClient {
     }
 
     /**
-     * Logs in and connects to the host, returning the created FTPClient instance.
+     * Logs in and connects to the host, returning a connector for the created FTPClient instance. If a HostLimiter
+     * is registered for the host, waits for a permit first.
      *
-     * @return An FTPClient instance.
+     * @return An FtpConnector instance.
      */
-    private FTPClient connect() {
-        String hostLabel = getHostLabel();
+    private FtpConnector connect() {
+        FtpConnector idle = pool.borrow();
+        if (idle != null) {
+            FtpConnector resumed = resume(idle);
+            if (resumed != null) {
+                return resumed;
+            }
+        }
+
+        Deadline deadline = Deadline.after(operationTimeout);
+        HostLimiter.Permit permit = HostLimiter.acquire(host, port);
+        AbortableFtpClient client = new AbortableFtpClient();
         try {
-            log.debug(String.format("Connecting to %s as %s.", hostLabel, username));
-            FTPClient client = new FTPClient();
+            log.debug("Connecting to {} as {}.", hostLabel, username);
+            client.setBufferSize(TRANSFER_BUFFER_SIZE);
+            if (deadline != null) {
+                deadline.watch(client::abortSockets);
+                client.setConnectTimeout(deadline.remainingMillis());
+                client.setDefaultTimeout(deadline.remainingMillis());
+                client.setDataTimeout(deadline.remainingMillis());
+                client.setControlKeepAliveTimeout(CONTROL_KEEP_ALIVE_SECONDS);
+            }
             client.connect(host, port);
             client.login(username, password);
             if (!FTPReply.isPositiveCompletion(client.getReplyCode())) {
+                int reply = client.getReplyCode();
                 client.disconnect();
+                if (reply == FTPReply.SERVICE_NOT_AVAILABLE) {
+                    permit.refused();
+                } else {
+                    permit.release();
+                }
+                if (deadline != null) {
+                    deadline.cancel();
+                }
                 String message = String.format("%s refused connection.", host);
                 log.warn(message);
                 throw new FileTransferException(message);
             }
-            return client;
+            // The default ASCII type rewrites line endings, corrupting binary content and shifting REST offsets.
+            if (!client.setFileType(FTP.BINARY_FILE_TYPE)) {
+                String reply = client.getReplyString();
+                client.disconnect();
+                permit.release();
+                if (deadline != null) {
+                    deadline.cancel();
+                }
+                String message = String.format("%s refused binary transfers: %s", hostLabel, reply);
+                log.warn(message);
+                throw new FileTransferException(message);
+            }
+            permit.connected();
+            return new FtpConnector(client, host, port, permit, deadline);
         } catch (IOException ex) {
+            if (isCapacitySignal(ex)) {
+                permit.refused();
+            } else {
+                permit.release();
+            }
+            if (deadline != null) {
+                deadline.cancel();
+                if (deadline.isAborted() || deadline.isExpired()) {
+                    abandon(client);
+                    String message = String.format("Connecting to %s exceeded the deadline of %d ms.",
+                                                   hostLabel,
+                                                   operationTimeout);
+                    log.warn(message);
+                    throw new FileTransferException(message, ex);
+                }
+            }
             String message = String.format("Failed to connect to %s.",
                                            hostLabel);
             log.warn(message);
@@ -274,33 +902,64 @@ public class FtpFileTransferClient implements FileTransferClient {
         }
     }
 
+    /**
+     * A refused TCP connection, or a 421 reply, which commons-net raises by closing the connection, means the host
+     * has no room for another session. Anything else says nothing about its capacity.
+     */
+    private static boolean isCapacitySignal(IOException ex) {
+        return ex instanceof ConnectException || ex instanceof FTPConnectionClosedException;
+    }
+
     private <T> T withConnector(Function<FtpConnector, T> function) {
-        FTPClient client = null;
+        return withConnector(function, true);
+    }
+
+    /**
+     * @param poolable false if the function leaves the connection mid-transfer, so it must not be reused
+     */
+    private <T> T withConnector(Function<FtpConnector, T> function, boolean poolable) {
+        FtpConnector active = scope.get();
+        if (active != null) {
+            if (!poolable) {
+                active.transferOpened();
+            }
+            return function.apply(active);
+        }
+        FtpConnector connector = null;
+        boolean reusable = false;
         try {
-            client = connect();
-            FtpConnector connector = new FtpConnector(client, host, port);
-            return function.apply(connector);
+            connector = connect();
+            T result = function.apply(connector);
+            reusable = poolable;
+            return result;
+        } catch (RuntimeException ex) {
+            throw deadlineExceeded(connector, ex);
         } finally {
-            disconnect(client);
+            release(connector, reusable);
         }
     }
 
     private void useConnector(Consumer<FtpConnector> consumer) {
-        FTPClient client = null;
+        FtpConnector active = scope.get();
+        if (active != null) {
+            consumer.accept(active);
+            return;
+        }
+        FtpConnector connector = null;
+        boolean reusable = false;
         try {
-            client = connect();
-            FtpConnector connector = new FtpConnector(client, host, port);
+            connector = connect();
             consumer.accept(connector);
+            reusable = true;
+        } catch (RuntimeException ex) {
+            throw deadlineExceeded(connector, ex);
         } finally {
-            disconnect(client);
+            release(connector, reusable);
         }
     }
 
     private String getHostLabel() {
-        if (port == 21) {
-            return host;
-        }
-        return String.format("%s:%d", host, port);
+        return hostLabel;
     }
 
 }
@@ -0,0 +1,321 @@
+package fun.mike.frontier.alpha;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of simultaneous connections to a host from every client in the JVM.
+ * <p>
+ * Limiting is opt-in: register a limiter for a host and port, and every client connecting there waits for a permit
+ * first. Waiters are served in arrival order and give up after a timeout. The limit adapts: it grows by one after a
+ * full limit's worth of healthy connections, halves when the host turns a connection away for lack of capacity, and
+ * shrinks by a tenth when recent login latency climbs well above its long-run average, which is the first sign that
+ * the host is saturated.
+ */
+public class HostLimiter {
+    private static final Logger log = LoggerFactory.getLogger(HostLimiter.class);
+    private static final ConcurrentMap<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BASELINE_WEIGHT = 0.01;
+    private static final double RECENT_WEIGHT = 0.2;
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+
+    private final String hostLabel;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long timeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Condition> queue = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight = 0;
+    private int successes = 0;
+    private double baselineNanos = 0;
+    private double recentNanos = 0;
+
+    private HostLimiter(String hostLabel, int initialLimit, int minLimit, int maxLimit, long timeoutMillis) {
+        this.hostLabel = hostLabel;
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * Starts limiting connections to a host, replacing any existing limiter for it.
+     *
+     * @param host          a host
+     * @param port          a port
+     * @param initialLimit  the number of simultaneous connections to allow at first
+     * @param maxLimit      the most simultaneous connections the limit may grow to
+     * @param timeoutMillis how long a client waits for a permit before failing
+     * @return the new HostLimiter
+     */
+    public static HostLimiter register(String host, int port, int initialLimit, int maxLimit, long timeoutMillis) {
+        if (initialLimit < 1 || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= initialLimit <= maxLimit.");
+        }
+        HostLimiter limiter = new HostLimiter(key(host, port), initialLimit, 1, maxLimit, timeoutMillis);
+        limiters.put(key(host, port), limiter);
+        return limiter;
+    }
+
+    /**
+     * Stops limiting connections to a host. Permits already held are released normally.
+     *
+     * @param host a host
+     * @param port a port
+     */
+    public static void unregister(String host, int port) {
+        limiters.remove(key(host, port));
+    }
+
+    /**
+     * @param host a host
+     * @param port a port
+     * @return an Optional containing the limiter for the host if one is registered; otherwise, an empty Optional.
+     */
+    public static Optional<HostLimiter> forHost(String host, int port) {
+        return Optional.ofNullable(limiters.get(key(host, port)));
+    }
+
+    /**
+     * @return every registered limiter, keyed by host and port, for reporting metrics.
+     */
+    public static Map<String, HostLimiter> all() {
+        return Collections.unmodifiableMap(new HashMap<>(limiters));
+    }
+
+    /**
+     * Acquires a permit if a limiter is registered for the host.
+     *
+     * @param host a host
+     * @param port a port
+     * @return a Permit, which does nothing if no limiter is registered
+     */
+    public static Permit acquire(String host, int port) {
+        HostLimiter limiter = limiters.get(key(host, port));
+        return limiter == null ? Permit.NONE : limiter.acquire();
+    }
+
+    /**
+     * Waits for a permit to connect to the host.
+     *
+     * @return a Permit, which must be released when the connection closes
+     * @throws FileTransferException if no permit becomes available before the timeout
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < currentLimit()) {
+                inFlight++;
+                return new Permit(this);
+            }
+
+            Condition turn = lock.newCondition();
+            queue.addLast(turn);
+            long remaining = timeoutNanos;
+            try {
+                while (queue.peekFirst() != turn || inFlight >= currentLimit()) {
+                    if (remaining <= 0) {
+                        String message = String.format("Timed out after %d ms waiting to connect to %s.",
+                                                       TimeUnit.NANOSECONDS.toMillis(timeoutNanos),
+                                                       hostLabel);
+                        log.warn(message);
+                        throw new FileTransferException(message);
+                    }
+                    remaining = turn.awaitNanos(remaining);
+                }
+                inFlight++;
+                return new Permit(this);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new FileTransferException(String.format("Interrupted waiting to connect to %s.", hostLabel),
+                                                ex);
+            } finally {
+                queue.remove(turn);
+                signalNext();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of simultaneous connections currently allowed.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of permits held.
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of clients waiting for a permit.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HostLimiter{" +
+                "host='" + hostLabel + '\'' +
+                ", limit=" + getLimit() +
+                ", inFlight=" + getInFlight() +
+                ", queueDepth=" + getQueueDepth() +
+                '}';
+    }
+
+    private int currentLimit() {
+        return (int) limit;
+    }
+
+    private void signalNext() {
+        Condition next = queue.peekFirst();
+        if (next != null && inFlight < currentLimit()) {
+            next.signal();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void connected(long latencyNanos) {
+        lock.lock();
+        try {
+            if (baselineNanos == 0) {
+                baselineNanos = latencyNanos;
+                recentNanos = latencyNanos;
+            } else {
+                baselineNanos += BASELINE_WEIGHT * (latencyNanos - baselineNanos);
+                recentNanos += RECENT_WEIGHT * (latencyNanos - recentNanos);
+            }
+
+            if (recentNanos > LATENCY_TOLERANCE * baselineNanos) {
+                // Start the recent average over, so one slow stretch costs one cut rather than one per login.
+                recentNanos = baselineNanos;
+                decrease(LATENCY_BACKOFF_RATIO, "login latency rose");
+                return;
+            }
+
+            if (++successes >= currentLimit() && currentLimit() < maxLimit) {
+                successes = 0;
+                limit = Math.min(maxLimit, currentLimit() + 1);
+                log.debug("Raised connection limit for {} to {}.", hostLabel, currentLimit());
+                signalNext();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refused() {
+        lock.lock();
+        try {
+            decrease(BACKOFF_RATIO, "connection refused");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(double ratio, String reason) {
+        successes = 0;
+        limit = Math.max(minLimit, limit * ratio);
+        if (log.isDebugEnabled()) {
+            log.debug("Lowered connection limit for {} to {}: {}.", hostLabel, currentLimit(), reason);
+        }
+    }
+
+    private static String key(String host, int port) {
+        return String.format("%s:%d", host, port);
+    }
+
+    /**
+     * Permission to hold one connection to a host.
+     */
+    public static class Permit {
+        /**
+         * A permit for a host without a limiter.
+         */
+        public static final Permit NONE = new Permit(null);
+
+        private final HostLimiter limiter;
+        private final long start = System.nanoTime();
+        private boolean released = false;
+
+        private Permit(HostLimiter limiter) {
+            this.limiter = limiter;
+        }
+
+        /**
+         * Reports that the connection was established and logged in.
+         */
+        public void connected() {
+            if (limiter != null) {
+                limiter.connected(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Reports that the host turned the connection away for lack of capacity, and releases the permit. Failures
+         * that say nothing about capacity, such as a rejected login, should just release the permit.
+         */
+        public void refused() {
+            if (limiter != null) {
+                limiter.refused();
+            }
+            release();
+        }
+
+        /**
+         * Releases the permit. Releasing more than once has no effect.
+         */
+        public synchronized void release() {
+            if (limiter != null && !released) {
+                released = true;
+                limiter.release();
+            }
+        }
+    }
+}
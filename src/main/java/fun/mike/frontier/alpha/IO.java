@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -14,13 +15,19 @@ import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipInputStream;
+
+import fun.mike.frontier.impl.alpha.DelimitedSpliterator;
 
 public class IO {
     public static void mkdir(String path) {
@@ -90,29 +97,19 @@ public class IO {
     }
 
     public static void zip(String zipPath, Collection<String> paths) {
-        try (FileOutputStream fos = new FileOutputStream(zipPath);
-             ZipOutputStream zos = new ZipOutputStream(fos)) {
+        try (ZipBuilder zip = ZipBuilder.create(zipPath)) {
             for (String path : paths) {
-                zos.putNextEntry(new ZipEntry(new File(path).getName()));
-
-                byte[] bytes = Files.readAllBytes(Paths.get(path));
-                zos.write(bytes, 0, bytes.length);
-                zos.closeEntry();
+                zip.addFile(new File(path).getName(), path);
             }
-        } catch (IOException ex) {
-            throw new UncheckedIOException(ex);
         }
     }
 
     public static void zip(String zipPath, Map<String, InputStream> entries) {
-        try (FileOutputStream fos = new FileOutputStream(zipPath);
-             ZipOutputStream zos = new ZipOutputStream(fos)) {
+        try (ZipBuilder zip = ZipBuilder.create(zipPath)) {
             for (Map.Entry<String, InputStream> entry : entries.entrySet()) {
                 String path = entry.getKey();
                 try (InputStream is = entry.getValue()) {
-                    zos.putNextEntry(new ZipEntry(new File(path).getName()));
-                    pipe(is, zos);
-                    zos.closeEntry();
+                    zip.add(new File(path).getName(), is);
                 }
             }
         } catch (IOException ex) {
@@ -120,13 +117,37 @@ public class IO {
         }
     }
 
+    /**
+     * Reads the entries of a zip archive in order as the archive is streamed, without extracting it.
+     *
+     * @param is       an InputStream of a zip archive
+     * @param consumer a consumer of each entry and an InputStream of its contents, valid until the consumer returns
+     */
+    public static void forEachZipEntry(InputStream is, BiConsumer<ZipEntry, InputStream> consumer) {
+        try {
+            ZipInputStream zis = new ZipInputStream(is);
+            InputStream entryStream = new FilterInputStream(zis) {
+                @Override
+                public void close() {
+                }
+            };
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                consumer.accept(entry, entryStream);
+                zis.closeEntry();
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
     public static boolean exists(String path) {
         return new File(path).exists();
     }
 
     public static long pipe(InputStream input, OutputStream output) {
         try {
-            byte[] buffer = new byte[1024];
+            byte[] buffer = new byte[64 * 1024];
             long count = 0;
             int n = 0;
             while ((n = input.read(buffer)) != -1) {
@@ -139,6 +160,30 @@ public class IO {
         }
     }
 
+    /**
+     * Reads from an input stream until a number of bytes have been read or the stream ends.
+     *
+     * @param is     an InputStream
+     * @param length the number of bytes to read
+     * @return the bytes read, fewer than length only if the stream ended first
+     */
+    public static byte[] read(InputStream is, int length) {
+        try {
+            byte[] bytes = new byte[length];
+            int count = 0;
+            while (count < length) {
+                int n = is.read(bytes, count, length - count);
+                if (n == -1) {
+                    return Arrays.copyOf(bytes, count);
+                }
+                count += n;
+            }
+            return bytes;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
     public static Stream<String> streamLines(String path) {
         try {
             return Files.lines(Paths.get(path));
@@ -146,4 +191,31 @@ public class IO {
             throw new UncheckedIOException(ex);
         }
     }
+
+    public static Stream<String> streamLines(InputStream is, Charset charset) {
+        return streamLines(is, charset, null);
+    }
+
+    /**
+     * Lazily splits the contents of an input stream, decoding in large chunks. Closing the returned stream closes the
+     * input stream.
+     *
+     * @param is        an InputStream
+     * @param charset   the charset of the contents
+     * @param delimiter the delimiter between pieces, or null to split on line terminators
+     * @return a Stream of the pieces between delimiters
+     */
+    public static Stream<String> streamLines(InputStream is, Charset charset, String delimiter) {
+        Reader reader = new InputStreamReader(is, charset);
+        Stream<String> lines = delimiter == null
+                ? new BufferedReader(reader, 64 * 1024).lines()
+                : StreamSupport.stream(new DelimitedSpliterator(reader, delimiter), false);
+        return lines.onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
 }
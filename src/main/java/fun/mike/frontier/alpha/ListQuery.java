@@ -0,0 +1,291 @@
+package fun.mike.frontier.alpha;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Filters a directory listing by name, modification time and size, optionally keeping only the newest files.
+ * <p>
+ * Queries are immutable; each method returns a new query. The glob is passed to the host where the protocol allows
+ * it, and every filter is applied again to entries as they are listed, so only matching entries are ever held.
+ */
+public class ListQuery {
+    private static final Comparator<FileInfo> BY_TIME =
+            Comparator.comparing(FileInfo::getTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final String glob;
+    private final Pattern globPattern;
+    private final Pattern pattern;
+    private final Date modifiedSince;
+    private final Long minSize;
+    private final Long maxSize;
+    private final Integer limit;
+
+    private ListQuery(String glob, Pattern pattern, Date modifiedSince, Long minSize, Long maxSize, Integer limit) {
+        this.glob = glob;
+        this.globPattern = glob == null ? null : Pattern.compile(globToRegex(glob));
+        this.pattern = pattern;
+        this.modifiedSince = modifiedSince;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.limit = limit;
+    }
+
+    /**
+     * @return a query matching every file.
+     */
+    public static ListQuery all() {
+        return new ListQuery(null, null, null, null, null, null);
+    }
+
+    /**
+     * Matches names against a glob, where * matches any run of characters, ? matches one character and [...] matches
+     * a character class.
+     *
+     * @param glob a glob
+     * @return a new query
+     */
+    public ListQuery glob(String glob) {
+        return new ListQuery(glob, pattern, modifiedSince, minSize, maxSize, limit);
+    }
+
+    /**
+     * Matches names against a regular expression.
+     *
+     * @param regex a regular expression that must match the whole name
+     * @return a new query
+     */
+    public ListQuery matching(String regex) {
+        return new ListQuery(glob, Pattern.compile(regex), modifiedSince, minSize, maxSize, limit);
+    }
+
+    /**
+     * Matches files modified at or after a time.
+     *
+     * @param time a time
+     * @return a new query
+     */
+    public ListQuery modifiedSince(Date time) {
+        return new ListQuery(glob, pattern, time, minSize, maxSize, limit);
+    }
+
+    /**
+     * Matches files of at least a size.
+     *
+     * @param bytes a size in bytes
+     * @return a new query
+     */
+    public ListQuery minSize(long bytes) {
+        return new ListQuery(glob, pattern, modifiedSince, bytes, maxSize, limit);
+    }
+
+    /**
+     * Matches files of at most a size.
+     *
+     * @param bytes a size in bytes
+     * @return a new query
+     */
+    public ListQuery maxSize(long bytes) {
+        return new ListQuery(glob, pattern, modifiedSince, minSize, bytes, limit);
+    }
+
+    /**
+     * Keeps only the most recently modified matches, newest first.
+     *
+     * @param count the number of files to keep
+     * @return a new query
+     */
+    public ListQuery newest(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative.");
+        }
+        return new ListQuery(glob, pattern, modifiedSince, minSize, maxSize, count);
+    }
+
+    /**
+     * @return the glob names must match, or null if there is none.
+     */
+    public String getGlob() {
+        return glob;
+    }
+
+    /**
+     * @return true if the glob only uses wildcards that FTP and SFTP servers commonly expand.
+     */
+    public boolean hasSimpleGlob() {
+        return glob != null && !glob.isEmpty() && glob.matches("[^\\[\\]{}\\\\/]+");
+    }
+
+    /**
+     * Tests a single entry against every filter.
+     *
+     * @param file a listed file
+     * @return true if the file matches
+     */
+    public boolean test(FileInfo file) {
+        String name = file.getName();
+        if (globPattern != null && !globPattern.matcher(name).matches()) {
+            return false;
+        }
+        if (pattern != null && !pattern.matcher(name).matches()) {
+            return false;
+        }
+        if (modifiedSince != null && (file.getTime() == null || file.getTime().before(modifiedSince))) {
+            return false;
+        }
+        if (minSize != null && (file.getSize() == null || file.getSize() < minSize)) {
+            return false;
+        }
+        if (maxSize != null && (file.getSize() == null || file.getSize() > maxSize)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tests an entry of a FileListing against every filter.
+     *
+     * @param name a name
+     * @param size a size in bytes
+     * @param time a modification time in milliseconds since the epoch, or FileListing.UNKNOWN_TIME
+     * @return true if the entry matches
+     */
+    boolean test(CharSequence name, long size, long time) {
+        if (globPattern != null && !globPattern.matcher(name).matches()) {
+            return false;
+        }
+        if (pattern != null && !pattern.matcher(name).matches()) {
+            return false;
+        }
+        if (modifiedSince != null && (time == FileListing.UNKNOWN_TIME || time < modifiedSince.getTime())) {
+            return false;
+        }
+        if (minSize != null && size < minSize) {
+            return false;
+        }
+        if (maxSize != null && size > maxSize) {
+            return false;
+        }
+        return true;
+    }
+
+    Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * Starts collecting the results of a listing.
+     *
+     * @return an empty Selection
+     */
+    public Selection select() {
+        return new Selection();
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        boolean inClass = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                } else if (c == '\\' || c == '[') {
+                    regex.append('\\');
+                }
+                regex.append(c);
+                continue;
+            }
+            switch (c) {
+                case '*':
+                    regex.append(".*");
+                    break;
+                case '?':
+                    regex.append('.');
+                    break;
+                case '[':
+                    inClass = true;
+                    regex.append('[');
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
+                        regex.append('^');
+                        i++;
+                    }
+                    break;
+                case '\\':
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                    break;
+                default:
+                    regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ListQuery{" +
+                "glob='" + glob + '\'' +
+                ", pattern=" + pattern +
+                ", modifiedSince=" + modifiedSince +
+                ", minSize=" + minSize +
+                ", maxSize=" + maxSize +
+                ", limit=" + limit +
+                '}';
+    }
+
+    /**
+     * Accumulates matching entries as a listing is read. When the query keeps only the newest files, entries are held
+     * in a heap bounded by that count, evicting the oldest.
+     */
+    public class Selection {
+        private final List<FileInfo> matches = new ArrayList<>();
+        private final PriorityQueue<FileInfo> newest =
+                new PriorityQueue<>(limit == null ? 1 : Math.max(1, limit + 1), BY_TIME);
+
+        private Selection() {
+        }
+
+        /**
+         * Offers a listed entry.
+         *
+         * @param file a listed file
+         * @return true if the entry was kept
+         */
+        public boolean offer(FileInfo file) {
+            if (!test(file)) {
+                return false;
+            }
+            if (limit == null) {
+                matches.add(file);
+                return true;
+            }
+            if (limit == 0) {
+                return false;
+            }
+            newest.add(file);
+            if (newest.size() > limit) {
+                return newest.poll() != file;
+            }
+            return true;
+        }
+
+        /**
+         * @return the matching entries, in listing order, or newest first if the query keeps only the newest files.
+         */
+        public List<FileInfo> result() {
+            if (limit == null) {
+                return matches;
+            }
+            List<FileInfo> files = new ArrayList<>(newest);
+            files.sort(Collections.reverseOrder(BY_TIME));
+            return files;
+        }
+    }
+}
@@ -0,0 +1,848 @@
+package fun.mike.frontier.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import fun.mike.frontier.impl.alpha.BoundedInputStream;
+import fun.mike.frontier.impl.alpha.Digester;
+import fun.mike.frontier.impl.alpha.DigestingInputStream;
+import fun.mike.frontier.impl.alpha.DigestingOutputStream;
+import fun.mike.frontier.impl.alpha.MappedFileInputStream;
+import fun.mike.frontier.impl.alpha.TransferOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A FileTransferClient over a local directory, such as an NFS mount, so the same code can run against local files
+ * without a server. Paths are resolved against the root directory, as they are against an FTP user's home, and a
+ * leading slash refers to the root itself. A path that leads outside the root, such as through ".." or a symbolic
+ * link, is rejected.
+ * <p>
+ * Transfers between files use FileChannel.transferTo and transferFrom, which lets the kernel copy the bytes without
+ * passing them through the heap, and listings read every attribute of an entry in one call.
+ */
+public class LocalFileTransferClient implements FileTransferClient {
+    private static final Logger log = LoggerFactory.getLogger(LocalFileTransferClient.class);
+    private static final long TRANSFER_CHUNK_SIZE = 8L * 1024 * 1024;
+
+    private final Path root;
+
+    public LocalFileTransferClient(String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Runs operations against this client. Local operations need no connection, so this only applies the function.
+     *
+     * @param operations a function performing operations with the given client.
+     * @param <T>        the type of the result.
+     * @return the result of the operations.
+     */
+    public <T> T session(Function<FileTransferClient, T> operations) {
+        return operations.apply(this);
+    }
+
+    /**
+     * Streams a local file.
+     *
+     * @param path the path to a file under the root.
+     * @return an Optional containing an InputStream to the file at path if it exists; otherwise, an empty Optional.
+     */
+    public Optional<InputStream> optionalStream(String path) {
+        log.debug("Streaming file {}.", path);
+        try {
+            return Optional.of(Files.newInputStream(resolve(path)));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw failure("I/O error streaming file %s.", path, ex);
+        }
+    }
+
+    /**
+     * Streams a local file.
+     *
+     * @param path the path to a file under the root.
+     * @return an InputStream to the file at path
+     */
+    public InputStream stream(String path) {
+        return optionalStream(path).orElseThrow(() -> fileNotFound(path));
+    }
+
+    /**
+     * Streams a local file to the given reader, closing the file when the reader returns.
+     *
+     * @param path   the path to a file under the root.
+     * @param reader a function of an InputStream to the file, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public <T> T read(String path, Function<InputStream, T> reader) {
+        try (InputStream is = stream(path)) {
+            return reader.apply(is);
+        } catch (IOException ex) {
+            throw failure("I/O error closing file %s.", path, ex);
+        }
+    }
+
+    /**
+     * Reads part of a file with a positional read.
+     *
+     * @param path   the path to a file under the root.
+     * @param offset the position of the first byte to read.
+     * @param length the most bytes to read.
+     * @return the bytes read, fewer than length if the file ends first.
+     */
+    public byte[] read(String path, long offset, int length) {
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            return read(channel, offset, length);
+        } catch (NoSuchFileException ex) {
+            throw fileNotFound(path);
+        } catch (IOException ex) {
+            throw failure("I/O error reading file %s.", path, ex);
+        }
+    }
+
+    /**
+     * Streams part of a file to the given reader.
+     *
+     * @param path   the path to a file under the root.
+     * @param offset the position of the first byte to read.
+     * @param length the most bytes to read.
+     * @param reader a function of an InputStream to the range, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public <T> T read(String path, long offset, long length, Function<InputStream, T> reader) {
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            channel.position(offset);
+            return reader.apply(new BoundedInputStream(Channels.newInputStream(channel), length));
+        } catch (NoSuchFileException ex) {
+            throw fileNotFound(path);
+        } catch (IOException ex) {
+            throw failure("I/O error reading file %s.", path, ex);
+        }
+    }
+
+    /**
+     * Reads many parts of a file with positional reads on one channel.
+     *
+     * @param path   the path to a file under the root.
+     * @param ranges the ranges to read.
+     * @return the bytes of each range, in the order of ranges.
+     */
+    public List<byte[]> read(String path, List<ByteRange> ranges) {
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            List<byte[]> results = new ArrayList<>(ranges.size());
+            for (ByteRange range : ranges) {
+                results.add(read(channel, range.getOffset(), range.getLength()));
+            }
+            return results;
+        } catch (NoSuchFileException ex) {
+            throw fileNotFound(path);
+        } catch (IOException ex) {
+            throw failure("I/O error reading file %s.", path, ex);
+        }
+    }
+
+    /**
+     * Checks if a directory exists.
+     *
+     * @param path a path to the directory under the root.
+     * @return true if the directory at path exists; otherwise, false.
+     */
+    public Boolean dirExists(String path) {
+        Path resolved = resolve(path);
+        if (Files.isDirectory(resolved)) {
+            return true;
+        }
+        if (Files.exists(resolved)) {
+            String message = String.format("%s exists, but is not a directory.", resolved);
+            throw new FileTransferException(message);
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a file exists.
+     *
+     * @param path a path to the file under the root.
+     * @return true if the file at path exists; otherwise, false.
+     */
+    public Boolean fileExists(String path) {
+        return Files.isRegularFile(resolve(path));
+    }
+
+    /**
+     * Reads the contents of a local file to a string, reading it with one channel read into a buffer of its size.
+     *
+     * @param path a path to a file under the root.
+     * @return an Optional containing the contents of the file if it exists; otherwise, an empty Optional.
+     */
+    public Optional<String> optionalSlurp(String path) {
+        log.debug("Slurping file {}.", path);
+        try (FileChannel channel = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                String message = String.format("File %s is too large to read into a string.", resolve(path));
+                log.warn(message);
+                throw new FileTransferException(message);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    break;
+                }
+            }
+            buffer.flip();
+            return Optional.of(StandardCharsets.UTF_8.decode(buffer).toString());
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw failure("I/O error reading file %s.", path, ex);
+        }
+    }
+
+    /**
+     * Reads the contents of a local file to a string.
+     *
+     * @param path a path to a file under the root.
+     * @return the contents of the file at path as a string.
+     */
+    public String slurp(String path) {
+        return optionalSlurp(path).orElseThrow(() -> fileNotFound(path));
+    }
+
+    /**
+     * Lazily streams the lines of a local file.
+     *
+     * @param path    a path to a file under the root.
+     * @param charset the charset of the file.
+     * @return a Stream of lines, which holds the file open until it is closed.
+     */
+    public Stream<String> streamLines(String path, Charset charset) {
+        return streamLines(path, charset, null, false);
+    }
+
+    /**
+     * Lazily streams the pieces of a local file between delimiters.
+     *
+     * @param path       a path to a file under the root.
+     * @param charset    the charset of the file.
+     * @param delimiter  the delimiter between pieces, or null to split on line terminators.
+     * @param skipHeader true to skip the first piece.
+     * @return a Stream of pieces, which holds the file open until it is closed.
+     */
+    public Stream<String> streamLines(String path, Charset charset, String delimiter, boolean skipHeader) {
+        Stream<String> lines = IO.streamLines(stream(path), charset, delimiter);
+        return skipHeader ? lines.skip(1) : lines;
+    }
+
+    /**
+     * Lists the files in a local directory.
+     *
+     * @param path a path to a directory under the root.
+     * @return a list of files.
+     */
+    public List<FileInfo> list(String path) {
+        List<FileInfo> files = new ArrayList<>();
+        forEachEntry(path, null, (name, attrs) -> files.add(fileInfo(name, attrs)));
+        return files;
+    }
+
+    /**
+     * Lists the files in a local directory that match a query. A simple glob is applied by the directory stream.
+     *
+     * @param path  a path to a directory under the root.
+     * @param query a ListQuery.
+     * @return a list of matching files.
+     */
+    public List<FileInfo> list(String path, ListQuery query) {
+        ListQuery.Selection selection = query.select();
+        forEachEntry(path,
+                     query.hasSimpleGlob() ? query.getGlob() : null,
+                     (name, attrs) -> selection.offer(fileInfo(name, attrs)));
+        return selection.result();
+    }
+
+    /**
+     * Lists the files in a local directory into a compact, column-oriented listing.
+     *
+     * @param path a path to a directory under the root.
+     * @return a listing of files.
+     */
+    public FileListing listCompact(String path) {
+        FileListing.Builder builder = FileListing.builder();
+        forEachEntry(path, null, (name, attrs) -> builder.add(name,
+                                                                attrs.size(),
+                                                                attrs.lastModifiedTime().toMillis(),
+                                                                attrs.isDirectory()));
+        return builder.build();
+    }
+
+    /**
+     * Retrieves information about a single local file.
+     *
+     * @param path a path to a file under the root.
+     * @return an Optional containing information about the file if it exists; otherwise, an empty Optional.
+     */
+    public Optional<FileInfo> stat(String path) {
+        Path resolved = resolve(path);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(resolved, BasicFileAttributes.class);
+            Path name = resolved.getFileName();
+            return Optional.of(fileInfo(name == null ? "" : name.toString(), attrs));
+        } catch (NoSuchFileException ex) {
+            return Optional.empty();
+        } catch (IOException ex) {
+            throw failure("Failed to retrieve information about %s.", path, ex);
+        }
+    }
+
+    /**
+     * Copies a file under the root to another local path.
+     *
+     * @param path      a path to a file under the root.
+     * @param localPath a path on the local machine.
+     * @return true if the file exists and was copied; otherwise, false.
+     */
+    public Boolean optionalDownload(String path, String localPath) {
+        if (log.isDebugEnabled()) {
+            log.debug("Downloading file {} locally to {}.", path, localPath);
+        }
+        try (FileChannel source = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            try (FileChannel target = FileChannel.open(Paths.get(localPath),
+                                                       StandardOpenOption.CREATE,
+                                                       StandardOpenOption.WRITE,
+                                                       StandardOpenOption.TRUNCATE_EXISTING)) {
+                transfer(source, 0, target);
+            }
+            return true;
+        } catch (NoSuchFileException ex) {
+            return false;
+        } catch (IOException ex) {
+            throw failure("I/O error downloading %s.", path, ex);
+        }
+    }
+
+    /**
+     * Writes the contents of a local file to an output stream.
+     *
+     * @param path   a path to a file under the root.
+     * @param stream An OutputStream to write to.
+     * @return An Optional containing the OutputStream if the file exists; otherwise, an empty Optional.
+     */
+    public Optional<OutputStream> optionalDownload(String path, OutputStream stream) {
+        return optionalDownload(path, 0, stream) < 0 ? Optional.empty() : Optional.of(stream);
+    }
+
+    /**
+     * Copies a file under the root to another local path.
+     *
+     * @param path      a path to a file under the root.
+     * @param localPath a local path to a file to be written to.
+     */
+    public void download(String path, String localPath) {
+        if (!optionalDownload(path, localPath)) {
+            throw fileNotFound(path);
+        }
+    }
+
+    /**
+     * Writes the contents of a local file to an output stream.
+     *
+     * @param path   a path to a file under the root.
+     * @param stream An OutputStream to write to.
+     * @return the OutputStream
+     */
+    public OutputStream download(String path, OutputStream stream) {
+        return optionalDownload(path, stream).orElseThrow(() -> fileNotFound(path));
+    }
+
+    /**
+     * Writes the contents of a local file to an output stream, starting at the given byte offset.
+     *
+     * @param path   a path to a file under the root.
+     * @param offset the offset of the first byte to write.
+     * @param stream An OutputStream to write to.
+     * @return the number of bytes written.
+     */
+    public long download(String path, long offset, OutputStream stream) {
+        long count = optionalDownload(path, offset, stream);
+        if (count < 0) {
+            throw fileNotFound(path);
+        }
+        return count;
+    }
+
+    /**
+     * Writes the contents of a local file to a local path, computing a checksum as the bytes are written.
+     *
+     * @param path      a path to a file under the root.
+     * @param localPath a local path to a file to be written to.
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the copied content.
+     */
+    public String download(String path, String localPath, ChecksumAlgorithm algorithm) {
+        try (OutputStream stream = Files.newOutputStream(Paths.get(localPath))) {
+            return download(path, stream, algorithm);
+        } catch (IOException ex) {
+            String message = String.format("Failed to write local file %s.", localPath);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Writes the contents of a local file to an output stream, computing a checksum as the bytes are written.
+     *
+     * @param path      a path to a file under the root.
+     * @param stream    An OutputStream to write to.
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the content.
+     */
+    public String download(String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        Digester digester = Digester.of(algorithm);
+        download(path, new DigestingOutputStream(stream, digester));
+        return digester.hex();
+    }
+
+    /**
+     * Writes the decoded contents of a local file to a local path.
+     *
+     * @param path      a path to a file under the root.
+     * @param localPath a local path to a file to be written to.
+     * @param coding    the coding of the file.
+     */
+    public void download(String path, String localPath, ContentCoding coding) {
+        try (OutputStream stream = Files.newOutputStream(Paths.get(localPath))) {
+            download(path, stream, coding);
+        } catch (IOException ex) {
+            String message = String.format("Failed to write local file %s.", localPath);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Writes the decoded contents of a local file to an output stream.
+     *
+     * @param path   a path to a file under the root.
+     * @param stream An OutputStream to write to.
+     * @param coding the coding of the file.
+     * @return the OutputStream
+     */
+    public OutputStream download(String path, OutputStream stream, ContentCoding coding) {
+        return read(path, is -> {
+                IO.pipe(coding.decode(is), stream);
+                return stream;
+            });
+    }
+
+    /**
+     * Reads the entries of a local zip archive as it is streamed.
+     *
+     * @param path     a path to a zip archive under the root.
+     * @param consumer a consumer of each entry and an InputStream of its contents, valid until the consumer returns.
+     */
+    public void forEachZipEntry(String path, BiConsumer<ZipEntry, InputStream> consumer) {
+        read(path, is -> {
+                IO.forEachZipEntry(is, consumer);
+                return null;
+            });
+    }
+
+    /**
+     * Writes the contents of a group of local files to their respective output streams.
+     *
+     * @param targets a Map of paths to their respective OutputStream.
+     * @return An Map of paths to a Boolean indicating if the respective file was found and written to their respective
+     * OutputStream.
+     */
+    public Map<String, Boolean> downloadAll(Map<String, OutputStream> targets) {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        for (Map.Entry<String, OutputStream> target : targets.entrySet()) {
+            results.put(target.getKey(), optionalDownload(target.getKey(), target.getValue()).isPresent());
+        }
+        return results;
+    }
+
+    /**
+     * Copies a local file to a path under the root.
+     *
+     * @param source a path of a file
+     * @param dest   a path to write to under the root
+     * @return the path written to
+     */
+    public String upload(String source, String dest) {
+        if (log.isDebugEnabled()) {
+            log.debug("Uploading local file {} to {}.", source, dest);
+        }
+        try (FileChannel in = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+            try (FileChannel out = openForWrite(dest)) {
+                transfer(in, 0, out);
+            }
+            return dest;
+        } catch (NoSuchFileException ex) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        } catch (IOException ex) {
+            throw failure("I/O error uploading to %s.", dest, ex);
+        }
+    }
+
+    /**
+     * Writes the contents of an input stream to a path under the root.
+     *
+     * @param is   an InputStream containing the content to be written.
+     * @param path a path to write to under the root
+     * @return the path written to
+     */
+    public String upload(InputStream is, String path) {
+        try (FileChannel out = openForWrite(path)) {
+            ReadableByteChannel in = Channels.newChannel(is);
+            long position = 0;
+            long count;
+            while ((count = out.transferFrom(in, position, TRANSFER_CHUNK_SIZE)) > 0) {
+                position += count;
+            }
+            return path;
+        } catch (IOException ex) {
+            throw failure("I/O error uploading to %s.", path, ex);
+        }
+    }
+
+    /**
+     * Copies a local file to a path under the root from the given byte offset, resuming an interrupted copy. The file
+     * under the root is cut to the offset and the rest of the local file is appended. An offset of 0 replaces it.
+     *
+     * @param source a path of a file
+     * @param dest   a path to write to under the root
+     * @param offset the offset of the first byte to copy.
+     * @return the number of bytes copied.
+     */
+    public long upload(String source, String dest, long offset) {
+        if (log.isDebugEnabled()) {
+            log.debug("Uploading local file {} from offset {} to {}.", source, offset, dest);
+        }
+        try (FileChannel in = FileChannel.open(Paths.get(source), StandardOpenOption.READ)) {
+            try (FileChannel out = FileChannel.open(resolve(dest),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE)) {
+                out.truncate(offset);
+                out.position(offset);
+                return transfer(in, offset, out);
+            }
+        } catch (NoSuchFileException ex) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        } catch (IOException ex) {
+            throw failure("I/O error uploading to %s.", dest, ex);
+        }
+    }
+
+    /**
+     * Copies a local file to a path under the root, computing a checksum as the bytes are read.
+     *
+     * @param source    a path of a file
+     * @param dest      a path to write to under the root
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the copied content.
+     */
+    public String upload(String source, String dest, ChecksumAlgorithm algorithm) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+        try (InputStream is = new MappedFileInputStream(source)) {
+            return upload(is, dest, algorithm);
+        } catch (IOException ex) {
+            throw new FileTransferException(ex);
+        }
+    }
+
+    /**
+     * Writes the contents of an input stream to a path under the root, computing a checksum as the bytes are read.
+     *
+     * @param is        an InputStream containing the content to be written.
+     * @param path      a path to write to under the root
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the content.
+     */
+    public String upload(InputStream is, String path, ChecksumAlgorithm algorithm) {
+        Digester digester = Digester.of(algorithm);
+        upload(new DigestingInputStream(is, digester), path);
+        return digester.hex();
+    }
+
+    /**
+     * Copies a local file to a path under the root, coding it on the fly.
+     *
+     * @param source a path of a file
+     * @param dest   a path to write to under the root
+     * @param coding the coding to apply.
+     * @return the path written to
+     */
+    public String upload(String source, String dest, ContentCoding coding) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+        try (InputStream is = new MappedFileInputStream(source)) {
+            return upload(is, dest, coding);
+        } catch (IOException ex) {
+            throw new FileTransferException(ex);
+        }
+    }
+
+    /**
+     * Writes the contents of an input stream to a path under the root, coding them on the fly.
+     *
+     * @param is     an InputStream containing the content to be written.
+     * @param path   a path to write to under the root
+     * @param coding the coding to apply.
+     * @return the path written to
+     */
+    public String upload(InputStream is, String path, ContentCoding coding) {
+        return write(path, os -> {
+                try (OutputStream encoded = coding.encode(os)) {
+                    IO.pipe(is, encoded);
+                } catch (IOException ex) {
+                    throw new FileTransferException(ex);
+                }
+            });
+    }
+
+    /**
+     * Opens a stream to a path under the root for the given writer, closing the file when the writer returns.
+     *
+     * @param path   a path to write to under the root
+     * @param writer a consumer of an OutputStream to the file, which is only valid until the consumer returns.
+     * @return the path written to
+     */
+    public String write(String path, Consumer<OutputStream> writer) {
+        try (OutputStream os = Channels.newOutputStream(openForWrite(path))) {
+            writer.accept(os);
+            return path;
+        } catch (IOException ex) {
+            throw failure("I/O error writing to %s.", path, ex);
+        }
+    }
+
+    /**
+     * Opens a stream to a file under the root. Aborting the stream deletes the file.
+     *
+     * @param path a path to write to under the root.
+     * @return a stream to the file, which must be closed or aborted.
+     */
+    public AbortableOutputStream openOutputStream(String path) {
+        try {
+            Path resolved = resolve(path);
+            return new TransferOutputStream(Channels.newOutputStream(openForWrite(path)), succeeded -> {
+                    if (!succeeded) {
+                        try {
+                            Files.deleteIfExists(resolved);
+                        } catch (IOException ex) {
+                            log.debug("Failed to delete partial file {}.", resolved);
+                        }
+                    }
+                });
+        } catch (IOException ex) {
+            throw failure("I/O error writing to %s.", path, ex);
+        }
+    }
+
+    /**
+     * Computes the checksum of a local file by reading it.
+     *
+     * @param path      a path to a file under the root.
+     * @param algorithm the checksum algorithm to use.
+     * @return an Optional containing the checksum.
+     */
+    public Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+        Path resolved = resolve(path);
+        if (!Files.isRegularFile(resolved)) {
+            throw fileNotFound(path);
+        }
+        Digester digester = Digester.of(algorithm);
+        try (InputStream is = new MappedFileInputStream(resolved.toString())) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                digester.update(buffer, 0, n);
+            }
+            return Optional.of(digester.hex());
+        } catch (IOException ex) {
+            throw failure("I/O error computing checksum of %s.", path, ex);
+        }
+    }
+
+    /**
+     * Deletes a local file.
+     *
+     * @param path a path under the root
+     */
+    public void delete(String path) {
+        try {
+            Files.delete(resolve(path));
+        } catch (NoSuchFileException ex) {
+            throw fileNotFound(path);
+        } catch (IOException ex) {
+            throw failure("Failed to delete %s.", path, ex);
+        }
+    }
+
+    /**
+     * Writes a local file from an offset to an output stream, handing the copy to the kernel when the stream is
+     * backed by a channel.
+     *
+     * @return the number of bytes written, or -1 if the file does not exist.
+     */
+    private long optionalDownload(String path, long offset, OutputStream stream) {
+        if (log.isDebugEnabled()) {
+            log.debug("Downloading file {} from offset {} to stream.", path, offset);
+        }
+        try (FileChannel source = FileChannel.open(resolve(path), StandardOpenOption.READ)) {
+            long count = transfer(source, offset, Channels.newChannel(stream));
+            stream.flush();
+            return count;
+        } catch (NoSuchFileException ex) {
+            return -1;
+        } catch (IOException ex) {
+            throw failure("I/O error downloading %s.", path, ex);
+        }
+    }
+
+    private static long transfer(FileChannel source, long offset, WritableByteChannel target) throws IOException {
+        long size = source.size();
+        long position = offset;
+        while (position < size) {
+            long count = source.transferTo(position, Math.min(TRANSFER_CHUNK_SIZE, size - position), target);
+            if (count == 0) {
+                if (position >= source.size()) {
+                    // The file was truncated while it was copied.
+                    break;
+                }
+                throw new IOException(String.format("Copy made no progress at offset %d.", position));
+            }
+            position += count;
+        }
+        return Math.max(0, position - offset);
+    }
+
+    private void forEachEntry(String path, String glob, BiConsumer<String, BasicFileAttributes> consumer) {
+        Path dir = resolve(path);
+        log.debug("Listing files in {}.", dir);
+        try (DirectoryStream<Path> entries = glob == null
+                ? Files.newDirectoryStream(dir)
+                : Files.newDirectoryStream(dir, glob)) {
+            for (Path entry : entries) {
+                consumer.accept(entry.getFileName().toString(),
+                                Files.readAttributes(entry, BasicFileAttributes.class));
+            }
+        } catch (NoSuchFileException | NotDirectoryException ex) {
+            String message = String.format("Directory %s does not exist.", dir);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        } catch (IOException ex) {
+            throw failure("I/O error listing directory %s.", path, ex);
+        }
+    }
+
+    private static byte[] read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - offset)));
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+            // Positional reads may return fewer bytes than asked for.
+        }
+        return buffer.position() == buffer.capacity()
+                ? buffer.array()
+                : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static FileInfo fileInfo(String name, BasicFileAttributes attrs) {
+        return new FileInfo(name,
+                            attrs.size(),
+                            new Date(attrs.lastModifiedTime().toMillis()),
+                            attrs.isDirectory());
+    }
+
+    private FileChannel openForWrite(String path) throws IOException {
+        return FileChannel.open(resolve(path),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE,
+                                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Path resolve(String path) {
+        int start = 0;
+        while (start < path.length() && path.charAt(start) == '/') {
+            start++;
+        }
+        Path resolved = root.resolve(path.substring(start)).normalize();
+        if (!resolved.startsWith(root) || !isRealPathUnderRoot(resolved)) {
+            String message = String.format("Path %s is outside the root %s.", path, root);
+            log.warn(message);
+            throw new FileTransferException(message);
+        }
+        return resolved;
+    }
+
+    /**
+     * Follows symbolic links in the deepest part of a path that exists and checks it still lies under the root. A link
+     * whose target is missing cannot be followed, so it is treated as leading outside.
+     */
+    private boolean isRealPathUnderRoot(Path resolved) {
+        Path existing = resolved;
+        while (!Files.exists(existing, LinkOption.NOFOLLOW_LINKS)) {
+            existing = existing.getParent();
+            if (existing == null || !existing.startsWith(root)) {
+                return true;
+            }
+        }
+        try {
+            return existing.toRealPath().startsWith(root.toRealPath());
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private MissingRemoteFileException fileNotFound(String path) {
+        String message = String.format("File %s not found.", resolve(path));
+        return new MissingRemoteFileException(message);
+    }
+
+    private FileTransferException failure(String format, String path, IOException ex) {
+        String message = String.format(format, resolve(path));
+        log.warn(message);
+        return new FileTransferException(message, ex);
+    }
+}
@@ -0,0 +1,579 @@
+package fun.mike.frontier.alpha;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import fun.mike.frontier.impl.alpha.FileChannelOutputStream;
+import fun.mike.frontier.impl.alpha.SpillBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A read-only FileTransferClient over several hosts publishing the same files.
+ * <p>
+ * Each read goes first to the mirror with the lowest moving average latency for that kind of operation. If it has not
+ * answered by that mirror's estimated 95th percentile latency for the operation, the same read is sent to the next
+ * mirror, and whichever answers first wins; the other attempt is cancelled and its result discarded. Latencies are
+ * estimated per operation so that a large download is not hedged after the latency of a stat. A losing download stops
+ * at its next write, which fails, so its client drops the connection rather than finishing the transfer.
+ * <p>
+ * A mirror that fails is taken out of rotation for a while, and the read moves on to the next one. A file missing
+ * from one mirror is looked for on the others, and reported missing only if every mirror reports it so. Streaming
+ * reads go to the fastest mirror without hedging. Writes are not supported.
+ */
+public class MirroredFileTransferClient implements FileTransferClient {
+    private static final Logger log = LoggerFactory.getLogger(MirroredFileTransferClient.class);
+    private static final long DEFAULT_INITIAL_HEDGE_DELAY_MILLIS = 1000;
+    private static final long DEFAULT_DOWNTIME_MILLIS = 30000;
+    private static final int SPILL_THRESHOLD = 8 * 1024 * 1024;
+    private static final double ALPHA = 0.2;
+    private static final double P95_Z = 1.645;
+    private static final AtomicInteger instances = new AtomicInteger(0);
+
+    private final List<Mirror> mirrors;
+    private final long initialHedgeDelayNanos;
+    private final long downtimeNanos;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a MirroredFileTransferClient that hedges after one second until latencies are known, and rests failed
+     * mirrors for 30 seconds.
+     *
+     * @param mirrors clients for each mirror host
+     */
+    public MirroredFileTransferClient(List<FileTransferClient> mirrors) {
+        this(mirrors, DEFAULT_INITIAL_HEDGE_DELAY_MILLIS, DEFAULT_DOWNTIME_MILLIS);
+    }
+
+    /**
+     * Creates a MirroredFileTransferClient.
+     *
+     * @param mirrors                 clients for each mirror host
+     * @param initialHedgeDelayMillis how long to wait for a mirror with no latency samples before hedging
+     * @param downtimeMillis          how long a failed mirror stays out of rotation
+     */
+    public MirroredFileTransferClient(List<FileTransferClient> mirrors,
+            long initialHedgeDelayMillis,
+            long downtimeMillis) {
+        if (mirrors.isEmpty()) {
+            throw new IllegalArgumentException("At least one mirror is required.");
+        }
+        this.mirrors = mirrors.stream().map(Mirror::new).collect(Collectors.toList());
+        this.initialHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(initialHedgeDelayMillis);
+        this.downtimeNanos = TimeUnit.MILLISECONDS.toNanos(downtimeMillis);
+        String name = "frontier-mirror-" + instances.incrementAndGet();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @Override
+    public <T> T session(Function<FileTransferClient, T> operations) {
+        return fastest().session(operations);
+    }
+
+    @Override
+    public Optional<InputStream> optionalStream(String path) {
+        return fastest().optionalStream(path);
+    }
+
+    @Override
+    public InputStream stream(String path) {
+        return fastest().stream(path);
+    }
+
+    @Override
+    public <T> T read(String path, Function<InputStream, T> reader) {
+        return fastest().read(path, reader);
+    }
+
+    @Override
+    public byte[] read(String path, long offset, int length) {
+        return hedge("read", path, client -> client.read(path, offset, length));
+    }
+
+    @Override
+    public <T> T read(String path, long offset, long length, Function<InputStream, T> reader) {
+        return fastest().read(path, offset, length, reader);
+    }
+
+    @Override
+    public List<byte[]> read(String path, List<ByteRange> ranges) {
+        return hedge("read", path, client -> client.read(path, ranges));
+    }
+
+    @Override
+    public Boolean dirExists(String path) {
+        return hedge("dirExists", path, client -> client.dirExists(path));
+    }
+
+    @Override
+    public Boolean fileExists(String path) {
+        return hedge("fileExists", path, client -> client.fileExists(path));
+    }
+
+    @Override
+    public Optional<String> optionalSlurp(String path) {
+        return optionalBuffer("slurp", path).map(MirroredFileTransferClient::slurp);
+    }
+
+    @Override
+    public String slurp(String path) {
+        return slurp(buffer("slurp", path));
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset) {
+        return fastest().streamLines(path, charset);
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset, String delimiter, boolean skipHeader) {
+        return fastest().streamLines(path, charset, delimiter, skipHeader);
+    }
+
+    @Override
+    public List<FileInfo> list(String path) {
+        return hedge("list", path, client -> client.list(path));
+    }
+
+    @Override
+    public List<FileInfo> list(String path, ListQuery query) {
+        return hedge("list", path, client -> client.list(path, query));
+    }
+
+    @Override
+    public FileListing listCompact(String path) {
+        return hedge("list", path, client -> client.listCompact(path));
+    }
+
+    @Override
+    public Optional<FileInfo> stat(String path) {
+        return hedge("stat", path, client -> client.stat(path));
+    }
+
+    @Override
+    public Boolean optionalDownload(String path, String localPath) {
+        Optional<SpillBuffer> contents = optionalBuffer("download", path);
+        contents.ifPresent(buffer -> copyToFile(buffer, localPath));
+        return contents.isPresent();
+    }
+
+    @Override
+    public Optional<OutputStream> optionalDownload(String path, OutputStream stream) {
+        return optionalBuffer("download", path).map(buffer -> {
+                buffer.copyTo(stream);
+                return stream;
+            });
+    }
+
+    @Override
+    public void download(String path, String localPath) {
+        copyToFile(buffer("download", path), localPath);
+    }
+
+    @Override
+    public OutputStream download(String path, OutputStream stream) {
+        buffer("download", path).copyTo(stream);
+        return stream;
+    }
+
+    @Override
+    public long download(String path, long offset, OutputStream stream) {
+        return fastest().download(path, offset, stream);
+    }
+
+    @Override
+    public String download(String path, String localPath, ChecksumAlgorithm algorithm) {
+        return fastest().download(path, localPath, algorithm);
+    }
+
+    @Override
+    public String download(String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        return fastest().download(path, stream, algorithm);
+    }
+
+    @Override
+    public void download(String path, String localPath, ContentCoding coding) {
+        fastest().download(path, localPath, coding);
+    }
+
+    @Override
+    public OutputStream download(String path, OutputStream stream, ContentCoding coding) {
+        return fastest().download(path, stream, coding);
+    }
+
+    @Override
+    public void forEachZipEntry(String path, BiConsumer<ZipEntry, InputStream> consumer) {
+        fastest().forEachZipEntry(path, consumer);
+    }
+
+    @Override
+    public Map<String, Boolean> downloadAll(Map<String, OutputStream> targets) {
+        return fastest().downloadAll(targets);
+    }
+
+    @Override
+    public String upload(String source, String dest) {
+        throw readOnly();
+    }
+
+    @Override
+    public String upload(InputStream is, String path) {
+        throw readOnly();
+    }
+    @Override
+    public long upload(String source, String dest, long offset) {
+        throw readOnly();
+    }
+
+
+    @Override
+    public String upload(String source, String dest, ChecksumAlgorithm algorithm) {
+        throw readOnly();
+    }
+
+    @Override
+    public String upload(InputStream is, String path, ChecksumAlgorithm algorithm) {
+        throw readOnly();
+    }
+
+    @Override
+    public String upload(String source, String dest, ContentCoding coding) {
+        throw readOnly();
+    }
+
+    @Override
+    public String upload(InputStream is, String path, ContentCoding coding) {
+        throw readOnly();
+    }
+
+    @Override
+    public String write(String path, Consumer<OutputStream> writer) {
+        throw readOnly();
+    }
+
+    @Override
+    public AbortableOutputStream openOutputStream(String path) {
+        throw readOnly();
+    }
+
+    @Override
+    public Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+        return hedge("checksum", path, client -> client.checksum(path, algorithm));
+    }
+
+    @Override
+    public void delete(String path) {
+        throw readOnly();
+    }
+
+    private SpillBuffer buffer(String operation, String path) {
+        return hedge(operation, path, (client, won) -> {
+                SpillBuffer buffer = new SpillBuffer(SPILL_THRESHOLD);
+                try (SpillBuffer out = buffer) {
+                    client.download(path, new RaceOutputStream(out, won));
+                    return buffer;
+                } catch (IOException ex) {
+                    buffer.release();
+                    throw new UncheckedIOException(ex);
+                } catch (RuntimeException ex) {
+                    buffer.release();
+                    throw ex;
+                }
+            }, SpillBuffer::release);
+    }
+
+    private Optional<SpillBuffer> optionalBuffer(String operation, String path) {
+        return hedge(operation, path, (client, won) -> {
+                SpillBuffer buffer = new SpillBuffer(SPILL_THRESHOLD);
+                try (SpillBuffer out = buffer) {
+                    if (client.optionalDownload(path, new RaceOutputStream(out, won)).isPresent()) {
+                        return Optional.of(buffer);
+                    }
+                } catch (IOException ex) {
+                    buffer.release();
+                    throw new UncheckedIOException(ex);
+                } catch (RuntimeException ex) {
+                    buffer.release();
+                    throw ex;
+                }
+                buffer.release();
+                return Optional.empty();
+            }, result -> result.ifPresent(SpillBuffer::release));
+    }
+
+    private static String slurp(SpillBuffer buffer) {
+        try (InputStream is = buffer.open()) {
+            return IO.slurp(is);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    private static void copyToFile(SpillBuffer buffer, String localPath) {
+        try (OutputStream out = new FileChannelOutputStream(localPath, buffer.size())) {
+            buffer.copyTo(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Mirrors are read-only.");
+    }
+
+    private FileTransferClient fastest() {
+        return ranked(null).get(0).client;
+    }
+
+    /**
+     * @param operation the operation to rank by, or null to rank by every operation
+     */
+    private List<Mirror> ranked(String operation) {
+        long now = System.nanoTime();
+        List<Mirror> available = mirrors.stream()
+                .filter(mirror -> mirror.isAvailable(now))
+                .sorted(Comparator.comparingDouble(mirror -> mirror.mean(operation)))
+                .collect(Collectors.toList());
+        return available.isEmpty() ? mirrors : available;
+    }
+
+    private <T> T hedge(String operation, String path, Function<FileTransferClient, T> action) {
+        return hedge(operation, path, (client, won) -> action.apply(client), result -> {
+            });
+    }
+
+    /**
+     * @param action runs the operation on a mirror, given a flag set once some attempt has won
+     */
+    private <T> T hedge(String operation,
+            String path,
+            BiFunction<FileTransferClient, AtomicBoolean, T> action,
+            Consumer<T> discard) {
+        List<Mirror> candidates = ranked(operation);
+        ExecutorCompletionService<T> completion = new ExecutorCompletionService<>(executor);
+        AtomicBoolean won = new AtomicBoolean(false);
+        List<Future<T>> attempts = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        MissingRemoteFileException missing = null;
+        int missingCount = 0;
+        int next = 0;
+        int running = 0;
+
+        try {
+            while (true) {
+                if (running == 0 && next < candidates.size()) {
+                    attempts.add(submit(completion, operation, candidates.get(next++), action, discard, won));
+                    running++;
+                }
+                if (running == 0) {
+                    break;
+                }
+
+                Future<T> done;
+                if (next < candidates.size()) {
+                    done = completion.poll(candidates.get(next - 1).hedgeDelay(operation, initialHedgeDelayNanos),
+                                           TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        log.debug("Hedging {} of {} to another mirror.", operation, path);
+                        attempts.add(submit(completion, operation, candidates.get(next++), action, discard, won));
+                        running++;
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+                running--;
+
+                try {
+                    return done.get();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof MissingRemoteFileException) {
+                        missing = missing == null ? (MissingRemoteFileException) cause : missing;
+                        missingCount++;
+                    } else {
+                        failures.add(cause);
+                    }
+                } catch (CancellationException ex) {
+                    // Lost the race to another attempt.
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new FileTransferException(String.format("Interrupted during %s of %s.", operation, path), ex);
+        } finally {
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+
+        if (missing != null && missingCount == candidates.size()) {
+            throw missing;
+        }
+        String message = String.format("Failed %s of %s on every mirror.", operation, path);
+        log.warn(message);
+        FileTransferException ex = new FileTransferException(message);
+        failures.forEach(ex::addSuppressed);
+        if (missing != null) {
+            ex.addSuppressed(missing);
+        }
+        throw ex;
+    }
+
+    private <T> Future<T> submit(ExecutorCompletionService<T> completion,
+            String operation,
+            Mirror mirror,
+            BiFunction<FileTransferClient, AtomicBoolean, T> action,
+            Consumer<T> discard,
+            AtomicBoolean won) {
+        return completion.submit(() -> {
+                long start = System.nanoTime();
+                T result;
+                try {
+                    result = action.apply(mirror.client, won);
+                } catch (MissingRemoteFileException ex) {
+                    mirror.record(operation, System.nanoTime() - start);
+                    throw ex;
+                } catch (RuntimeException ex) {
+                    if (!won.get()) {
+                        log.warn(String.format("Mirror failed; taking it out of rotation: %s", ex.getMessage()));
+                        mirror.fail(System.nanoTime() + downtimeNanos);
+                    }
+                    throw ex;
+                }
+                mirror.record(operation, System.nanoTime() - start);
+                if (!won.compareAndSet(false, true)) {
+                    discard.accept(result);
+                    throw new CancellationException();
+                }
+                return result;
+            });
+    }
+
+    /**
+     * Passes writes through until some attempt has won, then fails them so the losing transfer stops.
+     */
+    private static class RaceOutputStream extends FilterOutputStream {
+        private final AtomicBoolean won;
+
+        RaceOutputStream(OutputStream out, AtomicBoolean won) {
+            super(out);
+            this.won = won;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkRace();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkRace();
+            out.write(b, off, len);
+        }
+
+        private void checkRace() throws IOException {
+            if (won.get()) {
+                throw new InterruptedIOException("Another mirror answered first.");
+            }
+        }
+    }
+
+    /**
+     * A moving average and variance of latency.
+     */
+    private static class Estimate {
+        private double mean = 0;
+        private double variance = 0;
+        private boolean sampled = false;
+
+        void record(long nanos) {
+            if (!sampled) {
+                mean = nanos;
+                sampled = true;
+                return;
+            }
+            double diff = nanos - mean;
+            double increment = ALPHA * diff;
+            mean += increment;
+            variance = (1 - ALPHA) * (variance + diff * increment);
+        }
+
+        long p95() {
+            return (long) (mean + P95_Z * Math.sqrt(variance));
+        }
+    }
+
+    private static class Mirror {
+        private final FileTransferClient client;
+        private final Estimate overall = new Estimate();
+        private final Map<String, Estimate> estimates = new HashMap<>();
+        private volatile long downUntil = 0;
+        private volatile boolean down = false;
+
+        Mirror(FileTransferClient client) {
+            this.client = client;
+        }
+
+        synchronized void record(String operation, long nanos) {
+            down = false;
+            overall.record(nanos);
+            estimates.computeIfAbsent(operation, key -> new Estimate()).record(nanos);
+        }
+
+        /**
+         * @param operation an operation, or null for every operation
+         * @return the mean latency of the operation, or of every operation if it has no samples
+         */
+        synchronized double mean(String operation) {
+            Estimate estimate = operation == null ? null : estimates.get(operation);
+            return estimate == null ? overall.mean : estimate.mean;
+        }
+
+        synchronized long hedgeDelay(String operation, long initialNanos) {
+            Estimate estimate = estimates.get(operation);
+            return estimate == null ? initialNanos : estimate.p95();
+        }
+
+        void fail(long until) {
+            downUntil = until;
+            down = true;
+        }
+
+        boolean isAvailable(long now) {
+            return !down || now - downUntil >= 0;
+        }
+    }
+}
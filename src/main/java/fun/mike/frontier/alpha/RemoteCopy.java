@@ -0,0 +1,128 @@
+package fun.mike.frontier.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fun.mike.frontier.impl.alpha.PipedDownload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies files from one host to another without writing them to local disk.
+ * <p>
+ * Bytes flow from a download thread through a bounded buffer into an upload on the calling thread, so the two
+ * transfers overlap. When both hosts are FTP hosts and FXP is enabled, the hosts are first asked to transfer the file
+ * between themselves; if either refuses, the copy falls back to streaming through this machine.
+ */
+public class RemoteCopy {
+    private static final Logger log = LoggerFactory.getLogger(RemoteCopy.class);
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    private final int bufferSize;
+    private final int parallelism;
+    private final boolean fxp;
+
+    /**
+     * Creates a RemoteCopy with a 1 MB buffer, 4 parallel copies per batch and FXP disabled.
+     */
+    public RemoteCopy() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_PARALLELISM, false);
+    }
+
+    /**
+     * Creates a RemoteCopy.
+     *
+     * @param bufferSize  the number of bytes a download may run ahead of its upload
+     * @param parallelism the number of files copied at once by copyAll
+     * @param fxp         true to try server-to-server transfer between FTP hosts
+     */
+    public RemoteCopy(int bufferSize, int parallelism, boolean fxp) {
+        this.bufferSize = bufferSize;
+        this.parallelism = parallelism;
+        this.fxp = fxp;
+    }
+
+    /**
+     * Copies a file from one host to another.
+     *
+     * @param source     a client for the host to copy from
+     * @param sourcePath a path to a file on the source host
+     * @param dest       a client for the host to copy to
+     * @param destPath   a path to write to on the destination host
+     * @return the path written to
+     */
+    public String copy(FileTransferClient source, String sourcePath, FileTransferClient dest, String destPath) {
+        if (fxp && source instanceof FtpFileTransferClient && dest instanceof FtpFileTransferClient) {
+            if (((FtpFileTransferClient) source).fxp(sourcePath, (FtpFileTransferClient) dest, destPath)) {
+                return destPath;
+            }
+            log.debug("Server-to-server transfer of {} refused; streaming instead.", sourcePath);
+        }
+
+        try (InputStream is = new PushbackInputStream(PipedDownload.start(source, sourcePath, bufferSize))) {
+            // Wait for the first byte, so a missing source fails before anything is written to the destination.
+            int first = is.read();
+            if (first != -1) {
+                ((PushbackInputStream) is).unread(first);
+            }
+            return dest.upload(is, destPath);
+        } catch (IOException ex) {
+            String message = String.format("I/O error copying %s to %s.", sourcePath, destPath);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Copies a group of files from one host to another, several at a time.
+     *
+     * @param source a client for the host to copy from
+     * @param dest   a client for the host to copy to
+     * @param paths  a Map of paths on the source host to the paths to write them to on the destination host
+     * @return the paths written to, in the iteration order of paths
+     */
+    public List<String> copyAll(FileTransferClient source, FileTransferClient dest, Map<String, String> paths) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (Map.Entry<String, String> entry : paths.entrySet()) {
+                futures.add(executor.submit(() -> copy(source, entry.getKey(), dest, entry.getValue())));
+            }
+
+            List<String> written = new ArrayList<>();
+            FileTransferException failure = null;
+            for (Future<String> future : futures) {
+                try {
+                    written.add(future.get());
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = new FileTransferException("Failed to copy files.", ex.getCause());
+                    } else {
+                        failure.addSuppressed(ex.getCause());
+                    }
+                }
+            }
+
+            if (failure != null) {
+                log.warn(failure.getMessage());
+                throw failure;
+            }
+            return written;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new FileTransferException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package fun.mike.frontier.alpha;
+
+import java.nio.file.FileStore;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.UserPrincipalLookupService;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import fun.mike.frontier.impl.alpha.BlockCache;
+import fun.mike.frontier.impl.alpha.RemoteByteChannel;
+import fun.mike.frontier.impl.alpha.RemoteFileAttributes;
+
+/**
+ * A read-only file system over the files a FileTransferClient can reach. Files are read through channels that fetch
+ * fixed-size blocks with ranged reads, keep them in a cache shared by every channel of the file system and fetch
+ * ahead of sequential reads on background threads.
+ * <p>
+ * Closing the file system stops the read-ahead threads but does not close the client.
+ */
+public class RemoteFileSystem extends java.nio.file.FileSystem {
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final RemoteFileSystemProvider provider;
+    private final String authority;
+    private final FileTransferClient client;
+    private final int blockSize;
+    private final int readAheadBlocks;
+    private final BlockCache cache;
+    private final ExecutorService executor;
+    private volatile boolean open = true;
+
+    RemoteFileSystem(RemoteFileSystemProvider provider,
+            String authority,
+            FileTransferClient client,
+            int blockSize,
+            int cacheBlocks,
+            int readAheadBlocks) {
+        this.provider = provider;
+        this.authority = authority;
+        this.client = client;
+        this.blockSize = blockSize;
+        this.readAheadBlocks = readAheadBlocks;
+        this.cache = new BlockCache(cacheBlocks);
+        String name = "frontier-read-ahead-" + instances.incrementAndGet();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, readAheadBlocks), runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @Override
+    public RemoteFileSystemProvider provider() {
+        return provider;
+    }
+
+    @Override
+    public void close() {
+        if (open) {
+            open = false;
+            executor.shutdownNow();
+            cache.clear();
+            provider.remove(this);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public String getSeparator() {
+        return "/";
+    }
+
+    @Override
+    public Iterable<Path> getRootDirectories() {
+        return Collections.singletonList(getPath("/"));
+    }
+
+    @Override
+    public Iterable<FileStore> getFileStores() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Set<String> supportedFileAttributeViews() {
+        return Collections.singleton("basic");
+    }
+
+    @Override
+    public RemotePath getPath(String first, String... more) {
+        if (more.length == 0) {
+            return new RemotePath(this, first);
+        }
+        StringBuilder path = new StringBuilder(first);
+        for (String name : more) {
+            if (!name.isEmpty()) {
+                path.append('/').append(name);
+            }
+        }
+        return new RemotePath(this, path.toString());
+    }
+
+    /**
+     * Supports the "glob" and "regex" syntaxes, matched against the whole path.
+     */
+    @Override
+    public PathMatcher getPathMatcher(String syntaxAndPattern) {
+        int colon = syntaxAndPattern.indexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException(String.format("Expected syntax:pattern, got \"%s\".",
+                                                             syntaxAndPattern));
+        }
+        String syntax = syntaxAndPattern.substring(0, colon);
+        String pattern = syntaxAndPattern.substring(colon + 1);
+        Pattern regex;
+        if (syntax.equalsIgnoreCase("glob")) {
+            regex = Pattern.compile(ListQuery.globToRegex(pattern));
+        } else if (syntax.equalsIgnoreCase("regex")) {
+            regex = Pattern.compile(pattern);
+        } else {
+            throw new UnsupportedOperationException(String.format("Syntax \"%s\" is not supported.", syntax));
+        }
+        return path -> regex.matcher(path.toString()).matches();
+    }
+
+    @Override
+    public UserPrincipalLookupService getUserPrincipalLookupService() {
+        throw new UnsupportedOperationException("Remote file systems have no user principals.");
+    }
+
+    @Override
+    public WatchService newWatchService() {
+        throw new UnsupportedOperationException("Remote file systems cannot be watched.");
+    }
+
+    /**
+     * @return the number of block reads served from the cache.
+     */
+    public long getCacheHits() {
+        return cache.getHits();
+    }
+
+    /**
+     * @return the number of block reads that fetched from the host.
+     */
+    public long getCacheMisses() {
+        return cache.getMisses();
+    }
+
+    String getAuthority() {
+        return authority;
+    }
+
+    FileTransferClient getClient() {
+        return client;
+    }
+
+    RemoteByteChannel newByteChannel(RemotePath path) throws NoSuchFileException {
+        String location = location(path);
+        FileInfo file = client.stat(location).orElseThrow(() -> new NoSuchFileException(location));
+        long size = file.getSize() == null ? 0 : file.getSize();
+        long time = file.getTime() == null ? 0 : file.getTime().getTime();
+        return new RemoteByteChannel(client, location, size, time, blockSize, readAheadBlocks, cache, executor);
+    }
+
+    RemoteFileAttributes attributes(RemotePath path) throws NoSuchFileException {
+        String location = location(path);
+        if (path.getNameCount() == 0) {
+            return new RemoteFileAttributes(0, 0, true);
+        }
+        FileInfo file = client.stat(location).orElse(null);
+        if (file != null) {
+            return RemoteFileAttributes.of(file);
+        }
+        // Some hosts cannot stat a directory, since listing one shows its contents rather than itself.
+        if (client.dirExists(location)) {
+            return new RemoteFileAttributes(0, 0, true);
+        }
+        throw new NoSuchFileException(location);
+    }
+
+    String location(RemotePath path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+}
@@ -0,0 +1,373 @@
+package fun.mike.frontier.alpha;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.CopyOption;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exposes FileTransferClients as read-only NIO file systems, so code written against Path, Files and
+ * SeekableByteChannel can read remote files. Each file system is identified by the authority of its URI and created
+ * with newFileSystem, passing the client to use in the environment under CLIENT:
+ * <pre>
+ * FileSystem fs = RemoteFileSystemProvider.open(URI.create("sftp://example.com"), client);
+ * try (SeekableByteChannel channel = Files.newByteChannel(fs.getPath("/data/large.bin"))) {
+ *     channel.position(1_000_000_000L);
+ *     ...
+ * }
+ * </pre>
+ * Providers are not installed with the JDK's provider list, so paths must come from the FileSystem rather than from
+ * Paths.get.
+ */
+public class RemoteFileSystemProvider extends FileSystemProvider {
+    /**
+     * The environment key of the FileTransferClient to read with.
+     */
+    public static final String CLIENT = "client";
+
+    /**
+     * The environment key of the size in bytes of each block fetched.
+     */
+    public static final String BLOCK_SIZE = "blockSize";
+
+    /**
+     * The environment key of the number of blocks to cache.
+     */
+    public static final String CACHE_BLOCKS = "cacheBlocks";
+
+    /**
+     * The environment key of the number of blocks to fetch ahead of sequential reads.
+     */
+    public static final String READ_AHEAD_BLOCKS = "readAheadBlocks";
+
+    private static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+    private static final int DEFAULT_CACHE_BLOCKS = 64;
+    private static final int DEFAULT_READ_AHEAD_BLOCKS = 2;
+    private static final Set<StandardOpenOption> WRITE_OPTIONS = EnumSet.of(StandardOpenOption.WRITE,
+                                                                            StandardOpenOption.APPEND,
+                                                                            StandardOpenOption.CREATE,
+                                                                            StandardOpenOption.CREATE_NEW,
+                                                                            StandardOpenOption.TRUNCATE_EXISTING,
+                                                                            StandardOpenOption.DELETE_ON_CLOSE);
+    private static final Map<String, RemoteFileSystemProvider> providers = new ConcurrentHashMap<>();
+
+    private final String scheme;
+    private final Map<String, RemoteFileSystem> fileSystems = new ConcurrentHashMap<>();
+
+    public RemoteFileSystemProvider(String scheme) {
+        this.scheme = scheme;
+    }
+
+    /**
+     * @param scheme a URI scheme, such as "ftp" or "sftp"
+     * @return the shared provider for the scheme
+     */
+    public static RemoteFileSystemProvider forScheme(String scheme) {
+        return providers.computeIfAbsent(scheme, RemoteFileSystemProvider::new);
+    }
+
+    /**
+     * Creates a file system with the default block size, cache size and read-ahead.
+     *
+     * @param uri    a URI whose scheme chooses the provider and whose authority names the file system
+     * @param client the client to read with
+     * @return a new file system
+     */
+    public static RemoteFileSystem open(URI uri, FileTransferClient client) {
+        return forScheme(uri.getScheme()).newFileSystem(uri, Collections.singletonMap(CLIENT, client));
+    }
+
+    @Override
+    public String getScheme() {
+        return scheme;
+    }
+
+    @Override
+    public RemoteFileSystem newFileSystem(URI uri, Map<String, ?> env) {
+        checkScheme(uri);
+        Object client = env.get(CLIENT);
+        if (!(client instanceof FileTransferClient)) {
+            throw new IllegalArgumentException(String.format("Expected a FileTransferClient under \"%s\".", CLIENT));
+        }
+        String authority = authority(uri);
+        RemoteFileSystem fileSystem = new RemoteFileSystem(this,
+                                                           authority,
+                                                           (FileTransferClient) client,
+                                                           setting(env, BLOCK_SIZE, DEFAULT_BLOCK_SIZE),
+                                                           setting(env, CACHE_BLOCKS, DEFAULT_CACHE_BLOCKS),
+                                                           setting(env, READ_AHEAD_BLOCKS, DEFAULT_READ_AHEAD_BLOCKS));
+        if (fileSystems.putIfAbsent(authority, fileSystem) != null) {
+            fileSystem.close();
+            throw new FileSystemAlreadyExistsException(uri.toString());
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public RemoteFileSystem getFileSystem(URI uri) {
+        checkScheme(uri);
+        RemoteFileSystem fileSystem = fileSystems.get(authority(uri));
+        if (fileSystem == null) {
+            throw new FileSystemNotFoundException(uri.toString());
+        }
+        return fileSystem;
+    }
+
+    @Override
+    public Path getPath(URI uri) {
+        return getFileSystem(uri).getPath(uri.getPath());
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path,
+            Set<? extends OpenOption> options,
+            FileAttribute<?>... attrs) throws IOException {
+        for (OpenOption option : options) {
+            if (WRITE_OPTIONS.contains(option)) {
+                throw new ReadOnlyFileSystemException();
+            }
+        }
+        RemotePath remotePath = check(path);
+        return remotePath.getFileSystem().newByteChannel(remotePath);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir,
+            DirectoryStream.Filter<? super Path> filter) throws IOException {
+        RemotePath remoteDir = check(dir);
+        RemoteFileSystem fileSystem = remoteDir.getFileSystem();
+        FileTransferClient client = fileSystem.getClient();
+        String location = fileSystem.location(remoteDir);
+        if (!client.dirExists(location)) {
+            if (client.fileExists(location)) {
+                throw new NotDirectoryException(location);
+            }
+            throw new NoSuchFileException(location);
+        }
+
+        List<Path> entries = new ArrayList<>();
+        for (FileInfo file : client.list(location)) {
+            String name = file.getName();
+            if (name.equals(".") || name.equals("..")) {
+                continue;
+            }
+            Path entry = remoteDir.resolve(name);
+            if (filter.accept(entry)) {
+                entries.add(entry);
+            }
+        }
+        return new DirectoryStream<Path>() {
+            private boolean iterated = false;
+
+            @Override
+            public Iterator<Path> iterator() {
+                if (iterated) {
+                    throw new IllegalStateException("Directory stream has already been iterated.");
+                }
+                iterated = true;
+                return entries.iterator();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void delete(Path path) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void copy(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public void move(Path source, Path target, CopyOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    @Override
+    public boolean isSameFile(Path path, Path path2) {
+        if (!(path2 instanceof RemotePath)) {
+            return false;
+        }
+        RemotePath remotePath = check(path);
+        RemotePath remotePath2 = (RemotePath) path2;
+        return remotePath.getFileSystem() == remotePath2.getFileSystem()
+                && remotePath.getFileSystem().location(remotePath)
+                .equals(remotePath.getFileSystem().location(remotePath2));
+    }
+
+    @Override
+    public boolean isHidden(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+
+    @Override
+    public FileStore getFileStore(Path path) {
+        throw new UnsupportedOperationException("Remote file systems have no file stores.");
+    }
+
+    @Override
+    public void checkAccess(Path path, AccessMode... modes) throws IOException {
+        RemotePath remotePath = check(path);
+        for (AccessMode mode : modes) {
+            if (mode != AccessMode.READ) {
+                throw new AccessDeniedException(path.toString(), null, "Remote file systems are read-only.");
+            }
+        }
+        remotePath.getFileSystem().attributes(remotePath);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V extends FileAttributeView> V getFileAttributeView(Path path, Class<V> type, LinkOption... options) {
+        RemotePath remotePath = check(path);
+        if (type != BasicFileAttributeView.class) {
+            return null;
+        }
+        return (V) new BasicFileAttributeView() {
+            @Override
+            public String name() {
+                return "basic";
+            }
+
+            @Override
+            public BasicFileAttributes readAttributes() throws IOException {
+                return remotePath.getFileSystem().attributes(remotePath);
+            }
+
+            @Override
+            public void setTimes(FileTime lastModifiedTime, FileTime lastAccessTime, FileTime createTime) {
+                throw new ReadOnlyFileSystemException();
+            }
+        };
+    }
+
+    @Override
+    public <A extends BasicFileAttributes> A readAttributes(Path path,
+            Class<A> type,
+            LinkOption... options) throws IOException {
+        if (type != BasicFileAttributes.class) {
+            throw new UnsupportedOperationException(String.format("Attributes of type %s are not supported.",
+                                                                  type.getName()));
+        }
+        RemotePath remotePath = check(path);
+        return type.cast(remotePath.getFileSystem().attributes(remotePath));
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+        String names = attributes;
+        int colon = attributes.indexOf(':');
+        if (colon >= 0) {
+            if (!attributes.substring(0, colon).equals("basic")) {
+                throw new UnsupportedOperationException(String.format("View \"%s\" is not supported.",
+                                                                      attributes.substring(0, colon)));
+            }
+            names = attributes.substring(colon + 1);
+        }
+
+        BasicFileAttributes attrs = readAttributes(path, BasicFileAttributes.class, options);
+        Map<String, Object> all = new LinkedHashMap<>();
+        all.put("lastModifiedTime", attrs.lastModifiedTime());
+        all.put("lastAccessTime", attrs.lastAccessTime());
+        all.put("creationTime", attrs.creationTime());
+        all.put("size", attrs.size());
+        all.put("isRegularFile", attrs.isRegularFile());
+        all.put("isDirectory", attrs.isDirectory());
+        all.put("isSymbolicLink", attrs.isSymbolicLink());
+        all.put("isOther", attrs.isOther());
+        all.put("fileKey", attrs.fileKey());
+        if (names.equals("*")) {
+            return all;
+        }
+
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String name : Arrays.asList(names.split(","))) {
+            if (!all.containsKey(name)) {
+                throw new IllegalArgumentException(String.format("Unknown attribute \"%s\".", name));
+            }
+            selected.put(name, all.get(name));
+        }
+        return selected;
+    }
+
+    @Override
+    public void setAttribute(Path path, String attribute, Object value, LinkOption... options) {
+        throw new ReadOnlyFileSystemException();
+    }
+
+    void remove(RemoteFileSystem fileSystem) {
+        fileSystems.remove(fileSystem.getAuthority(), fileSystem);
+    }
+
+    private void checkScheme(URI uri) {
+        if (!scheme.equalsIgnoreCase(uri.getScheme())) {
+            throw new IllegalArgumentException(String.format("Expected a URI with scheme \"%s\", got \"%s\".",
+                                                             scheme,
+                                                             uri));
+        }
+    }
+
+    private static String authority(URI uri) {
+        return uri.getAuthority() == null ? "" : uri.getAuthority();
+    }
+
+    private static int setting(Map<String, ?> env, String key, int defaultValue) {
+        Object value = env.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return Integer.parseInt(value.toString());
+    }
+
+    private static RemotePath check(Path path) {
+        if (!(path instanceof RemotePath)) {
+            throw new ProviderMismatchException();
+        }
+        return (RemotePath) path;
+    }
+}
@@ -0,0 +1,168 @@
+package fun.mike.frontier.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows files on a host that grow over time, transferring only the bytes appended since the last poll.
+ * <p>
+ * The offset reached in each file is remembered per path. If a file shrinks, or its modification time moves
+ * backwards, it is assumed to have been truncated or rotated and is read again from the beginning.
+ */
+public class RemoteFileTail {
+    private static final Logger log = LoggerFactory.getLogger(RemoteFileTail.class);
+
+    private final FileTransferClient client;
+    private final Map<String, Position> positions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a RemoteFileTail.
+     *
+     * @param client a client for the host the files live on
+     */
+    public RemoteFileTail(FileTransferClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Writes the bytes appended to a file since the last poll to an output stream.
+     *
+     * @param path   a path to a file on the host.
+     * @param stream An OutputStream to write to.
+     * @return the number of bytes written.
+     */
+    public long poll(String path, OutputStream stream) {
+        return poll(path, is -> IO.pipe(is, stream));
+    }
+
+    /**
+     * Streams the bytes appended to a file since the last poll to the given reader. The next poll starts after the
+     * last byte the reader consumed.
+     *
+     * @param path   a path to a file on the host.
+     * @param reader a function of an InputStream to the appended bytes, which is only valid until the function
+     *               returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public <T> T poll(String path, Function<InputStream, T> reader) {
+        FileInfo info = client.stat(path)
+                .orElseThrow(() -> new MissingRemoteFileException(String.format("File %s not found.", path)));
+
+        Position position = positions.getOrDefault(path, Position.START);
+
+        if (info.getSize() < position.offset || isBefore(info.getTime(), position.time)) {
+            log.info("File {} was truncated or rotated; reading from the beginning.", path);
+            position = Position.START;
+        }
+
+        if (info.getSize() == position.offset) {
+            positions.put(path, new Position(position.offset, info.getTime()));
+            return reader.apply(new ByteArrayInputStream(new byte[0]));
+        }
+
+        long offset = position.offset;
+        return client.read(path, offset, info.getSize() - offset, is -> {
+                CountingInputStream counted = new CountingInputStream(is);
+                try {
+                    return reader.apply(counted);
+                } finally {
+                    positions.put(path, new Position(offset + counted.count, info.getTime()));
+                }
+            });
+    }
+
+    /**
+     * @param path a path to a file on the host.
+     * @return the offset the next poll of the file will start from.
+     */
+    public long getOffset(String path) {
+        return positions.getOrDefault(path, Position.START).offset;
+    }
+
+    /**
+     * Sets the offset the next poll of a file will start from, such as one saved before a restart.
+     *
+     * @param path   a path to a file on the host.
+     * @param offset a byte offset
+     */
+    public void seek(String path, long offset) {
+        positions.put(path, new Position(offset, null));
+    }
+
+    /**
+     * Forgets the offset reached in a file, so the next poll reads it from the beginning.
+     *
+     * @param path a path to a file on the host.
+     */
+    public void reset(String path) {
+        positions.remove(path);
+    }
+
+    private static boolean isBefore(Date time, Date previous) {
+        return Optional.ofNullable(time)
+                .flatMap(t -> Optional.ofNullable(previous).map(t::before))
+                .orElse(false);
+    }
+
+    private static class Position {
+        static final Position START = new Position(0, null);
+
+        final long offset;
+        final Date time;
+
+        Position(long offset, Date time) {
+            this.offset = offset;
+            this.time = time;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package fun.mike.frontier.alpha;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.ProviderMismatchException;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A path on a RemoteFileSystem. Paths use "/" as the separator and are absolute when they start with it.
+ */
+public class RemotePath implements Path {
+    private final RemoteFileSystem fileSystem;
+    private final boolean absolute;
+    private final String[] names;
+
+    RemotePath(RemoteFileSystem fileSystem, String path) {
+        this.fileSystem = fileSystem;
+        this.absolute = path.startsWith("/");
+        List<String> parsed = new ArrayList<>();
+        for (String name : path.split("/")) {
+            if (!name.isEmpty()) {
+                parsed.add(name);
+            }
+        }
+        this.names = parsed.toArray(new String[0]);
+    }
+
+    private RemotePath(RemoteFileSystem fileSystem, boolean absolute, String[] names) {
+        this.fileSystem = fileSystem;
+        this.absolute = absolute;
+        this.names = names;
+    }
+
+    @Override
+    public RemoteFileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    @Override
+    public boolean isAbsolute() {
+        return absolute;
+    }
+
+    @Override
+    public Path getRoot() {
+        return absolute ? new RemotePath(fileSystem, true, new String[0]) : null;
+    }
+
+    @Override
+    public Path getFileName() {
+        if (names.length == 0) {
+            return absolute ? null : this;
+        }
+        return new RemotePath(fileSystem, false, new String[]{names[names.length - 1]});
+    }
+
+    @Override
+    public Path getParent() {
+        if (names.length == 0 || (names.length == 1 && !absolute)) {
+            return null;
+        }
+        return new RemotePath(fileSystem, absolute, Arrays.copyOf(names, names.length - 1));
+    }
+
+    @Override
+    public int getNameCount() {
+        // The empty path has one empty name.
+        return names.length == 0 && !absolute ? 1 : names.length;
+    }
+
+    @Override
+    public Path getName(int index) {
+        return subpath(index, index + 1);
+    }
+
+    @Override
+    public Path subpath(int beginIndex, int endIndex) {
+        if (beginIndex < 0 || endIndex > names.length || beginIndex >= endIndex) {
+            throw new IllegalArgumentException(String.format("Invalid subpath [%d, %d) of %s.",
+                                                             beginIndex,
+                                                             endIndex,
+                                                             this));
+        }
+        return new RemotePath(fileSystem, false, Arrays.copyOfRange(names, beginIndex, endIndex));
+    }
+
+    @Override
+    public boolean startsWith(Path other) {
+        if (!(other instanceof RemotePath)) {
+            return false;
+        }
+        RemotePath path = (RemotePath) other;
+        if (path.absolute != absolute || path.names.length > names.length) {
+            return false;
+        }
+        for (int i = 0; i < path.names.length; i++) {
+            if (!path.names[i].equals(names[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean startsWith(String other) {
+        return startsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public boolean endsWith(Path other) {
+        if (!(other instanceof RemotePath)) {
+            return false;
+        }
+        RemotePath path = (RemotePath) other;
+        if (path.absolute) {
+            return equals(path);
+        }
+        int offset = names.length - path.names.length;
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < path.names.length; i++) {
+            if (!path.names[i].equals(names[offset + i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean endsWith(String other) {
+        return endsWith(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path normalize() {
+        Deque<String> normalized = new ArrayDeque<>();
+        for (String name : names) {
+            if (name.equals(".")) {
+                continue;
+            }
+            if (name.equals("..")) {
+                if (!normalized.isEmpty() && !normalized.peekLast().equals("..")) {
+                    normalized.removeLast();
+                    continue;
+                }
+                if (absolute) {
+                    continue;
+                }
+            }
+            normalized.addLast(name);
+        }
+        return new RemotePath(fileSystem, absolute, normalized.toArray(new String[0]));
+    }
+
+    @Override
+    public Path resolve(Path other) {
+        RemotePath path = check(other);
+        if (path.absolute) {
+            return path;
+        }
+        if (path.names.length == 0) {
+            return this;
+        }
+        String[] resolved = Arrays.copyOf(names, names.length + path.names.length);
+        System.arraycopy(path.names, 0, resolved, names.length, path.names.length);
+        return new RemotePath(fileSystem, absolute, resolved);
+    }
+
+    @Override
+    public Path resolve(String other) {
+        return resolve(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path resolveSibling(Path other) {
+        Path parent = getParent();
+        return parent == null ? other : parent.resolve(other);
+    }
+
+    @Override
+    public Path resolveSibling(String other) {
+        return resolveSibling(fileSystem.getPath(other));
+    }
+
+    @Override
+    public Path relativize(Path other) {
+        RemotePath path = check(other);
+        if (path.absolute != absolute) {
+            throw new IllegalArgumentException(String.format("Cannot relativize %s against %s.", path, this));
+        }
+        int common = 0;
+        while (common < names.length && common < path.names.length && names[common].equals(path.names[common])) {
+            common++;
+        }
+        List<String> relative = new ArrayList<>();
+        for (int i = common; i < names.length; i++) {
+            relative.add("..");
+        }
+        relative.addAll(Arrays.asList(path.names).subList(common, path.names.length));
+        return new RemotePath(fileSystem, false, relative.toArray(new String[0]));
+    }
+
+    @Override
+    public URI toUri() {
+        try {
+            String authority = fileSystem.getAuthority();
+            return new URI(fileSystem.provider().getScheme(),
+                           authority.isEmpty() ? null : authority,
+                           toAbsolutePath().toString(),
+                           null,
+                           null);
+        } catch (URISyntaxException ex) {
+            throw new IllegalStateException(String.format("Path %s is not a valid URI.", this), ex);
+        }
+    }
+
+    @Override
+    public Path toAbsolutePath() {
+        return absolute ? this : new RemotePath(fileSystem, true, names);
+    }
+
+    @Override
+    public Path toRealPath(LinkOption... options) {
+        return toAbsolutePath().normalize();
+    }
+
+    @Override
+    public File toFile() {
+        throw new UnsupportedOperationException("Remote paths have no local file.");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher,
+            WatchEvent.Kind<?>[] events,
+            WatchEvent.Modifier... modifiers) {
+        throw new UnsupportedOperationException("Remote paths cannot be watched.");
+    }
+
+    @Override
+    public WatchKey register(WatchService watcher, WatchEvent.Kind<?>... events) {
+        throw new UnsupportedOperationException("Remote paths cannot be watched.");
+    }
+
+    @Override
+    public Iterator<Path> iterator() {
+        List<Path> paths = new ArrayList<>(names.length);
+        for (String name : names) {
+            paths.add(new RemotePath(fileSystem, false, new String[]{name}));
+        }
+        return paths.iterator();
+    }
+
+    @Override
+    public int compareTo(Path other) {
+        return toString().compareTo(check(other).toString());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RemotePath path = (RemotePath) o;
+        return fileSystem == path.fileSystem && absolute == path.absolute && Arrays.equals(names, path.names);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Boolean.hashCode(absolute) + Arrays.hashCode(names);
+    }
+
+    @Override
+    public String toString() {
+        String joined = String.join("/", names);
+        return absolute ? "/" + joined : joined;
+    }
+
+    private RemotePath check(Path other) {
+        if (!(other instanceof RemotePath)) {
+            throw new ProviderMismatchException();
+        }
+        return (RemotePath) other;
+    }
+}
@@ -7,24 +7,45 @@ import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
+import fun.mike.frontier.impl.alpha.ConnectorPool;
+import fun.mike.frontier.impl.alpha.CountingOutputStream;
+import fun.mike.frontier.impl.alpha.Deadline;
+import fun.mike.frontier.impl.alpha.Digester;
+import fun.mike.frontier.impl.alpha.DigestingInputStream;
+import fun.mike.frontier.impl.alpha.DigestingOutputStream;
+import fun.mike.frontier.impl.alpha.FileChannelOutputStream;
 import fun.mike.frontier.impl.alpha.JschSftp;
+import fun.mike.frontier.impl.alpha.MappedFileInputStream;
 import fun.mike.frontier.impl.alpha.SftpConnector;
+import fun.mike.frontier.impl.alpha.TransferOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.ConnectException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
 
 import static java.util.Objects.isNull;
 
@@ -32,11 +53,16 @@ public class SftpFileTransferClient implements FileTransferClient {
     private static final int DEFAULT_CONNECT_TIMEOUT = 30000;
     private static final int DEFAULT_SERVER_KEEP_ALIVE_COUNT_MAX = 6;
     private static final int DEFAULT_SERVER_KEEP_ALIVE_INTERVAL = 10000;
+    private static final int DEFAULT_WRITE_WINDOW = 256 * 1024;
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final int DEFAULT_SEGMENT_PARALLELISM = 4;
+    private static final int MAX_SEGMENTS = 256;
 
     private static final Logger log = LoggerFactory.getLogger(FtpFileTransferClient.class);
 
     private final String host;
     private final Integer port;
+    private final String hostLabel;
     private final String username;
     private final String password;
     private final String privateKeyPath;
@@ -47,6 +73,20 @@ public class SftpFileTransferClient implements FileTransferClient {
     private final int connectTimeout;
     private final int serverKeepAliveCountMax;
     private final int serverKeepAliveInterval;
+    private final long operationTimeout;
+    private final ConnectorPool<SftpConnector> pool;
+    private final Properties sessionConfig = new Properties();
+    private final ThreadLocal<SftpConnector> scope = new ThreadLocal<>();
+    // Set once the host fails to run a checksum command, so later checksums do not wait on it again.
+    private final AtomicBoolean execUnsupported = new AtomicBoolean(false);
+
+    private JSch jsch;
+    private long keyModified;
+    private long knownHostsModified;
+
+    static {
+        JSch.setLogger(new SimpleJschLogger());
+    }
 
     public SftpFileTransferClient(String host,
             Integer port,
@@ -86,8 +126,47 @@ public class SftpFileTransferClient implements FileTransferClient {
                                   int connectTimeout,
                                   int serverKeepAliveCountMax,
                                   int serverKeepAliveInterval) {
+        this(host, port, username, password, privateKeyPath, publicKeyPath,
+             knownHostsPath, passphrase, strictHostChecking, connectTimeout,
+             serverKeepAliveCountMax, serverKeepAliveInterval, 0);
+    }
+
+    public SftpFileTransferClient(String host,
+                                  Integer port,
+                                  String username,
+                                  String password,
+                                  String privateKeyPath,
+                                  String publicKeyPath,
+                                  String knownHostsPath,
+                                  byte[] passphrase,
+                                  boolean strictHostChecking,
+                                  int connectTimeout,
+                                  int serverKeepAliveCountMax,
+                                  int serverKeepAliveInterval,
+                                  long operationTimeout) {
+        this(host, port, username, password, privateKeyPath, publicKeyPath,
+             knownHostsPath, passphrase, strictHostChecking, connectTimeout,
+             serverKeepAliveCountMax, serverKeepAliveInterval, operationTimeout, 0, 0);
+    }
+
+    public SftpFileTransferClient(String host,
+                                  Integer port,
+                                  String username,
+                                  String password,
+                                  String privateKeyPath,
+                                  String publicKeyPath,
+                                  String knownHostsPath,
+                                  byte[] passphrase,
+                                  boolean strictHostChecking,
+                                  int connectTimeout,
+                                  int serverKeepAliveCountMax,
+                                  int serverKeepAliveInterval,
+                                  long operationTimeout,
+                                  int maxIdleConnections,
+                                  long idleTimeout) {
         this.host = host;
         this.port = port;
+        this.hostLabel = port == 21 ? host : host + ":" + port;
         this.username = username;
         this.password = password;
         this.privateKeyPath = privateKeyPath;
@@ -98,6 +177,14 @@ public class SftpFileTransferClient implements FileTransferClient {
         this.connectTimeout = connectTimeout;
         this.serverKeepAliveCountMax = serverKeepAliveCountMax;
         this.serverKeepAliveInterval = serverKeepAliveInterval;
+        this.operationTimeout = operationTimeout;
+        this.pool = new ConnectorPool<>(maxIdleConnections,
+                                        idleTimeout,
+                                        conn -> conn.getSession().isConnected() && !conn.getChannel().isClosed(),
+                                        this::disconnect);
+        if (!strictHostChecking) {
+            sessionConfig.put("StrictHostKeyChecking", "no");
+        }
     }
 
     public static SftpFileTransferClient withKeys(String host,
@@ -178,17 +265,40 @@ public class SftpFileTransferClient implements FileTransferClient {
         return new SftpFileTransferClient(host, port, username, password, null, null, null, null, strictHostChecking, connectTimeout, serverKeepAliveCountMax, serverKeepAliveInterval);
     }
 
+    @Override
+    public <T> T session(Function<FileTransferClient, T> operations) {
+        if (scope.get() != null) {
+            return operations.apply(this);
+        }
+        SftpConnector conn = null;
+        boolean reusable = false;
+        try {
+            conn = connect();
+            scope.set(conn);
+            T result = operations.apply(this);
+            // A stream opened in the session and not yet finished leaves the connection mid-transfer.
+            reusable = !conn.hasOpenTransfers();
+            return result;
+        } catch (RuntimeException ex) {
+            throw deadlineExceeded(conn, ex);
+        } finally {
+            scope.remove();
+            release(conn, reusable);
+        }
+    }
+
     @Override
     public String upload(String source, String dest) {
-        String locationLabel = getLocationLabel(dest);
-        log.debug(String.format("Uploading local file %s to %s.", source, locationLabel));
+        if (log.isDebugEnabled()) {
+            log.debug("Uploading local file {} to {}:{}.", source, hostLabel, dest);
+        }
 
         if (!IO.exists(source)) {
             String message = String.format("Local source file %s does not exist.", source);
             throw new MissingLocalFileException(message);
         }
 
-        try (InputStream is = new FileInputStream(source)) {
+        try (InputStream is = new MappedFileInputStream(source)) {
             return upload(is, dest);
         } catch (IOException e) {
             String message = String.format("Failed to read local source file \"%s\".", source);
@@ -208,33 +318,49 @@ public class SftpFileTransferClient implements FileTransferClient {
     }
 
     @Override
-    public Boolean dirExists(String path) {
-        String locationLabel = getLocationLabel(path);
-        log.debug(String.format("Checking if directory %s exists.",
-                                locationLabel));
+    public <T> T read(String path, Function<InputStream, T> reader) {
+        return withConnector(conn -> JschSftp.read(conn, path, reader));
+    }
+
+    @Override
+    public byte[] read(String path, long offset, int length) {
+        return withConnector(conn -> JschSftp.read(conn, path, offset, length));
+    }
 
-        SftpConnector con = connect();
-        ChannelSftp chan = con.getChannel();
+    @Override
+    public <T> T read(String path, long offset, long length, Function<InputStream, T> reader) {
+        return withConnector(conn -> JschSftp.read(conn, path, offset, length, reader));
+    }
 
-        try {
-            SftpATTRS attrs = chan.lstat(path);
-            if (attrs.isDir()) {
-                return true;
-            }
+    @Override
+    public List<byte[]> read(String path, List<ByteRange> ranges) {
+        return withConnector(conn -> JschSftp.read(conn, path, ranges));
+    }
 
-            String message = String.format("%s exists, but is not a directory.",
-                                           locationLabel);
-            throw new FileTransferException(message);
-        } catch (SftpException e) {
-            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
-                return false;
-            } else {
-                String message = String.format("Error asserting if directory %s exists.", locationLabel);
-                throw new FileTransferException(message);
-            }
-        } finally {
-            disconnect(con);
-        }
+    @Override
+    public Boolean dirExists(String path) {
+        log.debug("Checking if directory {}:{} exists.", hostLabel, path);
+
+        return withConnector(conn -> {
+                try {
+                    SftpATTRS attrs = conn.getChannel().lstat(path);
+                    if (attrs.isDir()) {
+                        return true;
+                    }
+
+                    String message = String.format("%s exists, but is not a directory.",
+                                                   getLocationLabel(path));
+                    throw new FileTransferException(message);
+                } catch (SftpException e) {
+                    if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                        return false;
+                    } else {
+                        String message = String.format("Error asserting if directory %s exists.",
+                                                       getLocationLabel(path));
+                        throw new FileTransferException(message);
+                    }
+                }
+            });
     }
 
     @Override
@@ -249,42 +375,148 @@ public class SftpFileTransferClient implements FileTransferClient {
 
     @Override
     public String slurp(String path) {
-        SftpConnector con = connect();
-        ChannelSftp chan = con.getChannel();
+        return withConnector(conn -> {
+                try {
+                    return IO.slurp(conn.getChannel().get(path));
+                } catch (SftpException e) {
+                    String message = String.format("Failed to retrieve file at path \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset) {
+        return streamLines(path, charset, null, false);
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset, String delimiter, boolean skipHeader) {
+        SftpConnector active = scope.get();
+        SftpConnector conn = active == null ? connect() : active;
         try {
-            return IO.slurp(chan.get(path));
+            InputStream is = conn.getChannel().get(path);
+            conn.transferOpened();
+            Stream<String> lines = IO.streamLines(is, charset, delimiter)
+                    .onClose(() -> {
+                        conn.transferCompleted();
+                        if (active == null) {
+                            release(conn, true);
+                        }
+                    });
+            return skipHeader ? lines.skip(1) : lines;
         } catch (SftpException e) {
+            if (active == null) {
+                release(conn, false);
+            }
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw remoteFileNotFound(path);
+            }
             String message = String.format("Failed to retrieve file at path \"%s\".", path);
             log.warn(message);
             throw new FileTransferException(message, e);
-        } finally {
-            disconnect(con);
+        } catch (RuntimeException e) {
+            if (active == null) {
+                release(conn, false);
+            }
+            throw deadlineExceeded(conn, e);
         }
     }
 
     @Override
     public List<FileInfo> list(String path) {
-        SftpConnector conn = connect();
-        ChannelSftp chan = conn.getChannel();
+        return withConnector(conn -> {
+                try {
+                    Vector<LsEntry> resultVector = (Vector<LsEntry>) conn.getChannel().ls(path);
+                    return resultVector.stream()
+                            .map(entry -> {
+                                Date fileDate = new Date(entry.getAttrs().getMTime() * 1000L);
+                                return new FileInfo(entry.getFilename(),
+                                                    entry.getAttrs().getSize(),
+                                                    fileDate,
+                                                    entry.getAttrs().isDir());
+                            })
+                            .collect(Collectors.toList());
+                } catch (SftpException e) {
+                    String message = String.format("Failed to list files at \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
+    }
 
-        try {
-            Vector<LsEntry> resultVector = (Vector<LsEntry>) chan.ls(path);
-            return resultVector.stream()
-                    .map(entry -> {
-                        Date fileDate = new Date(entry.getAttrs().getATime() * 1000L);
-                        return new FileInfo(entry.getFilename(),
-                                            entry.getAttrs().getSize(),
-                                            fileDate,
-                                            entry.getAttrs().isDir());
-                    })
-                    .collect(Collectors.toList());
-        } catch (SftpException e) {
-            String message = String.format("Failed to list files at \"%s\".", path);
-            log.warn(message);
-            throw new FileTransferException(message, e);
-        } finally {
-            disconnect(conn);
-        }
+    @Override
+    public List<FileInfo> list(String path, ListQuery query) {
+        String pattern = query.hasSimpleGlob()
+                ? (path.endsWith("/") ? path : path + "/") + query.getGlob()
+                : path;
+        ListQuery.Selection selection = query.select();
+        return withConnector(conn -> {
+                try {
+                    conn.getChannel().ls(pattern, entry -> {
+                            String name = entry.getFilename();
+                            if (!name.equals(".") && !name.equals("..")) {
+                                SftpATTRS attrs = entry.getAttrs();
+                                selection.offer(new FileInfo(name,
+                                                             attrs.getSize(),
+                                                             new Date(attrs.getMTime() * 1000L),
+                                                             attrs.isDir()));
+                            }
+                            return ChannelSftp.LsEntrySelector.CONTINUE;
+                        });
+                    return selection.result();
+                } catch (SftpException e) {
+                    String message = String.format("Failed to list files at \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
+    }
+
+    @Override
+    public FileListing listCompact(String path) {
+        log.debug("Listing files in {}:{}.", hostLabel, path);
+        FileListing.Builder builder = FileListing.builder();
+        return withConnector(conn -> {
+                try {
+                    conn.getChannel().ls(path, entry -> {
+                            String name = entry.getFilename();
+                            if (!name.equals(".") && !name.equals("..")) {
+                                SftpATTRS attrs = entry.getAttrs();
+                                builder.add(name, attrs.getSize(), attrs.getMTime() * 1000L, attrs.isDir());
+                            }
+                            return ChannelSftp.LsEntrySelector.CONTINUE;
+                        });
+                    return builder.build();
+                } catch (SftpException e) {
+                    String message = String.format("Failed to list files at \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
+    }
+
+    @Override
+    public Optional<FileInfo> stat(String path) {
+        return withConnector(conn -> {
+                try {
+                    SftpATTRS attrs = conn.getChannel().stat(path);
+                    String name = path.substring(path.lastIndexOf('/') + 1);
+                    return Optional.of(new FileInfo(name,
+                                                    attrs.getSize(),
+                                                    new Date(attrs.getMTime() * 1000L),
+                                                    attrs.isDir()));
+                } catch (SftpException e) {
+                    if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                        return Optional.empty();
+                    }
+
+                    String message = String.format("Failed to retrieve information about \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
     }
 
     @Override
@@ -312,18 +544,20 @@ public class SftpFileTransferClient implements FileTransferClient {
     }
 
     public void download(String path, String localPath) throws FileTransferException {
-        SftpConnector con = connect();
-        ChannelSftp chan = con.getChannel();
-
-        try {
-            chan.get(path, localPath);
-        } catch (SftpException e) {
-            String message = String.format("Failed to retrieve file at path \"%s\".", path);
-            log.warn(message);
-            throw new FileTransferException(message, e);
-        } finally {
-            disconnect(con);
-        }
+        useConnector(conn -> {
+                ChannelSftp chan = conn.getChannel();
+                try (OutputStream stream = new FileChannelOutputStream(localPath, chan.stat(path).getSize())) {
+                    chan.get(path, stream);
+                } catch (IOException e) {
+                    String message = String.format("Failed to write local file \"%s\".", localPath);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                } catch (SftpException e) {
+                    String message = String.format("Failed to retrieve file at path \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
     }
 
     @Override
@@ -341,6 +575,82 @@ public class SftpFileTransferClient implements FileTransferClient {
         return stream;
     }
 
+    @Override
+    public long download(String path, long offset, OutputStream stream) {
+        return withConnector(conn -> {
+                CountingOutputStream counter = new CountingOutputStream(stream);
+                try {
+                    conn.getChannel().get(path, counter, null, ChannelSftp.RESUME, offset);
+                    return counter.getCount();
+                }
+                catch (SftpException e) {
+                    if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                        throw remoteFileNotFound(path);
+                    }
+
+                    String message = String.format("Failed to retrieve file at path \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
+    }
+
+    @Override
+    public String download(String path, String localPath, ChecksumAlgorithm algorithm) {
+        try (OutputStream stream = new FileChannelOutputStream(localPath)) {
+            return download(path, stream, algorithm);
+        } catch (IOException e) {
+            String message = String.format("Failed to write local file \"%s\".", localPath);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
+
+    @Override
+    public String download(String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> {
+                Digester digester = Digester.of(algorithm);
+                try {
+                    conn.getChannel().get(path, new DigestingOutputStream(stream, digester));
+                }
+                catch (SftpException e) {
+                    String message = String.format("Failed to retrieve file at path \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+                return Digester.verify(getLocationLabel(path),
+                                       digester.hex(),
+                                       JschSftp.checksum(conn, path, algorithm, execUnsupported));
+            });
+    }
+
+    @Override
+    public void download(String path, String localPath, ContentCoding coding) {
+        try (OutputStream stream = new FileChannelOutputStream(localPath)) {
+            download(path, stream, coding);
+        } catch (IOException e) {
+            String message = String.format("Failed to write local file \"%s\".", localPath);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
+
+    @Override
+    public OutputStream download(String path, OutputStream stream, ContentCoding coding) {
+        return read(path, is -> {
+                IO.pipe(coding.decode(is), stream);
+                return stream;
+            });
+    }
+
+    @Override
+    public void forEachZipEntry(String path, BiConsumer<ZipEntry, InputStream> consumer) {
+        read(path, is -> {
+                IO.forEachZipEntry(is, consumer);
+                return null;
+            });
+    }
+
     @Override
     public Map<String, Boolean> downloadAll(Map<String, OutputStream> targets) {
         throw new UnsupportedOperationException("Not yet implemented.");
@@ -348,61 +658,333 @@ public class SftpFileTransferClient implements FileTransferClient {
 
     @Override
     public String upload(InputStream is, String path) {
-        SftpConnector conn = connect();
+        return withConnector(conn -> {
+                try {
+                    conn.getChannel().put(is, path);
+                    log.info("File successfully transferred to host.");
+                    return path;
+                } catch (SftpException e) {
+                    String message = String.format("Failed to access path \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            });
+    }
 
-        try {
-            ChannelSftp chan = conn.getChannel();
-            chan.put(is, path);
-            log.info("File successfully transferred to host.");
-            return path;
-        } catch (SftpException e) {
-            String message = String.format("Failed to access path \"%s\".", path);
+    @Override
+    public long upload(String source, String dest, long offset) {
+        if (log.isDebugEnabled()) {
+            log.debug("Uploading local file {} from offset {} to {}:{}.", source, offset, hostLabel, dest);
+        }
+
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+
+        try (InputStream is = new MappedFileInputStream(source)) {
+            long count = Math.max(0, new File(source).length() - is.skip(offset));
+            int mode = offset == 0 ? ChannelSftp.OVERWRITE : ChannelSftp.APPEND;
+            return withConnector(conn -> {
+                    try {
+                        conn.getChannel().put(is, dest, mode);
+                        return count;
+                    } catch (SftpException e) {
+                        String message = String.format("Failed to access path \"%s\".", dest);
+                        log.warn(message);
+                        throw new FileTransferException(message, e);
+                    }
+                });
+        } catch (IOException e) {
+            String message = String.format("Failed to read local source file \"%s\".", source);
             log.warn(message);
             throw new FileTransferException(message, e);
-        } finally {
-            disconnect(conn);
         }
     }
 
     @Override
-    public void delete(String path) {
-        SftpConnector conn = connect();
-        ChannelSftp chan = conn.getChannel();
+    public String upload(String source, String dest, ChecksumAlgorithm algorithm) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+
+        try (InputStream is = new MappedFileInputStream(source)) {
+            return upload(is, dest, algorithm);
+        } catch (IOException e) {
+            String message = String.format("Failed to read local source file \"%s\".", source);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
 
+    @Override
+    public String upload(InputStream is, String path, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> {
+                Digester digester = Digester.of(algorithm);
+                try {
+                    conn.getChannel().put(new DigestingInputStream(is, digester), path);
+                }
+                catch (SftpException e) {
+                    String message = String.format("Failed to access path \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+                return Digester.verify(getLocationLabel(path),
+                                       digester.hex(),
+                                       JschSftp.checksum(conn, path, algorithm, execUnsupported));
+            });
+    }
+
+    @Override
+    public String upload(String source, String dest, ContentCoding coding) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+
+        try (InputStream is = new MappedFileInputStream(source)) {
+            return upload(is, dest, coding);
+        } catch (IOException e) {
+            String message = String.format("Failed to read local source file \"%s\".", source);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
+
+    @Override
+    public String upload(InputStream is, String path, ContentCoding coding) {
+        return write(path, os -> {
+                try (OutputStream encoded = coding.encode(os)) {
+                    IO.pipe(is, encoded);
+                } catch (IOException e) {
+                    throw new FileTransferException(e);
+                }
+            });
+    }
+
+    @Override
+    public String write(String path, Consumer<OutputStream> writer) {
+        return withConnector(conn -> JschSftp.write(conn, path, writer));
+    }
+
+    @Override
+    public AbortableOutputStream openOutputStream(String path) {
+        return openOutputStream(path, DEFAULT_WRITE_WINDOW);
+    }
+
+    /**
+     * Opens a stream to a file on the host that gathers writes into batches of up to writeWindow bytes. JSch sends
+     * each batch as a run of write requests without waiting for each to be acknowledged, so a larger window keeps
+     * more data in flight on high-latency links. The connection stays held until the stream is closed. Aborting the
+     * stream, or closing it after a write failed, deletes the partial file and disconnects.
+     *
+     * @param path        a path to write to on the host.
+     * @param writeWindow the number of bytes to gather before sending them.
+     * @return a stream to the file, which must be closed or aborted.
+     */
+    public AbortableOutputStream openOutputStream(String path, int writeWindow) {
+        SftpConnector active = scope.get();
+        SftpConnector conn = active == null ? connect() : active;
         try {
-            if (!fileExists(path)) {
-                throw remoteFileNotFound(path);
+            OutputStream os = new BufferedOutputStream(JschSftp.openOutputStream(conn, path), writeWindow);
+            conn.transferOpened();
+            return new TransferOutputStream(os, succeeded -> {
+                    if (succeeded) {
+                        conn.transferCompleted();
+                    } else {
+                        try {
+                            conn.getChannel().rm(path);
+                        } catch (SftpException | RuntimeException ex) {
+                            log.debug("Failed to delete partial file {}:{}.", hostLabel, path);
+                        }
+                    }
+                    if (active == null) {
+                        release(conn, succeeded);
+                    }
+                });
+        } catch (RuntimeException ex) {
+            if (active == null) {
+                release(conn, false);
+            }
+            throw deadlineExceeded(conn, ex);
+        }
+    }
+
+    /**
+     * Uploads a local file in 64 MiB segments written four at a time. See uploadSegmented(String, String, long, int).
+     *
+     * @param source a path of a file
+     * @param dest   a path to write to on the host
+     * @return the path written to
+     */
+    public String uploadSegmented(String source, String dest) {
+        return uploadSegmented(source, dest, DEFAULT_SEGMENT_SIZE, DEFAULT_SEGMENT_PARALLELISM);
+    }
+
+    /**
+     * Uploads a local file by writing disjoint segments of it at once over several connections, each read from a
+     * memory-mapped region of the file. One stream is limited by its window and the round trip, so several streams
+     * can upload a large file over a high-latency link many times faster. Once every segment is written, the size of
+     * the file on the host is checked against the local file.
+     * <p>
+     * JSch can only open a file for writing by truncating it, so every segment's handle is opened before any segment
+     * is written. Segments are made larger if the file would otherwise need more than 256 of them. The connections
+     * are opened for the upload, even within a session.
+     *
+     * @param source      a path of a file
+     * @param dest        a path to write to on the host
+     * @param segmentSize the number of bytes in each segment
+     * @param parallelism the number of connections to write segments over
+     * @return the path written to
+     */
+    public String uploadSegmented(String source, String dest, long segmentSize, int parallelism) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+
+        long size = new File(source).length();
+        long segment = Math.max(Math.max(1, segmentSize), (size + MAX_SEGMENTS - 1) / MAX_SEGMENTS);
+        int segments = (int) Math.max(1, (size + segment - 1) / segment);
+        int connections = Math.max(1, Math.min(parallelism, segments));
+        if (log.isDebugEnabled()) {
+            log.debug("Uploading local file {} to {}:{} in {} segments over {} connections.",
+                      source,
+                      hostLabel,
+                      dest,
+                      segments,
+                      connections);
+        }
+
+        List<SftpConnector> conns = new ArrayList<>();
+        OutputStream[] streams = new OutputStream[segments];
+        ExecutorService executor = Executors.newFixedThreadPool(connections, runnable -> {
+                Thread thread = new Thread(runnable, "frontier-sftp-segment");
+                thread.setDaemon(true);
+                return thread;
+            });
+        boolean succeeded = false;
+        try {
+            for (int i = 0; i < connections; i++) {
+                conns.add(connect());
+            }
+            for (int i = 0; i < segments; i++) {
+                streams[i] = JschSftp.openOutputStream(conns.get(i % connections), dest, i * segment);
             }
 
-            chan.rm(path);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                int first = i;
+                futures.add(executor.submit(() -> {
+                        for (int j = first; j < segments; j += connections) {
+                            try (InputStream is = new MappedFileInputStream(source, j * segment, segment);
+                                 OutputStream os = streams[j]) {
+                                IO.pipe(is, os);
+                            }
+                        }
+                        return null;
+                    }));
+            }
+
+            FileTransferException failure = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        String message = String.format("Failed to upload segments of %s to %s.",
+                                                       source,
+                                                       getLocationLabel(dest));
+                        failure = new FileTransferException(message, ex.getCause());
+                    } else {
+                        failure.addSuppressed(ex.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                log.warn(failure.getMessage());
+                throw failure;
+            }
+
+            long written = conns.get(0).getChannel().stat(dest).getSize();
+            if (written != size) {
+                String message = String.format("Uploaded %d bytes to %s, but the local file %s has %d.",
+                                               written,
+                                               getLocationLabel(dest),
+                                               source,
+                                               size);
+                log.warn(message);
+                throw new FileTransferException(message);
+            }
+            succeeded = true;
+            return dest;
         } catch (SftpException e) {
-            String message = String.format("Failed to retrieve file at path \"%s\".", path);
+            String message = String.format("Failed to access path \"%s\".", dest);
             log.warn(message);
             throw new FileTransferException(message, e);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new FileTransferException(ex);
         } finally {
-            disconnect(conn);
+            // Disconnecting after a failure discards any handles left open.
+            executor.shutdownNow();
+            for (SftpConnector conn : conns) {
+                release(conn, succeeded);
+            }
         }
     }
 
-    private SftpConnector connect() {
-        try {
-            JSch.setLogger(new SimpleJschLogger());
-            JSch jsch = new JSch();
-
-            if (privateKeyPath != null) {
-                log.trace("Using public key authentication.");
-                log.trace("Private key path: " + privateKeyPath);
-                log.trace("Public key path: " + publicKeyPath);
-                if (isNull(passphrase)) {
-                    log.trace("No passphrase given.");
-                    jsch.addIdentity(privateKeyPath, publicKeyPath);
-                } else {
-                    log.trace("Using given passphrase.");
-                    jsch.addIdentity(privateKeyPath, publicKeyPath, passphrase);
+    @Override
+    public Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+        return withConnector(conn -> JschSftp.checksum(conn, path, algorithm, execUnsupported));
+    }
+
+    @Override
+    public void delete(String path) {
+        useConnector(conn -> {
+                try {
+                    if (!JschSftp.fileExists(conn, path)) {
+                        throw remoteFileNotFound(path);
+                    }
+
+                    conn.getChannel().rm(path);
+                } catch (SftpException e) {
+                    String message = String.format("Failed to retrieve file at path \"%s\".", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
                 }
+            });
+    }
+
+    /**
+     * Closes the idle connections kept for reuse.
+     */
+    public void closeIdle() {
+        pool.clear();
+    }
+
+    private SftpConnector connect() {
+        SftpConnector idle = pool.borrow();
+        if (idle != null) {
+            Deadline deadline = Deadline.after(operationTimeout);
+            if (deadline == null) {
+                return idle;
             }
+            deadline.watch(idle.getSession()::disconnect);
+            return new SftpConnector(idle.getSession(), idle.getChannel(), host, port, idle.getPermit(), deadline);
+        }
+
+        Deadline deadline = Deadline.after(operationTimeout);
+        HostLimiter.Permit permit = HostLimiter.acquire(host, port);
+        Session session = null;
+        try {
+            JSch jsch = jsch();
 
-            Session session = jsch.getSession(this.username, this.host, this.port);
+            session = jsch.getSession(this.username, this.host, this.port);
+            if (deadline != null) {
+                deadline.watch(session::disconnect);
+            }
 
             session.setServerAliveCountMax(serverKeepAliveCountMax);
             session.setServerAliveInterval(serverKeepAliveInterval);
@@ -412,25 +994,31 @@ public class SftpFileTransferClient implements FileTransferClient {
                 session.setPassword(this.password);
             }
 
-            Properties config = new Properties();
-            if(!strictHostChecking) {
-                log.warn("Strict host key checking is set to \"false\".");
-                config.put("StrictHostKeyChecking", "no");
-            }
-
-            if (this.knownHostsPath != null) {
-                log.trace("Known hosts path: " + knownHostsPath);
-                jsch.setKnownHosts(knownHostsPath);
-            } else {
-                log.warn("No known hosts file path provided.");
-            }
-
-            session.setConfig(config);
-            session.connect(connectTimeout);
+            session.setConfig(sessionConfig);
+            session.connect(deadline == null ? connectTimeout : Math.min(connectTimeout, deadline.remainingMillis()));
             ChannelSftp channelSftp = (ChannelSftp) session.openChannel("sftp");
-            channelSftp.connect();
-            return new SftpConnector(session, channelSftp, host, port);
+            channelSftp.connect(deadline == null ? 0 : deadline.remainingMillis());
+            permit.connected();
+            return new SftpConnector(session, channelSftp, host, port, permit, deadline);
         } catch (JSchException e) {
+            if (isCapacitySignal(e)) {
+                permit.refused();
+            } else {
+                permit.release();
+            }
+            if (deadline != null) {
+                deadline.cancel();
+                if (session != null) {
+                    session.disconnect();
+                }
+                if (deadline.isAborted() || deadline.isExpired()) {
+                    String message = String.format("Connecting to %s exceeded the deadline of %d ms.",
+                                                   getHostLabel(),
+                                                   operationTimeout);
+                    log.warn(message);
+                    throw new FileTransferException(message, e);
+                }
+            }
             String message = "Jsch failed to set up connection.";
             log.warn(message);
             e.printStackTrace();
@@ -438,22 +1026,119 @@ public class SftpFileTransferClient implements FileTransferClient {
         }
     }
 
+    /**
+     * JSch reports capacity problems only in its messages: a refused TCP connection, a host dropping the connection
+     * during key exchange as OpenSSH does past MaxStartups, or a refused channel once a host's session limit is
+     * reached. Failed authentication and the like say nothing about the host's capacity.
+     */
+    private static boolean isCapacitySignal(JSchException ex) {
+        if (ex.getCause() instanceof ConnectException) {
+            return true;
+        }
+        String message = ex.getMessage();
+        return message != null && (message.contains("Connection refused")
+                || message.contains("connection is closed by foreign host")
+                || message.contains("channel is not opened"));
+    }
+
+    /**
+     * Returns the JSch instance shared by this client's connections, building it on first use and again whenever the
+     * private key or known hosts file changes on disk, so keys are parsed and decrypted once rather than per
+     * connection.
+     */
+    private synchronized JSch jsch() throws JSchException {
+        long keyModified = lastModified(privateKeyPath);
+        long knownHostsModified = lastModified(knownHostsPath);
+        if (jsch != null
+                && keyModified == this.keyModified
+                && knownHostsModified == this.knownHostsModified) {
+            return jsch;
+        }
+
+        JSch jsch = new JSch();
+
+        if (privateKeyPath != null) {
+            log.trace("Using public key authentication.");
+            log.trace("Private key path: {}", privateKeyPath);
+            log.trace("Public key path: {}", publicKeyPath);
+            if (isNull(passphrase)) {
+                log.trace("No passphrase given.");
+                jsch.addIdentity(privateKeyPath, publicKeyPath);
+            } else {
+                log.trace("Using given passphrase.");
+                jsch.addIdentity(privateKeyPath, publicKeyPath, passphrase);
+            }
+        }
+
+        if (this.knownHostsPath != null) {
+            log.trace("Known hosts path: {}", knownHostsPath);
+            jsch.setKnownHosts(knownHostsPath);
+        } else {
+            log.warn("No known hosts file path provided.");
+        }
+
+        if (!strictHostChecking) {
+            log.warn("Strict host key checking is set to \"false\".");
+        }
+
+        this.jsch = jsch;
+        this.keyModified = keyModified;
+        this.knownHostsModified = knownHostsModified;
+        return jsch;
+    }
+
+    private static long lastModified(String path) {
+        return path == null ? 0 : new File(path).lastModified();
+    }
+
+    private void release(SftpConnector conn, boolean reusable) {
+        if (conn == null) {
+            return;
+        }
+        Deadline deadline = conn.getDeadline();
+        if (deadline != null) {
+            deadline.cancel();
+        }
+        boolean aborted = deadline != null && deadline.isAborted();
+        if (reusable && !aborted && conn.getSession().isConnected() && pool.offer(conn)) {
+            log.debug("Keeping connection to {} for reuse.", hostLabel);
+            return;
+        }
+        disconnect(conn);
+    }
+
     private void disconnect(SftpConnector conn) {
         if (conn != null) {
-            conn.getChannel().disconnect();
-            conn.getSession().disconnect();
+            try {
+                if (conn.getDeadline() != null) {
+                    conn.getDeadline().cancel();
+                }
+                conn.getChannel().disconnect();
+                conn.getSession().disconnect();
+            } finally {
+                conn.getPermit().release();
+            }
         }
     }
 
+    private RuntimeException deadlineExceeded(SftpConnector conn, RuntimeException ex) {
+        Deadline deadline = conn == null ? null : conn.getDeadline();
+        if (deadline == null || !deadline.isAborted()) {
+            return ex;
+        }
+        String message = String.format("Operation on %s exceeded its deadline of %d ms.",
+                                       getHostLabel(),
+                                       deadline.getTimeoutMillis());
+        log.warn(message);
+        return new FileTransferException(message, ex);
+    }
+
     private String getLocationLabel(String path) {
-        return String.format("%s:%s", getHostLabel(), path);
+        return hostLabel + ":" + path;
     }
 
     private String getHostLabel() {
-        if (port == 21) {
-            return host;
-        }
-        return String.format("%s:%d", host, port);
+        return hostLabel;
     }
 
     private MissingRemoteFileException remoteFileNotFound(String path) {
@@ -462,22 +1147,40 @@ public class SftpFileTransferClient implements FileTransferClient {
     }
 
     private <T> T withConnector(Function<SftpConnector, T> function) {
+        SftpConnector active = scope.get();
+        if (active != null) {
+            return function.apply(active);
+        }
         SftpConnector conn = null;
+        boolean reusable = false;
         try {
             conn = connect();
-            return function.apply(conn);
+            T result = function.apply(conn);
+            reusable = true;
+            return result;
+        } catch (RuntimeException ex) {
+            throw deadlineExceeded(conn, ex);
         } finally {
-            disconnect(conn);
+            release(conn, reusable);
         }
     }
 
     private void useConnector(Consumer<SftpConnector> consumer) {
+        SftpConnector active = scope.get();
+        if (active != null) {
+            consumer.accept(active);
+            return;
+        }
         SftpConnector conn = null;
+        boolean reusable = false;
         try {
             conn = connect();
             consumer.accept(conn);
+            reusable = true;
+        } catch (RuntimeException ex) {
+            throw deadlineExceeded(conn, ex);
         } finally {
-            disconnect(conn);
+            release(conn, reusable);
         }
     }
 }
@@ -0,0 +1,711 @@
+package fun.mike.frontier.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+import fun.mike.frontier.impl.alpha.RetryingWorkers;
+import fun.mike.frontier.impl.alpha.SpoolJournal;
+import fun.mike.frontier.impl.alpha.TransferOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A FileTransferClient that writes uploads behind. Plain uploads, writes and output streams are spooled to a local
+ * directory and acknowledged as soon as their content is safely on local disk; background workers then send them to
+ * the host through the wrapped client, a bounded number at a time, retrying failures with backoff.
+ * <p>
+ * Spooled uploads are recorded in a crash-safe journal in the spool directory, so uploads pending when the process
+ * stops are sent after a new client is created over the same directory. Uploads to the same path are sent in order,
+ * and an upload that has been replaced by a newer one for the same path before it was sent is skipped. An upload
+ * that still fails after the maximum number of attempts is set aside as failed with its content kept in the spool,
+ * across restarts, until the caller retries or discards it; see getFailed.
+ * <p>
+ * Reads, resumed uploads, and uploads that return a checksum or apply a content coding go straight to the wrapped
+ * client. A read may not see a spooled upload until it has been sent; call awaitDrained first when that matters.
+ */
+public class SpooledFileTransferClient implements FileTransferClient, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SpooledFileTransferClient.class);
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    private final FileTransferClient client;
+    private final SpoolJournal journal;
+    private final RetryingWorkers<SpoolJournal.Entry> workers;
+    private final Object lock = new Object();
+    private final Map<Long, SpoolJournal.Entry> pending = new LinkedHashMap<>();
+    private final Map<Long, SpoolJournal.Entry> failed = new LinkedHashMap<>();
+    private final Map<String, Long> latest = new HashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private long spooledBytes = 0;
+
+    /**
+     * Wraps a client, sending up to four spooled uploads at a time.
+     *
+     * @param client   the client to send uploads with
+     * @param spoolDir the directory to spool uploads to
+     */
+    public SpooledFileTransferClient(FileTransferClient client, String spoolDir) {
+        this(client, spoolDir, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Wraps a client, sending each spooled upload up to ten times.
+     *
+     * @param client      the client to send uploads with
+     * @param spoolDir    the directory to spool uploads to
+     * @param parallelism the most uploads to send at a time
+     */
+    public SpooledFileTransferClient(FileTransferClient client, String spoolDir, int parallelism) {
+        this(client, spoolDir, parallelism, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    /**
+     * Wraps a client, resuming any uploads pending in the spool directory.
+     *
+     * @param client      the client to send uploads with
+     * @param spoolDir    the directory to spool uploads to
+     * @param parallelism the most uploads to send at a time
+     * @param maxAttempts the most times to try sending an upload before setting it aside as failed
+     */
+    public SpooledFileTransferClient(FileTransferClient client, String spoolDir, int parallelism, int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Max attempts must be at least 1.");
+        }
+        this.client = client;
+        try {
+            this.journal = new SpoolJournal(Paths.get(spoolDir));
+        } catch (IOException ex) {
+            String message = String.format("Failed to open spool directory %s.", spoolDir);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+        this.workers = new RetryingWorkers<>("frontier-spool",
+                                             parallelism,
+                                             maxAttempts,
+                                             Comparator.comparingLong(SpoolJournal.Entry::getId),
+                                             new Sender());
+        List<SpoolJournal.Entry> recovered = journal.pending();
+        if (!recovered.isEmpty()) {
+            log.info("Resuming {} spooled uploads from {}.", recovered.size(), spoolDir);
+        }
+        recovered.forEach(this::enqueue);
+        List<SpoolJournal.Entry> recoveredFailed = journal.failed();
+        if (!recoveredFailed.isEmpty()) {
+            log.warn("{} spooled uploads in {} failed and await retry or discard.", recoveredFailed.size(), spoolDir);
+        }
+        synchronized (lock) {
+            for (SpoolJournal.Entry entry : recoveredFailed) {
+                failed.put(entry.getId(), entry);
+                spooledBytes += entry.getSize();
+            }
+        }
+    }
+
+    /**
+     * @return the number of spooled uploads not yet sent.
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return the milliseconds since the oldest unsent upload was spooled, or 0 if there is none.
+     */
+    public long getOldestAgeMillis() {
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            return System.currentTimeMillis() - pending.values().iterator().next().getTime();
+        }
+    }
+
+    /**
+     * @return the number of bytes spooled and not yet sent, including those of failed uploads.
+     */
+    public long getSpooledBytes() {
+        synchronized (lock) {
+            return spooledBytes;
+        }
+    }
+
+    /**
+     * @return the number of uploads that failed every attempt and await retryFailed or discardFailed.
+     */
+    public int getFailedCount() {
+        synchronized (lock) {
+            return failed.size();
+        }
+    }
+
+    /**
+     * @return the uploads that failed every attempt, oldest first.
+     */
+    public List<FailedUpload> getFailed() {
+        synchronized (lock) {
+            List<FailedUpload> uploads = new ArrayList<>();
+            for (SpoolJournal.Entry entry : failed.values()) {
+                uploads.add(new FailedUpload(entry));
+            }
+            return uploads;
+        }
+    }
+
+    /**
+     * Queues a failed upload to be sent again, with a fresh set of attempts. If a newer upload to the same path is
+     * still pending, the failed one is skipped as superseded.
+     *
+     * @param id the id of a failed upload
+     * @return true if the upload was queued; false if no failed upload has the id
+     */
+    public boolean retryFailed(long id) {
+        SpoolJournal.Entry entry;
+        synchronized (lock) {
+            if (!failed.containsKey(id)) {
+                return false;
+            }
+            try {
+                entry = journal.retry(id);
+            } catch (IOException ex) {
+                String message = String.format("Failed to record retry of spooled upload %d.", id);
+                log.warn(message);
+                throw new FileTransferException(message, ex);
+            }
+            failed.remove(id);
+            pending.put(id, entry);
+            latest.merge(entry.getPath(), id, Math::max);
+        }
+        workers.submit(entry);
+        return true;
+    }
+
+    /**
+     * Discards a failed upload and deletes its content from the spool.
+     *
+     * @param id the id of a failed upload
+     * @return true if the upload was discarded; false if no failed upload has the id
+     */
+    public boolean discardFailed(long id) {
+        synchronized (lock) {
+            SpoolJournal.Entry entry = failed.get(id);
+            if (entry == null) {
+                return false;
+            }
+            finish(entry);
+            return true;
+        }
+    }
+
+    /**
+     * Waits for every spooled upload to be sent or set aside as failed.
+     *
+     * @param timeoutMillis the most milliseconds to wait
+     * @return true if no upload is pending; false if the timeout passed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitDrained(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (!pending.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops the workers. Uploads still pending stay in the spool directory and are sent by the next client created
+     * over it. The wrapped client is not closed.
+     */
+    @Override
+    public void close() {
+        workers.close();
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            log.warn("Failed to close spool journal.", ex);
+        }
+    }
+
+    @Override
+    public <T> T session(Function<FileTransferClient, T> operations) {
+        return client.session(session -> operations.apply(this));
+    }
+
+    @Override
+    public Optional<InputStream> optionalStream(String path) {
+        return client.optionalStream(path);
+    }
+
+    @Override
+    public InputStream stream(String path) {
+        return client.stream(path);
+    }
+
+    @Override
+    public <T> T read(String path, Function<InputStream, T> reader) {
+        return client.read(path, reader);
+    }
+
+    @Override
+    public byte[] read(String path, long offset, int length) {
+        return client.read(path, offset, length);
+    }
+
+    @Override
+    public <T> T read(String path, long offset, long length, Function<InputStream, T> reader) {
+        return client.read(path, offset, length, reader);
+    }
+
+    @Override
+    public List<byte[]> read(String path, List<ByteRange> ranges) {
+        return client.read(path, ranges);
+    }
+
+    @Override
+    public Boolean dirExists(String path) {
+        return client.dirExists(path);
+    }
+
+    @Override
+    public Boolean fileExists(String path) {
+        return client.fileExists(path);
+    }
+
+    @Override
+    public Optional<String> optionalSlurp(String path) {
+        return client.optionalSlurp(path);
+    }
+
+    @Override
+    public String slurp(String path) {
+        return client.slurp(path);
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset) {
+        return client.streamLines(path, charset);
+    }
+
+    @Override
+    public Stream<String> streamLines(String path, Charset charset, String delimiter, boolean skipHeader) {
+        return client.streamLines(path, charset, delimiter, skipHeader);
+    }
+
+    @Override
+    public List<FileInfo> list(String path) {
+        return client.list(path);
+    }
+
+    @Override
+    public List<FileInfo> list(String path, ListQuery query) {
+        return client.list(path, query);
+    }
+
+    @Override
+    public FileListing listCompact(String path) {
+        return client.listCompact(path);
+    }
+
+    @Override
+    public Optional<FileInfo> stat(String path) {
+        return client.stat(path);
+    }
+
+    @Override
+    public Boolean optionalDownload(String path, String localPath) {
+        return client.optionalDownload(path, localPath);
+    }
+
+    @Override
+    public Optional<OutputStream> optionalDownload(String path, OutputStream stream) {
+        return client.optionalDownload(path, stream);
+    }
+
+    @Override
+    public void download(String path, String localPath) {
+        client.download(path, localPath);
+    }
+
+    @Override
+    public OutputStream download(String path, OutputStream stream) {
+        return client.download(path, stream);
+    }
+
+    @Override
+    public long download(String path, long offset, OutputStream stream) {
+        return client.download(path, offset, stream);
+    }
+
+    @Override
+    public String download(String path, String localPath, ChecksumAlgorithm algorithm) {
+        return client.download(path, localPath, algorithm);
+    }
+
+    @Override
+    public String download(String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        return client.download(path, stream, algorithm);
+    }
+
+    @Override
+    public void download(String path, String localPath, ContentCoding coding) {
+        client.download(path, localPath, coding);
+    }
+
+    @Override
+    public OutputStream download(String path, OutputStream stream, ContentCoding coding) {
+        return client.download(path, stream, coding);
+    }
+
+    @Override
+    public void forEachZipEntry(String path, BiConsumer<ZipEntry, InputStream> consumer) {
+        client.forEachZipEntry(path, consumer);
+    }
+
+    @Override
+    public Map<String, Boolean> downloadAll(Map<String, OutputStream> targets) {
+        return client.downloadAll(targets);
+    }
+
+    /**
+     * Copies a local file to the spool and returns once the copy is on disk.
+     */
+    @Override
+    public String upload(String source, String dest) {
+        return spool(dest, temp -> {
+                try {
+                    Files.copy(Paths.get(source), temp, StandardCopyOption.REPLACE_EXISTING);
+                } catch (NoSuchFileException ex) {
+                    String message = String.format("Local source file %s does not exist.", source);
+                    log.warn(message);
+                    throw new MissingLocalFileException(message);
+                }
+            });
+    }
+
+    /**
+     * Copies the stream to the spool and returns once the copy is on disk.
+     */
+    @Override
+    public String upload(InputStream is, String path) {
+        return spool(path, temp -> Files.copy(is, temp, StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    @Override
+    public long upload(String source, String dest, long offset) {
+        return client.upload(source, dest, offset);
+    }
+
+    @Override
+    public String upload(String source, String dest, ChecksumAlgorithm algorithm) {
+        return client.upload(source, dest, algorithm);
+    }
+
+    @Override
+    public String upload(InputStream is, String path, ChecksumAlgorithm algorithm) {
+        return client.upload(is, path, algorithm);
+    }
+
+    @Override
+    public String upload(String source, String dest, ContentCoding coding) {
+        return client.upload(source, dest, coding);
+    }
+
+    @Override
+    public String upload(InputStream is, String path, ContentCoding coding) {
+        return client.upload(is, path, coding);
+    }
+
+    /**
+     * Runs the writer against a spool file and returns once its content is on disk.
+     */
+    @Override
+    public String write(String path, Consumer<OutputStream> writer) {
+        return spool(path, temp -> {
+                try (OutputStream os = Files.newOutputStream(temp)) {
+                    writer.accept(os);
+                }
+            });
+    }
+
+    /**
+     * Opens a stream to a spool file. Closing the stream commits the content to the spool; aborting it deletes the
+     * spool file.
+     */
+    @Override
+    public AbortableOutputStream openOutputStream(String path) {
+        Path temp = createTempFile();
+        try {
+            FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            return new TransferOutputStream(Channels.newOutputStream(channel), succeeded -> {
+                    if (succeeded) {
+                        commit(temp, path);
+                    } else {
+                        deleteQuietly(temp);
+                    }
+                });
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            throw spoolFailure(path, ex);
+        }
+    }
+
+    @Override
+    public Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+        return client.checksum(path, algorithm);
+    }
+
+    /**
+     * Drops any spooled uploads to the path that have not been sent, including failed ones, waits for one being sent
+     * to finish, then deletes the file from the host.
+     */
+    @Override
+    public void delete(String path) {
+        synchronized (lock) {
+            latest.remove(path);
+            List<SpoolJournal.Entry> dropped = new ArrayList<>();
+            for (SpoolJournal.Entry entry : pending.values()) {
+                if (entry.getPath().equals(path)) {
+                    dropped.add(entry);
+                }
+            }
+            for (SpoolJournal.Entry entry : failed.values()) {
+                if (entry.getPath().equals(path)) {
+                    dropped.add(entry);
+                }
+            }
+            while (inFlight.contains(path)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    String message = String.format("Interrupted waiting to delete %s.", path);
+                    log.warn(message);
+                    throw new FileTransferException(message, ex);
+                }
+            }
+            // The upload that was in flight has finished by now, so none of the dropped content is being read.
+            dropped.forEach(this::finish);
+        }
+        client.delete(path);
+    }
+
+    private interface SpoolWriter {
+        void write(Path temp) throws IOException;
+    }
+
+    private String spool(String path, SpoolWriter writer) {
+        Path temp = createTempFile();
+        try {
+            writer.write(temp);
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            throw spoolFailure(path, ex);
+        } catch (RuntimeException ex) {
+            deleteQuietly(temp);
+            throw ex;
+        }
+        commit(temp, path);
+        return path;
+    }
+
+    private Path createTempFile() {
+        try {
+            return journal.createTempFile();
+        } catch (IOException ex) {
+            String message = "Failed to create spool file.";
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    private void commit(Path temp, String path) {
+        SpoolJournal.Entry entry;
+        try {
+            entry = journal.commit(temp, path);
+        } catch (IOException ex) {
+            deleteQuietly(temp);
+            throw spoolFailure(path, ex);
+        }
+        log.debug("Spooled {} bytes for {}.", entry.getSize(), path);
+        enqueue(entry);
+    }
+
+    private void enqueue(SpoolJournal.Entry entry) {
+        synchronized (lock) {
+            pending.put(entry.getId(), entry);
+            latest.put(entry.getPath(), entry.getId());
+            spooledBytes += entry.getSize();
+        }
+        workers.submit(entry);
+    }
+
+    /**
+     * Removes a sent, superseded or discarded upload from the spool. Must be called holding the lock.
+     */
+    private void finish(SpoolJournal.Entry entry) {
+        try {
+            journal.complete(entry.getId());
+        } catch (IOException ex) {
+            // The upload stays in the journal and is sent again after a restart, which is harmless.
+            log.warn(String.format("Failed to record upload to %s as sent.", entry.getPath()), ex);
+        }
+        if (pending.remove(entry.getId()) != null || failed.remove(entry.getId()) != null) {
+            spooledBytes -= entry.getSize();
+        }
+        lock.notifyAll();
+    }
+
+    private FileTransferException spoolFailure(String path, IOException ex) {
+        String message = String.format("Failed to spool upload to %s.", path);
+        log.warn(message);
+        return new FileTransferException(message, ex);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            // Leftover spool files are deleted when the spool is next opened.
+        }
+    }
+
+    /**
+     * Sends spooled uploads, skipping those superseded and deferring those to a path already being sent to.
+     */
+    private class Sender implements RetryingWorkers.Handler<SpoolJournal.Entry> {
+        @Override
+        public boolean run(SpoolJournal.Entry entry) {
+            String path = entry.getPath();
+            synchronized (lock) {
+                if (!Long.valueOf(entry.getId()).equals(latest.get(path))) {
+                    log.debug("Skipping superseded upload to {}.", path);
+                    finish(entry);
+                    return true;
+                }
+                if (inFlight.contains(path)) {
+                    return false;
+                }
+                inFlight.add(path);
+            }
+
+            try {
+                client.upload(journal.dataFile(entry.getId()).toString(), path);
+                synchronized (lock) {
+                    latest.remove(path, entry.getId());
+                    finish(entry);
+                }
+                return true;
+            } finally {
+                synchronized (lock) {
+                    inFlight.remove(path);
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public boolean retryable(Exception ex) {
+            return true;
+        }
+
+        @Override
+        public void retrying(SpoolJournal.Entry entry, long backoffMillis, Exception ex) {
+            String message = String.format("Failed to upload spooled file to %s; retrying in %d ms.",
+                                           entry.getPath(),
+                                           backoffMillis);
+            log.warn(message, ex);
+        }
+
+        @Override
+        public void failed(SpoolJournal.Entry entry, int attempts, Exception ex) {
+            String message = String.format("Setting aside spooled upload %d to %s after %d attempts.",
+                                           entry.getId(),
+                                           entry.getPath(),
+                                           attempts);
+            log.warn(message, ex);
+            synchronized (lock) {
+                latest.remove(entry.getPath(), entry.getId());
+                try {
+                    journal.fail(entry.getId());
+                } catch (IOException journalEx) {
+                    // The upload stays pending in the journal and is sent again after a restart.
+                    log.warn(String.format("Failed to record upload to %s as failed.", entry.getPath()), journalEx);
+                }
+                if (pending.remove(entry.getId()) != null) {
+                    failed.put(entry.getId(), entry);
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * A spooled upload that failed every attempt. Its content stays in the spool until it is retried or discarded.
+     */
+    public static class FailedUpload {
+        private final long id;
+        private final String path;
+        private final long time;
+        private final long size;
+
+        private FailedUpload(SpoolJournal.Entry entry) {
+            this.id = entry.getId();
+            this.path = entry.getPath();
+            this.time = entry.getTime();
+            this.size = entry.getSize();
+        }
+
+        /**
+         * @return the id to pass to retryFailed or discardFailed.
+         */
+        public long getId() {
+            return id;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return when the upload was spooled, in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package fun.mike.frontier.alpha;
+
+/**
+ * The priority class of a job in a TransferQueue. A job is started only once no job of a higher class is waiting.
+ */
+public enum TransferPriority {
+    /**
+     * Files with a deadline, such as small files covered by an SLA.
+     */
+    URGENT,
+    NORMAL,
+    /**
+     * Files that can wait, such as bulk archives.
+     */
+    BULK
+}
@@ -0,0 +1,360 @@
+package fun.mike.frontier.alpha;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import fun.mike.frontier.impl.alpha.CheckpointOutputStream;
+import fun.mike.frontier.impl.alpha.Digester;
+import fun.mike.frontier.impl.alpha.MappedFileInputStream;
+import fun.mike.frontier.impl.alpha.RetryingWorkers;
+import fun.mike.frontier.impl.alpha.TransferJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs file transfers submitted as jobs, a bounded number at a time, with jobs of a higher TransferPriority started
+ * before any of a lower one. Give the client idle connections to keep so that jobs reuse connections rather than each
+ * opening its own.
+ * <p>
+ * Jobs are recorded in an append-only journal before they are accepted, so jobs unfinished when the process stops
+ * are run by the next queue opened over the same journal. A download records the size and modification time of the
+ * file on the host when it starts, and its offset each time a checkpoint's worth of bytes has been forced to the local
+ * file. It resumes from the last recorded offset only if the file on the host still has the same size and time, and
+ * otherwise starts again from the beginning. The host
+ * only acknowledges an upload when it ends, so an interrupted upload resumes from the size of the partial file on the
+ * host, and only if that is at least the offset the last attempt started from and the host reports a checksum of the
+ * partial file matching the same bytes of the local file. Otherwise the upload starts again from the beginning.
+ * <p>
+ * Failed jobs are retried with backoff. A job whose source is missing fails at once, and any other job fails after
+ * five attempts. The statuses of the most recent finished jobs are kept for status to report.
+ */
+public class TransferQueue implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TransferQueue.class);
+    private static final String DOWNLOAD = "download";
+    private static final String UPLOAD = "upload";
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final long DEFAULT_CHECKPOINT_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final int FINISHED_STATUSES = 1024;
+
+    /**
+     * The state of a job.
+     */
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    private final FileTransferClient client;
+    private final TransferJournal journal;
+    private final long checkpointBytes;
+    private final Map<Long, Status> statuses = new ConcurrentHashMap<>();
+    private final Map<Long, Status> finished = Collections.synchronizedMap(new LinkedHashMap<Long, Status>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Status> eldest) {
+                return size() > FINISHED_STATUSES;
+            }
+        });
+    private final RetryingWorkers<Job> workers;
+    private volatile boolean closed = false;
+
+    /**
+     * Opens a queue running up to four jobs at a time.
+     *
+     * @param client      the client to transfer files with
+     * @param journalPath the path of the journal file
+     */
+    public TransferQueue(FileTransferClient client, String journalPath) {
+        this(client, journalPath, DEFAULT_PARALLELISM, DEFAULT_CHECKPOINT_BYTES);
+    }
+
+    /**
+     * Opens a queue, resuming any jobs unfinished in the journal.
+     *
+     * @param client          the client to transfer files with
+     * @param journalPath     the path of the journal file
+     * @param parallelism     the most jobs to run at a time
+     * @param checkpointBytes the number of bytes a download transfers between recording its offset
+     */
+    public TransferQueue(FileTransferClient client, String journalPath, int parallelism, long checkpointBytes) {
+        this.client = client;
+        this.checkpointBytes = checkpointBytes;
+        try {
+            this.journal = new TransferJournal(Paths.get(journalPath));
+        } catch (IOException ex) {
+            String message = String.format("Failed to open transfer journal %s.", journalPath);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+        this.workers = new RetryingWorkers<>("frontier-transfer",
+                                             parallelism,
+                                             MAX_ATTEMPTS,
+                                             Comparator.comparing((Job job) -> job.priority)
+                                                     .thenComparingLong(job -> job.id),
+                                             new Runner());
+        List<TransferJournal.Entry> recovered = journal.pending();
+        if (!recovered.isEmpty()) {
+            log.info("Resuming {} transfer jobs from {}.", recovered.size(), journalPath);
+        }
+        for (TransferJournal.Entry entry : recovered) {
+            enqueue(new Job(entry));
+        }
+    }
+
+    /**
+     * Submits a job to download a file from the host.
+     *
+     * @param path      a path to a file on the host
+     * @param localPath a local path to write to
+     * @param priority  the priority of the job
+     * @return the id of the job
+     */
+    public long download(String path, String localPath, TransferPriority priority) {
+        return submit(DOWNLOAD, priority, path, localPath);
+    }
+
+    /**
+     * Submits a job to upload a local file to the host.
+     *
+     * @param source   a path of a local file
+     * @param dest     a path to write to on the host
+     * @param priority the priority of the job
+     * @return the id of the job
+     */
+    public long upload(String source, String dest, TransferPriority priority) {
+        return submit(UPLOAD, priority, source, dest);
+    }
+
+    /**
+     * @param id the id of a job
+     * @return the state of the job, if it was submitted to or resumed by this queue and is unfinished or among the
+     * most recent finished jobs.
+     */
+    public Optional<Status> status(long id) {
+        Status status = statuses.get(id);
+        return Optional.ofNullable(status == null ? finished.get(id) : status);
+    }
+
+    /**
+     * @return the number of jobs waiting or running.
+     */
+    public int getPendingCount() {
+        return workers.size();
+    }
+
+    /**
+     * Waits for every job to finish or fail.
+     *
+     * @param timeoutMillis the most milliseconds to wait
+     * @return true if no job is waiting or running; false if the timeout passed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        return workers.awaitIdle(timeoutMillis);
+    }
+
+    /**
+     * Stops the workers. Unfinished jobs stay in the journal and are resumed by the next queue opened over it. The
+     * client is not closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.close();
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            log.warn("Failed to close transfer journal.", ex);
+        }
+    }
+
+    private long submit(String kind, TransferPriority priority, String source, String dest) {
+        if (closed) {
+            throw new FileTransferException("Transfer queue is closed.");
+        }
+        TransferJournal.Entry entry;
+        try {
+            entry = journal.submit(kind, priority.name(), source, dest);
+        } catch (IOException ex) {
+            String message = String.format("Failed to record %s of %s.", kind, source);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+        enqueue(new Job(entry));
+        return entry.getId();
+    }
+
+    private void enqueue(Job job) {
+        statuses.put(job.id, Status.PENDING);
+        workers.submit(job);
+    }
+
+    private void finish(Job job, Status status) {
+        finished.put(job.id, status);
+        statuses.remove(job.id);
+    }
+
+    private void download(Job job) throws IOException {
+        FileInfo remote = client.stat(job.source)
+                .orElseThrow(() -> new MissingRemoteFileException(String.format("File %s not found.", job.source)));
+        long size = remote.getSize() == null ? -1 : remote.getSize();
+        long time = remote.getTime() == null ? -1 : remote.getTime().getTime();
+        if (size < 0 || time < 0 || size != job.sourceSize || time != job.sourceTime) {
+            if (job.offset > 0) {
+                log.debug("Restarting download of {}, as the file on the host has changed.", job.source);
+            }
+            journal.version(job.id, size, time);
+            job.sourceSize = size;
+            job.sourceTime = time;
+            job.offset = 0;
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(job.dest),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE)) {
+            // Bytes past the recorded offset may not have reached the disk before a crash.
+            long offset = Math.max(0, Math.min(job.offset, channel.size()));
+            channel.truncate(offset);
+            channel.position(offset);
+            if (offset > 0) {
+                log.debug("Resuming download of {} from offset {}.", job.source, offset);
+            }
+            OutputStream stream = new CheckpointOutputStream(Channels.newOutputStream(channel),
+                                                             checkpointBytes,
+                                                             count -> {
+                                                                 channel.force(false);
+                                                                 job.offset = offset + count;
+                                                                 journal.progress(job.id, job.offset);
+                                                             });
+            client.download(job.source, offset, stream);
+            channel.force(false);
+        }
+    }
+
+    private void upload(Job job) throws IOException {
+        long offset = job.offset >= 0 ? verifiedOffset(job) : 0;
+        if (offset > 0) {
+            log.debug("Resuming upload of {} from offset {}.", job.source, offset);
+        }
+        journal.progress(job.id, offset);
+        job.offset = offset;
+        client.upload(job.source, job.dest, offset);
+    }
+
+    /**
+     * @return the size of the partial file on the host if it holds the first bytes of the source, or 0.
+     */
+    private long verifiedOffset(Job job) throws IOException {
+        long length = new File(job.source).length();
+        long size = client.stat(job.dest).map(FileInfo::getSize).orElse(0L);
+        if (size == 0 || size < job.offset || size > length) {
+            return 0;
+        }
+        Optional<String> remote = client.checksum(job.dest, ChecksumAlgorithm.MD5);
+        if (!remote.isPresent()) {
+            log.debug("Restarting upload of {}, as the host cannot verify the partial file.", job.source);
+            return 0;
+        }
+        if (!remote.get().equalsIgnoreCase(prefixChecksum(job.source, size))) {
+            log.debug("Restarting upload of {}, as the partial file on the host differs from it.", job.source);
+            return 0;
+        }
+        return size;
+    }
+
+    private static String prefixChecksum(String path, long length) throws IOException {
+        Digester digester = Digester.of(ChecksumAlgorithm.MD5);
+        try (InputStream is = new MappedFileInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = length;
+            int n;
+            while (remaining > 0 && (n = is.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                digester.update(buffer, 0, n);
+                remaining -= n;
+            }
+        }
+        return digester.hex();
+    }
+
+    private static class Job {
+        private final long id;
+        private final String kind;
+        private final TransferPriority priority;
+        private final String source;
+        private final String dest;
+        private long offset;
+        private long sourceSize;
+        private long sourceTime;
+
+        private Job(TransferJournal.Entry entry) {
+            this.id = entry.getId();
+            this.kind = entry.getKind();
+            this.priority = TransferPriority.valueOf(entry.getPriority());
+            this.source = entry.getSource();
+            this.dest = entry.getDest();
+            this.offset = entry.getOffset();
+            this.sourceSize = entry.getSourceSize();
+            this.sourceTime = entry.getSourceTime();
+        }
+    }
+
+    /**
+     * Runs jobs, recording in the journal how each ends.
+     */
+    private class Runner implements RetryingWorkers.Handler<Job> {
+        @Override
+        public boolean run(Job job) throws IOException {
+            statuses.put(job.id, Status.RUNNING);
+            if (job.kind.equals(DOWNLOAD)) {
+                download(job);
+            } else {
+                upload(job);
+            }
+            try {
+                journal.complete(job.id);
+            } catch (IOException ex) {
+                // The job stays in the journal and runs again after a restart.
+                log.warn(String.format("Failed to record %s of %s as done.", job.kind, job.source), ex);
+            }
+            finish(job, Status.DONE);
+            return true;
+        }
+
+        @Override
+        public boolean retryable(Exception ex) {
+            return !(ex instanceof MissingRemoteFileException || ex instanceof MissingLocalFileException);
+        }
+
+        @Override
+        public void retrying(Job job, long backoffMillis, Exception ex) {
+            log.warn(String.format("Failed to %s %s; retrying in %d ms.", job.kind, job.source, backoffMillis), ex);
+            statuses.put(job.id, Status.PENDING);
+        }
+
+        @Override
+        public void failed(Job job, int attempts, Exception ex) {
+            String message = String.format("Failed to %s %s after %d attempts.", job.kind, job.source, attempts);
+            log.warn(message, ex);
+            try {
+                journal.fail(job.id);
+            } catch (IOException journalEx) {
+                log.warn(String.format("Failed to record %s of %s as failed.", job.kind, job.source), journalEx);
+            }
+            finish(job, Status.FAILED);
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package fun.mike.frontier.alpha;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import fun.mike.frontier.impl.alpha.BlockDeflater;
+import fun.mike.frontier.impl.alpha.CountingOutputStream;
+import fun.mike.frontier.impl.alpha.MappedFileInputStream;
+import fun.mike.frontier.impl.alpha.PipedDownload;
+
+/**
+ * Writes a zip archive entry by entry, streaming each source instead of loading it into memory.
+ * <p>
+ * Each entry is split into blocks that are deflated in parallel and written in order, so large entries use every
+ * core while memory stays bounded by the number of blocks in flight. ZIP64 records are written when the archive or
+ * an entry exceeds the limits of the original format.
+ * <p>
+ * Entries are streamed, so their sizes follow their data in a data descriptor, whose size fields are 8 bytes only
+ * when the entry's local header carries a ZIP64 extra field. Whether an entry uses ZIP64 is therefore decided before
+ * its data is written: an entry uses it only if it may reach 4 GB. A stream of unknown size is read ahead by as many
+ * blocks as may be in flight; if it ends within them its size is known, and otherwise it uses ZIP64. Streaming
+ * readers that predate ZIP64 data descriptors, such as ZipInputStream before Java 21, cannot read entries using
+ * ZIP64; pass the size to add when it is known.
+ */
+public class ZipBuilder implements Closeable {
+    private static final int BLOCK_SIZE = BlockDeflater.BLOCK_SIZE;
+    private static final int PIPE_SIZE = 1024 * 1024;
+    private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+    // Deflate can expand incompressible data slightly, so entries this close to 4 GB use ZIP64 too.
+    private static final long ZIP64_THRESHOLD = ZIP64_MAGIC - ZIP64_MAGIC / 64;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final int ZIP64_COUNT_MAGIC = 0xFFFF;
+    private static final int FLAGS = 0x0808;
+    private static final int DEFLATED = 8;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private final CountingOutputStream out;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int level;
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private boolean closed = false;
+
+    /**
+     * Creates a ZipBuilder compressing with one thread per available processor.
+     *
+     * @param out an OutputStream to write the archive to; closed when the builder is closed.
+     */
+    public ZipBuilder(OutputStream out) {
+        this(out, Runtime.getRuntime().availableProcessors(), Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates a ZipBuilder.
+     *
+     * @param out         an OutputStream to write the archive to; closed when the builder is closed.
+     * @param parallelism the number of threads compressing blocks
+     * @param level       a Deflater compression level
+     */
+    public ZipBuilder(OutputStream out, int parallelism, int level) {
+        this.out = new CountingOutputStream(new BufferedOutputStream(out, BLOCK_SIZE));
+        this.parallelism = Math.max(1, parallelism);
+        this.level = level;
+        this.executor = BlockDeflater.executor(this.parallelism, "frontier-zip");
+    }
+
+    /**
+     * Creates a ZipBuilder writing to a local file.
+     *
+     * @param zipPath a local path to write the archive to
+     * @return a ZipBuilder
+     */
+    public static ZipBuilder create(String zipPath) {
+        try {
+            return new ZipBuilder(new FileOutputStream(zipPath));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Adds an entry with the contents of a local file.
+     *
+     * @param name      the name of the entry
+     * @param localPath a local path
+     * @return this ZipBuilder
+     */
+    public ZipBuilder addFile(String name, String localPath) {
+        try (InputStream is = new MappedFileInputStream(localPath)) {
+            return add(name, is, Files.size(Paths.get(localPath)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Adds an entry with the contents of a file on a host, streamed as it downloads.
+     *
+     * @param name   the name of the entry
+     * @param client a client for the host
+     * @param path   a path to a file on the host
+     * @return this ZipBuilder
+     */
+    public ZipBuilder addRemote(String name, FileTransferClient client, String path) {
+        long size = client.stat(path).map(FileInfo::getSize).orElse(-1L);
+        try (InputStream is = PipedDownload.start(client, path, PIPE_SIZE)) {
+            return add(name, is, size);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Adds an entry of unknown size with the contents of an input stream. The stream is read to the end but not
+     * closed.
+     *
+     * @param name the name of the entry
+     * @param is   an InputStream
+     * @return this ZipBuilder
+     */
+    public ZipBuilder add(String name, InputStream is) {
+        return add(name, is, -1);
+    }
+
+    /**
+     * Adds an entry with the contents of an input stream. The stream is read to the end but not closed.
+     *
+     * @param name the name of the entry
+     * @param is   an InputStream
+     * @param size the number of bytes in the stream, or -1 if unknown
+     * @return this ZipBuilder
+     * @throws UncheckedIOException if a stream declared smaller than 4 GB reaches it
+     */
+    public ZipBuilder add(String name, InputStream is, long size) {
+        if (closed) {
+            throw new IllegalStateException("Zip archive is already closed.");
+        }
+        try {
+            if (!names.add(name)) {
+                throw new ZipException(String.format("Duplicate entry: %s", name));
+            }
+            writeEntry(name, is, size);
+            return this;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the underlying output stream.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeCentralDirectory();
+            out.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void writeEntry(String name, InputStream is, long declaredSize) throws IOException {
+        Deque<byte[]> ahead = new ArrayDeque<>();
+        long buffered = 0;
+        boolean ended = false;
+        while (declaredSize < 0 && !ended && ahead.size() < parallelism * 2) {
+            byte[] block = readBlock(is);
+            ahead.add(block);
+            buffered += block.length;
+            ended = block.length < BLOCK_SIZE;
+        }
+        long expectedSize = ended ? buffered : declaredSize;
+        boolean zip64 = expectedSize < 0 || expectedSize >= ZIP64_THRESHOLD;
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long offset = out.getCount();
+        long time = dosTime(System.currentTimeMillis());
+
+        writeInt(0x04034b50);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+        writeShort(FLAGS);
+        writeShort(DEFLATED);
+        writeInt(time);
+        writeInt(0);
+        // The sizes follow in the data descriptor; a ZIP64 extra field stands in for them here.
+        writeInt(zip64 ? ZIP64_MAGIC : 0);
+        writeInt(zip64 ? ZIP64_MAGIC : 0);
+        writeShort(nameBytes.length);
+        writeShort(zip64 ? 20 : 0);
+        out.write(nameBytes);
+        if (zip64) {
+            writeShort(ZIP64_EXTRA);
+            writeShort(16);
+            writeLong(0);
+            writeLong(0);
+        }
+
+        CRC32 crc = new CRC32();
+        long size = 0;
+        long compressedSize = 0;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        byte[] dictionary = null;
+        byte[] block = ahead.isEmpty() ? readBlock(is) : ahead.poll();
+
+        while (true) {
+            byte[] next = block.length < BLOCK_SIZE ? null : ahead.isEmpty() ? readBlock(is) : ahead.poll();
+            boolean last = next == null || next.length == 0;
+
+            crc.update(block, 0, block.length);
+            size += block.length;
+
+            byte[] input = block;
+            byte[] preset = dictionary;
+            pending.add(executor.submit(() -> BlockDeflater.deflate(input, preset, last, level)));
+            dictionary = BlockDeflater.dictionary(block);
+
+            while (pending.size() >= parallelism * 2 || (last && !pending.isEmpty())) {
+                byte[] compressed = BlockDeflater.await(pending.poll());
+                out.write(compressed);
+                compressedSize += compressed.length;
+            }
+
+            if (last) {
+                break;
+            }
+            block = next;
+        }
+
+        if (!zip64 && (size >= ZIP64_MAGIC || compressedSize >= ZIP64_MAGIC)) {
+            throw new ZipException(String.format("Entry %s reached 4 GB, more than its declared size.", name));
+        }
+        writeInt(0x08074b50);
+        writeInt(crc.getValue());
+        if (zip64) {
+            writeLong(compressedSize);
+            writeLong(size);
+        } else {
+            writeInt(compressedSize);
+            writeInt(size);
+        }
+
+        entries.add(new Entry(nameBytes, time, crc.getValue(), compressedSize, size, offset, zip64));
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = out.getCount();
+
+        for (Entry entry : entries) {
+            ByteArrayOutputStream extra = new ByteArrayOutputStream();
+            if (entry.size >= ZIP64_MAGIC) {
+                writeLong(extra, entry.size);
+            }
+            if (entry.compressedSize >= ZIP64_MAGIC) {
+                writeLong(extra, entry.compressedSize);
+            }
+            if (entry.offset >= ZIP64_MAGIC) {
+                writeLong(extra, entry.offset);
+            }
+            boolean zip64 = extra.size() > 0;
+
+            writeInt(0x02014b50);
+            writeShort(VERSION_ZIP64);
+            writeShort(zip64 || entry.zip64 ? VERSION_ZIP64 : VERSION);
+            writeShort(FLAGS);
+            writeShort(DEFLATED);
+            writeInt(entry.time);
+            writeInt(entry.crc);
+            writeInt(Math.min(entry.compressedSize, ZIP64_MAGIC));
+            writeInt(Math.min(entry.size, ZIP64_MAGIC));
+            writeShort(entry.name.length);
+            writeShort(zip64 ? extra.size() + 4 : 0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0);
+            writeInt(Math.min(entry.offset, ZIP64_MAGIC));
+            out.write(entry.name);
+            if (zip64) {
+                writeShort(ZIP64_EXTRA);
+                writeShort(extra.size());
+                extra.writeTo(out);
+            }
+        }
+
+        long end = out.getCount();
+        long length = end - start;
+        int count = entries.size();
+
+        if (count >= ZIP64_COUNT_MAGIC || start >= ZIP64_MAGIC || length >= ZIP64_MAGIC) {
+            writeInt(0x06064b50);
+            writeLong(44);
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0);
+            writeInt(0);
+            writeLong(count);
+            writeLong(count);
+            writeLong(length);
+            writeLong(start);
+
+            writeInt(0x07064b50);
+            writeInt(0);
+            writeLong(end);
+            writeInt(1);
+        }
+
+        writeInt(0x06054b50);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(count, ZIP64_COUNT_MAGIC));
+        writeShort(Math.min(count, ZIP64_COUNT_MAGIC));
+        writeInt(Math.min(length, ZIP64_MAGIC));
+        writeInt(Math.min(start, ZIP64_MAGIC));
+        writeShort(0);
+    }
+
+    private static byte[] readBlock(InputStream is) throws IOException {
+        byte[] block = new byte[BLOCK_SIZE];
+        int filled = 0;
+        int n;
+        while (filled < BLOCK_SIZE && (n = is.read(block, filled, BLOCK_SIZE - filled)) != -1) {
+            filled += n;
+        }
+        return filled == BLOCK_SIZE ? block : Arrays.copyOf(block, filled);
+    }
+
+    private static long dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | (time.getMonthValue() << 21)
+                | (time.getDayOfMonth() << 16)
+                | (time.getHour() << 11)
+                | (time.getMinute() << 5)
+                | (time.getSecond() >> 1);
+    }
+
+    private void writeShort(int value) throws IOException {
+        out.write(value & 0xFF);
+        out.write((value >>> 8) & 0xFF);
+    }
+
+    private void writeInt(long value) throws IOException {
+        writeShort((int) (value & 0xFFFF));
+        writeShort((int) ((value >>> 16) & 0xFFFF));
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeLong(out, value);
+    }
+
+    private static void writeLong(OutputStream stream, long value) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            stream.write((int) (value >>> (i * 8)) & 0xFF);
+        }
+    }
+
+    private static class Entry {
+        final byte[] name;
+        final long time;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long offset;
+        final boolean zip64;
+
+        Entry(byte[] name, long time, long crc, long compressedSize, long size, long offset, boolean zip64) {
+            this.name = name;
+            this.time = time;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+            this.zip64 = zip64;
+        }
+    }
+}
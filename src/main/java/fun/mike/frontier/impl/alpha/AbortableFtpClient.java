@@ -0,0 +1,77 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+
+/**
+ * An FTPClient that remembers its open data connection, so another thread can abort a stuck transfer by closing
+ * the control and data sockets. Hosts reporting a UNIX system type have their listings parsed by UnixListParser.
+ */
+public class AbortableFtpClient extends FTPClient {
+    private volatile Socket dataSocket;
+
+    public AbortableFtpClient() {
+        setParserFactory(new DefaultFTPFileEntryParserFactory() {
+                @Override
+                public FTPFileEntryParser createFileEntryParser(String key) {
+                    return UnixListParser.handles(key) ? new UnixListParser() : super.createFileEntryParser(key);
+                }
+            });
+    }
+
+    @Override
+    protected Socket _openDataConnection_(String command, String arg) throws IOException {
+        Socket socket = super._openDataConnection_(command, arg);
+        dataSocket = socket;
+        return socket;
+    }
+
+    /**
+     * Sends LIST and opens its data connection, for callers that parse the raw listing themselves. The caller must
+     * close the stream and then call completePendingCommand.
+     *
+     * @param path a path on the host
+     * @return the listing, or null if the host refused the command
+     * @throws IOException if the command or connection fails
+     */
+    public InputStream openList(String path) throws IOException {
+        Socket socket = _openDataConnection_(FTPCmd.LIST, getListArguments(path));
+        return socket == null ? null : socket.getInputStream();
+    }
+
+    /**
+     * Tells whether the most recent data command opened a connection, which separates a command the host refused
+     * from a transfer it cut short.
+     *
+     * @return true if the last data connection was opened
+     */
+    public boolean openedDataConnection() {
+        return dataSocket != null;
+    }
+
+    /**
+     * Closes the data and control sockets, failing any blocked reads or writes. The client must still be
+     * disconnected afterwards.
+     */
+    public void abortSockets() {
+        closeQuietly(dataSocket);
+        closeQuietly(_socket_);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // Already closed.
+        }
+    }
+}
@@ -1,29 +1,41 @@
 package fun.mike.frontier.impl.alpha;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import fun.mike.frontier.alpha.ByteRange;
+import fun.mike.frontier.alpha.ChecksumAlgorithm;
 import fun.mike.frontier.alpha.FileInfo;
+import fun.mike.frontier.alpha.FileListing;
 import fun.mike.frontier.alpha.FileTransferException;
 import fun.mike.frontier.alpha.IO;
+import fun.mike.frontier.alpha.ListQuery;
 import fun.mike.frontier.alpha.MissingLocalFileException;
 import fun.mike.frontier.alpha.MissingRemoteFileException;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPListParseEngine;
+import org.apache.commons.net.ftp.FTPReply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class ApacheFtp {
     private static final Logger log = LoggerFactory.getLogger(ApacheFtp.class);
+    private static final int LIST_PAGE_SIZE = 256;
 
     /**
      * Streams a file over FTP using the given client.
@@ -34,14 +46,12 @@ public class ApacheFtp {
      */
     public static Optional<InputStream> optionalStream(FtpConnector conn, String path) {
         FTPClient client = conn.getClient();
-        String locationLabel = getLocationLabel(conn, path);
         try {
-            log.debug(String.format("Streaming file %s.",
-                                    locationLabel));
+            log.debug("Streaming file {}:{}.", conn.getHostLabel(), path);
             InputStream is = client.retrieveFileStream(path);
             if (is == null) {
                 if (client.getReplyCode() == 550) {
-                    log.debug(String.format("Failed to find file %s.", locationLabel));
+                    log.debug("Failed to find file {}:{}.", conn.getHostLabel(), path);
                     return Optional.empty();
                 }
                 String message = String.format("Unexpected reply: %s.",
@@ -52,7 +62,7 @@ public class ApacheFtp {
             return Optional.of(is);
         } catch (IOException ex) {
             String message = String.format("I/O error streaming file %s.",
-                                           locationLabel);
+                                           getLocationLabel(conn, path));
             log.warn(message);
             throw new FileTransferException(message, ex);
         }
@@ -69,6 +79,193 @@ public class ApacheFtp {
         return optionalStream(conn, path).orElseThrow(() -> remoteFileNotFound(conn, path));
     }
 
+    /**
+     * Streams a file over FTP to the given reader, completing the transfer once the reader returns.
+     *
+     * @param conn   an FtpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param reader a function of an InputStream to the file, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public static <T> T read(FtpConnector conn, String path, Function<InputStream, T> reader) {
+        InputStream is = stream(conn, path);
+        try {
+            return reader.apply(is);
+        } finally {
+            complete(conn, path, is);
+        }
+    }
+
+    /**
+     * Reads a range of a file on the host. The offset is sent with REST, and the transfer is cut off once the range
+     * has been read, leaving the client ready for the next command.
+     *
+     * @param conn   an FtpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param offset the offset of the first byte to read.
+     * @param length the number of bytes to read.
+     * @return the bytes in the range, fewer than length only if the file ends first.
+     */
+    public static byte[] read(FtpConnector conn, String path, long offset, int length) {
+        return read(conn, path, offset, length, is -> {
+                try {
+                    return IO.read(is, length);
+                } catch (UncheckedIOException ex) {
+                    String message = String.format("I/O error reading %s.", getLocationLabel(conn, path));
+                    log.warn(message);
+                    throw new FileTransferException(message, ex.getCause());
+                }
+            });
+    }
+
+    /**
+     * Streams a range of a file on the host to the given reader. The offset is sent with REST, and the transfer is cut
+     * off once the reader returns, leaving the client ready for the next command.
+     *
+     * @param conn   an FtpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param offset the offset of the first byte to read.
+     * @param length the number of bytes to read.
+     * @param reader a function of an InputStream to the range, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public static <T> T read(FtpConnector conn,
+            String path,
+            long offset,
+            long length,
+            Function<InputStream, T> reader) {
+        FTPClient client = conn.getClient();
+        if (log.isDebugEnabled()) {
+            log.debug("Reading {} bytes of {}:{} from offset {}.", length, conn.getHostLabel(), path, offset);
+        }
+        client.setRestartOffset(offset);
+        InputStream is;
+        try {
+            is = stream(conn, path);
+        } finally {
+            client.setRestartOffset(0);
+        }
+        try {
+            return reader.apply(new BoundedInputStream(is, length));
+        } finally {
+            complete(conn, path, is);
+        }
+    }
+
+    /**
+     * Reads many ranges of a file on the host over one connection. Ranges close together are read in a single
+     * transfer.
+     *
+     * @param conn   an FtpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param ranges the ranges to read.
+     * @return the bytes of each range, in the order of ranges.
+     */
+    public static List<byte[]> read(FtpConnector conn, String path, List<ByteRange> ranges) {
+        return VectoredRead.read(ranges, (offset, length) -> read(conn, path, offset, length));
+    }
+
+    /**
+     * Closes a stream opened by stream or optionalStream and reads the reply ending the transfer, leaving the client
+     * ready for the next command.
+     *
+     * @param conn an FtpConnector instance.
+     * @param path the path to the streamed file on the host.
+     * @param is   the InputStream to the file.
+     */
+    public static void complete(FtpConnector conn, String path, InputStream is) {
+        FTPClient client = conn.getClient();
+        try {
+            is.close();
+            if (!client.completePendingCommand()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Transfer of {}:{} ended early: {}", conn.getHostLabel(), path, client.getReplyString());
+                }
+            }
+        } catch (IOException ex) {
+            String message = String.format("I/O error completing transfer of %s.",
+                                           getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Opens a stream to a path on the host for the given writer, completing the transfer once the writer returns.
+     *
+     * @param conn   an FtpConnector instance.
+     * @param path   a path to write to on the host.
+     * @param writer a consumer of an OutputStream to the file, which is only valid until the consumer returns.
+     * @return the path written to
+     */
+    public static String write(FtpConnector conn, String path, Consumer<OutputStream> writer) {
+        OutputStream os = openOutputStream(conn, path);
+        try {
+            try {
+                writer.accept(os);
+            } finally {
+                os.close();
+            }
+        } catch (IOException ex) {
+            String message = String.format("I/O error writing %s.", getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+        completeWrite(conn, path);
+        return path;
+    }
+
+    /**
+     * Starts storing a file on the host. The stream must be closed and the transfer finished with completeWrite before
+     * the client is used for anything else.
+     *
+     * @param conn an FtpConnector instance.
+     * @param path a path to write to on the host.
+     * @return an OutputStream to the file
+     */
+    public static OutputStream openOutputStream(FtpConnector conn, String path) {
+        FTPClient client = conn.getClient();
+        try {
+            log.debug("Writing content to {}:{}.", conn.getHostLabel(), path);
+            OutputStream os = client.storeFileStream(path);
+            if (os == null) {
+                String message = String.format("Unexpected reply: %s.",
+                                               client.getReplyString());
+                log.warn(message);
+                throw new FileTransferException(message);
+            }
+            return os;
+        } catch (IOException ex) {
+            String message = String.format("I/O error writing %s.", getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Reads the reply ending a transfer started by openOutputStream, once its stream is closed.
+     *
+     * @param conn an FtpConnector instance.
+     * @param path the path written to on the host.
+     */
+    public static void completeWrite(FtpConnector conn, String path) {
+        FTPClient client = conn.getClient();
+        try {
+            if (!client.completePendingCommand()) {
+                String message = String.format("Unexpected reply: %s.",
+                                               client.getReplyString());
+                log.warn(message);
+                throw new FileTransferException(message);
+            }
+        } catch (IOException ex) {
+            String message = String.format("I/O error writing %s.", getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
     /**
      * Checks if a file exists on the host using the given client.
      *
@@ -77,9 +274,7 @@ public class ApacheFtp {
      * @return true if the directory at path exists; otherwise, false.
      */
     public static Boolean dirExists(FtpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
-        log.debug(String.format("Checking if directory %s exists.",
-                                locationLabel));
+        log.debug("Checking if directory {}:{} exists.", conn.getHostLabel(), path);
         FTPClient client = conn.getClient();
         try {
             String workingDir = client.printWorkingDirectory();
@@ -90,20 +285,19 @@ public class ApacheFtp {
 
             switch (replyCode) {
                 case 250:
-                    log.debug(String.format("Found directory %s.", locationLabel));
+                    log.debug("Found directory {}:{}.", conn.getHostLabel(), path);
                     found = true;
                     break;
                 case 257:
-                    log.debug(String.format("Directory %s is current directory.", locationLabel));
+                    log.debug("Directory {}:{} is current directory.", conn.getHostLabel(), path);
                     return true;
                 case 550:
-                    log.debug(String.format("Failed to find directory %s.",
-                                            locationLabel));
+                    log.debug("Failed to find directory {}:{}.", conn.getHostLabel(), path);
                     found = false;
                     break;
                 default:
                     String message = String.format("Unexpected reply from changing working directory while checking for existence of %s: %s",
-                                                   locationLabel,
+                                                   getLocationLabel(conn, path),
                                                    client.getReplyString());
                     log.warn(message);
                     throw new FileTransferException(message);
@@ -113,7 +307,7 @@ public class ApacheFtp {
             replyCode = client.getReplyCode();
             if (replyCode != 250) {
                 String message = String.format("Unexpected reply from changing working directory back to %s while checking for existence of %s: %s",
-                                               locationLabel,
+                                               getLocationLabel(conn, path),
                                                workingDir,
                                                client.getReplyString());
                 log.warn(message);
@@ -123,7 +317,7 @@ public class ApacheFtp {
             return found;
         } catch (IOException ex) {
             String message = String.format("I/O error checking if directory %s exists.",
-                                           locationLabel);
+                                           getLocationLabel(conn, path));
             log.warn(message);
             throw new FileTransferException(message, ex);
         }
@@ -136,24 +330,22 @@ public class ApacheFtp {
      * @param path a path on the host
      */
     public static void delete(FtpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
-        log.debug(String.format("Deleting file %s.", locationLabel));
+        log.debug("Deleting file {}:{}.", conn.getHostLabel(), path);
         FTPClient client = conn.getClient();
 
         try {
-            if (!fileExists(conn, path)) {
-                throw remoteFileNotFound(conn, path);
-            }
-
             boolean deleted = client.deleteFile(path);
 
             if (!deleted) {
-                String message = String.format("Failed to delete %s.", locationLabel);
+                if (!fileExists(conn, path)) {
+                    throw remoteFileNotFound(conn, path);
+                }
+                String message = String.format("Failed to delete %s.", getLocationLabel(conn, path));
                 log.warn(message);
                 throw new FileTransferException(message);
             }
         } catch (IOException ex) {
-            String message = String.format("I/O error deleting %s.", locationLabel);
+            String message = String.format("I/O error deleting %s.", getLocationLabel(conn, path));
             log.warn(message);
             throw new FileTransferException(message, ex);
         }
@@ -167,9 +359,7 @@ public class ApacheFtp {
      * @return true if the file at path exists; otherwise, false.
      */
     public static Boolean fileExists(FtpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
-        log.debug(String.format("Checking if file %s exists.",
-                                locationLabel));
+        log.debug("Checking if file {}:{} exists.", conn.getHostLabel(), path);
 
         try {
             FTPClient client = conn.getClient();
@@ -199,14 +389,14 @@ public class ApacheFtp {
 
             if (info.isDirectory()) {
                 String message = String.format("%s exists, but is a directory.",
-                                               locationLabel);
+                                               getLocationLabel(conn, path));
                 throw new FileTransferException(message);
             }
 
             return true;
         } catch (IOException ex) {
             String message = String.format("I/O error checking if %s exists.",
-                                           locationLabel);
+                                           getLocationLabel(conn, path));
             log.warn(message);
             throw new FileTransferException(message, ex);
         }
@@ -222,8 +412,11 @@ public class ApacheFtp {
     public static Optional<String> optionalSlurp(FtpConnector conn, String path) {
         Optional<InputStream> is = optionalStream(conn, path);
         if (is.isPresent()) {
-            return Optional.of(IO.slurp(is.get()));
-
+            try {
+                return Optional.of(IO.slurp(is.get()));
+            } finally {
+                complete(conn, path, is.get());
+            }
         }
         return Optional.empty();
     }
@@ -247,16 +440,9 @@ public class ApacheFtp {
      * @return a list of files.
      */
     public static List<FileInfo> list(FtpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
         try {
             FTPClient client = conn.getClient();
-            log.debug(String.format("Listing files in %s.",
-                                    locationLabel));
-            if (!dirExists(conn, path)) {
-                throw new FileTransferException(String.format("Directory %s does not exist.",
-                                                              locationLabel));
-            }
-
+            log.debug("Listing files in {}:{}.", conn.getHostLabel(), path);
             List<FileInfo> files = Arrays.stream(client.listFiles(path))
                     .map(file -> {
                         Calendar timestamp = file.getTimestamp();
@@ -267,7 +453,63 @@ public class ApacheFtp {
                                             file.isDirectory());
                     })
                     .collect(Collectors.toList());
-            log.debug(String.format("Found %d files.", files.size()));
+            requireCompleteListing(conn, path);
+            requireDirectory(conn, path, files);
+            if (log.isDebugEnabled()) {
+                log.debug("Found {} files.", files.size());
+            }
+            return files;
+        } catch (IOException ex) {
+            String message = "I/O error listing directory.";
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Lists the files in a directory on the host into a FileListing. Listings from UNIX hosts are parsed straight
+     * from the bytes of the data connection; others are parsed in pages and added to the listing's columns as they
+     * are read, so no more than a page of FTPFile objects is held at once.
+     *
+     * @param conn an FtpConnector instance.
+     * @param path a path to a directory on the host.
+     * @return a listing of files.
+     */
+    public static FileListing listCompact(FtpConnector conn, String path) {
+        try {
+            FTPClient client = conn.getClient();
+            log.debug("Listing files in {}:{}.", conn.getHostLabel(), path);
+            FileListing.Builder builder = FileListing.builder();
+            if (client instanceof AbortableFtpClient && UnixListParser.handles(client.getSystemType())) {
+                InputStream listing = ((AbortableFtpClient) client).openList(path);
+                if (listing != null) {
+                    try (InputStream in = listing) {
+                        new UnixListParser().parse(in, Charset.forName(client.getControlEncoding()), builder);
+                    }
+                    client.completePendingCommand();
+                }
+            } else {
+                FTPListParseEngine engine = client.initiateListParsing(path);
+                while (engine.hasNext()) {
+                    for (FTPFile file : engine.getNext(LIST_PAGE_SIZE)) {
+                        if (file == null) {
+                            continue;
+                        }
+                        builder.add(file.getName(),
+                                    file.getSize(),
+                                    file.getTimestamp() == null
+                                            ? FileListing.UNKNOWN_TIME
+                                            : file.getTimestamp().getTimeInMillis(),
+                                    file.isDirectory());
+                    }
+                }
+            }
+            requireCompleteListing(conn, path);
+            FileListing files = builder.build();
+            requireDirectory(conn, path, files);
+            if (log.isDebugEnabled()) {
+                log.debug("Found {} files.", files.size());
+            }
             return files;
         } catch (IOException ex) {
             String message = "I/O error listing directory.";
@@ -276,6 +518,112 @@ public class ApacheFtp {
         }
     }
 
+    /**
+     * Fails a listing whose transfer the host reported as incomplete. A listing cut short by the host parses
+     * cleanly, so only the final reply tells it apart; a refused LIST is left to requireDirectory.
+     */
+    private static void requireCompleteListing(FtpConnector conn, String path) {
+        FTPClient client = conn.getClient();
+        if (client instanceof AbortableFtpClient
+                && ((AbortableFtpClient) client).openedDataConnection()
+                && !FTPReply.isPositiveCompletion(client.getReplyCode())) {
+            String message = String.format("Unexpected reply listing %s: %s",
+                                           getLocationLabel(conn, path),
+                                           client.getReplyString().trim());
+            log.warn(message);
+            throw new FileTransferException(message);
+        }
+    }
+
+    /**
+     * Lists the files in a directory on the host that match a query. A simple glob is sent with the LIST command so
+     * the host can filter names itself, and entries are parsed in pages and filtered as they are read.
+     *
+     * @param conn  an FtpConnector instance.
+     * @param path  a path to a directory on the host.
+     * @param query a ListQuery.
+     * @return a list of matching files.
+     */
+    public static List<FileInfo> list(FtpConnector conn, String path, ListQuery query) {
+        try {
+            FTPClient client = conn.getClient();
+            if (log.isDebugEnabled()) {
+                log.debug("Listing files in {}:{} matching {}.", conn.getHostLabel(), path, query);
+            }
+            if (query.hasSimpleGlob() && !dirExists(conn, path)) {
+                throw new FileTransferException(String.format("Directory %s does not exist.",
+                                                              getLocationLabel(conn, path)));
+            }
+
+            String listPath = query.hasSimpleGlob()
+                    ? (path.endsWith("/") ? path : path + "/") + query.getGlob()
+                    : path;
+            ListQuery.Selection selection = query.select();
+            FTPListParseEngine engine = client.initiateListParsing(listPath);
+            while (engine.hasNext()) {
+                for (FTPFile file : engine.getNext(LIST_PAGE_SIZE)) {
+                    if (file == null) {
+                        continue;
+                    }
+                    String name = file.getName();
+                    selection.offer(new FileInfo(name.substring(name.lastIndexOf('/') + 1),
+                                                 file.getSize(),
+                                                 file.getTimestamp() == null ? null : file.getTimestamp().getTime(),
+                                                 file.isDirectory()));
+                }
+            }
+
+            requireCompleteListing(conn, path);
+            List<FileInfo> files = selection.result();
+            if (!query.hasSimpleGlob()) {
+                requireDirectory(conn, path, files);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Found {} matching files.", files.size());
+            }
+            return files;
+        } catch (IOException ex) {
+            String message = "I/O error listing directory.";
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Retrieves information about a single file on the host.
+     *
+     * @param conn an FtpConnector instance.
+     * @param path a path to a file on the host.
+     * @return an Optional containing information about the file if it exists; otherwise, an empty Optional.
+     */
+    public static Optional<FileInfo> stat(FtpConnector conn, String path) {
+        log.debug("Retrieving information about {}:{}.", conn.getHostLabel(), path);
+
+        try {
+            FTPClient client = conn.getClient();
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            List<FileInfo> files = Arrays.stream(client.listFiles(path))
+                    .filter(file -> file.getName().equals(name) || file.getName().equals(path))
+                    .map(file -> new FileInfo(name,
+                                              file.getSize(),
+                                              file.getTimestamp().getTime(),
+                                              file.isDirectory()))
+                    .collect(Collectors.toList());
+
+            if (files.size() != 1) {
+                log.debug("File {}:{} not found.", conn.getHostLabel(), path);
+                return Optional.empty();
+            }
+
+            return Optional.of(files.get(0));
+        } catch (IOException ex) {
+            String message = String.format("I/O error retrieving information about %s.",
+                                           getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
     /**
      * Downloads a file from the host to the local machine.
      *
@@ -285,11 +633,8 @@ public class ApacheFtp {
      * @return true if the file exists and was downloaded; otherwise, false.
      */
     public static Boolean optionalDownload(FtpConnector conn, String path, String localPath) {
-        String locationLabel = getLocationLabel(conn, path);
-        log.debug(String.format("Downloading file %s locally to %s.",
-                                path,
-                                localPath));
-        try (OutputStream os = new FileOutputStream(localPath)) {
+        log.debug("Downloading file {} locally to {}.", path, localPath);
+        try (OutputStream os = new FileChannelOutputStream(localPath)) {
             return optionalDownload(conn, path, os).isPresent();
         } catch (IOException ex) {
             String message = String.format("I/O error downloading %s.",
@@ -308,7 +653,7 @@ public class ApacheFtp {
      * @return An Optional containing the OutputStream if the file exists; otherwise, an empty Optional.
      */
     public static Optional<OutputStream> optionalDownload(FtpConnector conn, String path, OutputStream stream) {
-        log.debug(String.format("Downloading file %s to stream.", path));
+        log.debug("Downloading file {} to stream.", path);
 
         return retrieveFile(conn, path, stream)
                 .map(replyString -> stream);
@@ -322,13 +667,12 @@ public class ApacheFtp {
      * @param localPath a local path to a file to be written to.
      */
     public static void download(FtpConnector conn, String path, String localPath) {
-        String locationLabel = getLocationLabel(conn, path);
-        try (OutputStream stream = new FileOutputStream(localPath)) {
+        try (OutputStream stream = new FileChannelOutputStream(localPath)) {
             download(conn, path, stream);
         } catch (IOException ex) {
             String message = String.format("Failed to stream local file %s when trying to download %s.",
                                            localPath,
-                                           locationLabel);
+                                           getLocationLabel(conn, path));
             log.warn(message);
             throw new FileTransferException(ex);
         }
@@ -368,6 +712,71 @@ public class ApacheFtp {
         return optionalDownload(conn, path, stream).orElseThrow(() -> remoteFileNotFound(conn, path));
     }
 
+    /**
+     * Writes the contents of a file on the host to an output stream, starting at the given byte offset.
+     *
+     * @param conn   an FtpConnector instance.
+     * @param path   a path to a file on the host.
+     * @param offset the offset of the first byte to write.
+     * @param stream An OutputStream to write to.
+     * @return the number of bytes written.
+     */
+    public static long download(FtpConnector conn, String path, long offset, OutputStream stream) {
+        FTPClient client = conn.getClient();
+        if (log.isDebugEnabled()) {
+            log.debug("Downloading file {} from offset {} to stream.", path, offset);
+        }
+
+        CountingOutputStream counter = new CountingOutputStream(stream);
+        client.setRestartOffset(offset);
+        try {
+            retrieveFile(conn, path, counter).orElseThrow(() -> remoteFileNotFound(conn, path));
+        } finally {
+            client.setRestartOffset(0);
+        }
+        return counter.getCount();
+    }
+
+    /**
+     * Writes the contents of a file on the host to a local file, computing a checksum as the bytes are written.
+     * If the host can compute checksums, the result is verified against the checksum reported by the host.
+     *
+     * @param conn      an FtpConnector instance.
+     * @param path      a path to a file on the host.
+     * @param localPath a local path to a file to be written to.
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the downloaded content.
+     */
+    public static String download(FtpConnector conn, String path, String localPath, ChecksumAlgorithm algorithm) {
+        try (OutputStream stream = new FileChannelOutputStream(localPath)) {
+            return download(conn, path, stream, algorithm);
+        } catch (IOException ex) {
+            String message = String.format("Failed to stream local file %s when trying to download %s.",
+                                           localPath,
+                                           getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(ex);
+        }
+    }
+
+    /**
+     * Writes the contents of a file on the host to an output stream, computing a checksum as the bytes are written.
+     * If the host can compute checksums, the result is verified against the checksum reported by the host.
+     *
+     * @param conn      an FtpConnector instance.
+     * @param path      a path to a file on the host.
+     * @param stream    An OutputStream to write to.
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the downloaded content.
+     */
+    public static String download(FtpConnector conn, String path, OutputStream stream, ChecksumAlgorithm algorithm) {
+        Digester digester = Digester.of(algorithm);
+        download(conn, path, new DigestingOutputStream(stream, digester));
+        return Digester.verify(getLocationLabel(conn, path),
+                               digester.hex(),
+                               checksum(conn, path, algorithm));
+    }
+
     /**
      * Uploads the contents of the file at path to the given path on the host.
      *
@@ -377,14 +786,15 @@ public class ApacheFtp {
      * @return the path written to
      */
     public static String upload(FtpConnector conn, String source, String dest) {
-        String locationLabel = getLocationLabel(conn, dest);
-        log.debug(String.format("Uploading local file %s to %s.", source, locationLabel));
+        if (log.isDebugEnabled()) {
+            log.debug("Uploading local file {} to {}:{}.", source, conn.getHostLabel(), dest);
+        }
 
         if (!IO.exists(source)) {
             String message = String.format("Local source file %s does not exist.", source);
             throw new MissingLocalFileException(message);
         }
-        try (InputStream is = new FileInputStream(source)) {
+        try (InputStream is = new MappedFileInputStream(source)) {
             return upload(conn, is, dest);
         } catch (IOException ex) {
             throw new FileTransferException(ex);
@@ -402,8 +812,7 @@ public class ApacheFtp {
     public static String upload(FtpConnector conn, InputStream source, String dest) {
         try {
             FTPClient client = conn.getClient();
-            String locationLabel = getLocationLabel(conn, dest);
-            log.debug(String.format("Uploading content to %s.", locationLabel));
+            log.debug("Uploading content to {}:{}.", conn.getHostLabel(), dest);
             boolean successful = client.storeFile(dest, source);
             if (successful) {
                 return dest;
@@ -419,52 +828,249 @@ public class ApacheFtp {
         }
     }
 
+    /**
+     * Uploads the contents of the file at path from the given byte offset. The bytes are appended with APPE to the
+     * file on the host, which must already hold exactly the bytes before the offset. An offset of 0 replaces the file.
+     *
+     * @param conn   an FtpConnector instance.
+     * @param source a path of a file
+     * @param dest   a path to write to on the host
+     * @param offset the offset of the first byte to upload.
+     * @return the number of bytes uploaded.
+     */
+    public static long upload(FtpConnector conn, String source, String dest, long offset) {
+        if (log.isDebugEnabled()) {
+            log.debug("Uploading local file {} from offset {} to {}:{}.", source, offset, conn.getHostLabel(), dest);
+        }
+
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+        try (InputStream is = new MappedFileInputStream(source)) {
+            long count = Math.max(0, new File(source).length() - is.skip(offset));
+            FTPClient client = conn.getClient();
+            boolean successful = offset == 0 ? client.storeFile(dest, is) : client.appendFile(dest, is);
+            if (successful) {
+                return count;
+            }
+
+            String message = String.format("Unexpected reply: %s.",
+                                           client.getReplyString());
+            log.warn(message);
+            throw new FileTransferException(message);
+        } catch (IOException ex) {
+            String message = String.format("I/O error uploading %s from offset %d to %s.",
+                                           source,
+                                           offset,
+                                           getLocationLabel(conn, dest));
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Uploads the contents of the file at path to the given path on the host, computing a checksum as the bytes are
+     * read. If the host can compute checksums, the result is verified against the checksum reported by the host.
+     *
+     * @param conn      an FtpConnector instance.
+     * @param source    a path of a file
+     * @param dest      a path to write to on the host
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the uploaded content.
+     */
+    public static String upload(FtpConnector conn, String source, String dest, ChecksumAlgorithm algorithm) {
+        if (!IO.exists(source)) {
+            String message = String.format("Local source file %s does not exist.", source);
+            throw new MissingLocalFileException(message);
+        }
+        try (InputStream is = new MappedFileInputStream(source)) {
+            return upload(conn, is, dest, algorithm);
+        } catch (IOException ex) {
+            throw new FileTransferException(ex);
+        }
+    }
+
+    /**
+     * Uploads the contents from an input stream to a path on the host, computing a checksum as the bytes are read.
+     * If the host can compute checksums, the result is verified against the checksum reported by the host.
+     *
+     * @param conn      an FtpConnector instance.
+     * @param source    an InputStream containing the content to be written.
+     * @param dest      a path to write to on the host
+     * @param algorithm the checksum algorithm to use.
+     * @return the checksum of the uploaded content.
+     */
+    public static String upload(FtpConnector conn, InputStream source, String dest, ChecksumAlgorithm algorithm) {
+        Digester digester = Digester.of(algorithm);
+        upload(conn, new DigestingInputStream(source, digester), dest);
+        return Digester.verify(getLocationLabel(conn, dest),
+                               digester.hex(),
+                               checksum(conn, dest, algorithm));
+    }
+
+    /**
+     * Transfers a file directly from one FTP host to another (FXP). The destination is put in passive mode and the
+     * source is told to connect to it, so no bytes pass through this machine.
+     *
+     * @param source     an FtpConnector for the host to copy from.
+     * @param sourcePath a path to a file on the source host.
+     * @param dest       an FtpConnector for the host to copy to.
+     * @param destPath   a path to write to on the destination host.
+     * @return true if the file was transferred; false if either host refused the server-to-server transfer.
+     */
+    public static boolean fxp(FtpConnector source, String sourcePath, FtpConnector dest, String destPath) {
+        FTPClient from = source.getClient();
+        FTPClient to = dest.getClient();
+        String sourceLabel = getLocationLabel(source, sourcePath);
+        String destLabel = getLocationLabel(dest, destPath);
+        try {
+            log.debug("Transferring {} to {} server-to-server.", sourceLabel, destLabel);
+            if (!to.enterRemotePassiveMode()) {
+                return false;
+            }
+            InetAddress address = InetAddress.getByName(to.getPassiveHost());
+            if (!from.enterRemoteActiveMode(address, to.getPassivePort())) {
+                return false;
+            }
+            if (!to.remoteStore(destPath)) {
+                return false;
+            }
+            if (!from.remoteRetrieve(sourcePath)) {
+                to.abort();
+                if (from.getReplyCode() == 550) {
+                    throw remoteFileNotFound(source, sourcePath);
+                }
+                return false;
+            }
+
+            boolean retrieved = from.completePendingCommand();
+            boolean stored = to.completePendingCommand();
+            if (!retrieved || !stored) {
+                String message = String.format("Server-to-server transfer of %s to %s failed: %s %s",
+                                               sourceLabel,
+                                               destLabel,
+                                               from.getReplyString(),
+                                               to.getReplyString());
+                log.warn(message);
+                throw new FileTransferException(message);
+            }
+            return true;
+        } catch (IOException ex) {
+            String message = String.format("I/O error transferring %s to %s.", sourceLabel, destLabel);
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    /**
+     * Asks the host for the checksum of a file, using XCRC or XMD5 when the host advertises them in its FEAT reply
+     * and falling back to HASH.
+     *
+     * @param conn      an FtpConnector instance.
+     * @param path      a path to a file on the host.
+     * @param algorithm the checksum algorithm to use.
+     * @return an Optional containing the checksum if the host can compute it; otherwise, an empty Optional.
+     */
+    public static Optional<String> checksum(FtpConnector conn, String path, ChecksumAlgorithm algorithm) {
+        FTPClient client = conn.getClient();
+        try {
+            String command = algorithm.getFtpCommand();
+            if (command != null && client.hasFeature(command)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Requesting {} of {}:{}.", command, conn.getHostLabel(), path);
+                }
+                if (FTPReply.isPositiveCompletion(client.sendCommand(command, path))) {
+                    return Digester.parseHex(client.getReplyString(), algorithm);
+                }
+            }
+
+            if (supportsHash(client, algorithm)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Requesting {} HASH of {}:{}.", algorithm.getName(), conn.getHostLabel(), path);
+                }
+                if (FTPReply.isPositiveCompletion(client.sendCommand("OPTS", "HASH " + algorithm.getName()))
+                        && FTPReply.isPositiveCompletion(client.sendCommand("HASH", path))) {
+                    return Digester.parseHex(client.getReplyString(), algorithm);
+                }
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debug("Host cannot compute {} of {}:{}.", algorithm.getName(), conn.getHostLabel(), path);
+            }
+            return Optional.empty();
+        } catch (IOException ex) {
+            String message = String.format("I/O error requesting checksum of %s.",
+                                           getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, ex);
+        }
+    }
+
+    private static boolean supportsHash(FTPClient client, ChecksumAlgorithm algorithm) throws IOException {
+        String[] values = client.featureValues("HASH");
+        if (values == null) {
+            return false;
+        }
+        for (String value : values) {
+            for (String name : value.split(";")) {
+                if (name.replace("*", "").trim().equalsIgnoreCase(algorithm.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
     private static Optional<String> retrieveFile(FtpConnector conn,
             String path,
             OutputStream stream) {
         FTPClient client = conn.getClient();
-        String locationLabel = getLocationLabel(conn, path);
-        log.debug(String.format("Retrieving file %s.", locationLabel));
+        log.debug("Retrieving file {}:{}.", conn.getHostLabel(), path);
         boolean successful;
         try {
             successful = client.retrieveFile(path, stream);
 
             if (!successful) {
                 if (client.getReplyCode() == 550) {
-                    log.debug(String.format("File %s not found.", locationLabel));
+                    log.debug("File {}:{} not found.", conn.getHostLabel(), path);
                     return Optional.empty();
                 }
 
                 throw new FileTransferException(client.getReplyString());
             }
-            log.debug(String.format("Found file %s.", locationLabel));
+            log.debug("Found file {}:{}.", conn.getHostLabel(), path);
             return Optional.of(client.getReplyString());
         } catch (IOException ex) {
             throw new FileTransferException(ex);
         }
     }
 
-    private static String getLocationLabel(FtpConnector conn, String path) {
-        return String.format("%s:%s", getHostLabel(conn), path);
+    /**
+     * Checks that a listed path is a directory only when the listing cannot tell, which is when it is empty or is a
+     * single file with the name of the path, saving the round trips of changing directory for every listing.
+     */
+    private static void requireDirectory(FtpConnector conn, String path, List<FileInfo> files) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        boolean ambiguous = files.isEmpty()
+                || (files.size() == 1 && !files.get(0).isDirectory() && files.get(0).getName().equals(name));
+        if (ambiguous && !dirExists(conn, path)) {
+            throw new FileTransferException(String.format("Directory %s does not exist.",
+                                                          getLocationLabel(conn, path)));
+        }
     }
 
-    private static String getHostLabel(FtpConnector conn) {
-        if (conn.getPort() == 21) {
-            return conn.getHost();
-        }
-        return String.format("%s:%d", conn.getHost(), conn.getPort());
+    private static String getLocationLabel(FtpConnector conn, String path) {
+        return conn.getHostLabel() + ":" + path;
     }
 
     private static FileTransferException pathDoesNotExist(FtpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
         String message = String.format("Path to %s does not exist.", path);
         return new FileTransferException(path);
     }
 
     private static MissingRemoteFileException remoteFileNotFound(FtpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
-        String message = String.format("Remote file %s not found.", locationLabel);
+        String message = String.format("Remote file %s not found.", getLocationLabel(conn, path));
         return new MissingRemoteFileException(message);
     }
 }
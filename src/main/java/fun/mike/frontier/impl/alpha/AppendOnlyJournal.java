@@ -0,0 +1,182 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A file of records, one per line, each forced to disk as it is appended so that a record, once appended, survives a
+ * crash. Fields within a record are separated by spaces; encode any field that may hold one.
+ * <p>
+ * The owner keeps its state in memory, rebuilds it by replaying the records when the journal is opened, and
+ * supplies the records that describe its live state whenever the journal is compacted. Compacting writes those
+ * records to a temp file, forces it and renames it over the journal, so a crash leaves either the old journal or the
+ * new one. The owner calls compact once after replaying, and ended each time a record ends an entry, which compacts
+ * once ended entries outnumber live ones, so the journal stays small however many entries pass through it.
+ * <p>
+ * Not thread-safe; the owner must synchronize access.
+ */
+public class AppendOnlyJournal implements Closeable {
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int COMPACT_THRESHOLD = 1024;
+
+    private final Path file;
+    private final Supplier<List<String>> liveRecords;
+    private FileChannel channel;
+    private int ended = 0;
+
+    /**
+     * @param file        the journal file, whose directory is created if needed
+     * @param liveRecords supplies the records describing the owner's live state, to compact the journal to
+     * @throws IOException if the directory cannot be created
+     */
+    public AppendOnlyJournal(Path file, Supplier<List<String>> liveRecords) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.liveRecords = liveRecords;
+        Files.createDirectories(this.file.getParent());
+    }
+
+    /**
+     * Passes the fields of each complete record to a reader, oldest first. A last record without its line break was
+     * cut short by a crash and is skipped, as is any record for which the reader throws an IllegalArgumentException,
+     * such as a NumberFormatException from a malformed field.
+     *
+     * @param reader called with the fields of each record
+     * @throws IOException if the journal cannot be read
+     */
+    public void replay(Consumer<String[]> reader) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf('\n', start)) {
+            String record = text.substring(start, end);
+            start = end + 1;
+            try {
+                reader.accept(record.split(" "));
+            } catch (IllegalArgumentException ex) {
+                // A record the reader cannot make sense of was never acknowledged.
+            }
+        }
+    }
+
+    /**
+     * Durably appends a record.
+     *
+     * @param record the record, without a line break
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public void append(String record) throws IOException {
+        if (channel == null) {
+            throw new IOException("Journal is closed.");
+        }
+        write(channel, record + "\n");
+        channel.force(false);
+    }
+
+    /**
+     * Counts an entry ended by the last record appended, compacting the journal if ended entries now outnumber live
+     * ones.
+     *
+     * @param live the number of entries still live
+     * @throws IOException if the journal cannot be compacted
+     */
+    public void ended(int live) throws IOException {
+        ended++;
+        if (ended > COMPACT_THRESHOLD && ended > live) {
+            compact();
+        }
+    }
+
+    /**
+     * Atomically rewrites the journal with only the owner's live records, then opens it for appending.
+     *
+     * @throws IOException if the journal cannot be rewritten
+     */
+    public void compact() throws IOException {
+        close();
+        StringBuilder records = new StringBuilder();
+        for (String record : liveRecords.get()) {
+            records.append(record).append('\n');
+        }
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try (FileChannel out = FileChannel.open(temp,
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(out, records.toString());
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        ended = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Forces renames within a directory to disk. Not every platform can open a directory, in which case the renames
+     * are left to the file system's own ordering.
+     *
+     * @param dir the directory
+     */
+    public static void forceDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // Directories cannot be opened on this platform.
+        }
+    }
+
+    /**
+     * @param field a field that may hold spaces or line breaks
+     * @return the field with no spaces or line breaks
+     */
+    public static String encode(String field) {
+        try {
+            return URLEncoder.encode(field, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param field an encoded field
+     * @return the field as it was before it was encoded
+     * @throws IllegalArgumentException if the field holds a malformed escape
+     */
+    public static String decode(String field) {
+        try {
+            return URLDecoder.decode(field, "UTF-8");
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static void write(FileChannel channel, String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A least recently used cache of fixed-size blocks of remote files. Blocks are keyed by path, the modification time
+ * and size of the file, and the block index, so a file that changes is read again rather than served stale.
+ * <p>
+ * A block is cached as a future as soon as it is asked for, so concurrent readers of the same block wait for one
+ * fetch instead of each starting their own. Blocks whose fetch fails are dropped so the next read tries again.
+ */
+public class BlockCache {
+    private final int capacity;
+    private final Map<Key, CompletableFuture<byte[]>> blocks;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param capacity the most blocks to keep
+     */
+    public BlockCache(int capacity) {
+        this.capacity = capacity;
+        this.blocks = new LinkedHashMap<Key, CompletableFuture<byte[]>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CompletableFuture<byte[]>> eldest) {
+                return size() > BlockCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets a block, fetching it if it is not cached.
+     *
+     * @param path     the path to the file
+     * @param time     the modification time of the file
+     * @param size     the size of the file
+     * @param index    the index of the block
+     * @param executor runs the fetch, or null to run it in the calling thread
+     * @param loader   fetches the block
+     * @return a future of the contents of the block
+     */
+    public CompletableFuture<byte[]> get(String path,
+            long time,
+            long size,
+            long index,
+            Executor executor,
+            Supplier<byte[]> loader) {
+        Key key = new Key(path, time, size, index);
+        CompletableFuture<byte[]> block;
+        synchronized (blocks) {
+            block = blocks.get(key);
+            if (block != null) {
+                hits.incrementAndGet();
+                return block;
+            }
+            misses.incrementAndGet();
+            block = new CompletableFuture<>();
+            blocks.put(key, block);
+        }
+
+        CompletableFuture<byte[]> pending = block;
+        Runnable load = () -> {
+            try {
+                pending.complete(loader.get());
+            } catch (Throwable ex) {
+                // Complete on errors too, or every reader waiting on the block would wait forever.
+                synchronized (blocks) {
+                    blocks.remove(key, pending);
+                }
+                pending.completeExceptionally(ex);
+                if (ex instanceof Error) {
+                    throw (Error) ex;
+                }
+            }
+        };
+        if (executor == null) {
+            load.run();
+        } else {
+            try {
+                executor.execute(load);
+            } catch (RejectedExecutionException ex) {
+                synchronized (blocks) {
+                    blocks.remove(key, pending);
+                }
+                pending.completeExceptionally(ex);
+            }
+        }
+        return block;
+    }
+
+    /**
+     * @param path  the path to the file
+     * @param time  the modification time of the file
+     * @param size  the size of the file
+     * @param index the index of the block
+     * @return true if the block is cached or being fetched
+     */
+    public boolean contains(String path, long time, long size, long index) {
+        synchronized (blocks) {
+            return blocks.containsKey(new Key(path, time, size, index));
+        }
+    }
+
+    /**
+     * Drops every cached block.
+     */
+    public void clear() {
+        synchronized (blocks) {
+            blocks.clear();
+        }
+    }
+
+    /**
+     * @return the number of reads served from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of reads that fetched a block.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Key {
+        private final String path;
+        private final long time;
+        private final long size;
+        private final long index;
+
+        private Key(String path, long time, long size, long index) {
+            this.path = path;
+            this.time = time;
+            this.size = size;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return time == key.time && size == key.size && index == key.index && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, time, size, index);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * Deflates input in independent blocks that concatenate into a single raw deflate stream, so the blocks of one
+ * stream can be compressed in parallel.
+ */
+public class BlockDeflater {
+    public static final int BLOCK_SIZE = 128 * 1024;
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+
+    /**
+     * Deflates one block as raw deflate data. Blocks other than the last end on a byte boundary with a sync flush,
+     * so the compressed blocks concatenate into a single deflate stream. Presetting the dictionary with the tail of
+     * the previous block keeps the ratio close to that of a single stream.
+     *
+     * @param input      the uncompressed block
+     * @param dictionary the tail of the previous block, or null for the first block
+     * @param last       true if this is the final block of the stream
+     * @param level      a Deflater compression level
+     * @return the compressed block
+     */
+    public static byte[] deflate(byte[] input, byte[] dictionary, boolean last, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, n);
+                }
+            } else {
+                int n;
+                do {
+                    n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    compressed.write(buffer, 0, n);
+                } while (n == buffer.length);
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * @param block an uncompressed block
+     * @return the dictionary to preset when compressing the block after it
+     */
+    public static byte[] dictionary(byte[] block) {
+        return block.length > DICTIONARY_SIZE
+                ? Arrays.copyOfRange(block, block.length - DICTIONARY_SIZE, block.length)
+                : block;
+    }
+
+    /**
+     * @param parallelism the number of threads
+     * @param name        a name for the threads
+     * @return an ExecutorService of daemon threads for compressing blocks
+     */
+    public static ExecutorService executor(int parallelism, String name) {
+        return Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Waits for a compressed block.
+     *
+     * @param future a Future for a compressed block
+     * @return the compressed block
+     * @throws IOException if compression failed or the thread was interrupted
+     */
+    public static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+}
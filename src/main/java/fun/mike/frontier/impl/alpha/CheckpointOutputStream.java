@@ -0,0 +1,62 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream that reports its progress each time a given number of bytes has been written through it, so a
+ * long transfer can be resumed from the last report rather than from the start.
+ */
+public class CheckpointOutputStream extends FilterOutputStream {
+    private final long interval;
+    private final Checkpoint checkpoint;
+    private long count = 0;
+    private long next;
+
+    /**
+     * Records progress through a stream.
+     */
+    public interface Checkpoint {
+        /**
+         * @param count the number of bytes written so far
+         * @throws IOException if the progress cannot be recorded
+         */
+        void reached(long count) throws IOException;
+    }
+
+    public CheckpointOutputStream(OutputStream out, long interval, Checkpoint checkpoint) {
+        super(out);
+        this.interval = interval;
+        this.checkpoint = checkpoint;
+        this.next = interval;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+        if (count >= next) {
+            reached();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+        if (count >= next) {
+            reached();
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private void reached() throws IOException {
+        out.flush();
+        checkpoint.reached(count);
+        next = count + interval;
+    }
+}
@@ -0,0 +1,152 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Keeps logged-in connections between operations so they can be reused instead of connecting again. The most recently
+ * returned connection is handed out first, and each one is checked before it is reused. Connections idle for longer
+ * than the timeout are closed in the background, so they do not hold their host's limiter permits indefinitely.
+ *
+ * @param <C> the type of connector
+ */
+public class ConnectorPool<C> {
+    private static final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frontier-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final int maxIdle;
+    private final long idleTimeoutMillis;
+    private final Predicate<C> validator;
+    private final Consumer<C> closer;
+    private final Deque<Idle<C>> idle = new ArrayDeque<>();
+    private boolean evictionScheduled = false;
+
+    /**
+     * @param maxIdle           the most connections to keep, or 0 to keep none
+     * @param idleTimeoutMillis how long a connection may sit unused before it is closed
+     * @param validator         checks that an idle connection still works
+     * @param closer            closes a connection that is discarded
+     */
+    public ConnectorPool(int maxIdle, long idleTimeoutMillis, Predicate<C> validator, Consumer<C> closer) {
+        this.maxIdle = maxIdle;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validator = validator;
+        this.closer = closer;
+    }
+
+    /**
+     * @return an idle connection that passed validation, or null if there is none.
+     */
+    public C borrow() {
+        if (maxIdle == 0) {
+            return null;
+        }
+        while (true) {
+            Idle<C> entry;
+            synchronized (idle) {
+                entry = idle.pollFirst();
+            }
+            if (entry == null) {
+                return null;
+            }
+            if (System.currentTimeMillis() - entry.since <= idleTimeoutMillis && validator.test(entry.connector)) {
+                return entry.connector;
+            }
+            close(entry.connector);
+        }
+    }
+
+    /**
+     * Returns a connection to the pool.
+     *
+     * @param connector a connection in a state ready for the next operation
+     * @return true if the pool kept it; false if the pool is full and the caller must close it.
+     */
+    public boolean offer(C connector) {
+        synchronized (idle) {
+            if (idle.size() >= maxIdle) {
+                return false;
+            }
+            idle.addFirst(new Idle<>(connector, System.currentTimeMillis()));
+            if (!evictionScheduled) {
+                evictionScheduled = true;
+                evictor.schedule(this::evictExpired, idleTimeoutMillis + 1, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Closes every idle connection.
+     */
+    public void clear() {
+        List<Idle<C>> entries;
+        synchronized (idle) {
+            entries = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (Idle<C> entry : entries) {
+            close(entry.connector);
+        }
+    }
+
+    /**
+     * @return the number of idle connections.
+     */
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    /**
+     * Closes the connections that have sat idle past the timeout, oldest first, and schedules itself again for the
+     * next one due to expire.
+     */
+    private void evictExpired() {
+        List<C> expired = new ArrayList<>();
+        synchronized (idle) {
+            long now = System.currentTimeMillis();
+            while (!idle.isEmpty() && now - idle.peekLast().since > idleTimeoutMillis) {
+                expired.add(idle.pollLast().connector);
+            }
+            if (idle.isEmpty()) {
+                evictionScheduled = false;
+            } else {
+                long delay = idle.peekLast().since + idleTimeoutMillis + 1 - now;
+                evictor.schedule(this::evictExpired, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        for (C connector : expired) {
+            close(connector);
+        }
+    }
+
+    private void close(C connector) {
+        try {
+            closer.accept(connector);
+        } catch (RuntimeException ex) {
+            // The connection is being discarded anyway.
+        }
+    }
+
+    private static class Idle<C> {
+        private final C connector;
+        private final long since;
+
+        private Idle(C connector, long since) {
+            this.connector = connector;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which an operation must finish. A deadline can watch a connection and abort it when time runs
+ * out, which frees threads blocked in socket reads that no timeout would otherwise interrupt.
+ */
+public class Deadline {
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "frontier-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final long timeoutMillis;
+    private final long expiresAt;
+    private ScheduledFuture<?> watch;
+    private volatile boolean aborted = false;
+
+    private Deadline(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * @param timeoutMillis milliseconds from now, or 0 for no deadline
+     * @return a Deadline, or null if timeoutMillis is 0
+     */
+    public static Deadline after(long timeoutMillis) {
+        return timeoutMillis > 0 ? new Deadline(timeoutMillis) : null;
+    }
+
+    /**
+     * @return the total time allowed, in milliseconds.
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return the milliseconds left, rounded up so a socket timeout set to it ends no sooner than the deadline, and at
+     * least 1 so it can be used as one.
+     */
+    public int remainingMillis() {
+        long remainingNanos = expiresAt - System.nanoTime();
+        long remaining = TimeUnit.NANOSECONDS.toMillis(remainingNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, remaining));
+    }
+
+    /**
+     * @return true if the deadline has passed, whether or not the watchdog has aborted the connection yet.
+     */
+    public boolean isExpired() {
+        return System.nanoTime() - expiresAt >= 0;
+    }
+
+    /**
+     * Runs an action when the deadline passes, unless cancelled first.
+     *
+     * @param abort an action closing the connection
+     */
+    public synchronized void watch(Runnable abort) {
+        watch = watchdog.schedule(() -> {
+                aborted = true;
+                abort.run();
+            }, expiresAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops watching.
+     */
+    public synchronized void cancel() {
+        if (watch != null) {
+            watch.cancel(false);
+        }
+    }
+
+    /**
+     * @return true if the deadline passed and the watched connection was aborted.
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+}
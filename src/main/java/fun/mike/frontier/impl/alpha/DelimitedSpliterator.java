@@ -0,0 +1,100 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Splits the characters of a reader on a delimiter, reading in large chunks and producing each piece lazily.
+ */
+public class DelimitedSpliterator extends Spliterators.AbstractSpliterator<String> {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final String delimiter;
+    private char[] buffer = new char[CHUNK_SIZE];
+    private int start = 0;
+    private int end = 0;
+    private int searchFrom = 0;
+    private boolean eof = false;
+
+    public DelimitedSpliterator(Reader reader, String delimiter) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        if (delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Delimiter must not be empty.");
+        }
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        while (true) {
+            int index = indexOfDelimiter();
+            if (index >= 0) {
+                action.accept(new String(buffer, start, index - start));
+                start = index + delimiter.length();
+                searchFrom = start;
+                return true;
+            }
+
+            searchFrom = Math.max(start, end - delimiter.length() + 1);
+
+            if (eof) {
+                if (start < end) {
+                    action.accept(new String(buffer, start, end - start));
+                    start = end;
+                    return true;
+                }
+                return false;
+            }
+
+            fill();
+        }
+    }
+
+    private int indexOfDelimiter() {
+        char first = delimiter.charAt(0);
+        int last = end - delimiter.length();
+        for (int i = searchFrom; i <= last; i++) {
+            if (buffer[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < delimiter.length() && buffer[i + j] == delimiter.charAt(j)) {
+                j++;
+            }
+            if (j == delimiter.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void fill() {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            searchFrom -= start;
+            start = 0;
+        }
+        if (end == buffer.length) {
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, end);
+            buffer = grown;
+        }
+        try {
+            int n = reader.read(buffer, end, buffer.length - end);
+            if (n == -1) {
+                eof = true;
+            } else {
+                end += n;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import fun.mike.frontier.alpha.ChecksumAlgorithm;
+import fun.mike.frontier.alpha.ChecksumMismatchException;
+
+/**
+ * Incrementally computes a checksum over the bytes passing through a transfer.
+ */
+public abstract class Digester {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public abstract void update(byte[] bytes, int offset, int length);
+
+    public abstract String hex();
+
+    public static Digester of(ChecksumAlgorithm algorithm) {
+        if (algorithm == ChecksumAlgorithm.CRC32) {
+            return new CrcDigester();
+        }
+        try {
+            return new MessageDigester(MessageDigest.getInstance(algorithm.getName()));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Compares a locally computed checksum against the one reported by the host, if any.
+     *
+     * @param locationLabel a label for the remote file
+     * @param local         the checksum computed during the transfer
+     * @param remote        an Optional containing the checksum reported by the host
+     * @return the local checksum
+     */
+    public static String verify(String locationLabel, String local, Optional<String> remote) {
+        if (remote.isPresent() && !remote.get().equalsIgnoreCase(local)) {
+            String message = String.format("Checksum mismatch for %s: computed %s, but host reported %s.",
+                                           locationLabel,
+                                           local,
+                                           remote.get());
+            throw new ChecksumMismatchException(message, local, remote.get());
+        }
+        return local;
+    }
+
+    /**
+     * Finds the first hex token of the expected length in a reply from a host.
+     *
+     * @param reply     a reply string
+     * @param algorithm the algorithm that produced the checksum
+     * @return an Optional containing the checksum in lowercase if one was found; otherwise, an empty Optional.
+     */
+    public static Optional<String> parseHex(String reply, ChecksumAlgorithm algorithm) {
+        for (String token : reply.trim().split("\\s+")) {
+            if (token.length() == algorithm.getHexLength() && isHex(token)) {
+                return Optional.of(token.toLowerCase());
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isHex(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            if (Character.digit(token.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static class MessageDigester extends Digester {
+        private final MessageDigest digest;
+
+        MessageDigester(MessageDigest digest) {
+            this.digest = digest;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            digest.update(bytes, offset, length);
+        }
+
+        @Override
+        public String hex() {
+            return toHex(digest.digest());
+        }
+    }
+
+    private static class CrcDigester extends Digester {
+        private final CRC32 crc = new CRC32();
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            crc.update(bytes, offset, length);
+        }
+
+        @Override
+        public String hex() {
+            return String.format("%08x", crc.getValue());
+        }
+    }
+}
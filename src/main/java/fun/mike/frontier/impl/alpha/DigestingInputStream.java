@@ -0,0 +1,47 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that feeds every byte read into a Digester.
+ */
+public class DigestingInputStream extends FilterInputStream {
+    private final Digester digester;
+    private final byte[] single = new byte[1];
+
+    public DigestingInputStream(InputStream in, Digester digester) {
+        super(in);
+        this.digester = digester;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            single[0] = (byte) b;
+            digester.update(single, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) {
+            digester.update(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("Skipping would leave a gap in the checksum.");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
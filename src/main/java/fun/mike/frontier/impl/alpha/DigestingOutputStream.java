@@ -0,0 +1,31 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An OutputStream that feeds every byte written into a Digester.
+ */
+public class DigestingOutputStream extends FilterOutputStream {
+    private final Digester digester;
+    private final byte[] single = new byte[1];
+
+    public DigestingOutputStream(OutputStream out, Digester digester) {
+        super(out);
+        this.digester = digester;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        single[0] = (byte) b;
+        digester.update(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        digester.update(b, off, len);
+    }
+}
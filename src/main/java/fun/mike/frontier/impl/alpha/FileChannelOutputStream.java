@@ -0,0 +1,86 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An OutputStream to a local file that stages bytes in a direct buffer and writes them with positional FileChannel
+ * writes. When the final size is already known, the file is extended to that size before the first write; this only
+ * sets its length, and blocks are still allocated as they are written.
+ */
+public class FileChannelOutputStream extends OutputStream {
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long position = 0;
+
+    public FileChannelOutputStream(String path) throws IOException {
+        this(path, 0);
+    }
+
+    /**
+     * Opens a local file for writing, truncating it.
+     *
+     * @param path         a local path
+     * @param expectedSize the number of bytes that will be written, or 0 if unknown
+     * @throws IOException if the file cannot be opened
+     */
+    public FileChannelOutputStream(String path, long expectedSize) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path),
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+        if (expectedSize > 0) {
+            channel.write(ByteBuffer.allocate(1), expectedSize - 1);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!buffer.hasRemaining()) {
+                flushBuffer();
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+            channel.truncate(position);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        buffer.clear();
+    }
+}
@@ -1,16 +1,41 @@
 package fun.mike.frontier.impl.alpha;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fun.mike.frontier.alpha.HostLimiter;
 import org.apache.commons.net.ftp.FTPClient;
 
 public class FtpConnector {
     private final FTPClient client;
     private final String host;
     private final Integer port;
+    private final String hostLabel;
+    private final HostLimiter.Permit permit;
+    private final Deadline deadline;
+    private final AtomicInteger openTransfers = new AtomicInteger();
 
     public FtpConnector(FTPClient client, String host, Integer port) {
+        this(client, host, port, HostLimiter.Permit.NONE);
+    }
+
+    public FtpConnector(FTPClient client,
+            String host,
+            Integer port,
+            HostLimiter.Permit permit) {
+        this(client, host, port, permit, null);
+    }
+
+    public FtpConnector(FTPClient client,
+            String host,
+            Integer port,
+            HostLimiter.Permit permit,
+            Deadline deadline) {
         this.client = client;
         this.host = host;
         this.port = port;
+        this.hostLabel = port == 21 ? host : host + ":" + port;
+        this.permit = permit;
+        this.deadline = deadline;
     }
 
     public FTPClient getClient() {
@@ -24,4 +49,37 @@ public class FtpConnector {
     public Integer getPort() {
         return port;
     }
+
+    public String getHostLabel() {
+        return hostLabel;
+    }
+
+    public HostLimiter.Permit getPermit() {
+        return permit;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Records that a transfer on this connection was handed to a caller, leaving the connection mid-transfer.
+     */
+    public void transferOpened() {
+        openTransfers.incrementAndGet();
+    }
+
+    /**
+     * Records that a transfer recorded by transferOpened completed cleanly.
+     */
+    public void transferCompleted() {
+        openTransfers.decrementAndGet();
+    }
+
+    /**
+     * @return true if a transfer handed to a caller has not completed, so the connection must not be reused.
+     */
+    public boolean hasOpenTransfers() {
+        return openTransfers.get() > 0;
+    }
 }
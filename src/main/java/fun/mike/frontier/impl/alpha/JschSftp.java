@@ -1,20 +1,37 @@
 package fun.mike.frontier.impl.alpha;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpATTRS;
 import com.jcraft.jsch.SftpException;
+import fun.mike.frontier.alpha.ByteRange;
+import fun.mike.frontier.alpha.ChecksumAlgorithm;
 import fun.mike.frontier.alpha.FileTransferException;
+import fun.mike.frontier.alpha.IO;
 import fun.mike.frontier.alpha.MissingRemoteFileException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class JschSftp {
     private static final Logger log = LoggerFactory.getLogger(JschSftp.class);
+    private static final String EXEC_MARKER = "frontier";
+    private static final int EXEC_PROBE_TIMEOUT = 5000;
 
     public static Boolean fileExists(SftpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
-        log.debug(String.format("Checking if file %s exists.",
-                                locationLabel));
+        log.debug("Checking if file {}:{} exists.", conn.getHostLabel(), path);
 
         try {
             ChannelSftp chan = conn.getChannel();
@@ -22,7 +39,7 @@ public class JschSftp {
 
             if (attrs.isDir()) {
                 String message = String.format("%s exists, but is a directory.",
-                                               locationLabel);
+                                               getLocationLabel(conn, path));
                 throw new FileTransferException(message);
             }
 
@@ -31,25 +48,272 @@ public class JschSftp {
             if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
                 return false;
             } else {
-                String message = String.format("Error asserting if file %s exists.", locationLabel);
+                String message = String.format("Error asserting if file %s exists.", getLocationLabel(conn, path));
                 throw new FileTransferException(message);
             }
         }
     }
 
-    private static String getLocationLabel(SftpConnector conn, String path) {
-        return String.format("%s:%s", getHostLabel(conn), path);
+    /**
+     * Streams a file over SFTP to the given reader.
+     *
+     * @param conn   an SftpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param reader a function of an InputStream to the file, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public static <T> T read(SftpConnector conn, String path, Function<InputStream, T> reader) {
+        log.debug("Streaming file {}:{}.", conn.getHostLabel(), path);
+        try (InputStream is = conn.getChannel().get(path)) {
+            return reader.apply(is);
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw remoteFileNotFound(conn, path);
+            }
+            String message = String.format("Failed to retrieve file at path \"%s\".", path);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        } catch (IOException e) {
+            String message = String.format("I/O error streaming file %s.", getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
+
+    /**
+     * Reads a range of a file on the host.
+     *
+     * @param conn   an SftpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param offset the offset of the first byte to read.
+     * @param length the number of bytes to read.
+     * @return the bytes in the range, fewer than length only if the file ends first.
+     */
+    public static byte[] read(SftpConnector conn, String path, long offset, int length) {
+        return read(conn, path, offset, length, is -> {
+                try {
+                    return IO.read(is, length);
+                } catch (UncheckedIOException ex) {
+                    String message = String.format("I/O error reading %s.", getLocationLabel(conn, path));
+                    log.warn(message);
+                    throw new FileTransferException(message, ex.getCause());
+                }
+            });
+    }
+
+    /**
+     * Streams a range of a file on the host to the given reader. Reading starts at the offset, so the bytes before it
+     * are never requested.
+     *
+     * @param conn   an SftpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param offset the offset of the first byte to read.
+     * @param length the number of bytes to read.
+     * @param reader a function of an InputStream to the range, which is only valid until the function returns.
+     * @param <T>    the type of the result
+     * @return the result of the reader
+     */
+    public static <T> T read(SftpConnector conn,
+            String path,
+            long offset,
+            long length,
+            Function<InputStream, T> reader) {
+        if (log.isDebugEnabled()) {
+            log.debug("Reading {} bytes of {}:{} from offset {}.", length, conn.getHostLabel(), path, offset);
+        }
+        try (InputStream is = conn.getChannel().get(path, null, offset)) {
+            return reader.apply(new BoundedInputStream(is, length));
+        } catch (SftpException e) {
+            if (e.id == ChannelSftp.SSH_FX_NO_SUCH_FILE) {
+                throw remoteFileNotFound(conn, path);
+            }
+            String message = String.format("Failed to retrieve file at path \"%s\".", path);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        } catch (IOException e) {
+            String message = String.format("I/O error streaming file %s.", getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
+
+    /**
+     * Reads many ranges of a file on the host over one channel. Ranges close together are read with a single request.
+     *
+     * @param conn   an SftpConnector instance.
+     * @param path   the path to a file on the host.
+     * @param ranges the ranges to read.
+     * @return the bytes of each range, in the order of ranges.
+     */
+    public static List<byte[]> read(SftpConnector conn, String path, List<ByteRange> ranges) {
+        return VectoredRead.read(ranges, (offset, length) -> read(conn, path, offset, length));
+    }
+
+    /**
+     * Opens a stream to a path on the host for the given writer.
+     *
+     * @param conn   an SftpConnector instance.
+     * @param path   a path to write to on the host.
+     * @param writer a consumer of an OutputStream to the file, which is only valid until the consumer returns.
+     * @return the path written to
+     */
+    public static String write(SftpConnector conn, String path, Consumer<OutputStream> writer) {
+        log.debug("Writing content to {}:{}.", conn.getHostLabel(), path);
+        try (OutputStream os = conn.getChannel().put(path)) {
+            writer.accept(os);
+            return path;
+        } catch (SftpException e) {
+            String message = String.format("Failed to access path \"%s\".", path);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        } catch (IOException e) {
+            String message = String.format("I/O error writing %s.", getLocationLabel(conn, path));
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
+
+    /**
+     * Starts writing a file on the host. The channel cannot be used for anything else until the stream is closed.
+     *
+     * @param conn an SftpConnector instance.
+     * @param path a path to write to on the host.
+     * @return an OutputStream to the file
+     */
+    public static OutputStream openOutputStream(SftpConnector conn, String path) {
+        log.debug("Writing content to {}:{}.", conn.getHostLabel(), path);
+        try {
+            return conn.getChannel().put(path);
+        } catch (SftpException e) {
+            String message = String.format("Failed to access path \"%s\".", path);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
+    }
+
+    /**
+     * Opens a stream that writes to a file on the host from the given offset. JSch can only open a file for writing
+     * by truncating it, so a file written through several such streams at once must have all of them opened before
+     * any is written to.
+     *
+     * @param conn   an SftpConnector instance.
+     * @param path   a path to write to on the host.
+     * @param offset the offset of the first byte to write.
+     * @return an OutputStream to the file, which must be closed.
+     */
+    public static OutputStream openOutputStream(SftpConnector conn, String path, long offset) {
+        if (log.isDebugEnabled()) {
+            log.debug("Writing content to {}:{} from offset {}.", conn.getHostLabel(), path, offset);
+        }
+        try {
+            return conn.getChannel().put(path, null, ChannelSftp.OVERWRITE, offset);
+        } catch (SftpException e) {
+            String message = String.format("Failed to access path \"%s\".", path);
+            log.warn(message);
+            throw new FileTransferException(message, e);
+        }
     }
 
-    private static String getHostLabel(SftpConnector conn) {
-        if (conn.getPort() == 21) {
-            return conn.getHost();
+    /**
+     * Asks the host for the checksum of a file by running a checksum command such as sha256sum over the existing
+     * session. A host that does not run commands, such as one allowing only sftp, is remembered in execUnsupported and
+     * not asked again.
+     *
+     * @param conn            an SftpConnector instance.
+     * @param path            a path to a file on the host.
+     * @param algorithm       the checksum algorithm to use.
+     * @param execUnsupported set when the host is found not to run commands; if already set, the host is not asked.
+     * @return an Optional containing the checksum if the host could compute it; otherwise, an empty Optional.
+     */
+    public static Optional<String> checksum(SftpConnector conn,
+            String path,
+            ChecksumAlgorithm algorithm,
+            AtomicBoolean execUnsupported) {
+        String command = algorithm.getShellCommand();
+        if (command == null || execUnsupported.get()) {
+            return Optional.empty();
         }
-        return String.format("%s:%d", conn.getHost(), conn.getPort());
+
+        if (log.isDebugEnabled()) {
+            log.debug("Requesting {} of {}:{}.", command, conn.getHostLabel(), path);
+        }
+        ChannelExec chan = null;
+        try {
+            chan = (ChannelExec) conn.getSession().openChannel("exec");
+            chan.setCommand("echo " + EXEC_MARKER + " && " + command + " -- " + quote(path));
+            chan.setInputStream(new ByteArrayInputStream(new byte[0]));
+            InputStream output = chan.getInputStream();
+            chan.connect(EXEC_PROBE_TIMEOUT);
+            Optional<String> reply = readExecOutput(chan, output);
+            if (!reply.isPresent()) {
+                log.debug("Host {} does not run commands; not asking it for checksums again.", conn.getHostLabel());
+                execUnsupported.set(true);
+                return Optional.empty();
+            }
+            if (chan.getExitStatus() > 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Host cannot compute {} of {}:{}.", algorithm.getName(), conn.getHostLabel(), path);
+                }
+                return Optional.empty();
+            }
+            return Digester.parseHex(reply.get().substring(EXEC_MARKER.length()), algorithm);
+        } catch (JSchException | IOException e) {
+            log.debug("Host {} does not run commands; not asking it for checksums again.", conn.getHostLabel());
+            execUnsupported.set(true);
+            return Optional.empty();
+        } finally {
+            if (chan != null) {
+                chan.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Reads the output of an exec channel to its end with blocking reads. Servers that do not run commands, such as
+     * sftp-only accounts, never echo the marker, so the channel is disconnected if the marker does not arrive in
+     * time, which ends the read.
+     *
+     * @return the output, or an empty Optional if it did not start with the marker
+     */
+    private static Optional<String> readExecOutput(ChannelExec chan, InputStream output) throws IOException {
+        Deadline deadline = Deadline.after(EXEC_PROBE_TIMEOUT);
+        deadline.watch(chan::disconnect);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] bytes = new byte[1024];
+        boolean marked = false;
+        try {
+            int n;
+            while ((n = output.read(bytes)) != -1) {
+                buffer.write(bytes, 0, n);
+                if (!marked && buffer.size() >= EXEC_MARKER.length()) {
+                    if (!buffer.toString("UTF-8").startsWith(EXEC_MARKER)) {
+                        return Optional.empty();
+                    }
+                    marked = true;
+                    deadline.cancel();
+                }
+            }
+        } catch (IOException e) {
+            if (deadline.isAborted()) {
+                return Optional.empty();
+            }
+            throw e;
+        } finally {
+            deadline.cancel();
+        }
+        return marked ? Optional.of(buffer.toString("UTF-8")) : Optional.empty();
+    }
+
+    private static String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
+    private static String getLocationLabel(SftpConnector conn, String path) {
+        return conn.getHostLabel() + ":" + path;
     }
 
     private static MissingRemoteFileException remoteFileNotFound(SftpConnector conn, String path) {
-        String locationLabel = getLocationLabel(conn, path);
         String message = String.format("File %s not found.", path);
         return new MissingRemoteFileException(message);
     }
@@ -0,0 +1,93 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An InputStream over a local file that reads from memory-mapped regions of the file rather than through read calls,
+ * so bytes are copied once from the page cache into the caller's buffer.
+ */
+public class MappedFileInputStream extends InputStream {
+    private static final long REGION_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private long position;
+    private MappedByteBuffer region;
+
+    public MappedFileInputStream(String path) throws IOException {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads one segment of a file.
+     *
+     * @param path   a path of a file
+     * @param offset the offset of the first byte to read
+     * @param length the most bytes to read
+     * @throws IOException if the file cannot be opened
+     */
+    public MappedFileInputStream(String path, long offset, long length) throws IOException {
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+        this.size = Math.min(channel.size(), offset + Math.min(length, Long.MAX_VALUE - offset));
+        this.position = offset;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureRegion()) {
+            return -1;
+        }
+        position++;
+        return region.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!ensureRegion()) {
+            return -1;
+        }
+        int n = Math.min(len, region.remaining());
+        region.get(b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, size - position));
+        position += skipped;
+        region = null;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        region = null;
+        channel.close();
+    }
+
+    private boolean ensureRegion() throws IOException {
+        if (position >= size) {
+            return false;
+        }
+        if (region == null || !region.hasRemaining()) {
+            region = channel.map(FileChannel.MapMode.READ_ONLY,
+                                 position,
+                                 Math.min(REGION_SIZE, size - position));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * An OutputStream that gzip-compresses the bytes written to it, deflating blocks in parallel and writing them in
+ * order as a single gzip member. Closing the stream writes the gzip trailer and closes the underlying stream.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int level;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final CRC32 crc = new CRC32();
+    private byte[] block = new byte[BlockDeflater.BLOCK_SIZE];
+    private int filled = 0;
+    private byte[] dictionary = null;
+    private long size = 0;
+    private boolean closed = false;
+
+    public ParallelGzipOutputStream(OutputStream out, int parallelism, int level) throws IOException {
+        this.out = out;
+        this.parallelism = Math.max(1, parallelism);
+        this.level = level;
+        this.executor = BlockDeflater.executor(this.parallelism, "frontier-gzip");
+        out.write(HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, block.length - filled);
+            System.arraycopy(b, off, block, filled, n);
+            filled += n;
+            off += n;
+            len -= n;
+            if (filled == block.length) {
+                submit(false);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submit(true);
+            writeInt(crc.getValue());
+            writeInt(size);
+            out.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void submit(boolean last) throws IOException {
+        byte[] input = filled == block.length ? block : Arrays.copyOf(block, filled);
+        crc.update(input, 0, input.length);
+        size += input.length;
+
+        byte[] preset = dictionary;
+        pending.add(executor.submit(() -> BlockDeflater.deflate(input, preset, last, level)));
+        dictionary = BlockDeflater.dictionary(input);
+        block = new byte[BlockDeflater.BLOCK_SIZE];
+        filled = 0;
+
+        while (pending.size() >= parallelism * 2 || (last && !pending.isEmpty())) {
+            out.write(BlockDeflater.await(pending.poll()));
+        }
+    }
+
+    private void writeInt(long value) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            out.write((int) (value >>> (i * 8)) & 0xFF);
+        }
+    }
+}
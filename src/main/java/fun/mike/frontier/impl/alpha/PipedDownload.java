@@ -0,0 +1,102 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+
+import fun.mike.frontier.alpha.FileTransferClient;
+
+/**
+ * An InputStream fed by a download running on a separate thread, so the contents of a remote file can be consumed
+ * as they arrive without a temp file. The pipe buffer bounds how far the download can run ahead of the reader.
+ */
+public class PipedDownload extends InputStream {
+    private final PipedInputStream in;
+    private volatile Throwable error;
+
+    private PipedDownload(PipedInputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Starts downloading a file on a new thread.
+     *
+     * @param client     a client for the host
+     * @param path       a path to a file on the host
+     * @param bufferSize the number of bytes the download may run ahead of the reader
+     * @return an InputStream over the contents of the file
+     */
+    public static InputStream start(FileTransferClient client, String path, int bufferSize) {
+        try {
+            PipedInputStream in = new PipedInputStream(bufferSize);
+            PipedOutputStream out = new PipedOutputStream(in);
+            PipedDownload pipe = new PipedDownload(in);
+            Thread producer = new Thread(() -> {
+                try {
+                    client.download(path, out);
+                } catch (Throwable t) {
+                    pipe.error = t;
+                } finally {
+                    closeQuietly(out);
+                }
+            }, "frontier-download-" + path);
+            producer.setDaemon(true);
+            producer.start();
+            return pipe;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            rethrow();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n == -1) {
+            rethrow();
+        }
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void rethrow() throws IOException {
+        Throwable t = error;
+        if (t == null) {
+            return;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new IOException(t);
+    }
+
+    private static void closeQuietly(PipedOutputStream out) {
+        try {
+            out.close();
+        } catch (IOException ex) {
+            // The reader has already gone away.
+        }
+    }
+}
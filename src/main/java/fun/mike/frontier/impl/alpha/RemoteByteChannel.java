@@ -0,0 +1,178 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import fun.mike.frontier.alpha.FileTransferClient;
+import fun.mike.frontier.alpha.MissingRemoteFileException;
+
+/**
+ * A read-only channel over a remote file that fetches it in blocks with ranged reads and keeps them in a shared
+ * BlockCache. When reads move forward through the file, the following blocks are fetched in the background so the
+ * next read rarely waits on the network.
+ */
+public class RemoteByteChannel implements SeekableByteChannel {
+    private final FileTransferClient client;
+    private final String path;
+    private final long size;
+    private final long time;
+    private final int blockSize;
+    private final int readAheadBlocks;
+    private final BlockCache cache;
+    private final Executor executor;
+    private long position = 0;
+    private long nextBlock = 0;
+    private volatile boolean open = true;
+
+    /**
+     * @param client          the client to fetch blocks with
+     * @param path            the path to the file
+     * @param size            the size of the file when it was opened
+     * @param time            the modification time of the file when it was opened
+     * @param blockSize       the size of each block in bytes
+     * @param readAheadBlocks how many blocks to fetch ahead of sequential reads
+     * @param cache           the cache to keep blocks in
+     * @param executor        runs read-ahead fetches
+     */
+    public RemoteByteChannel(FileTransferClient client,
+            String path,
+            long size,
+            long time,
+            int blockSize,
+            int readAheadBlocks,
+            BlockCache cache,
+            Executor executor) {
+        this.client = client;
+        this.path = path;
+        this.size = size;
+        this.time = time;
+        this.blockSize = blockSize;
+        this.readAheadBlocks = readAheadBlocks;
+        this.cache = cache;
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        int read = 0;
+        while (dst.hasRemaining() && position < size) {
+            long index = position / blockSize;
+            if (index == nextBlock) {
+                readAhead(index + 1);
+            }
+            nextBlock = index + 1;
+
+            byte[] block = block(index);
+            int offset = (int) (position - index * blockSize);
+            if (offset >= block.length) {
+                if (read > 0) {
+                    break;
+                }
+                throw new IOException(String.format("%s is shorter than the %d bytes it had when it was opened.",
+                                                    path,
+                                                    size));
+            }
+            int length = Math.min(dst.remaining(), block.length - offset);
+            dst.put(block, offset, length);
+            position += length;
+            read += length;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Position must not be negative.");
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private byte[] block(long index) throws IOException {
+        CompletableFuture<byte[]> block = cache.get(path, time, size, index, null, () -> fetch(index));
+        try {
+            return block.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted reading %s.", path));
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof MissingRemoteFileException) {
+                NoSuchFileException missing = new NoSuchFileException(path);
+                missing.initCause(cause);
+                throw missing;
+            }
+            throw new IOException(String.format("Failed to read block %d of %s.", index, path), cause);
+        }
+    }
+
+    private void readAhead(long from) {
+        long lastBlock = (size - 1) / blockSize;
+        for (long index = from; index < from + readAheadBlocks && index <= lastBlock; index++) {
+            if (!cache.contains(path, time, size, index)) {
+                long block = index;
+                cache.get(path, time, size, block, executor, () -> fetch(block));
+            }
+        }
+    }
+
+    private byte[] fetch(long index) {
+        long offset = index * blockSize;
+        return client.read(path, offset, (int) Math.min(blockSize, size - offset));
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import fun.mike.frontier.alpha.FileInfo;
+
+/**
+ * The basic attributes of a remote file, taken from what a listing reports. Hosts report one time per file, so it is
+ * used as the creation, modification and access time.
+ */
+public class RemoteFileAttributes implements BasicFileAttributes {
+    private final FileTime time;
+    private final long size;
+    private final boolean directory;
+
+    public RemoteFileAttributes(long time, long size, boolean directory) {
+        this.time = FileTime.fromMillis(time);
+        this.size = size;
+        this.directory = directory;
+    }
+
+    /**
+     * @param file a listed file
+     * @return the attributes of the file
+     */
+    public static RemoteFileAttributes of(FileInfo file) {
+        return new RemoteFileAttributes(file.getTime() == null ? 0 : file.getTime().getTime(),
+                                        file.getSize() == null ? 0 : file.getSize(),
+                                        Boolean.TRUE.equals(file.isDirectory()));
+    }
+
+    @Override
+    public FileTime lastModifiedTime() {
+        return time;
+    }
+
+    @Override
+    public FileTime lastAccessTime() {
+        return time;
+    }
+
+    @Override
+    public FileTime creationTime() {
+        return time;
+    }
+
+    @Override
+    public boolean isRegularFile() {
+        return !directory;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    @Override
+    public boolean isSymbolicLink() {
+        return false;
+    }
+
+    @Override
+    public boolean isOther() {
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object fileKey() {
+        return null;
+    }
+}
@@ -0,0 +1,237 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Daemon threads that run tasks a bounded number at a time, taking the first ready task in a given order. A task that
+ * throws is run again after a backoff that starts at a second and doubles with each failure up to a minute, until it
+ * has failed a maximum number of times or throws an exception its handler does not retry.
+ *
+ * @param <T> the type of task
+ */
+public class RetryingWorkers<T> implements AutoCloseable {
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final long DEFER_MILLIS = 50;
+    private static final long POLL_MILLIS = 100;
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    /**
+     * Runs tasks and hears how they end.
+     *
+     * @param <T> the type of task
+     */
+    public interface Handler<T> {
+        /**
+         * Runs a task.
+         *
+         * @param task the task
+         * @return true if the task is done, or false to run it again shortly without counting an attempt
+         * @throws Exception if the attempt failed
+         */
+        boolean run(T task) throws Exception;
+
+        /**
+         * @param ex the exception a task failed with
+         * @return whether the task is worth running again
+         */
+        boolean retryable(Exception ex);
+
+        /**
+         * Called before a failed task is run again.
+         *
+         * @param task          the task
+         * @param backoffMillis the milliseconds until it is run again
+         * @param ex            the exception it failed with
+         */
+        void retrying(T task, long backoffMillis, Exception ex);
+
+        /**
+         * Called when a task will not be run again.
+         *
+         * @param task     the task
+         * @param attempts the number of times it was run
+         * @param ex       the exception it last failed with
+         */
+        void failed(T task, int attempts, Exception ex);
+    }
+
+    private final Handler<T> handler;
+    private final int maxAttempts;
+    private final Object lock = new Object();
+    private final PriorityQueue<Attempt<T>> ready;
+    private final PriorityQueue<Attempt<T>> delayed = new PriorityQueue<>(Comparator.comparingLong(
+            (Attempt<T> attempt) -> attempt.readyAt));
+    private final ExecutorService threads;
+    private int running = 0;
+    private volatile boolean closed = false;
+
+    /**
+     * Starts the threads.
+     *
+     * @param name        the prefix of the threads' name
+     * @param parallelism the most tasks to run at a time
+     * @param maxAttempts the most times to run a failing task
+     * @param order       the order to run ready tasks in
+     * @param handler     runs the tasks
+     */
+    public RetryingWorkers(String name,
+            int parallelism,
+            int maxAttempts,
+            Comparator<? super T> order,
+            Handler<T> handler) {
+        this.handler = handler;
+        this.maxAttempts = maxAttempts;
+        this.ready = new PriorityQueue<>((a, b) -> order.compare(a.task, b.task));
+
+        String threadName = name + "-" + instances.incrementAndGet();
+        this.threads = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        for (int i = 0; i < parallelism; i++) {
+            threads.execute(this::work);
+        }
+    }
+
+    /**
+     * Queues a task to run as soon as a thread is free.
+     *
+     * @param task the task
+     */
+    public void submit(T task) {
+        synchronized (lock) {
+            ready.add(new Attempt<>(task, 0, 0));
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting or running.
+     */
+    public int size() {
+        synchronized (lock) {
+            return ready.size() + delayed.size() + running;
+        }
+    }
+
+    /**
+     * Waits for every task to finish or fail.
+     *
+     * @param timeoutMillis the most milliseconds to wait
+     * @return true if no task is waiting or running; false if the timeout passed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (ready.size() + delayed.size() + running > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Interrupts the threads and waits briefly for them to stop. Tasks still waiting are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        threads.shutdownNow();
+        try {
+            threads.awaitTermination(POLL_MILLIS * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work() {
+        Attempt<T> attempt;
+        while ((attempt = take()) != null) {
+            try {
+                run(attempt);
+            } finally {
+                synchronized (lock) {
+                    running--;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    private Attempt<T> take() {
+        synchronized (lock) {
+            while (!closed) {
+                long now = System.nanoTime();
+                while (!delayed.isEmpty() && delayed.peek().readyAt <= now) {
+                    ready.add(delayed.poll());
+                }
+                Attempt<T> attempt = ready.poll();
+                if (attempt != null) {
+                    running++;
+                    return attempt;
+                }
+                Attempt<T> next = delayed.peek();
+                long wait = next == null
+                        ? POLL_MILLIS
+                        : Math.max(1, Math.min(POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(next.readyAt - now)));
+                try {
+                    lock.wait(wait);
+                } catch (InterruptedException ex) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void run(Attempt<T> attempt) {
+        try {
+            if (!handler.run(attempt.task)) {
+                delay(new Attempt<>(attempt.task, attempt.failures, DEFER_MILLIS));
+            }
+        } catch (Exception ex) {
+            if (closed) {
+                return;
+            }
+            int failures = attempt.failures + 1;
+            if (failures >= maxAttempts || !handler.retryable(ex)) {
+                handler.failed(attempt.task, failures, ex);
+                return;
+            }
+            long backoff = Math.min(INITIAL_BACKOFF_MILLIS << Math.min(failures - 1, 16), MAX_BACKOFF_MILLIS);
+            handler.retrying(attempt.task, backoff, ex);
+            delay(new Attempt<>(attempt.task, failures, backoff));
+        }
+    }
+
+    private void delay(Attempt<T> attempt) {
+        synchronized (lock) {
+            delayed.add(attempt);
+            lock.notifyAll();
+        }
+    }
+
+    private static class Attempt<T> {
+        private final T task;
+        private final int failures;
+        private final long readyAt;
+
+        private Attempt(T task, int failures, long delayMillis) {
+            this.task = task;
+            this.failures = failures;
+            this.readyAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+    }
+}
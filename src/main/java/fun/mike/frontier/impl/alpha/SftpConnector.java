@@ -1,19 +1,46 @@
 package fun.mike.frontier.impl.alpha;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.Session;
+import fun.mike.frontier.alpha.HostLimiter;
 
 public class SftpConnector {
     private final Session session;
     private final ChannelSftp channel;
     private final String host;
     private final Integer port;
+    private final String hostLabel;
+    private final HostLimiter.Permit permit;
+    private final Deadline deadline;
+    private final AtomicInteger openTransfers = new AtomicInteger();
 
     public SftpConnector(Session session, ChannelSftp channelSftp, String host, Integer port) {
+        this(session, channelSftp, host, port, HostLimiter.Permit.NONE);
+    }
+
+    public SftpConnector(Session session,
+            ChannelSftp channelSftp,
+            String host,
+            Integer port,
+            HostLimiter.Permit permit) {
+        this(session, channelSftp, host, port, permit, null);
+    }
+
+    public SftpConnector(Session session,
+            ChannelSftp channelSftp,
+            String host,
+            Integer port,
+            HostLimiter.Permit permit,
+            Deadline deadline) {
         this.session = session;
         this.channel = channelSftp;
         this.host = host;
         this.port = port;
+        this.hostLabel = port == 21 ? host : host + ":" + port;
+        this.permit = permit;
+        this.deadline = deadline;
     }
 
     public ChannelSftp getChannel() {
@@ -31,4 +58,37 @@ public class SftpConnector {
     public Integer getPort() {
         return port;
     }
+
+    public String getHostLabel() {
+        return hostLabel;
+    }
+
+    public HostLimiter.Permit getPermit() {
+        return permit;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Records that a transfer on this connection was handed to a caller, leaving the connection mid-transfer.
+     */
+    public void transferOpened() {
+        openTransfers.incrementAndGet();
+    }
+
+    /**
+     * Records that a transfer recorded by transferOpened completed cleanly.
+     */
+    public void transferCompleted() {
+        openTransfers.decrementAndGet();
+    }
+
+    /**
+     * @return true if a transfer handed to a caller has not completed, so the connection must not be reused.
+     */
+    public boolean hasOpenTransfers() {
+        return openTransfers.get() > 0;
+    }
 }
@@ -0,0 +1,142 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An OutputStream that keeps its contents in memory until they pass a threshold, then moves them to a temp file.
+ * Once written and closed, the contents can be read any number of times, concurrently, until the last reader
+ * releases the buffer.
+ */
+public class SpillBuffer extends OutputStream {
+    private final int threshold;
+    private final AtomicInteger readers = new AtomicInteger(1);
+    private Memory memory = new Memory();
+    private Path file;
+    private OutputStream fileStream;
+
+    public SpillBuffer(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (fileStream == null && memory.size() + len > threshold) {
+            spill();
+        }
+        if (fileStream == null) {
+            memory.write(b, off, len);
+        } else {
+            fileStream.write(b, off, len);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileStream != null) {
+            fileStream.close();
+        }
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public long size() {
+        try {
+            return file == null ? memory.size() : Files.size(file);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Sets how many readers share the buffer. Each must call release when done.
+     *
+     * @param count the number of readers
+     */
+    public void share(int count) {
+        readers.set(count);
+    }
+
+    /**
+     * Opens a new stream over the contents.
+     *
+     * @return an InputStream
+     */
+    public InputStream open() {
+        if (file == null) {
+            return memory.open();
+        }
+        try {
+            return new MappedFileInputStream(file.toString());
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Copies the contents to a stream and releases this reader's share of the buffer.
+     *
+     * @param out an OutputStream
+     * @return the number of bytes copied
+     */
+    public long copyTo(OutputStream out) {
+        try (InputStream is = open()) {
+            byte[] buffer = new byte[64 * 1024];
+            long total = 0;
+            int n;
+            while ((n = is.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                total += n;
+            }
+            return total;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Releases one reader's share of the buffer, deleting the temp file when the last reader is done.
+     */
+    public void release() {
+        if (readers.decrementAndGet() > 0) {
+            return;
+        }
+        memory = null;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        file = Files.createTempFile("frontier-", ".spill");
+        fileStream = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        memory.writeTo(fileStream);
+        memory = new Memory();
+    }
+
+    private static class Memory extends ByteArrayOutputStream {
+        InputStream open() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
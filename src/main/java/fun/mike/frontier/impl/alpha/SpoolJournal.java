@@ -0,0 +1,263 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A crash-safe record of uploads spooled to a local directory and not yet sent. Each upload's content is written to
+ * a temp file, forced to disk and renamed into place before an "added" record is appended to the journal, so a
+ * journal record always has complete content behind it. A "done" record marks an upload as sent or discarded. A
+ * "failed" record sets an upload aside, with its content, until it is retried or discarded; a "retried" record puts
+ * it back among the pending uploads.
+ * <p>
+ * Opening a journal replays it, deletes content files that no pending or failed record refers to, such as those
+ * renamed just before a crash, and compacts the journal to only the pending and failed records.
+ */
+public class SpoolJournal implements Closeable {
+    private static final String JOURNAL = "journal";
+    private static final String DATA_SUFFIX = ".data";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String ADDED = "A";
+    private static final String DONE = "D";
+    private static final String FAILED = "F";
+    private static final String RETRIED = "R";
+
+    private final Path dir;
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+    private final Map<Long, Entry> failed = new LinkedHashMap<>();
+    private final AppendOnlyJournal journal;
+    private long nextId = 1;
+
+    /**
+     * Opens the journal in a directory, creating both if needed and recovering pending uploads.
+     *
+     * @param dir the spool directory
+     * @throws IOException if the directory or journal cannot be read or written
+     */
+    public SpoolJournal(Path dir) throws IOException {
+        this.dir = dir;
+        this.journal = new AppendOnlyJournal(dir.resolve(JOURNAL), this::records);
+        journal.replay(this::replay);
+        pending.values().removeIf(entry -> !Files.exists(dataFile(entry.id)));
+        failed.values().removeIf(entry -> !Files.exists(dataFile(entry.id)));
+        deleteOrphans();
+        journal.compact();
+    }
+
+    /**
+     * @return the pending uploads, oldest first.
+     */
+    public synchronized List<Entry> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * @return the uploads set aside as failed, oldest first.
+     */
+    public synchronized List<Entry> failed() {
+        return new ArrayList<>(failed.values());
+    }
+
+    /**
+     * Creates a file to spool new content to before it is committed.
+     *
+     * @return the path to a new, empty file
+     * @throws IOException if the file cannot be created
+     */
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(dir, "spool-", TEMP_SUFFIX);
+    }
+
+    /**
+     * Durably records spooled content as a pending upload.
+     *
+     * @param temp a file from createTempFile holding the complete content
+     * @param path the remote path to upload it to
+     * @return the pending upload
+     * @throws IOException if the content or record cannot be forced to disk
+     */
+    public synchronized Entry commit(Path temp, String path) throws IOException {
+        try (FileChannel content = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            content.force(true);
+        }
+        long id = nextId++;
+        Files.move(temp, dataFile(id), StandardCopyOption.ATOMIC_MOVE);
+        AppendOnlyJournal.forceDirectory(dir);
+
+        Entry entry = new Entry(id, path, System.currentTimeMillis(), Files.size(dataFile(id)));
+        journal.append(addedRecord(entry));
+        pending.put(id, entry);
+        return entry;
+    }
+
+    /**
+     * Durably records a pending or failed upload as finished and deletes its content.
+     *
+     * @param id the id of the upload
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized void complete(long id) throws IOException {
+        if (pending.remove(id) == null && failed.remove(id) == null) {
+            return;
+        }
+        journal.append(DONE + " " + id);
+        Files.deleteIfExists(dataFile(id));
+        journal.ended(pending.size() + failed.size());
+    }
+
+    /**
+     * Durably sets a pending upload aside as failed, keeping its content.
+     *
+     * @param id the id of the upload
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized void fail(long id) throws IOException {
+        Entry entry = pending.get(id);
+        if (entry == null) {
+            return;
+        }
+        journal.append(FAILED + " " + id);
+        pending.remove(id);
+        failed.put(id, entry);
+    }
+
+    /**
+     * Durably returns a failed upload to the pending uploads.
+     *
+     * @param id the id of the upload
+     * @return the upload, or null if no failed upload has the id
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized Entry retry(long id) throws IOException {
+        Entry entry = failed.get(id);
+        if (entry == null) {
+            return null;
+        }
+        journal.append(RETRIED + " " + id);
+        failed.remove(id);
+        pending.put(id, entry);
+        return entry;
+    }
+
+    /**
+     * @param id the id of an upload
+     * @return the file holding its content
+     */
+    public Path dataFile(long id) {
+        return dir.resolve(id + DATA_SUFFIX);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+
+    private void replay(String[] fields) {
+        if (fields[0].equals(ADDED) && fields.length == 5) {
+            long id = Long.parseLong(fields[1]);
+            pending.put(id, new Entry(id,
+                                      AppendOnlyJournal.decode(fields[4]),
+                                      Long.parseLong(fields[2]),
+                                      Long.parseLong(fields[3])));
+            nextId = Math.max(nextId, id + 1);
+        } else if (fields[0].equals(DONE) && fields.length == 2) {
+            long id = Long.parseLong(fields[1]);
+            pending.remove(id);
+            failed.remove(id);
+        } else if (fields[0].equals(FAILED) && fields.length == 2) {
+            move(pending, failed, Long.parseLong(fields[1]));
+        } else if (fields[0].equals(RETRIED) && fields.length == 2) {
+            move(failed, pending, Long.parseLong(fields[1]));
+        }
+    }
+
+    private static void move(Map<Long, Entry> from, Map<Long, Entry> to, long id) {
+        Entry entry = from.remove(id);
+        if (entry != null) {
+            to.put(id, entry);
+        }
+    }
+
+    private List<String> records() {
+        List<String> records = new ArrayList<>();
+        for (Entry entry : pending.values()) {
+            records.add(addedRecord(entry));
+        }
+        for (Entry entry : failed.values()) {
+            records.add(addedRecord(entry));
+            records.add(FAILED + " " + entry.id);
+        }
+        return records;
+    }
+
+    private static String addedRecord(Entry entry) {
+        return ADDED + " " + entry.id + " " + entry.time + " " + entry.size + " "
+                + AppendOnlyJournal.encode(entry.path);
+    }
+
+    private void deleteOrphans() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(DATA_SUFFIX)) {
+                    String id = name.substring(0, name.length() - DATA_SUFFIX.length());
+                    if (!id.matches("[0-9]+") || !isKept(Long.parseLong(id))) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isKept(long id) {
+        return pending.containsKey(id) || failed.containsKey(id);
+    }
+
+    /**
+     * A pending or failed upload.
+     */
+    public static class Entry {
+        private final long id;
+        private final String path;
+        private final long time;
+        private final long size;
+
+        private Entry(long id, String path, long time, long size) {
+            this.id = id;
+            this.path = path;
+            this.time = time;
+            this.size = size;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return when the upload was spooled, in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A record of submitted transfer jobs and how far each has got, kept in an AppendOnlyJournal. A job record is
+ * appended when a job is submitted, a version record when it starts transferring a given version of its source, an
+ * offset record each time it makes durable progress, and a done or failed record when it ends, so replaying the
+ * journal after a crash yields every unfinished job, the version it was transferring and the offset to resume it
+ * from.
+ */
+public class TransferJournal implements Closeable {
+    private static final String JOB = "J";
+    private static final String VERSION = "V";
+    private static final String OFFSET = "O";
+    private static final String DONE = "D";
+    private static final String FAILED = "F";
+
+    private final Map<Long, Entry> pending = new LinkedHashMap<>();
+    private final AppendOnlyJournal journal;
+    private long nextId = 1;
+
+    /**
+     * Opens a journal, creating it if needed and recovering unfinished jobs.
+     *
+     * @param file the journal file
+     * @throws IOException if the journal cannot be read or written
+     */
+    public TransferJournal(Path file) throws IOException {
+        this.journal = new AppendOnlyJournal(file, this::records);
+        journal.replay(this::replay);
+        journal.compact();
+    }
+
+    /**
+     * @return the unfinished jobs, in the order they were submitted.
+     */
+    public synchronized List<Entry> pending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * Durably records a new job.
+     *
+     * @param kind     the kind of transfer
+     * @param priority the priority of the job
+     * @param source   the path to transfer from
+     * @param dest     the path to transfer to
+     * @return the new job
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized Entry submit(String kind, String priority, String source, String dest) throws IOException {
+        Entry entry = new Entry(nextId++, kind, priority, source, dest, -1, -1, -1);
+        journal.append(jobRecord(entry));
+        pending.put(entry.id, entry);
+        return entry;
+    }
+
+    /**
+     * Durably records the version of the source a job is transferring, and resets its offset to 0, since progress
+     * made on another version cannot be resumed.
+     *
+     * @param id   the id of the job
+     * @param size the size of the source
+     * @param time the modification time of the source in milliseconds
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized void version(long id, long size, long time) throws IOException {
+        Entry entry = pending.get(id);
+        if (entry == null) {
+            return;
+        }
+        journal.append(VERSION + " " + id + " " + size + " " + time);
+        pending.put(id, entry.withVersion(size, time));
+    }
+
+    /**
+     * Durably records that a job has transferred every byte before an offset. The bytes themselves must already be
+     * on disk.
+     *
+     * @param id     the id of the job
+     * @param offset the offset to resume the job from
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized void progress(long id, long offset) throws IOException {
+        Entry entry = pending.get(id);
+        if (entry == null) {
+            return;
+        }
+        journal.append(OFFSET + " " + id + " " + offset);
+        pending.put(id, entry.withOffset(offset));
+    }
+
+    /**
+     * Durably records a job as finished.
+     *
+     * @param id the id of the job
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized void complete(long id) throws IOException {
+        end(id, DONE);
+    }
+
+    /**
+     * Durably records a job as abandoned after failing.
+     *
+     * @param id the id of the job
+     * @throws IOException if the record cannot be forced to disk
+     */
+    public synchronized void fail(long id) throws IOException {
+        end(id, FAILED);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+
+    private void end(long id, String record) throws IOException {
+        if (pending.remove(id) == null) {
+            return;
+        }
+        journal.append(record + " " + id);
+        journal.ended(pending.size());
+    }
+
+    private void replay(String[] fields) {
+        // Job records written before versions were recorded have seven fields.
+        if (fields[0].equals(JOB) && (fields.length == 7 || fields.length == 9)) {
+            long id = Long.parseLong(fields[1]);
+            pending.put(id, new Entry(id,
+                                      fields[2],
+                                      fields[3],
+                                      AppendOnlyJournal.decode(fields[4]),
+                                      AppendOnlyJournal.decode(fields[5]),
+                                      Long.parseLong(fields[6]),
+                                      fields.length == 9 ? Long.parseLong(fields[7]) : -1,
+                                      fields.length == 9 ? Long.parseLong(fields[8]) : -1));
+            nextId = Math.max(nextId, id + 1);
+        } else if (fields[0].equals(VERSION) && fields.length == 4) {
+            long id = Long.parseLong(fields[1]);
+            Entry entry = pending.get(id);
+            if (entry != null) {
+                pending.put(id, entry.withVersion(Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+            }
+        } else if (fields[0].equals(OFFSET) && fields.length == 3) {
+            long id = Long.parseLong(fields[1]);
+            Entry entry = pending.get(id);
+            if (entry != null) {
+                pending.put(id, entry.withOffset(Long.parseLong(fields[2])));
+            }
+        } else if ((fields[0].equals(DONE) || fields[0].equals(FAILED)) && fields.length == 2) {
+            pending.remove(Long.parseLong(fields[1]));
+        }
+    }
+
+    private List<String> records() {
+        List<String> records = new ArrayList<>();
+        for (Entry entry : pending.values()) {
+            records.add(jobRecord(entry));
+        }
+        return records;
+    }
+
+    private static String jobRecord(Entry entry) {
+        return JOB + " " + entry.id + " " + entry.kind + " " + entry.priority + " "
+                + AppendOnlyJournal.encode(entry.source) + " " + AppendOnlyJournal.encode(entry.dest) + " "
+                + entry.offset + " " + entry.sourceSize + " " + entry.sourceTime;
+    }
+
+    /**
+     * An unfinished job.
+     */
+    public static class Entry {
+        private final long id;
+        private final String kind;
+        private final String priority;
+        private final String source;
+        private final String dest;
+        private final long offset;
+        private final long sourceSize;
+        private final long sourceTime;
+
+        private Entry(long id,
+                String kind,
+                String priority,
+                String source,
+                String dest,
+                long offset,
+                long sourceSize,
+                long sourceTime) {
+            this.id = id;
+            this.kind = kind;
+            this.priority = priority;
+            this.source = source;
+            this.dest = dest;
+            this.offset = offset;
+            this.sourceSize = sourceSize;
+            this.sourceTime = sourceTime;
+        }
+
+        private Entry withOffset(long offset) {
+            return new Entry(id, kind, priority, source, dest, offset, sourceSize, sourceTime);
+        }
+
+        private Entry withVersion(long sourceSize, long sourceTime) {
+            return new Entry(id, kind, priority, source, dest, 0, sourceSize, sourceTime);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getPriority() {
+            return priority;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public String getDest() {
+            return dest;
+        }
+
+        /**
+         * @return the offset the job may resume from, or -1 if it has never been started
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return the size of the source when the job started transferring it, or -1 if not recorded
+         */
+        public long getSourceSize() {
+            return sourceSize;
+        }
+
+        /**
+         * @return the modification time of the source when the job started transferring it, or -1 if not recorded
+         */
+        public long getSourceTime() {
+            return sourceTime;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import fun.mike.frontier.alpha.AbortableOutputStream;
+
+/**
+ * An OutputStream to a file being uploaded that finishes the transfer when it is closed. The connection carrying the
+ * transfer stays held until then, and the completion is told whether every write succeeded so a failed or aborted
+ * transfer is discarded rather than reported as complete.
+ */
+public class TransferOutputStream extends AbortableOutputStream {
+    private final Completion completion;
+    private boolean failed = false;
+    private boolean closed = false;
+
+    /**
+     * Finishes a transfer once its stream is closed.
+     */
+    public interface Completion {
+        /**
+         * @param succeeded true if every write and the close of the stream succeeded; false if the transfer failed or
+         *                  was aborted, so the partial file must be discarded
+         */
+        void complete(boolean succeeded);
+    }
+
+    public TransferOutputStream(OutputStream out, Completion completion) {
+        super(out);
+        this.completion = completion;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        try {
+            out.write(b);
+        } catch (IOException | RuntimeException ex) {
+            failed = true;
+            throw ex;
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        try {
+            out.write(b, off, len);
+        } catch (IOException | RuntimeException ex) {
+            failed = true;
+            throw ex;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        try {
+            out.flush();
+        } catch (IOException | RuntimeException ex) {
+            failed = true;
+            throw ex;
+        }
+    }
+
+    /**
+     * Closes the stream and completes the transfer.
+     *
+     * @throws IOException if closing the underlying stream fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean succeeded = false;
+        try {
+            out.close();
+            succeeded = !failed;
+        } finally {
+            completion.complete(succeeded);
+        }
+    }
+
+    @Override
+    public void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        failed = true;
+        try {
+            out.close();
+        } catch (IOException | RuntimeException ex) {
+            // The transfer is being discarded anyway.
+        } finally {
+            completion.complete(false);
+        }
+    }
+}
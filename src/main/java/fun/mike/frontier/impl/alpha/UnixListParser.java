@@ -0,0 +1,394 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import fun.mike.frontier.alpha.FileListing;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.FTPFileEntryParserImpl;
+import org.apache.commons.net.ftp.parser.UnixFTPEntryParser;
+
+/**
+ * Parses UNIX "ls -l" style LIST output without regular expressions. Fields are found by scanning the characters of
+ * each line once, numbers are read in place and midnight of each day is computed once and reused, so a line costs a
+ * name String and little else.
+ * <p>
+ * Lines this parser does not recognise, such as those with ISO dates, are handed to the commons-net UNIX parser.
+ */
+public class UnixListParser extends FTPFileEntryParserImpl {
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final long DAY_MILLIS = 86_400_000L;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_TOKENS = 8;
+    private static final long INVALID_DATE = Long.MIN_VALUE;
+
+    private final ZoneId zone;
+    private final long now;
+    private final int currentYear;
+    private final FTPFileEntryParser fallback = new UnixFTPEntryParser();
+    private final Fields fields = new Fields();
+    private char[] line = new char[256];
+    private int cachedDay = -1;
+    private long cachedDayStart;
+
+    public UnixListParser() {
+        this(ZoneId.systemDefault(), System.currentTimeMillis());
+    }
+
+    UnixListParser(ZoneId zone, long now) {
+        this.zone = zone;
+        this.now = now;
+        this.currentYear = Instant.ofEpochMilli(now).atZone(zone).getYear();
+    }
+
+    /**
+     * @param systemType the reply to SYST
+     * @return true if the host lists files in UNIX format
+     */
+    public static boolean handles(String systemType) {
+        if (systemType == null) {
+            return false;
+        }
+        String type = systemType.toUpperCase(Locale.ROOT);
+        return type.startsWith("UNIX") && !type.contains("LTRIM");
+    }
+
+    @Override
+    public FTPFile parseFTPEntry(String entry) {
+        char[] chars = entry.toCharArray();
+        if (!parse(chars, chars.length, fields)) {
+            return fallback.parseFTPEntry(entry);
+        }
+
+        FTPFile file = new FTPFile();
+        file.setRawListing(entry);
+        file.setType(fields.type);
+        file.setHardLinkCount((int) fields.links);
+        for (int access = 0; access < 3; access++) {
+            for (int permission = 0; permission < 3; permission++) {
+                char flag = chars[1 + access * 3 + permission];
+                file.setPermission(access, permission, flag != '-' && flag != 'S' && flag != 'T');
+            }
+        }
+        if (fields.ownerEnd > fields.ownerStart) {
+            file.setUser(new String(chars, fields.ownerStart, fields.ownerEnd - fields.ownerStart));
+        }
+        if (fields.groupEnd > fields.groupStart) {
+            file.setGroup(new String(chars, fields.groupStart, fields.groupEnd - fields.groupStart));
+        }
+        file.setSize(fields.size);
+        Calendar timestamp = Calendar.getInstance(TimeZone.getTimeZone(zone));
+        timestamp.setTimeInMillis(fields.time);
+        file.setTimestamp(timestamp);
+        file.setName(new String(chars, fields.nameStart, fields.nameEnd - fields.nameStart));
+        if (fields.linkStart > 0) {
+            file.setLink(new String(chars, fields.linkStart, chars.length - fields.linkStart));
+        }
+        return file;
+    }
+
+    /**
+     * Parses a raw LIST reply from the data connection into a listing, decoding names with the control encoding.
+     *
+     * @param in      the data connection
+     * @param charset the control encoding
+     * @param builder the listing to add entries to
+     * @throws IOException if reading fails
+     */
+    public void parse(InputStream in, Charset charset, FileListing.Builder builder) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int start = 0;
+        int end = 0;
+        while (true) {
+            int newline = start;
+            while (newline < end && buffer[newline] != '\n') {
+                newline++;
+            }
+            if (newline < end) {
+                parseLine(buffer, start, newline, charset, builder);
+                start = newline + 1;
+                continue;
+            }
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+            }
+            if (end == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = in.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                parseLine(buffer, start, end, charset, builder);
+                return;
+            }
+            end += read;
+        }
+    }
+
+    private void parseLine(byte[] bytes, int from, int to, Charset charset, FileListing.Builder builder) {
+        if (to > from && bytes[to - 1] == '\r') {
+            to--;
+        }
+        int length = to - from;
+        if (length == 0) {
+            return;
+        }
+        if (line.length < length) {
+            line = new char[Math.max(length, line.length * 2)];
+        }
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[from + i];
+            if (b < 0) {
+                ascii = false;
+                break;
+            }
+            line[i] = (char) b;
+        }
+        if (!ascii) {
+            String decoded = new String(bytes, from, length, charset);
+            length = decoded.length();
+            if (line.length < length) {
+                line = new char[length];
+            }
+            decoded.getChars(0, length, line, 0);
+        }
+
+        if (parse(line, length, fields)) {
+            builder.add(new String(line, fields.nameStart, fields.nameEnd - fields.nameStart),
+                        fields.size,
+                        fields.time,
+                        fields.type == FTPFile.DIRECTORY_TYPE);
+            return;
+        }
+
+        FTPFile file = fallback.parseFTPEntry(new String(line, 0, length));
+        if (file != null) {
+            builder.add(file.getName(),
+                        file.getSize(),
+                        file.getTimestamp() == null ? FileListing.UNKNOWN_TIME : file.getTimestamp().getTimeInMillis(),
+                        file.isDirectory());
+        }
+    }
+
+    /**
+     * Finds the fields of one line.
+     *
+     * @return false if the line is not in the expected format
+     */
+    boolean parse(char[] chars, int length, Fields fields) {
+        if (length < 11) {
+            return false;
+        }
+        switch (chars[0]) {
+            case '-':
+            case 'f':
+            case 'b':
+            case 'c':
+            case 'p':
+            case 's':
+                fields.type = FTPFile.FILE_TYPE;
+                break;
+            case 'd':
+                fields.type = FTPFile.DIRECTORY_TYPE;
+                break;
+            case 'l':
+                fields.type = FTPFile.SYMBOLIC_LINK_TYPE;
+                break;
+            default:
+                return false;
+        }
+
+        // Permissions may carry an ACL or extended attribute marker.
+        int pos = 10;
+        if (chars[pos] != ' ') {
+            pos++;
+        }
+        if (pos >= length || chars[pos] != ' ') {
+            return false;
+        }
+
+        int[] starts = fields.starts;
+        int[] ends = fields.ends;
+        int tokens = 0;
+        int month = -1;
+        while (month < 0) {
+            while (pos < length && chars[pos] == ' ') {
+                pos++;
+            }
+            if (pos >= length || tokens == MAX_TOKENS) {
+                return false;
+            }
+            starts[tokens] = pos;
+            while (pos < length && chars[pos] != ' ') {
+                pos++;
+            }
+            ends[tokens] = pos;
+            if (tokens >= 2 && isDigits(chars, starts[tokens - 1], ends[tokens - 1])) {
+                month = month(chars, starts[tokens], ends[tokens]);
+            }
+            tokens++;
+        }
+        if (!isDigits(chars, starts[0], ends[0])) {
+            return false;
+        }
+        fields.links = number(chars, starts[0], ends[0]);
+        fields.size = number(chars, starts[tokens - 2], ends[tokens - 2]);
+        fields.ownerStart = tokens > 3 ? starts[1] : 0;
+        fields.ownerEnd = tokens > 3 ? ends[1] : 0;
+        fields.groupStart = tokens > 4 ? starts[2] : 0;
+        fields.groupEnd = tokens > 4 ? ends[2] : 0;
+
+        while (pos < length && chars[pos] == ' ') {
+            pos++;
+        }
+        int dayStart = pos;
+        while (pos < length && chars[pos] != ' ') {
+            pos++;
+        }
+        if (pos - dayStart < 1 || pos - dayStart > 2 || !isDigits(chars, dayStart, pos)) {
+            return false;
+        }
+        int day = (int) number(chars, dayStart, pos);
+
+        while (pos < length && chars[pos] == ' ') {
+            pos++;
+        }
+        int timeStart = pos;
+        while (pos < length && chars[pos] != ' ') {
+            pos++;
+        }
+        if (!time(chars, timeStart, pos, month, day, fields)) {
+            return false;
+        }
+
+        // Exactly one space separates the date from the name, which may itself start with spaces.
+        fields.nameStart = pos + 1;
+        if (fields.nameStart >= length) {
+            return false;
+        }
+        fields.nameEnd = length;
+        fields.linkStart = 0;
+        if (fields.type == FTPFile.SYMBOLIC_LINK_TYPE) {
+            for (int i = fields.nameStart; i + 3 < length; i++) {
+                if (chars[i] == ' ' && chars[i + 1] == '-' && chars[i + 2] == '>' && chars[i + 3] == ' ') {
+                    fields.nameEnd = i;
+                    fields.linkStart = i + 4;
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean time(char[] chars, int from, int to, int month, int day, Fields fields) {
+        int length = to - from;
+        if (length == 4 && isDigits(chars, from, to)) {
+            long midnight = midnight((int) number(chars, from, to), month, day);
+            if (midnight == INVALID_DATE) {
+                return false;
+            }
+            fields.time = midnight;
+            return true;
+        }
+
+        int colon = to - 3;
+        if (length < 4 || length > 5 || chars[colon] != ':'
+                || !isDigits(chars, from, colon) || !isDigits(chars, colon + 1, to)) {
+            return false;
+        }
+        long offset = number(chars, from, colon) * 3_600_000L + number(chars, colon + 1, to) * 60_000L;
+
+        // Recent files omit the year; a date more than a day ahead must be from last year.
+        long midnight = midnight(currentYear, month, day);
+        if (midnight == INVALID_DATE) {
+            return false;
+        }
+        if (midnight + offset > now + DAY_MILLIS) {
+            midnight = midnight(currentYear - 1, month, day);
+            if (midnight == INVALID_DATE) {
+                return false;
+            }
+        }
+        fields.time = midnight + offset;
+        return true;
+    }
+
+    private long midnight(int year, int month, int day) {
+        int key = (year * 12 + month) * 32 + day;
+        if (key != cachedDay) {
+            try {
+                cachedDayStart = LocalDate.of(year, month + 1, day).atStartOfDay(zone).toInstant().toEpochMilli();
+            } catch (DateTimeException ex) {
+                return INVALID_DATE;
+            }
+            cachedDay = key;
+        }
+        return cachedDayStart;
+    }
+
+    private static int month(char[] chars, int from, int to) {
+        if (to - from != 3) {
+            return -1;
+        }
+        for (int month = 0; month < 12; month++) {
+            int offset = month * 3;
+            if (MONTHS.charAt(offset) == chars[from]
+                    && MONTHS.charAt(offset + 1) == chars[from + 1]
+                    && MONTHS.charAt(offset + 2) == chars[from + 2]) {
+                return month;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigits(char[] chars, int from, int to) {
+        if (to <= from || to - from > 18) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (chars[i] < '0' || chars[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long number(char[] chars, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            value = value * 10 + (chars[i] - '0');
+        }
+        return value;
+    }
+
+    /**
+     * The positions and values found in the last parsed line, reused from line to line.
+     */
+    static class Fields {
+        private final int[] starts = new int[MAX_TOKENS];
+        private final int[] ends = new int[MAX_TOKENS];
+        int type;
+        long links;
+        long size;
+        long time;
+        int ownerStart;
+        int ownerEnd;
+        int groupStart;
+        int groupEnd;
+        int nameStart;
+        int nameEnd;
+        int linkStart;
+    }
+}
@@ -0,0 +1,92 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import fun.mike.frontier.alpha.ByteRange;
+
+/**
+ * Reads many ranges of one file with as few requests as possible. Ranges are sorted by offset, and ranges that
+ * overlap or lie within a small gap of each other are read as one span and then split, since a request costs a round
+ * trip or a new data connection while a few extra kilobytes cost almost nothing.
+ */
+public class VectoredRead {
+    /**
+     * The widest gap between two ranges that are still read together.
+     */
+    public static final int DEFAULT_MAX_GAP = 64 * 1024;
+
+    /**
+     * The longest span that ranges are merged into.
+     */
+    public static final int DEFAULT_MAX_SPAN = 8 * 1024 * 1024;
+
+    /**
+     * Reads one contiguous span of a file.
+     */
+    public interface SpanReader {
+        /**
+         * @param offset the offset of the first byte to read
+         * @param length the number of bytes to read
+         * @return the bytes read, fewer than length only if the file ends first
+         */
+        byte[] read(long offset, int length);
+    }
+
+    /**
+     * Reads ranges with the default gap and span limits.
+     *
+     * @param ranges the ranges to read
+     * @param reader reads each merged span
+     * @return the bytes of each range, in the order of ranges
+     */
+    public static List<byte[]> read(List<ByteRange> ranges, SpanReader reader) {
+        return read(ranges, DEFAULT_MAX_GAP, DEFAULT_MAX_SPAN, reader);
+    }
+
+    /**
+     * Reads ranges, merging those close enough together.
+     *
+     * @param ranges  the ranges to read
+     * @param maxGap  the widest gap between ranges read together
+     * @param maxSpan the longest span to merge ranges into
+     * @param reader  reads each merged span
+     * @return the bytes of each range, in the order of ranges
+     */
+    public static List<byte[]> read(List<ByteRange> ranges, int maxGap, int maxSpan, SpanReader reader) {
+        int count = ranges.size();
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> ranges.get(i).getOffset()));
+
+        byte[][] results = new byte[count][];
+        int first = 0;
+        while (first < count) {
+            long start = ranges.get(order[first]).getOffset();
+            long end = ranges.get(order[first]).getEnd();
+            int last = first + 1;
+            while (last < count) {
+                ByteRange next = ranges.get(order[last]);
+                long mergedEnd = Math.max(end, next.getEnd());
+                if (next.getOffset() > end + maxGap || mergedEnd - start > maxSpan) {
+                    break;
+                }
+                end = mergedEnd;
+                last++;
+            }
+
+            byte[] span = reader.read(start, (int) (end - start));
+            for (int i = first; i < last; i++) {
+                ByteRange range = ranges.get(order[i]);
+                int from = (int) Math.min(range.getOffset() - start, span.length);
+                int to = (int) Math.min(range.getEnd() - start, span.length);
+                results[order[i]] = last - first == 1 && to == span.length ? span : Arrays.copyOfRange(span, from, to);
+            }
+            first = last;
+        }
+        return Arrays.asList(results);
+    }
+}
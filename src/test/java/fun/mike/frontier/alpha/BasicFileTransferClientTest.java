@@ -0,0 +1,153 @@
+package fun.mike.frontier.alpha;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the client tests against a client that implements only the abstract methods, so every other operation goes
+ * through the interface defaults.
+ */
+public class BasicFileTransferClientTest extends FileTransferClientTest {
+    private static final String ROOT = "basic-root";
+
+    @Before
+    public void setUp() {
+        IO.mkdir(ROOT);
+        IO.mkdir(ROOT + "/test");
+        IO.spit(ROOT + "/test/foo.txt", "foo.");
+        IO.spit(ROOT + "/test/bar.txt", "bar!!");
+    }
+
+    @After
+    public void tearDown() {
+        IO.nuke(ROOT + "/test");
+        IO.nuke(ROOT);
+    }
+
+    @Override
+    public FileTransferClient client() {
+        return new BasicClient(new LocalFileTransferClient(ROOT));
+    }
+
+    @Override
+    protected String missingFileMessage(String path) {
+        return "File .*" + ROOT + "/" + path + " not found.";
+    }
+
+    @Override
+    protected String uploadPathNotFoundMessage() {
+        return "blaoewa";
+    }
+
+    @Override
+    @Test
+    public void openOutputStream() {
+        thrown.expect(UnsupportedOperationException.class);
+        client().openOutputStream("test/baz.txt");
+    }
+
+    @Override
+    @Test
+    public void abortOutputStream() {
+        thrown.expect(UnsupportedOperationException.class);
+        client().openOutputStream("test/baz.txt");
+    }
+
+    @Override
+    @Test
+    public void resumeUpload() {
+        IO.spit(LOCAL_FILE, "baz.qux.");
+        thrown.expect(UnsupportedOperationException.class);
+        client().upload(LOCAL_FILE, "test/baz.txt", 4);
+    }
+
+    private static class BasicClient implements FileTransferClient {
+        private final FileTransferClient delegate;
+
+        BasicClient(FileTransferClient delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Optional<InputStream> optionalStream(String path) {
+            return delegate.optionalStream(path);
+        }
+
+        @Override
+        public InputStream stream(String path) {
+            return delegate.stream(path);
+        }
+
+        @Override
+        public Boolean dirExists(String path) {
+            return delegate.dirExists(path);
+        }
+
+        @Override
+        public Boolean fileExists(String path) {
+            return delegate.fileExists(path);
+        }
+
+        @Override
+        public Optional<String> optionalSlurp(String path) {
+            return delegate.optionalSlurp(path);
+        }
+
+        @Override
+        public String slurp(String path) {
+            return delegate.slurp(path);
+        }
+
+        @Override
+        public List<FileInfo> list(String path) {
+            return delegate.list(path);
+        }
+
+        @Override
+        public Boolean optionalDownload(String path, String localPath) {
+            return delegate.optionalDownload(path, localPath);
+        }
+
+        @Override
+        public Optional<OutputStream> optionalDownload(String path, OutputStream stream) {
+            return delegate.optionalDownload(path, stream);
+        }
+
+        @Override
+        public void download(String path, String localPath) {
+            delegate.download(path, localPath);
+        }
+
+        @Override
+        public OutputStream download(String path, OutputStream stream) {
+            return delegate.download(path, stream);
+        }
+
+        @Override
+        public Map<String, Boolean> downloadAll(Map<String, OutputStream> targets) {
+            return delegate.downloadAll(targets);
+        }
+
+        @Override
+        public String upload(String source, String dest) {
+            return delegate.upload(source, dest);
+        }
+
+        @Override
+        public String upload(InputStream is, String path) {
+            return delegate.upload(is, path);
+        }
+
+        @Override
+        public void delete(String path) {
+            delegate.delete(path);
+        }
+    }
+}
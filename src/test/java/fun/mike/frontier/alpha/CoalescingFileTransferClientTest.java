@@ -0,0 +1,160 @@
+package fun.mike.frontier.alpha;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoalescingFileTransferClientTest extends FtpFileTransferClientTest {
+    @Override
+    public FileTransferClient client() {
+        return new CoalescingFileTransferClient(super.client(), 2);
+    }
+
+    @Test
+    public void concurrentSlurpsShareOneRequest() throws Exception {
+        AtomicInteger calls = new AtomicInteger(0);
+        FileTransferClient slow = new CoalescingFileTransferClient(super.client()) {
+            @Override
+            public String slurp(String path) {
+                calls.incrementAndGet();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.slurp(path);
+            }
+        };
+        FileTransferClient client = new CoalescingFileTransferClient(slow);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return client.slurp("test/foo.txt");
+            }));
+        }
+        start.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("foo.", result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void sharedDownloadSpillsToDisk() throws Exception {
+        AtomicInteger calls = new AtomicInteger(0);
+        CountDownLatch downloaded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FileTransferClient blocked = new CoalescingFileTransferClient(super.client()) {
+            @Override
+            public OutputStream download(String path, OutputStream stream) {
+                calls.incrementAndGet();
+                super.download(path, stream);
+                downloaded.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return stream;
+            }
+        };
+        FileTransferClient client = new CoalescingFileTransferClient(blocked, 2);
+        Set<Path> spilledBefore = spillFiles();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> download(client)));
+        assertTrue(downloaded.await(10, TimeUnit.SECONDS));
+        results.add(executor.submit(() -> download(client)));
+
+        Set<Path> spilled = spillFiles();
+        spilled.removeAll(spilledBefore);
+        assertEquals(1, spilled.size());
+        Path spill = spilled.iterator().next();
+        assertTrue(Files.exists(spill));
+
+        Thread.sleep(200);
+        release.countDown();
+        for (Future<String> result : results) {
+            assertEquals("bar!!", result.get());
+        }
+        executor.shutdown();
+        assertEquals(1, calls.get());
+        assertFalse(Files.exists(spill));
+    }
+
+    @Test
+    public void waitersGetTheirOwnListings() throws Exception {
+        CountDownLatch listed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FileTransferClient blocked = new CoalescingFileTransferClient(super.client()) {
+            @Override
+            public List<FileInfo> list(String path) {
+                List<FileInfo> files = super.list(path);
+                listed.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return files;
+            }
+        };
+        FileTransferClient client = new CoalescingFileTransferClient(blocked);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<List<FileInfo>> first = executor.submit(() -> client.list("test"));
+        assertTrue(listed.await(10, TimeUnit.SECONDS));
+        Future<List<FileInfo>> second = executor.submit(() -> client.list("test"));
+        Thread.sleep(200);
+        release.countDown();
+
+        List<FileInfo> changed = first.get();
+        changed.get(0).getTime().setTime(0);
+        changed.clear();
+        List<FileInfo> files = second.get();
+        executor.shutdown();
+        assertEquals(2, files.size());
+        assertNotEquals(0, files.get(0).getTime().getTime());
+    }
+
+    private static String download(FileTransferClient client) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.download("test/bar.txt", out);
+        return out.toString();
+    }
+
+    private static Set<Path> spillFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".spill"))
+                    .collect(Collectors.toSet());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package fun.mike.frontier.alpha;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DirectoryWatcherTest {
+    private static final String ROOT = "watch-root";
+
+    private final BlockingQueue<DirectoryChange> changes = new LinkedBlockingQueue<>();
+    private FileTransferClient client;
+    private DirectoryWatcher watcher;
+
+    @Before
+    public void setUp() {
+        IO.mkdir(ROOT);
+        IO.mkdir(ROOT + "/in");
+        IO.spit(ROOT + "/in/existing.txt", "existing");
+        client = new LocalFileTransferClient(ROOT);
+        watcher = new DirectoryWatcher(20, 160);
+    }
+
+    @After
+    public void tearDown() {
+        watcher.close();
+        IO.nuke(ROOT + "/in");
+        IO.nuke(ROOT);
+    }
+
+    @Test
+    public void reportsChanges() throws InterruptedException {
+        watcher.watch(client, "in", changes::add);
+        Thread.sleep(100);
+        assertNull(changes.poll());
+
+        IO.spit(ROOT + "/in/new.txt", "new");
+        DirectoryChange created = next();
+        assertEquals(DirectoryChange.Kind.CREATED, created.getKind());
+        assertEquals("in/new.txt", created.getPath());
+        assertEquals(Long.valueOf(3), created.getFile().getSize());
+
+        IO.spit(ROOT + "/in/existing.txt", "existing, modified");
+        DirectoryChange modified = next();
+        assertEquals(DirectoryChange.Kind.MODIFIED, modified.getKind());
+        assertEquals("existing.txt", modified.getFile().getName());
+        assertEquals(Long.valueOf(18), modified.getFile().getSize());
+
+        client.delete("in/new.txt");
+        DirectoryChange deleted = next();
+        assertEquals(DirectoryChange.Kind.DELETED, deleted.getKind());
+        assertEquals("new.txt", deleted.getFile().getName());
+    }
+
+    @Test
+    public void waitsForSizeToSettle() throws InterruptedException {
+        ScriptedClient scripted = new ScriptedClient(listing(),
+                                                     listing(10),
+                                                     listing(20),
+                                                     listing(30),
+                                                     listing(30));
+        AtomicInteger reportedAt = new AtomicInteger();
+        watcher.watch(scripted, "in", change -> {
+                reportedAt.set(scripted.polls.get());
+                changes.add(change);
+            });
+
+        DirectoryChange created = next();
+        assertEquals(DirectoryChange.Kind.CREATED, created.getKind());
+        assertEquals(Long.valueOf(30), created.getFile().getSize());
+        assertEquals(5, reportedAt.get());
+    }
+
+    @Test
+    public void threadStopsWhenWatchesAreCancelled() throws InterruptedException {
+        assertEquals(0, awaitWatchThreads(0));
+        DirectoryWatcher.Watch watch = watcher.watch(client, "in", changes::add);
+        assertEquals(1, watchThreads());
+
+        watch.cancel();
+        assertEquals(0, awaitWatchThreads(0));
+
+        watcher.watch(client, "in", changes::add);
+        Thread.sleep(100);
+        IO.spit(ROOT + "/in/new.txt", "new");
+        assertEquals("in/new.txt", next().getPath());
+    }
+
+    @Test
+    public void intervalAdapts() throws InterruptedException {
+        DirectoryWatcher.Watch watch = watcher.watch(client, "in", changes::add);
+        Thread.sleep(600);
+        assertEquals(160, watch.getIntervalMillis());
+
+        IO.spit(ROOT + "/in/new.txt", "new");
+        next();
+        assertEquals(20, watch.getIntervalMillis());
+
+        watch.cancel();
+        IO.spit(ROOT + "/in/other.txt", "other");
+        assertNull(changes.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    private static FileListing listing(long... sizes) {
+        FileListing.Builder builder = FileListing.builder().add("existing.txt", 8, 1000, false);
+        for (long size : sizes) {
+            builder.add("growing.txt", size, 2000 + size, false);
+        }
+        return builder.build();
+    }
+
+    private static long awaitWatchThreads(long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (watchThreads() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return watchThreads();
+    }
+
+    private static long watchThreads() {
+        return Thread.getAllStackTraces()
+                .keySet()
+                .stream()
+                .filter(thread -> thread.getName().startsWith("frontier-watch-") && thread.isAlive())
+                .count();
+    }
+
+    /**
+     * Lists the given listings in turn, one per poll, then the last one again.
+     */
+    private static class ScriptedClient extends LocalFileTransferClient {
+        private final List<FileListing> listings;
+        private final AtomicInteger polls = new AtomicInteger();
+
+        private ScriptedClient(FileListing... listings) {
+            super(ROOT);
+            this.listings = Arrays.asList(listings);
+        }
+
+        @Override
+        public FileListing listCompact(String path) {
+            int poll = polls.incrementAndGet();
+            return listings.get(Math.min(poll, listings.size()) - 1);
+        }
+    }
+
+    private DirectoryChange next() throws InterruptedException {
+        DirectoryChange change = changes.poll(10, TimeUnit.SECONDS);
+        assertTrue("No change was reported.", change != null);
+        return change;
+    }
+}
@@ -0,0 +1,65 @@
+package fun.mike.frontier.alpha;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileListingTest {
+    private static FileListing listing() {
+        return FileListing.builder()
+                .add("c.csv", 30, 3000, false)
+                .add("a.csv", 10, 1000, false)
+                .add("dir", 0, FileListing.UNKNOWN_TIME, true)
+                .add("b.txt", 20, 2000, false)
+                .build();
+    }
+
+    @Test
+    public void columns() {
+        FileListing listing = listing();
+
+        assertEquals(4, listing.size());
+        assertEquals("a.csv", listing.getName(1));
+        assertEquals(10, listing.getSize(1));
+        assertEquals(1000, listing.getTime(1));
+        assertTrue(listing.isDirectory(2));
+        assertEquals(new FileInfo("c.csv", 30L, new Date(3000), false), listing.get(0));
+        assertNull(listing.get(2).getTime());
+    }
+
+    @Test
+    public void sort() {
+        FileListing byName = listing().sortedByName();
+        assertEquals("a.csv", byName.getName(0));
+        assertEquals("dir", byName.getName(3));
+
+        FileListing bySize = listing().sortedBySize().reversed();
+        assertEquals("c.csv", bySize.getName(0));
+        assertEquals("dir", bySize.getName(3));
+
+        assertEquals("dir", listing().sortedByTime().getName(0));
+    }
+
+    @Test
+    public void filter() {
+        FileListing listing = listing();
+
+        FileListing csv = listing.filter(ListQuery.all().glob("*.csv").minSize(15));
+        assertEquals(1, csv.size());
+        assertEquals("c.csv", csv.getName(0));
+
+        FileListing newest = listing.filter(ListQuery.all().newest(2));
+        assertEquals(2, newest.size());
+        assertEquals("c.csv", newest.getName(0));
+        assertEquals("b.txt", newest.getName(1));
+
+        FileListing sorted = listing.sortedByName();
+        FileListing files = sorted.filter(i -> !sorted.isDirectory(i));
+        assertEquals(3, files.size());
+        assertEquals("c.csv", files.getName(2));
+    }
+}
@@ -2,10 +2,18 @@ package fun.mike.frontier.alpha;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -13,6 +21,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -27,6 +37,17 @@ public abstract class FileTransferClientTest {
 
     public abstract FileTransferClient client();
 
+    /**
+     * @param path a path to a missing file
+     * @return a regex matching the message of the MissingRemoteFileException thrown for the path
+     */
+    protected abstract String missingFileMessage(String path);
+
+    /**
+     * @return part of the message of the exception thrown when uploading to a directory that does not exist
+     */
+    protected abstract String uploadPathNotFoundMessage();
+
     @Before
     public void superSetUp() {
         IO.mkdir("local");
@@ -58,23 +79,54 @@ public abstract class FileTransferClientTest {
     @Test
     public void streamNotFound() {
         thrown.expect(MissingRemoteFileException.class);
-        thrown.expectMessage(new RegexMatcher("Remote file localhost:[0-9]+:elkawrjwa not found."));
+        thrown.expectMessage(new RegexMatcher(missingFileMessage("elkawrjwa")));
         client().stream("elkawrjwa");
     }
 
     @Test
     public void list() {
-        List<FileInfo> files = client().list("test");
+        List<FileInfo> files = client().list("test").stream()
+                .sorted(Comparator.comparing(FileInfo::getName))
+                .collect(Collectors.toList());
 
         assertEquals(2, files.size());
 
-        FileInfo foo = files.get(0);
+        FileInfo bar = files.get(0);
+        assertEquals("bar.txt", bar.getName());
+        assertEquals(new Long(5), bar.getSize());
+
+        FileInfo foo = files.get(1);
         assertEquals("foo.txt", foo.getName());
         assertEquals(new Long(4), foo.getSize());
+    }
 
-        FileInfo bar = files.get(1);
-        assertEquals("bar.txt", bar.getName());
-        assertEquals(new Long(5), bar.getSize());
+    @Test
+    public void listQuery() {
+        FileTransferClient client = client();
+
+        List<FileInfo> globbed = client.list("test", ListQuery.all().glob("f*.txt"));
+        assertEquals(1, globbed.size());
+        assertEquals("foo.txt", globbed.get(0).getName());
+
+        List<FileInfo> large = client.list("test", ListQuery.all().matching(".*\\.txt").minSize(5));
+        assertEquals(1, large.size());
+        assertEquals("bar.txt", large.get(0).getName());
+
+        assertEquals(1, client.list("test", ListQuery.all().newest(1)).size());
+        assertTrue(client.list("test", ListQuery.all().glob("*.csv")).isEmpty());
+    }
+
+    @Test
+    public void listCompact() {
+        FileListing listing = client().listCompact("test");
+
+        assertEquals(client().list("test"), listing);
+
+        FileListing sorted = listing.sortedByName();
+        assertEquals("bar.txt", sorted.getName(0));
+        assertEquals(5, sorted.getSize(0));
+        assertFalse(sorted.isDirectory(0));
+        assertEquals("foo.txt", sorted.get(1).getName());
     }
 
     @Test
@@ -84,6 +136,24 @@ public abstract class FileTransferClientTest {
         assertEquals("foo.", out.toString());
     }
 
+    @Test
+    public void stat() {
+        FileInfo info = client().stat("test/bar.txt").get();
+        assertEquals("bar.txt", info.getName());
+        assertEquals(new Long(5), info.getSize());
+        assertFalse(info.isDirectory());
+
+        assertFalse(client().stat("test/ekajrka.txt").isPresent());
+    }
+
+    @Test
+    public void downloadWithChecksum() {
+        OutputStream out = new ByteArrayOutputStream();
+        assertEquals("0efa2e208a21d7f8ccac9cebfacc5bbc",
+                     client().download("test/foo.txt", out, ChecksumAlgorithm.MD5));
+        assertEquals("foo.", out.toString());
+    }
+
     @Test
     public void optionalDownload() {
         OutputStream out = new ByteArrayOutputStream();
@@ -102,7 +172,7 @@ public abstract class FileTransferClientTest {
     @Test
     public void downloadNonexistentFile() {
         thrown.expect(MissingRemoteFileException.class);
-        thrown.expectMessage(new RegexMatcher("Remote file localhost:[0-9]+:foo not found."));
+        thrown.expectMessage(new RegexMatcher(missingFileMessage("foo")));
         OutputStream os = new ByteArrayOutputStream();
         client().download("foo", os);
     }
@@ -141,7 +211,7 @@ public abstract class FileTransferClientTest {
     @Test
     public void downloadToPathFileNotFoundOnHost() {
         thrown.expect(MissingRemoteFileException.class);
-        thrown.expectMessage(new RegexMatcher("Remote file localhost:[0-9]+:test/ekajrka.txt not found."));
+        thrown.expectMessage(new RegexMatcher(missingFileMessage("test/ekajrka.txt")));
 
         final String FTP_PATH = "test/ekajrka.txt";
         final String LOCAL_FILE = "local/foo.txt";
@@ -160,6 +230,121 @@ public abstract class FileTransferClientTest {
         assertEquals(CONTENT, client.slurp(PATH));
     }
 
+    @Test
+    public void uploadWithChecksum() {
+        FileTransferClient client = client();
+
+        final String PATH = "test/baz.txt";
+        final String CONTENT = "baz.";
+
+        InputStream in = new ByteArrayInputStream(CONTENT.getBytes());
+        assertEquals("f078dd30", client.upload(in, PATH, ChecksumAlgorithm.CRC32));
+        assertEquals(CONTENT, client.slurp(PATH));
+    }
+
+    @Test
+    public void uploadAndDownloadGzip() {
+        FileTransferClient client = client();
+
+        final String PATH = "test/baz.txt.gz";
+        final String CONTENT = "baz.";
+
+        InputStream in = new ByteArrayInputStream(CONTENT.getBytes());
+        assertEquals(PATH, client.upload(in, PATH, ContentCoding.GZIP));
+
+        OutputStream out = new ByteArrayOutputStream();
+        client.download(PATH, out, ContentCoding.forPath(PATH));
+        assertEquals(CONTENT, out.toString());
+    }
+
+    @Test
+    public void uploadAndDownloadBinary() {
+        FileTransferClient client = client();
+
+        byte[] content = binaryContent(200_000);
+        client.upload(new ByteArrayInputStream(content), "test/binary.bin");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.download("test/binary.bin", out);
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    public void uploadAndDownloadBinaryGzip() {
+        FileTransferClient client = client();
+
+        byte[] content = binaryContent(200_000);
+        client.upload(new ByteArrayInputStream(content), "test/binary.bin.gz", ContentCoding.GZIP);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.download("test/binary.bin.gz", out, ContentCoding.GZIP);
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    public void forEachZipEntry() {
+        FileTransferClient client = client();
+
+        final String PATH = "test/baz.zip";
+        client.write(PATH, os -> {
+                try (ZipBuilder zip = new ZipBuilder(os)) {
+                    zip.add("foo.txt", new ByteArrayInputStream("foo.".getBytes()));
+                    zip.add("bar.txt", new ByteArrayInputStream("bar!!".getBytes()));
+                }
+            });
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        client.forEachZipEntry(PATH, (entry, is) -> entries.put(entry.getName(), IO.slurp(is)));
+
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("foo.txt", "foo.");
+        expected.put("bar.txt", "bar!!");
+        assertEquals(expected, entries);
+    }
+
+    @Test
+    public void openOutputStream() throws IOException {
+        FileTransferClient client = client();
+
+        final String PATH = "test/baz.txt";
+        try (OutputStream os = client.openOutputStream(PATH)) {
+            os.write("baz".getBytes());
+            os.write('.');
+        }
+
+        assertEquals("baz.", client.slurp(PATH));
+    }
+
+    @Test
+    public void abortOutputStream() throws IOException {
+        FileTransferClient client = client();
+
+        final String PATH = "test/baz.txt";
+        AbortableOutputStream os = client.openOutputStream(PATH);
+        os.write("baz".getBytes());
+        os.abort();
+        os.close();
+
+        assertFalse(client.fileExists(PATH));
+        assertEquals("foo.", client.slurp("test/foo.txt"));
+    }
+
+    @Test
+    public void streamLines() {
+        FileTransferClient client = client();
+
+        final String PATH = "test/baz.csv";
+        client.upload(new ByteArrayInputStream("id,name\n1,foo\n2,bar\n".getBytes()), PATH);
+
+        try (Stream<String> lines = client.streamLines(PATH, UTF_8)) {
+            assertEquals(Arrays.asList("id,name", "1,foo", "2,bar"), lines.collect(Collectors.toList()));
+        }
+
+        try (Stream<String> lines = client.streamLines(PATH, UTF_8, ",", true)) {
+            assertEquals(Arrays.asList("name\n1", "foo\n2", "bar\n"), lines.collect(Collectors.toList()));
+        }
+    }
+
     @Test
     public void delete() {
         FileTransferClient client = client();
@@ -178,6 +363,23 @@ public abstract class FileTransferClientTest {
         assertFalse(client.fileExists(PATH));
     }
 
+    @Test
+    public void session() {
+        final String PATH = "qux.txt";
+        final String CONTENT = "qux.";
+
+        String slurped = client().session(session -> {
+                session.upload(new ByteArrayInputStream(CONTENT.getBytes()), PATH);
+                assertEquals(2, session.list("test").size());
+                String content = session.session(nested -> nested.slurp(PATH));
+                session.delete(PATH);
+                assertFalse(session.fileExists(PATH));
+                return content;
+            });
+
+        assertEquals(CONTENT, slurped);
+    }
+
     @Test
     public void uploadLocalFile() {
         FileTransferClient client = client();
@@ -191,11 +393,56 @@ public abstract class FileTransferClientTest {
         assertEquals(CONTENT, client.slurp(PATH));
     }
 
+    @Test
+    public void resumeUpload() {
+        FileTransferClient client = client();
+
+        IO.spit(LOCAL_FILE, "baz.qux.");
+        client.upload(new ByteArrayInputStream("baz.".getBytes()), "test/baz.txt");
+        assertEquals(4, client.upload(LOCAL_FILE, "test/baz.txt", 4));
+        assertEquals("baz.qux.", client.slurp("test/baz.txt"));
+        assertEquals(8, client.upload(LOCAL_FILE, "test/baz.txt", 0));
+        assertEquals("baz.qux.", client.slurp("test/baz.txt"));
+    }
+
+    @Test
+    public void uploadAndDownloadLargeLocalFile() {
+        FileTransferClient client = client();
+
+        final String PATH = "test/large.txt";
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            content.append(i).append('\n');
+        }
+
+        IO.spit(LOCAL_FILE, content.toString());
+        assertEquals(PATH, client.upload(LOCAL_FILE, PATH));
+        IO.deleteQuietly(LOCAL_FILE);
+
+        client.download(PATH, LOCAL_FILE);
+        assertEquals(content.toString(), IO.slurp(LOCAL_FILE));
+    }
+
     @Test
     public void uploadPathNotFound() {
         thrown.expect(FileTransferException.class);
-        thrown.expectMessage("Unexpected reply: 553 [c:\\home\\blaoewa] is not a directory or does not exist.");
+        thrown.expectMessage(uploadPathNotFoundMessage());
         InputStream in = new ByteArrayInputStream("lekajwel".getBytes());
         client().upload(in, "blaoewa/elaker.txt");
     }
+
+    /**
+     * Random bytes with line endings of every kind mixed in, which a transfer in ASCII mode would rewrite.
+     */
+    static byte[] binaryContent(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        for (int i = 0; i + 3 < length; i += 97) {
+            content[i] = '\n';
+            content[i + 1] = '\r';
+            content[i + 2] = '\r';
+            content[i + 3] = '\n';
+        }
+        return content;
+    }
 }
@@ -1,17 +1,45 @@
 package fun.mike.frontier.alpha;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockftpserver.core.command.Command;
+import org.mockftpserver.core.command.CommandNames;
+import org.mockftpserver.core.command.StaticReplyCommandHandler;
+import org.mockftpserver.core.session.Session;
+import org.mockftpserver.core.util.IoUtil;
 import org.mockftpserver.fake.FakeFtpServer;
 import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.command.AbstractFakeCommandHandler;
+import org.mockftpserver.fake.command.RestCommandHandler;
 import org.mockftpserver.fake.filesystem.DirectoryEntry;
 import org.mockftpserver.fake.filesystem.FileEntry;
 import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.FileSystemEntry;
+import org.mockftpserver.fake.filesystem.UnixFakeFileSystem;
 import org.mockftpserver.fake.filesystem.WindowsFakeFileSystem;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 public class FtpFileTransferClientTest extends FileTransferClientTest {
     private static final String USER = "bob";
     private static final String PASSWORD = "password";
@@ -32,6 +60,10 @@ public class FtpFileTransferClientTest extends FileTransferClientTest {
         fileSystem.add(new FileEntry("c:\\home\\test\\foo.txt", "foo."));
         fileSystem.add(new FileEntry("c:\\home\\test\\bar.txt", "bar!!"));
         ftpServer.setFileSystem(fileSystem);
+        ftpServer.setCommandHandler(CommandNames.REST, new RestartCommandHandler());
+        ftpServer.setCommandHandler(CommandNames.RETR, new RestartableRetrCommandHandler());
+        ftpServer.setCommandHandler("FEAT", new StaticReplyCommandHandler(211, "Features:\r\n XMD5\r\nEnd"));
+        ftpServer.setCommandHandler("XMD5", new Md5CommandHandler());
 
         ftpServer.start();
 
@@ -46,6 +78,16 @@ public class FtpFileTransferClientTest extends FileTransferClientTest {
                                          PASSWORD);
     }
 
+    @Override
+    protected String missingFileMessage(String path) {
+        return "Remote file localhost:[0-9]+:" + path + " not found.";
+    }
+
+    @Override
+    protected String uploadPathNotFoundMessage() {
+        return "Unexpected reply: 553 [c:\\home\\blaoewa] is not a directory or does not exist.";
+    }
+
     @Test
     public void downloadFailure() throws FileTransferException {
         thrown.expect(FileTransferException.class);
@@ -60,4 +102,369 @@ public class FtpFileTransferClientTest extends FileTransferClientTest {
         thrown.expectMessage(String.format("Directory localhost:%d:kelawjrlka does not exist.", port));
         client().list("kelawjrlka");
     }
+
+    @Test
+    public void unixListing() {
+        FakeFtpServer unixServer = new FakeFtpServer();
+        unixServer.setServerControlPort(0);
+        unixServer.setSystemName("UNIX");
+        unixServer.addUserAccount(new UserAccount(USER, PASSWORD, "/home"));
+
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/home/test/sub"));
+        fileSystem.add(new FileEntry("/home/test/foo.txt", "foo."));
+        fileSystem.add(new FileEntry("/home/test/bar baz.txt", "bar!!"));
+        unixServer.setFileSystem(fileSystem);
+        unixServer.start();
+
+        try {
+            FileTransferClient client = new FtpFileTransferClient("localhost",
+                                                                  unixServer.getServerControlPort(),
+                                                                  USER,
+                                                                  PASSWORD);
+            List<FileInfo> files = client.list("test");
+            FileListing listing = client.listCompact("test");
+
+            assertEquals(3, files.size());
+            assertEquals(files, listing);
+
+            FileListing sorted = listing.sortedByName();
+            assertEquals("bar baz.txt", sorted.getName(0));
+            assertEquals(5, sorted.getSize(0));
+            assertTrue(sorted.isDirectory(2));
+        } finally {
+            unixServer.stop();
+        }
+    }
+
+    @Test
+    public void truncatedUnixListing() {
+        FakeFtpServer unixServer = new FakeFtpServer();
+        unixServer.setServerControlPort(0);
+        unixServer.setSystemName("UNIX");
+        unixServer.addUserAccount(new UserAccount(USER, PASSWORD, "/home"));
+        FileSystem fileSystem = new UnixFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("/home/test"));
+        unixServer.setFileSystem(fileSystem);
+        unixServer.setCommandHandler(CommandNames.LIST, new TruncatedListCommandHandler());
+        unixServer.start();
+
+        try {
+            FileTransferClient client = new FtpFileTransferClient("localhost",
+                                                                  unixServer.getServerControlPort(),
+                                                                  USER,
+                                                                  PASSWORD);
+            client.listCompact("test");
+            fail("Expected the truncated listing to fail.");
+        } catch (FileTransferException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Unexpected reply listing localhost:"));
+        } finally {
+            unixServer.stop();
+        }
+    }
+
+    @Test
+    public void readRange() {
+        byte[] content = binaryContent(50_000);
+        FileTransferClient client = client();
+        client.upload(new ByteArrayInputStream(content), "test/binary.bin");
+
+        assertArrayEquals(Arrays.copyOfRange(content, 20_000, 20_500), client.read("test/binary.bin", 20_000, 500));
+        assertArrayEquals(Arrays.copyOfRange(content, 49_990, 50_000), client.read("test/binary.bin", 49_990, 100));
+        assertArrayEquals(Arrays.copyOfRange(content, 1_000, 1_100),
+                          client.read("test/binary.bin", 1_000, 100, is -> IO.read(is, 200)));
+    }
+
+    @Test
+    public void readVectored() {
+        byte[] content = binaryContent(50_000);
+        FileTransferClient client = client();
+        client.upload(new ByteArrayInputStream(content), "test/binary.bin");
+
+        List<byte[]> ranges = client.read("test/binary.bin", Arrays.asList(ByteRange.of(30_000, 300),
+                                                                          ByteRange.of(10_000, 200),
+                                                                          ByteRange.of(10_100, 400)));
+        assertArrayEquals(Arrays.copyOfRange(content, 30_000, 30_300), ranges.get(0));
+        assertArrayEquals(Arrays.copyOfRange(content, 10_000, 10_200), ranges.get(1));
+        assertArrayEquals(Arrays.copyOfRange(content, 10_100, 10_500), ranges.get(2));
+    }
+
+    @Test
+    public void tail() {
+        FileTransferClient client = client();
+        RemoteFileTail tail = new RemoteFileTail(client);
+
+        final String PATH = "test/feed.txt";
+
+        client.upload(new ByteArrayInputStream("abc".getBytes()), PATH);
+        assertEquals("abc", tail.poll(PATH, IO::slurp));
+        assertEquals("", tail.poll(PATH, IO::slurp));
+
+        client.upload(new ByteArrayInputStream("abcdefgh".getBytes()), PATH);
+        assertEquals("de", tail.poll(PATH, is -> new String(IO.read(is, 2))));
+        assertEquals(5, tail.getOffset(PATH));
+
+        OutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, tail.poll(PATH, out));
+        assertEquals("fgh", out.toString());
+        assertEquals(8, tail.getOffset(PATH));
+    }
+
+    @Test
+    public void checksumOverBinaryContent() throws NoSuchAlgorithmException {
+        byte[] content = binaryContent(100_000);
+        String expected = String.format("%032x", new BigInteger(1, MessageDigest.getInstance("MD5").digest(content)));
+        FileTransferClient client = client();
+
+        assertEquals(expected,
+                     client.upload(new ByteArrayInputStream(content), "test/binary.bin", ChecksumAlgorithm.MD5));
+        assertEquals(Optional.of(expected), client.checksum("test/binary.bin", ChecksumAlgorithm.MD5));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(expected, client.download("test/binary.bin", out, ChecksumAlgorithm.MD5));
+        assertArrayEquals(content, out.toByteArray());
+    }
+
+    @Test
+    public void hostLimiter() {
+        HostLimiter limiter = HostLimiter.register("localhost", port, 1, 1, 200);
+        try {
+            FileTransferClient client = client();
+            try (Stream<String> lines = client.streamLines("test/foo.txt", StandardCharsets.UTF_8)) {
+                assertEquals(1, limiter.getInFlight());
+                try {
+                    client.slurp("test/bar.txt");
+                    fail("Expected the limiter to time out.");
+                } catch (FileTransferException ex) {
+                    assertEquals(String.format("Timed out after 200 ms waiting to connect to localhost:%d.", port),
+                                 ex.getMessage());
+                }
+                assertEquals(0, limiter.getQueueDepth());
+                assertEquals(Arrays.asList("foo."), lines.collect(Collectors.toList()));
+            }
+
+            assertEquals(0, limiter.getInFlight());
+            assertEquals("bar!!", client.slurp("test/bar.txt"));
+            assertEquals(1, limiter.getLimit());
+        } finally {
+            HostLimiter.unregister("localhost", port);
+        }
+    }
+
+    @Test
+    public void rejectedLoginKeepsLimit() {
+        HostLimiter limiter = HostLimiter.register("localhost", port, 4, 4, 200);
+        try {
+            FileTransferClient client = new FtpFileTransferClient("localhost", port, USER, "wrong");
+            try {
+                client.slurp("test/foo.txt");
+                fail("Expected the login to be rejected.");
+            } catch (FileTransferException ex) {
+                assertEquals("localhost refused connection.", ex.getMessage());
+            }
+            assertEquals(4, limiter.getLimit());
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            HostLimiter.unregister("localhost", port);
+        }
+    }
+
+    /**
+     * Runs the shared session test with the host limited to one connection, so any call in the session that opened
+     * its own connection would time out.
+     */
+    @Override
+    @Test
+    public void session() {
+        HostLimiter limiter = HostLimiter.register("localhost", port, 1, 1, 200);
+        try {
+            super.session();
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            HostLimiter.unregister("localhost", port);
+        }
+    }
+
+    @Test
+    public void pooledConnections() {
+        HostLimiter limiter = HostLimiter.register("localhost", port, 1, 1, 200);
+        try {
+            FtpFileTransferClient client = new FtpFileTransferClient("localhost", port, USER, PASSWORD, 0, 1, 60_000);
+            assertEquals("foo.", client.slurp("test/foo.txt"));
+            assertEquals(1, limiter.getInFlight());
+            assertEquals("bar!!", client.slurp("test/bar.txt"));
+            assertEquals(1, limiter.getInFlight());
+
+            client.closeIdle();
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            HostLimiter.unregister("localhost", port);
+        }
+    }
+
+    @Test
+    public void pooledStreamLines() {
+        HostLimiter limiter = HostLimiter.register("localhost", port, 1, 1, 200);
+        try {
+            FtpFileTransferClient client = new FtpFileTransferClient("localhost", port, USER, PASSWORD, 0, 1, 60_000);
+            try (Stream<String> lines = client.streamLines("test/foo.txt", StandardCharsets.UTF_8)) {
+                assertEquals(Arrays.asList("foo."), lines.collect(Collectors.toList()));
+            }
+            assertEquals(1, limiter.getInFlight());
+
+            String content = client.session(session -> {
+                    try (Stream<String> lines = session.streamLines("test/bar.txt", StandardCharsets.UTF_8)) {
+                        lines.count();
+                    }
+                    return session.slurp("test/bar.txt");
+                });
+            assertEquals("bar!!", content);
+            assertEquals(1, limiter.getInFlight());
+        } finally {
+            HostLimiter.unregister("localhost", port);
+        }
+    }
+
+    @Test
+    public void sessionWithOpenStreamIsNotPooled() throws IOException {
+        HostLimiter limiter = HostLimiter.register("localhost", port, 1, 1, 200);
+        try {
+            FtpFileTransferClient client = new FtpFileTransferClient("localhost", port, USER, PASSWORD, 0, 1, 60_000);
+            client.session(session -> {
+                    try (OutputStream os = session.openOutputStream("test/baz.txt")) {
+                        os.write("baz.".getBytes());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    return null;
+                });
+            assertEquals(1, limiter.getInFlight());
+
+            InputStream is = client.session(session -> session.stream("test/baz.txt"));
+            assertEquals(0, limiter.getInFlight());
+            is.close();
+
+            assertEquals("baz.", client.slurp("test/baz.txt"));
+        } finally {
+            HostLimiter.unregister("localhost", port);
+        }
+    }
+
+    @Test
+    public void idleConnectionsReleasePermits() throws InterruptedException {
+        HostLimiter limiter = HostLimiter.register("localhost", port, 1, 1, 200);
+        try {
+            FtpFileTransferClient client = new FtpFileTransferClient("localhost", port, USER, PASSWORD, 0, 1, 100);
+            assertEquals("foo.", client.slurp("test/foo.txt"));
+            assertEquals(1, limiter.getInFlight());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (limiter.getInFlight() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            HostLimiter.unregister("localhost", port);
+        }
+    }
+
+    @Test
+    public void deadline() throws Exception {
+        try (ServerSocket stalled = new ServerSocket(0)) {
+            FileTransferClient client = new FtpFileTransferClient("localhost",
+                                                                  stalled.getLocalPort(),
+                                                                  USER,
+                                                                  PASSWORD,
+                                                                  300);
+            long start = System.currentTimeMillis();
+            try {
+                client.slurp("test/foo.txt");
+                fail("Expected the operation to time out.");
+            } catch (FileTransferException ex) {
+                assertTrue(System.currentTimeMillis() - start < 5000);
+                assertEquals(String.format("Connecting to localhost:%d exceeded the deadline of 300 ms.",
+                                           stalled.getLocalPort()),
+                             ex.getMessage());
+            }
+        }
+    }
+
+    private static final String RESTART_OFFSET = "restartOffset";
+
+    /**
+     * Records the offset given to REST, which the fake server accepts but otherwise ignores.
+     */
+    static class RestartCommandHandler extends RestCommandHandler {
+        @Override
+        protected void handle(Command command, Session session) {
+            super.handle(command, session);
+            session.setAttribute(RESTART_OFFSET, Long.parseLong(command.getRequiredParameter(0)));
+        }
+    }
+
+    /**
+     * Sends a file from the offset recorded by the last REST, so ranged reads can be checked against the server.
+     */
+    static class RestartableRetrCommandHandler extends AbstractFakeCommandHandler {
+        @Override
+        protected void handle(Command command, Session session) {
+            verifyLoggedIn(session);
+            replyCodeForFileSystemException = 550;
+            String path = getRealPath(session, command.getRequiredParameter(0));
+            FileSystemEntry entry = getFileSystem().getEntry(path);
+            verifyFileSystemCondition(entry != null && !entry.isDirectory(), path, "filesystem.doesNotExist");
+
+            Long offset = (Long) session.getAttribute(RESTART_OFFSET);
+            session.removeAttribute(RESTART_OFFSET);
+            sendReply(session, 150);
+            byte[] content;
+            try {
+                content = IoUtil.readBytes(((FileEntry) entry).createInputStream());
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            int start = offset == null ? 0 : (int) Math.min(offset, content.length);
+            session.openDataConnection();
+            session.sendData(Arrays.copyOfRange(content, start, content.length), content.length - start);
+            session.closeDataConnection();
+            sendReply(session, 226);
+        }
+    }
+
+    /**
+     * Sends the first line of a listing, then reports that the transfer was aborted.
+     */
+    static class TruncatedListCommandHandler extends AbstractFakeCommandHandler {
+        @Override
+        protected void handle(Command command, Session session) {
+            verifyLoggedIn(session);
+            sendReply(session, 150);
+            byte[] line = "-rw-r--r--   1 bob      bob             4 Jan 01  2020 foo.txt\r\n".getBytes();
+            session.openDataConnection();
+            session.sendData(line, line.length);
+            session.closeDataConnection();
+            session.sendReply(426, "Connection closed; transfer aborted.");
+        }
+    }
+
+    /**
+     * Replies to XMD5 with the MD5 of a file, as hosts that advertise it in FEAT do.
+     */
+    static class Md5CommandHandler extends AbstractFakeCommandHandler {
+        @Override
+        protected void handle(Command command, Session session) {
+            verifyLoggedIn(session);
+            replyCodeForFileSystemException = 550;
+            String path = getRealPath(session, command.getRequiredParameter(0));
+            FileSystemEntry entry = getFileSystem().getEntry(path);
+            verifyFileSystemCondition(entry != null && !entry.isDirectory(), path, "filesystem.doesNotExist");
+            try {
+                byte[] content = IoUtil.readBytes(((FileEntry) entry).createInputStream());
+                byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+                session.sendReply(250, String.format("%032X", new BigInteger(1, digest)));
+            } catch (IOException | NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
 }
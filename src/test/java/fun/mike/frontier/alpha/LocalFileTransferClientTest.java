@@ -0,0 +1,201 @@
+package fun.mike.frontier.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LocalFileTransferClientTest extends FileTransferClientTest {
+    private static final String ROOT = "local-root";
+
+    private FileTransferClient client;
+
+    @Before
+    public void setUp() {
+        IO.mkdir(ROOT);
+        IO.mkdir(ROOT + "/test");
+        IO.spit(ROOT + "/test/foo.txt", "foo.");
+        IO.spit(ROOT + "/test/bar.txt", "bar!!");
+        client = new LocalFileTransferClient(ROOT);
+    }
+
+    @After
+    public void tearDown() {
+        IO.nuke(ROOT + "/test");
+        IO.nuke(ROOT);
+    }
+
+    @Override
+    public FileTransferClient client() {
+        return new LocalFileTransferClient(ROOT);
+    }
+
+    @Override
+    protected String missingFileMessage(String path) {
+        return "File .*" + ROOT + "/" + path + " not found.";
+    }
+
+    @Override
+    protected String uploadPathNotFoundMessage() {
+        return "blaoewa";
+    }
+
+    @Test
+    public void slurp() {
+        assertEquals("foo.", client.slurp("test/foo.txt"));
+        assertEquals("bar!!", client.slurp("/test/bar.txt"));
+        assertEquals(Optional.empty(), client.optionalSlurp("test/missing.txt"));
+    }
+
+    @Test
+    public void slurpNotFound() {
+        thrown.expect(MissingRemoteFileException.class);
+        client.slurp("test/missing.txt");
+    }
+
+    @Test
+    public void readRanges() {
+        assertEquals("ar", new String(client.read("test/bar.txt", 1, 2), StandardCharsets.UTF_8));
+        assertEquals("!!", client.read("test/bar.txt", 3, 10, IO::slurp));
+
+        List<byte[]> ranges = client.read("test/bar.txt", Arrays.asList(ByteRange.of(4, 5), ByteRange.of(0, 1)));
+        assertEquals("!", new String(ranges.get(0), StandardCharsets.UTF_8));
+        assertEquals("b", new String(ranges.get(1), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void listUnordered() {
+        List<String> names = client.list("test").stream()
+                .map(FileInfo::getName)
+                .sorted()
+                .collect(Collectors.toList());
+        assertEquals(2, names.size());
+        assertEquals("bar.txt", names.get(0));
+
+        List<FileInfo> globbed = client.list("test", ListQuery.all().glob("f*.txt"));
+        assertEquals(1, globbed.size());
+        assertEquals(new Long(4), globbed.get(0).getSize());
+
+        FileListing listing = client.listCompact("test").sortedBySize();
+        assertEquals("bar.txt", listing.getName(1));
+        assertTrue(client.dirExists("test"));
+        assertTrue(client.fileExists("test/foo.txt"));
+        assertEquals(new Long(5), client.stat("test/bar.txt").get().getSize());
+    }
+
+    @Test
+    public void listDirDoesNotExist() {
+        thrown.expect(FileTransferException.class);
+        thrown.expectMessage("does not exist.");
+        client.list("missing");
+    }
+
+    @Test
+    public void pathsOutsideRootAreRejected() {
+        thrown.expect(FileTransferException.class);
+        thrown.expectMessage("is outside the root");
+        client.slurp("test/../../local-root-sibling.txt");
+    }
+
+    @Test
+    public void symbolicLinksOutsideRootAreRejected() throws IOException {
+        final String OUTSIDE = "local-root-outside";
+        IO.mkdir(OUTSIDE);
+        IO.spit(OUTSIDE + "/secret.txt", "secret");
+        Files.createSymbolicLink(Paths.get(ROOT, "test", "escape"), Paths.get(OUTSIDE).toAbsolutePath());
+
+        try {
+            client.slurp("test/escape/secret.txt");
+            fail("Expected a path through the link to be rejected.");
+        } catch (FileTransferException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("is outside the root"));
+        }
+
+        try {
+            client.upload(new ByteArrayInputStream("x".getBytes()), "test/escape/new.txt");
+            fail("Expected a path through the link to be rejected.");
+        } catch (FileTransferException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("is outside the root"));
+        } finally {
+            IO.nuke(OUTSIDE);
+        }
+        assertFalse(IO.exists(OUTSIDE + "/new.txt"));
+    }
+
+    @Test
+    public void downloadFromOffsetAndAll() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, client.download("test/bar.txt", 3, out));
+        assertEquals("!!", out.toString());
+
+        client.download("test/foo.txt", LOCAL_FILE);
+        assertEquals("foo.", IO.slurp(LOCAL_FILE));
+
+        Map<String, OutputStream> targets = new LinkedHashMap<>();
+        targets.put("test/foo.txt", new ByteArrayOutputStream());
+        targets.put("test/missing.txt", new ByteArrayOutputStream());
+        Map<String, Boolean> results = client.downloadAll(targets);
+        assertTrue(results.get("test/foo.txt"));
+        assertFalse(results.get("test/missing.txt"));
+    }
+
+    @Test
+    public void resumeUploadTruncatesTail() {
+        IO.spit(LOCAL_FILE, "baz.qux.");
+        IO.spit(ROOT + "/test/baz.txt", "baz.XXXXXX");
+        assertEquals(4, client.upload(LOCAL_FILE, "test/baz.txt", 4));
+        assertEquals("baz.qux.", client.slurp("test/baz.txt"));
+        client.delete("test/baz.txt");
+    }
+
+    @Test
+    public void uploadAndDelete() {
+        IO.spit(LOCAL_FILE, "baz.");
+        assertEquals("test/baz.txt", client.upload(LOCAL_FILE, "test/baz.txt"));
+        assertEquals("baz.", client.slurp("test/baz.txt"));
+
+        String checksum = client.upload(new ByteArrayInputStream("qux.".getBytes()),
+                                        "test/qux.txt",
+                                        ChecksumAlgorithm.MD5);
+        assertEquals(client.checksum("test/qux.txt", ChecksumAlgorithm.MD5).get(), checksum);
+
+        client.delete("test/baz.txt");
+        client.delete("test/qux.txt");
+        assertFalse(client.fileExists("test/baz.txt"));
+    }
+
+    @Test
+    public void streamLinesSkippingHeader() throws IOException {
+        client.write("test/lines.txt", os -> {
+                try {
+                    os.write("header\na\nb\n".getBytes(StandardCharsets.UTF_8));
+                } catch (IOException ex) {
+                    throw new FileTransferException(ex);
+                }
+            });
+
+        try (Stream<String> lines = client.streamLines("test/lines.txt", StandardCharsets.UTF_8, null, true)) {
+            assertEquals(Arrays.asList("a", "b"), lines.collect(Collectors.toList()));
+        }
+        client.delete("test/lines.txt");
+    }
+}
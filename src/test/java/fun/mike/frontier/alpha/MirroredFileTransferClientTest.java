@@ -0,0 +1,167 @@
+package fun.mike.frontier.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.WindowsFakeFileSystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MirroredFileTransferClientTest {
+    private static final String USER = "bob";
+    private static final String PASSWORD = "password";
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private FakeFtpServer ftpServer;
+    private int port;
+
+    @Before
+    public void setUp() {
+        ftpServer = new FakeFtpServer();
+        ftpServer.setServerControlPort(0);
+        ftpServer.addUserAccount(new UserAccount(USER, PASSWORD, "c:\\home"));
+
+        FileSystem fileSystem = new WindowsFakeFileSystem();
+        fileSystem.add(new DirectoryEntry("c:\\home"));
+        fileSystem.add(new FileEntry("c:\\home\\test\\foo.txt", "foo."));
+        ftpServer.setFileSystem(fileSystem);
+
+        ftpServer.start();
+
+        port = ftpServer.getServerControlPort();
+    }
+
+    @After
+    public void tearDown() {
+        ftpServer.stop();
+    }
+
+    @Test
+    public void skipsFailedMirror() throws IOException {
+        FileTransferClient client = new MirroredFileTransferClient(Arrays.asList(deadMirror(), mirror()));
+
+        assertEquals("foo.", client.slurp("test/foo.txt"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.download("test/foo.txt", out);
+        assertEquals("foo.", out.toString());
+    }
+
+    @Test
+    public void hedgesSlowMirror() throws InterruptedException {
+        CountDownLatch stopped = new CountDownLatch(1);
+        FileTransferClient slow = new FtpFileTransferClient("localhost", port, USER, PASSWORD) {
+            @Override
+            public OutputStream download(String path, OutputStream stream) {
+                // Like a blocking socket read, each wait ignores interrupts.
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        stream.write('x');
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+                    }
+                } catch (IOException ex) {
+                    stopped.countDown();
+                    throw new FileTransferException("Download stopped.", ex);
+                }
+                return stream;
+            }
+        };
+        FileTransferClient client = new MirroredFileTransferClient(Arrays.asList(slow, mirror()), 100, 30000);
+
+        long start = System.currentTimeMillis();
+        assertEquals("foo.", client.slurp("test/foo.txt"));
+        assertTrue(System.currentTimeMillis() - start < 4000);
+        assertTrue(stopped.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void downloadsAreNotHedgedAfterSmallOperations() {
+        AtomicInteger downloads = new AtomicInteger();
+        FileTransferClient client = new MirroredFileTransferClient(Arrays.asList(slowDownloads(downloads),
+                                                                                 slowDownloads(downloads)),
+                                                                   10_000,
+                                                                   30000);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(client.stat("test/foo.txt").isPresent());
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        client.download("test/foo.txt", out);
+        assertEquals("foo.", out.toString());
+        assertEquals(1, downloads.get());
+    }
+
+    @Test
+    public void missingFile() {
+        thrown.expect(MissingRemoteFileException.class);
+        new MirroredFileTransferClient(Arrays.asList(mirror(), mirror())).slurp("test/ekajrka.txt");
+    }
+
+    @Test
+    public void fileMissingFromOneMirror() {
+        FileTransferClient incomplete = new FtpFileTransferClient("localhost", port, USER, PASSWORD) {
+            @Override
+            public OutputStream download(String path, OutputStream stream) {
+                throw new MissingRemoteFileException(String.format("Remote file %s not found.", path));
+            }
+        };
+        FileTransferClient client = new MirroredFileTransferClient(Arrays.asList(incomplete, mirror()));
+
+        assertEquals("foo.", client.slurp("test/foo.txt"));
+    }
+
+    @Test
+    public void uploadUnsupported() {
+        thrown.expect(UnsupportedOperationException.class);
+        new MirroredFileTransferClient(Arrays.asList(mirror()))
+                .upload(new ByteArrayInputStream("bar".getBytes()), "test/bar.txt");
+    }
+
+    private FileTransferClient slowDownloads(AtomicInteger downloads) {
+        return new FtpFileTransferClient("localhost", port, USER, PASSWORD) {
+            @Override
+            public OutputStream download(String path, OutputStream stream) {
+                downloads.incrementAndGet();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.download(path, stream);
+            }
+        };
+    }
+
+    private FileTransferClient mirror() {
+        return new FtpFileTransferClient("localhost", port, USER, PASSWORD);
+    }
+
+    private FileTransferClient deadMirror() throws IOException {
+        int deadPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            deadPort = socket.getLocalPort();
+        }
+        return new FtpFileTransferClient("localhost", deadPort, USER, PASSWORD);
+    }
+}
@@ -0,0 +1,208 @@
+package fun.mike.frontier.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.ReadOnlyFileSystemException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockftpserver.core.command.CommandNames;
+import org.mockftpserver.fake.FakeFtpServer;
+import org.mockftpserver.fake.UserAccount;
+import org.mockftpserver.fake.filesystem.DirectoryEntry;
+import org.mockftpserver.fake.filesystem.FileSystem;
+import org.mockftpserver.fake.filesystem.WindowsFakeFileSystem;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RemoteFileSystemTest {
+    private static final String ROOT = "remote-root";
+    private static final URI FS_URI = URI.create("test://example.com");
+    private static final URI FTP_URI = URI.create("test://ftp.example.com");
+
+    @Rule
+    public final ExpectedException thrown = ExpectedException.none();
+
+    private RemoteFileSystem fileSystem;
+
+    @Before
+    public void setUp() {
+        IO.mkdir(ROOT);
+        IO.mkdir(ROOT + "/test");
+        IO.spit(ROOT + "/test/foo.txt", "foo.");
+        IO.spit(ROOT + "/test/digits.txt", "0123456789");
+
+        Map<String, Object> env = new HashMap<>();
+        env.put(RemoteFileSystemProvider.CLIENT, new LocalFileTransferClient(ROOT));
+        env.put(RemoteFileSystemProvider.BLOCK_SIZE, 4);
+        env.put(RemoteFileSystemProvider.CACHE_BLOCKS, 8);
+        fileSystem = RemoteFileSystemProvider.forScheme("test").newFileSystem(FS_URI, env);
+    }
+
+    @After
+    public void tearDown() {
+        fileSystem.close();
+        IO.nuke(ROOT + "/test");
+        IO.nuke(ROOT);
+    }
+
+    @Test
+    public void readAtOffsets() throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(fileSystem.getPath("/test/digits.txt"))) {
+            assertEquals(10, channel.size());
+
+            channel.position(6);
+            assertEquals("6789", read(channel, 10));
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            assertEquals(-1, channel.read(ByteBuffer.allocate(0)));
+
+            channel.position(2);
+            assertEquals("234567", read(channel, 6));
+            assertEquals(8, channel.position());
+        }
+        assertTrue(fileSystem.getCacheHits() > 0);
+        assertEquals("0123456789", new String(Files.readAllBytes(fileSystem.getPath("/test/digits.txt")),
+                                              StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readOverFtp() throws IOException {
+        FakeFtpServer ftpServer = new FakeFtpServer();
+        ftpServer.setServerControlPort(0);
+        ftpServer.addUserAccount(new UserAccount("bob", "password", "c:\\home"));
+        FileSystem ftpFileSystem = new WindowsFakeFileSystem();
+        ftpFileSystem.add(new DirectoryEntry("c:\\home\\test"));
+        ftpServer.setFileSystem(ftpFileSystem);
+        ftpServer.setCommandHandler(CommandNames.REST, new FtpFileTransferClientTest.RestartCommandHandler());
+        ftpServer.setCommandHandler(CommandNames.RETR, new FtpFileTransferClientTest.RestartableRetrCommandHandler());
+        ftpServer.start();
+
+        FileTransferClient client = new FtpFileTransferClient("localhost",
+                                                              ftpServer.getServerControlPort(),
+                                                              "bob",
+                                                              "password");
+        byte[] content = FileTransferClientTest.binaryContent(10_000);
+        client.upload(new ByteArrayInputStream(content), "test/binary.bin");
+
+        Map<String, Object> env = new HashMap<>();
+        env.put(RemoteFileSystemProvider.CLIENT, client);
+        env.put(RemoteFileSystemProvider.BLOCK_SIZE, 1024);
+        try (RemoteFileSystem ftp = RemoteFileSystemProvider.forScheme("test").newFileSystem(FTP_URI, env);
+             SeekableByteChannel channel = Files.newByteChannel(ftp.getPath("/test/binary.bin"))) {
+            assertEquals(10_000, channel.size());
+
+            channel.position(3_000);
+            ByteBuffer buffer = ByteBuffer.allocate(2_500);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // Reads stop at block boundaries.
+            }
+            assertArrayEquals(Arrays.copyOfRange(content, 3_000, 5_500), buffer.array());
+            assertEquals(0, channel.read(ByteBuffer.allocate(0)));
+
+            channel.position(9_990);
+            buffer = ByteBuffer.allocate(100);
+            assertEquals(10, channel.read(buffer));
+            assertEquals(-1, channel.read(buffer));
+            assertArrayEquals(Arrays.copyOfRange(content, 9_990, 10_000), Arrays.copyOf(buffer.array(), 10));
+        } finally {
+            ftpServer.stop();
+        }
+    }
+
+    @Test
+    public void readMissingFile() throws IOException {
+        thrown.expect(NoSuchFileException.class);
+        Files.newByteChannel(fileSystem.getPath("/test/missing.txt"));
+    }
+
+    @Test
+    public void writesAreRejected() throws IOException {
+        thrown.expect(ReadOnlyFileSystemException.class);
+        Files.newByteChannel(fileSystem.getPath("/test/new.txt"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    @Test
+    public void directoryStream() throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(fileSystem.getPath("/test"), "*.txt")) {
+            for (Path entry : entries) {
+                assertEquals("/test", entry.getParent().toString());
+                names.add(entry.getFileName().toString());
+            }
+        }
+        Collections.sort(names);
+        assertEquals("[digits.txt, foo.txt]", names.toString());
+    }
+
+    @Test
+    public void attributes() throws IOException {
+        BasicFileAttributes file = Files.readAttributes(fileSystem.getPath("/test/foo.txt"),
+                                                        BasicFileAttributes.class);
+        assertEquals(4, file.size());
+        assertTrue(file.isRegularFile());
+
+        assertTrue(Files.isDirectory(fileSystem.getPath("/test")));
+        assertTrue(Files.exists(fileSystem.getPath("/")));
+        assertFalse(Files.exists(fileSystem.getPath("/test/missing.txt")));
+        assertEquals(10L, Files.getAttribute(fileSystem.getPath("/test/digits.txt"), "basic:size"));
+    }
+
+    @Test
+    public void paths() {
+        Path path = fileSystem.getPath("/test", "sub", "..", "foo.txt");
+        assertEquals("/test/sub/../foo.txt", path.toString());
+        assertEquals("/test/foo.txt", path.normalize().toString());
+        assertEquals("foo.txt", path.getFileName().toString());
+        assertEquals(4, path.getNameCount());
+        assertEquals("../foo.txt", fileSystem.getPath("/test/sub").relativize(fileSystem.getPath("/test/foo.txt"))
+                .toString());
+        assertNull(fileSystem.getPath("/").getFileName());
+        assertEquals(URI.create("test://example.com/test/foo.txt"),
+                     fileSystem.getPath("test/foo.txt").toUri());
+        assertEquals(fileSystem.getPath("/test/foo.txt"),
+                     fileSystem.provider().getPath(URI.create("test://example.com/test/foo.txt")));
+
+        PathMatcher matcher = fileSystem.getPathMatcher("glob:/test/*.txt");
+        assertTrue(matcher.matches(fileSystem.getPath("/test/foo.txt")));
+        assertFalse(matcher.matches(fileSystem.getPath("/test/foo.csv")));
+    }
+
+    @Test
+    public void fileSystemAlreadyExists() {
+        thrown.expect(FileSystemAlreadyExistsException.class);
+        RemoteFileSystemProvider.open(FS_URI, new LocalFileTransferClient(ROOT));
+    }
+
+    private static String read(SeekableByteChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+            // Keep reading until the buffer is full or the file ends.
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+}
@@ -6,25 +6,43 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
 
 import com.github.stefanbirkner.fakesftpserver.rule.FakeSftpServerRule;
+import com.jcraft.jsch.ChannelSftp;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.Session;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class SftpFileTransferClientTest {
     private final String LOCAL_FILE = "local/foo.txt";
     private int PORT = 8080;
 
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
     @Rule
     public final FakeSftpServerRule server = new FakeSftpServerRule().setPort(PORT);
 
@@ -72,6 +90,67 @@ public class SftpFileTransferClientTest {
         IO.nuke("local/bar");
     }
 
+    @Test
+    public void readRange() throws IOException {
+        server.putFile("/bar", "0123456789", UTF_8);
+        FileTransferClient client = client();
+
+        assertEquals("345", new String(client.read("/bar", 3, 3), UTF_8));
+        assertEquals("89", new String(client.read("/bar", 8, 5), UTF_8));
+        assertEquals("4567", client.read("/bar", 4, 4, IO::slurp));
+
+        List<byte[]> ranges = client.read("/bar", Arrays.asList(ByteRange.of(6, 2), ByteRange.of(0, 3)));
+        assertEquals("67", new String(ranges.get(0), UTF_8));
+        assertEquals("012", new String(ranges.get(1), UTF_8));
+
+        thrown.expect(MissingRemoteFileException.class);
+        client.read("/missing", 0, 1);
+    }
+
+    @Test
+    public void openOutputStream() throws IOException {
+        SftpFileTransferClient client = (SftpFileTransferClient) client();
+        try (OutputStream os = client.openOutputStream("/baz.txt", 4)) {
+            os.write("this is".getBytes(UTF_8));
+            os.write(" a test".getBytes(UTF_8));
+        }
+
+        assertEquals("this is a test", server.getFileContent("/baz.txt", UTF_8));
+    }
+
+    @Test
+    public void abortOutputStream() throws IOException {
+        AbortableOutputStream os = client().openOutputStream("/baz.txt");
+        os.write("this is".getBytes(UTF_8));
+        os.abort();
+
+        assertFalse(server.existsFile("/baz.txt"));
+    }
+
+    @Test
+    public void resumeUpload() throws IOException {
+        server.putFile("/baz.txt", "this is", UTF_8);
+        IO.spit(LOCAL_FILE, "this is a test");
+
+        assertEquals(7, client().upload(LOCAL_FILE, "/baz.txt", 7));
+        assertEquals("this is a test", server.getFileContent("/baz.txt", UTF_8));
+    }
+
+    @Test
+    public void uploadSegmented() throws IOException {
+        byte[] content = new byte[100_000];
+        new Random(7).nextBytes(content);
+        Files.write(Paths.get(LOCAL_FILE), content);
+
+        SftpFileTransferClient client = (SftpFileTransferClient) client();
+        assertEquals("/big.bin", client.uploadSegmented(LOCAL_FILE, "/big.bin", 16 * 1024, 3));
+        assertArrayEquals(content, server.getFileContent("/big.bin"));
+
+        IO.spit(LOCAL_FILE, "");
+        assertEquals("/big.bin", client.uploadSegmented(LOCAL_FILE, "/big.bin"));
+        assertEquals(0, server.getFileContent("/big.bin").length);
+    }
+
     @Test
     public void assertFileExists() throws IOException {
         String content = "this is a test";
@@ -127,6 +206,59 @@ public class SftpFileTransferClientTest {
         assertTrue(fileNames.contains("qux.txt"));
     }
 
+    @Test
+    public void listQuery() throws IOException {
+        server.putFile("/query/a.csv", "a", UTF_8);
+        server.putFile("/query/b.csv", "bb", UTF_8);
+        server.putFile("/query/c.txt", "ccc", UTF_8);
+
+        List<FileInfo> results = client().list("/query", ListQuery.all().glob("*.csv").maxSize(1));
+
+        assertEquals(1, results.size());
+        assertEquals("a.csv", results.get(0).getName());
+        assertEquals(2, client().list("/query", ListQuery.all().glob("*.csv").newest(5)).size());
+    }
+
+    @Test
+    public void listCompact() throws IOException {
+        server.putFile("/compact/a.csv", "a", UTF_8);
+        server.putFile("/compact/b.csv", "bb", UTF_8);
+        server.putFile("/compact/c.txt", "ccc", UTF_8);
+
+        FileListing listing = client().listCompact("/compact").sortedBySize();
+
+        assertEquals(3, listing.size());
+        assertEquals("c.txt", listing.getName(2));
+        assertEquals(3, listing.getSize(2));
+        assertEquals(2, listing.filter(ListQuery.all().glob("*.csv")).size());
+    }
+
+    @Test
+    public void listTimesAreModificationTimes() throws Exception {
+        server.putFile("/times/a.csv", "a", UTF_8);
+        Session session = new JSch().getSession("foo", "localhost", PORT);
+        session.setPassword("baz");
+        session.setConfig("StrictHostKeyChecking", "no");
+        session.connect();
+        try {
+            ChannelSftp channel = (ChannelSftp) session.openChannel("sftp");
+            channel.connect();
+            channel.setMtime("/times/a.csv", 1_000_000);
+            channel.disconnect();
+        } finally {
+            session.disconnect();
+        }
+
+        FileTransferClient client = client();
+        assertEquals(1_000_000_000L, client.list("/times").stream()
+                .filter(file -> file.getName().equals("a.csv"))
+                .findFirst()
+                .get()
+                .getTime()
+                .getTime());
+        assertEquals(1_000_000_000L, client.listCompact("/times").getTime(0));
+    }
+
     @Test
     public void download() throws IOException {
         String content = "foo.";
@@ -137,6 +269,68 @@ public class SftpFileTransferClientTest {
         assertEquals("foo.", out.toString());
     }
 
+    @Test
+    public void downloadFromOffset() throws IOException {
+        server.putFile("/test/foo.txt", "foo.", UTF_8);
+
+        OutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, client().download("test/foo.txt", 2, out));
+        assertEquals("o.", out.toString());
+    }
+
+    @Test
+    public void stat() throws IOException {
+        server.putFile("/test/bar.txt", "bar!!", UTF_8);
+
+        FileInfo info = client().stat("/test/bar.txt").get();
+        assertEquals("bar.txt", info.getName());
+        assertEquals(new Long(5), info.getSize());
+        assertFalse(info.isDirectory());
+
+        assertFalse(client().stat("/test/ekajrka.txt").isPresent());
+    }
+
+    @Test
+    public void tail() {
+        FileTransferClient client = client();
+        RemoteFileTail tail = new RemoteFileTail(client);
+
+        final String PATH = "/feed.txt";
+
+        client.upload(new ByteArrayInputStream("abc".getBytes()), PATH);
+        assertEquals("abc", tail.poll(PATH, IO::slurp));
+        assertEquals("", tail.poll(PATH, IO::slurp));
+
+        client.upload(new ByteArrayInputStream("abcdef".getBytes()), PATH);
+        assertEquals("def", tail.poll(PATH, IO::slurp));
+        assertEquals(6, tail.getOffset(PATH));
+
+        client.upload(new ByteArrayInputStream("xy".getBytes()), PATH);
+        assertEquals("xy", tail.poll(PATH, IO::slurp));
+    }
+
+    @Test
+    public void downloadWithChecksum() throws IOException {
+        server.putFile("/test/foo.txt", "foo.", UTF_8);
+
+        assertEquals("0bda519dc053f791f272b69aa3e3a5ce48058dc90330b6ed954a988d199d0280",
+                     client().download("test/foo.txt", LOCAL_FILE, ChecksumAlgorithm.SHA_256));
+        assertEquals("foo.", IO.slurp(LOCAL_FILE));
+    }
+
+    @Test
+    public void checksumRemembersHostWithoutExec() throws IOException {
+        server.putFile("/test/foo.txt", "foo.", UTF_8);
+        FileTransferClient client = client();
+
+        assertFalse(client.checksum("test/foo.txt", ChecksumAlgorithm.SHA_256).isPresent());
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            assertFalse(client.checksum("test/foo.txt", ChecksumAlgorithm.SHA_256).isPresent());
+        }
+        assertTrue(System.currentTimeMillis() - start < 1000);
+    }
+
     @Test
     public void optionalDownload() throws IOException {
         String content = "foo.";
@@ -155,6 +349,107 @@ public class SftpFileTransferClientTest {
         assertEquals(Optional.empty(), client().optionalDownload("foo", os));
     }
 
+    @Test
+    public void zipRemoteFile() throws IOException {
+        server.putFile("/test/foo.txt", "foo.", UTF_8);
+
+        try (ZipBuilder zip = ZipBuilder.create("local/test.zip")) {
+            zip.addRemote("foo.txt", client(), "/test/foo.txt");
+        }
+
+        try (ZipFile zipFile = new ZipFile("local/test.zip")) {
+            assertEquals("foo.", IO.slurp(zipFile.getInputStream(zipFile.getEntry("foo.txt"))));
+        }
+    }
+
+    @Test
+    public void uploadAndDownloadGzip() {
+        FileTransferClient client = client();
+
+        final String PATH = "/baz.txt.gz";
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            content.append(i).append('\n');
+        }
+
+        client.upload(new ByteArrayInputStream(content.toString().getBytes()), PATH, ContentCoding.GZIP);
+
+        OutputStream out = new ByteArrayOutputStream();
+        client.download(PATH, out, ContentCoding.GZIP);
+        assertEquals(content.toString(), out.toString());
+    }
+
+    @Test
+    public void copy() throws IOException {
+        server.putFile("/test/foo.txt", "foo.", UTF_8);
+        server.createDirectory("/copy");
+
+        assertEquals("/copy/foo.txt", new RemoteCopy().copy(client(), "/test/foo.txt", client(), "/copy/foo.txt"));
+        assertEquals("foo.", getFileContent("/copy/foo.txt"));
+    }
+
+    @Test
+    public void copyAll() throws IOException {
+        server.putFile("/test/foo.txt", "foo.", UTF_8);
+        server.putFile("/test/bar.txt", "bar!!", UTF_8);
+        server.createDirectory("/copy");
+
+        Map<String, String> paths = new LinkedHashMap<>();
+        paths.put("/test/foo.txt", "/copy/foo.txt");
+        paths.put("/test/bar.txt", "/copy/bar.txt");
+
+        assertEquals(Arrays.asList("/copy/foo.txt", "/copy/bar.txt"),
+                     new RemoteCopy().copyAll(client(), client(), paths));
+        assertEquals("foo.", getFileContent("/copy/foo.txt"));
+        assertEquals("bar!!", getFileContent("/copy/bar.txt"));
+    }
+
+    @Test
+    public void copyNonexistentFile() throws IOException {
+        server.createDirectory("/copy");
+        thrown.expect(FileTransferException.class);
+        thrown.expectMessage("Failed to retrieve file at path \"/test/ekajrka.txt\".");
+        new RemoteCopy().copy(client(), "/test/ekajrka.txt", client(), "/copy/ekajrka.txt");
+    }
+
+    @Test
+    public void streamLines() throws IOException {
+        server.putFile("/test/baz.csv", "id,name\r\n1,foo\r\n2,bar", UTF_8);
+
+        try (Stream<String> lines = client().streamLines("/test/baz.csv", UTF_8, "\r\n", true)) {
+            assertEquals(Arrays.asList("1,foo", "2,bar"), lines.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void deadline() throws IOException {
+        try (ServerSocket stalled = new ServerSocket(0)) {
+            FileTransferClient client = new SftpFileTransferClient("localhost",
+                                                                   stalled.getLocalPort(),
+                                                                   "foo",
+                                                                   "baz",
+                                                                   null,
+                                                                   null,
+                                                                   null,
+                                                                   null,
+                                                                   false,
+                                                                   10_000,
+                                                                   6,
+                                                                   10_000,
+                                                                   300);
+            long start = System.currentTimeMillis();
+            try {
+                client.slurp("/test/foo.txt");
+                fail("Expected the operation to time out.");
+            } catch (FileTransferException ex) {
+                assertTrue(System.currentTimeMillis() - start < 5000);
+                assertEquals(String.format("Connecting to localhost:%d exceeded the deadline of 300 ms.",
+                                           stalled.getLocalPort()),
+                             ex.getMessage());
+            }
+        }
+    }
+
     private String getFileContent(String path) {
         try {
             return server.getFileContent(path, UTF_8);
@@ -0,0 +1,188 @@
+package fun.mike.frontier.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpooledFileTransferClientTest {
+    private static final String ROOT = "spool-root";
+    private static final String SPOOL = "spool-dir";
+
+    private LocalFileTransferClient local;
+
+    @Before
+    public void setUp() {
+        IO.mkdir(ROOT);
+        IO.mkdir(SPOOL);
+        local = new LocalFileTransferClient(ROOT);
+    }
+
+    @After
+    public void tearDown() {
+        IO.nuke(ROOT);
+        IO.nuke(SPOOL);
+    }
+
+    @Test
+    public void uploadsAreSentBehind() throws InterruptedException, IOException {
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(local, SPOOL)) {
+            client.upload(new ByteArrayInputStream(bytes("foo")), "foo.txt");
+            client.write("bar.txt", os -> {
+                    try {
+                        os.write(bytes("bar"));
+                    } catch (IOException ex) {
+                        throw new RuntimeException(ex);
+                    }
+                });
+            try (OutputStream os = client.openOutputStream("baz.txt")) {
+                os.write(bytes("baz"));
+            }
+
+            assertTrue(client.awaitDrained(10_000));
+            assertEquals(0, client.getQueueDepth());
+            assertEquals(0, client.getSpooledBytes());
+            assertEquals(0, client.getOldestAgeMillis());
+            assertEquals("foo", local.slurp("foo.txt"));
+            assertEquals("bar", local.slurp("bar.txt"));
+            assertEquals("baz", local.slurp("baz.txt"));
+        }
+    }
+
+    @Test
+    public void abortedStreamIsNotSent() throws InterruptedException, IOException {
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(local, SPOOL)) {
+            AbortableOutputStream os = client.openOutputStream("baz.txt");
+            os.write(bytes("ba"));
+            os.abort();
+
+            assertTrue(client.awaitDrained(10_000));
+            assertEquals(0, client.getSpooledBytes());
+            assertFalse(local.fileExists("baz.txt"));
+        }
+    }
+
+    @Test
+    public void latestUploadWins() throws InterruptedException {
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(local, SPOOL, 1)) {
+            for (int i = 0; i < 20; i++) {
+                client.upload(new ByteArrayInputStream(bytes("v" + i)), "foo.txt");
+            }
+            assertTrue(client.awaitDrained(10_000));
+            assertEquals("v19", local.slurp("foo.txt"));
+        }
+    }
+
+    @Test
+    public void pendingUploadsSurviveRestart() throws InterruptedException {
+        FileTransferClient failing = new LocalFileTransferClient(ROOT) {
+            @Override
+            public String upload(String source, String dest) {
+                throw new FileTransferException("Host unavailable.");
+            }
+        };
+
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(failing, SPOOL)) {
+            client.upload(new ByteArrayInputStream(bytes("foo")), "foo.txt");
+            client.upload(new ByteArrayInputStream(bytes("bar!")), "bar.txt");
+            assertFalse(client.awaitDrained(200));
+            assertEquals(2, client.getQueueDepth());
+            assertEquals(7, client.getSpooledBytes());
+            assertTrue(client.getOldestAgeMillis() >= 0);
+        }
+        assertFalse(local.fileExists("foo.txt"));
+
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(local, SPOOL)) {
+            assertTrue(client.awaitDrained(10_000));
+            assertEquals("foo", local.slurp("foo.txt"));
+            assertEquals("bar!", local.slurp("bar.txt"));
+        }
+    }
+
+    @Test
+    public void deleteDropsPendingUploads() throws InterruptedException {
+        FileTransferClient failing = new LocalFileTransferClient(ROOT) {
+            @Override
+            public String upload(String source, String dest) {
+                throw new FileTransferException("Host unavailable.");
+            }
+        };
+        local.upload(new ByteArrayInputStream(bytes("old")), "foo.txt");
+
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(failing, SPOOL)) {
+            client.upload(new ByteArrayInputStream(bytes("foo")), "foo.txt");
+            client.upload(new ByteArrayInputStream(bytes("foo!")), "foo.txt");
+            client.upload(new ByteArrayInputStream(bytes("bar")), "bar.txt");
+            client.delete("foo.txt");
+            assertEquals(1, client.getQueueDepth());
+            assertEquals(3, client.getSpooledBytes());
+        }
+        assertFalse(local.fileExists("foo.txt"));
+
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(local, SPOOL)) {
+            assertTrue(client.awaitDrained(10_000));
+            assertFalse(local.fileExists("foo.txt"));
+            assertEquals("bar", local.slurp("bar.txt"));
+        }
+    }
+
+    @Test
+    public void failedUploadsAreKeptAfterMaxAttempts() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        FileTransferClient failing = new LocalFileTransferClient(ROOT) {
+            @Override
+            public String upload(String source, String dest) {
+                attempts.incrementAndGet();
+                throw new FileTransferException("Host unavailable.");
+            }
+        };
+
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(failing, SPOOL, 1, 2)) {
+            client.upload(new ByteArrayInputStream(bytes("foo")), "foo.txt");
+            client.upload(new ByteArrayInputStream(bytes("bar!")), "bar.txt");
+            assertTrue(client.awaitDrained(10_000));
+            assertEquals(4, attempts.get());
+            assertEquals(0, client.getQueueDepth());
+            assertEquals(2, client.getFailedCount());
+            assertEquals(7, client.getSpooledBytes());
+        }
+
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(local, SPOOL)) {
+            List<SpooledFileTransferClient.FailedUpload> failed = client.getFailed();
+            assertEquals(2, failed.size());
+            assertEquals("foo.txt", failed.get(0).getPath());
+            assertEquals(3, failed.get(0).getSize());
+            assertEquals("bar.txt", failed.get(1).getPath());
+            assertTrue(client.awaitDrained(200));
+            assertFalse(local.fileExists("foo.txt"));
+
+            assertTrue(client.retryFailed(failed.get(0).getId()));
+            assertTrue(client.discardFailed(failed.get(1).getId()));
+            assertFalse(client.discardFailed(failed.get(1).getId()));
+            assertTrue(client.awaitDrained(10_000));
+            assertEquals("foo", local.slurp("foo.txt"));
+            assertFalse(local.fileExists("bar.txt"));
+            assertEquals(0, client.getFailedCount());
+            assertEquals(0, client.getSpooledBytes());
+        }
+
+        try (SpooledFileTransferClient client = new SpooledFileTransferClient(local, SPOOL)) {
+            assertEquals(0, client.getQueueDepth());
+            assertEquals(0, client.getFailedCount());
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
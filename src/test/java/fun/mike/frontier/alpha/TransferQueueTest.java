@@ -0,0 +1,238 @@
+package fun.mike.frontier.alpha;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransferQueueTest {
+    private static final String ROOT = "queue-root";
+    private static final String LOCAL = "queue-local";
+    private static final String JOURNAL = LOCAL + "/journal";
+
+    @Before
+    public void setUp() {
+        IO.mkdir(ROOT);
+        IO.mkdir(LOCAL);
+    }
+
+    @After
+    public void tearDown() {
+        IO.nuke(ROOT);
+        IO.nuke(LOCAL);
+    }
+
+    @Test
+    public void runsHigherPrioritiesFirst() throws InterruptedException {
+        IO.spit(ROOT + "/first.txt", "first");
+        IO.spit(ROOT + "/bulk.txt", "bulk");
+        IO.spit(ROOT + "/normal.txt", "normal");
+        IO.spit(ROOT + "/urgent.txt", "urgent");
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        FileTransferClient client = new LocalFileTransferClient(ROOT) {
+            @Override
+            public long download(String path, long offset, OutputStream stream) {
+                order.add(path);
+                if (path.equals("first.txt")) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new FileTransferException(ex);
+                    }
+                }
+                return super.download(path, offset, stream);
+            }
+        };
+
+        try (TransferQueue queue = new TransferQueue(client, JOURNAL, 1, 1024)) {
+            queue.download("first.txt", LOCAL + "/first.txt", TransferPriority.NORMAL);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            queue.download("bulk.txt", LOCAL + "/bulk.txt", TransferPriority.BULK);
+            queue.download("normal.txt", LOCAL + "/normal.txt", TransferPriority.NORMAL);
+            long urgent = queue.download("urgent.txt", LOCAL + "/urgent.txt", TransferPriority.URGENT);
+            assertEquals(4, queue.getPendingCount());
+            release.countDown();
+
+            assertTrue(queue.awaitIdle(10_000));
+            assertEquals(Arrays.asList("first.txt", "urgent.txt", "normal.txt", "bulk.txt"), order);
+            assertEquals(Optional.of(TransferQueue.Status.DONE), queue.status(urgent));
+            assertEquals("bulk", IO.slurp(LOCAL + "/bulk.txt"));
+        }
+    }
+
+    @Test
+    public void resumesDownloadFromRecordedOffset() throws InterruptedException, IOException {
+        byte[] content = new byte[10_000];
+        new Random(42).nextBytes(content);
+        Files.write(Paths.get(ROOT, "data.bin"), content);
+
+        CountDownLatch crashed = new CountDownLatch(1);
+        FileTransferClient crashing = new LocalFileTransferClient(ROOT) {
+            @Override
+            public long download(String path, long offset, OutputStream stream) {
+                try {
+                    stream.write(content, 0, 6_500);
+                } catch (IOException ex) {
+                    throw new FileTransferException(ex);
+                }
+                crashed.countDown();
+                throw new FileTransferException("Connection reset.");
+            }
+        };
+        try (TransferQueue queue = new TransferQueue(crashing, JOURNAL, 1, 1024)) {
+            queue.download("data.bin", LOCAL + "/data.bin", TransferPriority.BULK);
+            assertTrue(crashed.await(10, TimeUnit.SECONDS));
+        }
+
+        List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+        FileTransferClient client = new LocalFileTransferClient(ROOT) {
+            @Override
+            public long download(String path, long offset, OutputStream stream) {
+                offsets.add(offset);
+                return super.download(path, offset, stream);
+            }
+        };
+        try (TransferQueue queue = new TransferQueue(client, JOURNAL, 1, 1024)) {
+            assertTrue(queue.awaitIdle(10_000));
+        }
+        assertEquals(Arrays.asList(6_500L), offsets);
+        assertArrayEquals(content, Files.readAllBytes(Paths.get(LOCAL, "data.bin")));
+    }
+
+    @Test
+    public void restartsDownloadWhenHostFileChanged() throws InterruptedException, IOException {
+        byte[] content = new byte[10_000];
+        new Random(42).nextBytes(content);
+        Files.write(Paths.get(ROOT, "data.bin"), content);
+
+        CountDownLatch crashed = new CountDownLatch(1);
+        FileTransferClient crashing = new LocalFileTransferClient(ROOT) {
+            @Override
+            public long download(String path, long offset, OutputStream stream) {
+                try {
+                    stream.write(content, 0, 6_500);
+                } catch (IOException ex) {
+                    throw new FileTransferException(ex);
+                }
+                crashed.countDown();
+                throw new FileTransferException("Connection reset.");
+            }
+        };
+        try (TransferQueue queue = new TransferQueue(crashing, JOURNAL, 1, 1024)) {
+            queue.download("data.bin", LOCAL + "/data.bin", TransferPriority.BULK);
+            assertTrue(crashed.await(10, TimeUnit.SECONDS));
+        }
+
+        byte[] rewritten = new byte[10_000];
+        new Random(7).nextBytes(rewritten);
+        Files.write(Paths.get(ROOT, "data.bin"), rewritten);
+        FileTime later = FileTime.fromMillis(System.currentTimeMillis() + 60_000);
+        Files.setLastModifiedTime(Paths.get(ROOT, "data.bin"), later);
+
+        List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+        FileTransferClient client = new LocalFileTransferClient(ROOT) {
+            @Override
+            public long download(String path, long offset, OutputStream stream) {
+                offsets.add(offset);
+                return super.download(path, offset, stream);
+            }
+        };
+        try (TransferQueue queue = new TransferQueue(client, JOURNAL, 1, 1024)) {
+            assertTrue(queue.awaitIdle(10_000));
+        }
+        assertEquals(Arrays.asList(0L), offsets);
+        assertArrayEquals(rewritten, Files.readAllBytes(Paths.get(LOCAL, "data.bin")));
+    }
+
+    @Test
+    public void resumesUploadFromVerifiedHostSize() throws InterruptedException {
+        assertEquals(Arrays.asList(4L), resumeUpload("0123", true));
+        assertEquals("0123456789", IO.slurp(ROOT + "/data.txt"));
+    }
+
+    @Test
+    public void restartsUploadWhenPartialFileDiffers() throws InterruptedException {
+        assertEquals(Arrays.asList(0L), resumeUpload("01X3", true));
+        assertEquals("0123456789", IO.slurp(ROOT + "/data.txt"));
+    }
+
+    @Test
+    public void restartsUploadWhenHostCannotVerify() throws InterruptedException {
+        assertEquals(Arrays.asList(0L), resumeUpload("0123", false));
+        assertEquals("0123456789", IO.slurp(ROOT + "/data.txt"));
+    }
+
+    @Test
+    public void missingSourceFailsAtOnce() throws InterruptedException {
+        try (TransferQueue queue = new TransferQueue(new LocalFileTransferClient(ROOT), JOURNAL)) {
+            long id = queue.download("missing.txt", LOCAL + "/missing.txt", TransferPriority.URGENT);
+            assertTrue(queue.awaitIdle(10_000));
+            assertEquals(Optional.of(TransferQueue.Status.FAILED), queue.status(id));
+        }
+        try (TransferQueue queue = new TransferQueue(new LocalFileTransferClient(ROOT), JOURNAL)) {
+            assertEquals(0, queue.getPendingCount());
+        }
+    }
+
+    /**
+     * Crashes an upload of ten bytes after it has left a partial file on the host, then resumes it.
+     *
+     * @return the offsets the resumed upload started from
+     */
+    private List<Long> resumeUpload(String partial, boolean verifiable) throws InterruptedException {
+        IO.spit(LOCAL + "/data.txt", "0123456789");
+
+        CountDownLatch crashed = new CountDownLatch(1);
+        FileTransferClient crashing = new LocalFileTransferClient(ROOT) {
+            @Override
+            public long upload(String source, String dest, long offset) {
+                IO.spit(ROOT + "/data.txt", partial);
+                crashed.countDown();
+                throw new FileTransferException("Connection reset.");
+            }
+        };
+        try (TransferQueue queue = new TransferQueue(crashing, JOURNAL, 1, 1024)) {
+            queue.upload(LOCAL + "/data.txt", "data.txt", TransferPriority.NORMAL);
+            assertTrue(crashed.await(10, TimeUnit.SECONDS));
+        }
+
+        List<Long> offsets = Collections.synchronizedList(new ArrayList<>());
+        FileTransferClient client = new LocalFileTransferClient(ROOT) {
+            @Override
+            public long upload(String source, String dest, long offset) {
+                offsets.add(offset);
+                return super.upload(source, dest, offset);
+            }
+
+            @Override
+            public Optional<String> checksum(String path, ChecksumAlgorithm algorithm) {
+                return verifiable ? super.checksum(path, algorithm) : Optional.empty();
+            }
+        };
+        try (TransferQueue queue = new TransferQueue(client, JOURNAL, 1, 1024)) {
+            assertTrue(queue.awaitIdle(10_000));
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,121 @@
+package fun.mike.frontier.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ZipBuilderTest {
+    private static final String ZIP_FILE = "local/test.zip";
+
+    @Before
+    public void setUp() {
+        IO.mkdir("local");
+    }
+
+    @After
+    public void tearDown() {
+        IO.nuke("local");
+    }
+
+    @Test
+    public void zip() throws IOException {
+        byte[] large = new byte[1024 * 1024 + 17];
+        Random random = new Random(42);
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ('a' + random.nextInt(4));
+        }
+
+        IO.spit("local/foo.txt", "foo.");
+
+        try (ZipBuilder zip = new ZipBuilder(new FileOutputStream(ZIP_FILE), 4, 6)) {
+            zip.addFile("foo.txt", "local/foo.txt");
+            zip.add("large.bin", new ByteArrayInputStream(large), large.length);
+            zip.add("empty.txt", new ByteArrayInputStream(new byte[0]), 0);
+        }
+
+        try (ZipFile zipFile = new ZipFile(ZIP_FILE)) {
+            assertEquals(3, zipFile.size());
+            assertEquals("foo.", IO.slurp(zipFile.getInputStream(zipFile.getEntry("foo.txt"))));
+            assertArrayEquals(large, readAll(zipFile, "large.bin"));
+            assertEquals(0, zipFile.getEntry("empty.txt").getSize());
+        }
+
+        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(ZIP_FILE))) {
+            assertEquals("foo.txt", zis.getNextEntry().getName());
+            ZipEntry entry = zis.getNextEntry();
+            assertEquals("large.bin", entry.getName());
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            IO.pipe(zis, out);
+            assertArrayEquals(large, out.toByteArray());
+            assertEquals("empty.txt", zis.getNextEntry().getName());
+            assertNull(zis.getNextEntry());
+        }
+    }
+
+    @Test
+    public void unknownSizeBeyondReadAheadUsesZip64() throws IOException {
+        byte[] large = new byte[1024 * 1024];
+        new Random(42).nextBytes(large);
+        try (ZipBuilder zip = new ZipBuilder(new FileOutputStream(ZIP_FILE), 2, 6)) {
+            zip.add("bar.txt", new ByteArrayInputStream("bar!!".getBytes(StandardCharsets.UTF_8)));
+            zip.add("foo.bin", new ByteArrayInputStream(large));
+        }
+
+        ByteBuffer archive = ByteBuffer.wrap(Files.readAllBytes(Paths.get(ZIP_FILE))).order(ByteOrder.LITTLE_ENDIAN);
+        try (ZipFile zipFile = new ZipFile(ZIP_FILE)) {
+            assertEquals("bar!!", IO.slurp(zipFile.getInputStream(zipFile.getEntry("bar.txt"))));
+            assertArrayEquals(large, readAll(zipFile, "foo.bin"));
+
+            assertEquals(0x04034b50, archive.getInt(0));
+            assertEquals(20, archive.getShort(4));
+            assertEquals(0, archive.getShort(28));
+
+            int foo = (int) (30 + "bar.txt".length() + zipFile.getEntry("bar.txt").getCompressedSize() + 16);
+            assertEquals(0x04034b50, archive.getInt(foo));
+            assertEquals(45, archive.getShort(foo + 4));
+            assertEquals(0xFFFFFFFF, archive.getInt(foo + 18));
+            assertEquals(0xFFFFFFFF, archive.getInt(foo + 22));
+            assertEquals(20, archive.getShort(foo + 28));
+            assertEquals(0x0001, archive.getShort(foo + 30 + "foo.bin".length()));
+        }
+    }
+
+    @Test
+    public void zipPaths() throws IOException {
+        IO.spit("local/foo.txt", "foo.");
+        IO.spit("local/bar.txt", "bar!!");
+
+        IO.zip(ZIP_FILE, Arrays.asList("local/foo.txt", "local/bar.txt"));
+
+        try (ZipFile zipFile = new ZipFile(ZIP_FILE)) {
+            assertEquals("foo.", IO.slurp(zipFile.getInputStream(zipFile.getEntry("foo.txt"))));
+            assertEquals("bar!!", IO.slurp(zipFile.getInputStream(zipFile.getEntry("bar.txt"))));
+        }
+    }
+
+    private static byte[] readAll(ZipFile zipFile, String name) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.pipe(zipFile.getInputStream(zipFile.getEntry(name)), out);
+        return out.toByteArray();
+    }
+}
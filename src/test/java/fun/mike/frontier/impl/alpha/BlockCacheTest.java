@@ -0,0 +1,51 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BlockCacheTest {
+    @Test
+    public void keysOnTimeAndSizeSeparately() throws Exception {
+        BlockCache cache = new BlockCache(8);
+        // 31 * 1 + 0 == 31 * 0 + 31, which a combined version would have confused.
+        cache.get("a.bin", 1, 0, 0, null, () -> new byte[] {1}).get();
+        byte[] block = cache.get("a.bin", 0, 31, 0, null, () -> new byte[] {2}).get();
+
+        assertArrayEquals(new byte[] {2}, block);
+        assertEquals(2, cache.getMisses());
+        assertTrue(cache.contains("a.bin", 1, 0, 0));
+        assertTrue(cache.contains("a.bin", 0, 31, 0));
+    }
+
+    @Test
+    public void loaderErrorCompletesFuture() throws Exception {
+        BlockCache cache = new BlockCache(8);
+        Executor executor = runnable -> {
+            try {
+                runnable.run();
+            } catch (OutOfMemoryError ex) {
+                // Rethrown to the executor after the future is completed.
+            }
+        };
+        CompletableFuture<byte[]> block = cache.get("a.bin", 1, 1, 0, executor, () -> {
+                throw new OutOfMemoryError("block");
+            });
+        try {
+            block.get(5, TimeUnit.SECONDS);
+            fail("Expected the fetch to fail.");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof OutOfMemoryError);
+        }
+        assertFalse(cache.contains("a.bin", 1, 1, 0));
+    }
+}
@@ -0,0 +1,108 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import fun.mike.frontier.alpha.FileListing;
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UnixListParserTest {
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final long NOW = millis(2020, 3, 15, 12, 0);
+
+    private static long millis(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static UnixListParser parser() {
+        return new UnixListParser(UTC, NOW);
+    }
+
+    @Test
+    public void handles() {
+        assertTrue(UnixListParser.handles("UNIX Type: L8"));
+        assertFalse(UnixListParser.handles("UNIX_LTRIM"));
+        assertFalse(UnixListParser.handles("Windows_NT"));
+        assertFalse(UnixListParser.handles(null));
+    }
+
+    @Test
+    public void file() {
+        FTPFile file = parser().parseFTPEntry("-rw-r--r--   1 bob      staff       1234 Mar 10 09:30 report.csv");
+
+        assertTrue(file.isFile());
+        assertEquals("report.csv", file.getName());
+        assertEquals(1234, file.getSize());
+        assertEquals("bob", file.getUser());
+        assertEquals("staff", file.getGroup());
+        assertEquals(1, file.getHardLinkCount());
+        assertTrue(file.hasPermission(FTPFile.USER_ACCESS, FTPFile.WRITE_PERMISSION));
+        assertFalse(file.hasPermission(FTPFile.WORLD_ACCESS, FTPFile.WRITE_PERMISSION));
+        assertEquals(millis(2020, 3, 10, 9, 30), file.getTimestamp().getTimeInMillis());
+    }
+
+    @Test
+    public void datesWithoutYear() {
+        FTPFile future = parser().parseFTPEntry("-rw-r--r-- 1 bob staff 5 Dec 24 18:00 old.txt");
+        assertEquals(millis(2019, 12, 24, 18, 0), future.getTimestamp().getTimeInMillis());
+
+        FTPFile dated = parser().parseFTPEntry("drwxr-xr-x+ 2 bob staff 4096 Jan  2  2017 archive");
+        assertTrue(dated.isDirectory());
+        assertEquals("archive", dated.getName());
+        assertEquals(millis(2017, 1, 2, 0, 0), dated.getTimestamp().getTimeInMillis());
+    }
+
+    @Test
+    public void namesAndLinks() {
+        FTPFile spaced = parser().parseFTPEntry("-rw-r--r-- 1 bob 7 Mar  1 10:00  leading space.txt");
+        assertEquals(" leading space.txt", spaced.getName());
+        assertEquals(7, spaced.getSize());
+        assertEquals("bob", spaced.getUser());
+
+        FTPFile link = parser().parseFTPEntry("lrwxrwxrwx 1 bob staff 11 Mar  1 10:00 current -> releases/42");
+        assertTrue(link.isSymbolicLink());
+        assertEquals("current", link.getName());
+        assertEquals("releases/42", link.getLink());
+    }
+
+    @Test
+    public void unrecognized() {
+        assertNull(parser().parseFTPEntry("total 42"));
+        assertNull(parser().parseFTPEntry("-rw-r--r-- truncated"));
+
+        FTPFile iso = parser().parseFTPEntry("-rw-r--r-- 1 bob staff 12 2019-06-01 10:00 iso.txt");
+        assertEquals("iso.txt", iso.getName());
+        assertEquals(12, iso.getSize());
+    }
+
+    @Test
+    public void stream() throws IOException {
+        String listing = "total 3\r\n"
+                + "-rw-r--r-- 1 bob staff 3 Mar 10 09:30 a.txt\r\n"
+                + "drwxr-xr-x 2 bob staff 4096 Feb  1  2019 d\r\n"
+                + "-rw-r--r-- 1 bob staff 6 Mar 11 11:00 \u00e9t\u00e9.txt";
+        FileListing.Builder builder = FileListing.builder();
+
+        parser().parse(new ByteArrayInputStream(listing.getBytes(StandardCharsets.UTF_8)),
+                       StandardCharsets.UTF_8,
+                       builder);
+
+        FileListing files = builder.build();
+        assertEquals(3, files.size());
+        assertEquals("a.txt", files.getName(0));
+        assertEquals(millis(2020, 3, 10, 9, 30), files.getTime(0));
+        assertTrue(files.isDirectory(1));
+        assertEquals("\u00e9t\u00e9.txt", files.getName(2));
+        assertEquals(6, files.getSize(2));
+    }
+}
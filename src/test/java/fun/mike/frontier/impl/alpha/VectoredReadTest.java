@@ -0,0 +1,51 @@
+package fun.mike.frontier.impl.alpha;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fun.mike.frontier.alpha.ByteRange;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class VectoredReadTest {
+    private static final byte[] FILE = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    private final List<String> spans = new ArrayList<>();
+
+    private byte[] read(long offset, int length) {
+        spans.add(offset + "+" + length);
+        int from = (int) Math.min(offset, FILE.length);
+        return Arrays.copyOfRange(FILE, from, (int) Math.min(FILE.length, offset + length));
+    }
+
+    private List<String> read(int maxGap, int maxSpan, ByteRange... ranges) {
+        List<String> results = new ArrayList<>();
+        for (byte[] bytes : VectoredRead.read(Arrays.asList(ranges), maxGap, maxSpan, this::read)) {
+            results.add(new String(bytes, StandardCharsets.US_ASCII));
+        }
+        return results;
+    }
+
+    @Test
+    public void mergesNearbyRanges() {
+        assertEquals(Arrays.asList("cd", "23", "56", "4"),
+                     read(2, 100, ByteRange.of(12, 2), ByteRange.of(2, 2), ByteRange.of(5, 2), ByteRange.of(4, 1)));
+        assertEquals(Arrays.asList("2+5", "12+2"), spans);
+    }
+
+    @Test
+    public void splitsLongSpans() {
+        assertEquals(Arrays.asList("0123", "3456", "789a"),
+                     read(0, 7, ByteRange.of(0, 4), ByteRange.of(3, 4), ByteRange.of(7, 4)));
+        assertEquals(Arrays.asList("0+7", "7+4"), spans);
+    }
+
+    @Test
+    public void truncatesAtEndOfFile() {
+        assertEquals(Arrays.asList("ij", ""), read(10, 100, ByteRange.of(18, 5), ByteRange.of(25, 1)));
+        assertEquals(Arrays.asList("18+8"), spans);
+    }
+}